@@ -584,13 +584,15 @@ public abstract class ProtonAbstractByteBuffer implements ProtonBuffer {
         }
     }
 
-    protected void ensureWritable(int minWritableBytes) {
+    @Override
+    public ProtonBuffer ensureWritable(int minWritableBytes) {
         if (minWritableBytes < 0) {
             throw new IllegalArgumentException(String.format(
                 "minWritableBytes: %d (expected: >= 0)", minWritableBytes));
         }
 
         internalEnsureWritable(minWritableBytes);
+        return this;
     }
 
     private void internalEnsureWritable(int minWritableBytes) {
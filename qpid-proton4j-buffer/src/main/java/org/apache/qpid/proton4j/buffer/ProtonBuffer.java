@@ -900,6 +900,22 @@ public interface ProtonBuffer extends Comparable<ProtonBuffer> {
      */
     boolean isWritable(int size);
 
+    /**
+     * Ensures that the requested number of bytes can be written to this buffer without
+     * any further capacity adjustment, growing the buffer now if necessary.  Callers that
+     * know how much they will write can use this to pay the capacity check once ahead of
+     * a series of smaller write operations.
+     *
+     * @param amount
+     *      the number of bytes that must be writable once this method returns.
+     *
+     * @return this buffer for using in call chaining.
+     *
+     * @throws IllegalArgumentException if the amount given is negative.
+     * @throws IndexOutOfBoundsException if the amount exceeds what the max capacity allows.
+     */
+    ProtonBuffer ensureWritable(int amount);
+
     /**
      * Writes a single byte to the buffer and advances the write index by one.
      *
@@ -76,4 +76,16 @@ public interface ProtonBufferAllocator {
      */
     ProtonBuffer wrap(ByteBuffer buffer);
 
+    /**
+     * Returns a buffer that was allocated from this allocator once its owner no longer
+     * needs it, allowing pooling allocators to reuse the memory.  The caller must not
+     * access the buffer, or any view of its contents, after recycling it.
+     * <p>
+     * The default implementation does nothing and leaves the buffer to be garbage collected.
+     *
+     * @param buffer
+     *      the buffer that is no longer in use.
+     */
+    default void recycle(ProtonBuffer buffer) {
+    }
 }
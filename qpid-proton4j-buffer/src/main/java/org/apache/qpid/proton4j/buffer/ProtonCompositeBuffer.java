@@ -0,0 +1,454 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Implementation of the ProtonBuffer interface that presents a sequence of buffers as
+ * a single buffer without copying their contents.
+ * <p>
+ * Each appended buffer contributes its readable bytes as a component, the component buffers
+ * are referenced rather than copied so changes to their contents are visible through the
+ * composite.  Components that lie wholly before the read index can be released with
+ * {@link #discardReadComponents()} which allows a composite to be used as a queue of data
+ * whose memory is bounded by the bytes not yet read.
+ */
+public class ProtonCompositeBuffer extends ProtonAbstractByteBuffer {
+
+    private static final int DEFAULT_COMPONENTS = 8;
+
+    private ProtonBuffer[] components = new ProtonBuffer[DEFAULT_COMPONENTS];
+    private int[] componentIndex = new int[DEFAULT_COMPONENTS];
+    private int[] componentOffset = new int[DEFAULT_COMPONENTS + 1];
+    private int componentCount;
+
+    // Component of the most recent access, sequential reads mostly stay within one component
+    private int lastComponent;
+
+    public ProtonCompositeBuffer() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public ProtonCompositeBuffer(int maximumCapacity) {
+        super(maximumCapacity);
+    }
+
+    /**
+     * Appends the readable bytes of the given buffer to the end of this composite and
+     * advances the write index past them.  The given buffer's indices are not changed and
+     * it must not be modified in a way that moves those bytes while referenced here.
+     *
+     * @param buffer
+     *      the buffer whose readable bytes are added to this composite.
+     *
+     * @return this composite buffer.
+     */
+    public ProtonCompositeBuffer append(ProtonBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("Buffer to append cannot be null");
+        }
+
+        if (writeIndex != capacity()) {
+            throw new IllegalStateException("Cannot append while the composite has writable bytes");
+        }
+
+        if (buffer.isReadable()) {
+            checkNewCapacity(capacity() + buffer.getReadableBytes());
+            addComponent(buffer, buffer.getReadIndex(), buffer.getReadableBytes());
+            writeIndex = capacity();
+        }
+
+        return this;
+    }
+
+    /**
+     * @return the number of buffers currently composed into this buffer.
+     */
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * Releases the components that lie entirely before the read index, all indices are
+     * adjusted down by the number of bytes released.
+     *
+     * @return this composite buffer.
+     */
+    public ProtonCompositeBuffer discardReadComponents() {
+        return discardReadComponents(null);
+    }
+
+    /**
+     * Releases the components that lie entirely before the read index and returns each of
+     * them to the given allocator, all indices are adjusted down by the number of bytes
+     * released.  Only components that the caller allocated from that allocator and appended
+     * for this composite to own may be released this way.
+     *
+     * @param allocator
+     *      the allocator that each released component is recycled to, or null to drop them.
+     *
+     * @return this composite buffer.
+     */
+    public ProtonCompositeBuffer discardReadComponents(ProtonBufferAllocator allocator) {
+        int discard = 0;
+        while (discard < componentCount && componentOffset[discard + 1] <= readIndex) {
+            discard++;
+        }
+
+        if (discard > 0) {
+            final int released = componentOffset[discard];
+            final int remaining = componentCount - discard;
+
+            if (allocator != null) {
+                for (int i = 0; i < discard; ++i) {
+                    allocator.recycle(components[i]);
+                }
+            }
+
+            System.arraycopy(components, discard, components, 0, remaining);
+            System.arraycopy(componentIndex, discard, componentIndex, 0, remaining);
+            Arrays.fill(components, remaining, componentCount, null);
+            for (int i = 0; i <= remaining; ++i) {
+                componentOffset[i] = componentOffset[i + discard] - released;
+            }
+
+            componentCount = remaining;
+            lastComponent = 0;
+
+            readIndex -= released;
+            writeIndex -= released;
+            markedReadIndex = Math.max(0, markedReadIndex - released);
+            markedWriteIndex = Math.max(0, markedWriteIndex - released);
+        }
+
+        return this;
+    }
+
+    @Override
+    public int capacity() {
+        return componentOffset[componentCount];
+    }
+
+    @Override
+    public ProtonBuffer capacity(int newCapacity) {
+        checkNewCapacity(newCapacity);
+
+        final int oldCapacity = capacity();
+        if (newCapacity > oldCapacity) {
+            final int growth = newCapacity - oldCapacity;
+            addComponent(new ProtonByteBuffer(growth), 0, growth);
+        } else if (newCapacity < oldCapacity) {
+            throw new UnsupportedOperationException("The capacity of a composite buffer cannot be reduced");
+        }
+
+        return this;
+    }
+
+    @Override
+    public ProtonBuffer duplicate() {
+        ProtonCompositeBuffer duplicate = new ProtonCompositeBuffer(maxCapacity());
+
+        duplicate.components = Arrays.copyOf(components, components.length);
+        duplicate.componentIndex = Arrays.copyOf(componentIndex, componentIndex.length);
+        duplicate.componentOffset = Arrays.copyOf(componentOffset, componentOffset.length);
+        duplicate.componentCount = componentCount;
+
+        return duplicate.setIndex(readIndex, writeIndex);
+    }
+
+    @Override
+    public ProtonBuffer copy(int index, int length) {
+        checkIndex(index, length);
+        byte[] copyOf = new byte[length];
+        getBytes(index, copyOf, 0, length);
+        return new ProtonByteBuffer(copyOf, maxCapacity(), length);
+    }
+
+    @Override
+    public ByteBuffer toByteBuffer() {
+        final int length = getReadableBytes();
+        if (length > 0) {
+            final int component = findComponent(readIndex);
+            if (readIndex + length <= componentOffset[component + 1]) {
+                final int index = toComponentIndex(component, readIndex);
+                return components[component].duplicate().setIndex(index, index + length).toByteBuffer();
+            }
+        }
+
+        byte[] copyOf = new byte[length];
+        getBytes(readIndex, copyOf, 0, length);
+        return ByteBuffer.wrap(copyOf);
+    }
+
+    @Override
+    public boolean hasArray() {
+        return false;
+    }
+
+    @Override
+    public byte[] getArray() {
+        throw new UnsupportedOperationException("Composite buffer has no single backing array");
+    }
+
+    @Override
+    public int getArrayOffset() {
+        throw new UnsupportedOperationException("Composite buffer has no single backing array");
+    }
+
+    @Override
+    public String toString(Charset charset) {
+        byte[] readable = new byte[getReadableBytes()];
+        getBytes(readIndex, readable, 0, readable.length);
+        return new String(readable, charset);
+    }
+
+    //----- Direct indexed get methods ---------------------------------------//
+
+    @Override
+    public byte getByte(int index) {
+        checkIndex(index, 1);
+        final int component = findComponent(index);
+        return components[component].getByte(toComponentIndex(component, index));
+    }
+
+    @Override
+    public short getShort(int index) {
+        checkIndex(index, 2);
+        return (short) ((getByte(index) & 0xFF) << 8 | getByte(index + 1) & 0xFF);
+    }
+
+    @Override
+    public int getInt(int index) {
+        checkIndex(index, 4);
+        final int component = findComponent(index);
+        if (index + 4 <= componentOffset[component + 1]) {
+            return components[component].getInt(toComponentIndex(component, index));
+        }
+
+        return (getShort(index) & 0xFFFF) << 16 | getShort(index + 2) & 0xFFFF;
+    }
+
+    @Override
+    public long getLong(int index) {
+        checkIndex(index, 8);
+        final int component = findComponent(index);
+        if (index + 8 <= componentOffset[component + 1]) {
+            return components[component].getLong(toComponentIndex(component, index));
+        }
+
+        return (getInt(index) & 0xFFFFFFFFL) << 32 | getInt(index + 4) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public ProtonBuffer getBytes(int index, ProtonBuffer destination, int destinationIndex, int length) {
+        checkDestinationIndex(index, length, destinationIndex, destination.capacity());
+
+        if (destination.hasArray()) {
+            getBytes(index, destination.getArray(), destination.getArrayOffset() + destinationIndex, length);
+        } else {
+            while (length > 0) {
+                final int component = findComponent(index);
+                final int chunk = Math.min(length, componentOffset[component + 1] - index);
+
+                destination.setBytes(destinationIndex, components[component], toComponentIndex(component, index), chunk);
+
+                index += chunk;
+                destinationIndex += chunk;
+                length -= chunk;
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public ProtonBuffer getBytes(int index, byte[] destination, int destinationIndex, int length) {
+        checkDestinationIndex(index, length, destinationIndex, destination.length);
+
+        while (length > 0) {
+            final int component = findComponent(index);
+            final int chunk = Math.min(length, componentOffset[component + 1] - index);
+
+            components[component].getBytes(toComponentIndex(component, index), destination, destinationIndex, chunk);
+
+            index += chunk;
+            destinationIndex += chunk;
+            length -= chunk;
+        }
+
+        return this;
+    }
+
+    @Override
+    public ProtonBuffer getBytes(int index, ByteBuffer destination) {
+        checkIndex(index, destination.remaining());
+
+        final int limit = destination.limit();
+        try {
+            while (destination.hasRemaining()) {
+                final int component = findComponent(index);
+                final int chunk = Math.min(destination.remaining(), componentOffset[component + 1] - index);
+
+                destination.limit(destination.position() + chunk);
+                components[component].getBytes(toComponentIndex(component, index), destination);
+                destination.limit(limit);
+
+                index += chunk;
+            }
+        } finally {
+            destination.limit(limit);
+        }
+
+        return this;
+    }
+
+    //----- Direct indexed set methods ---------------------------------------//
+
+    @Override
+    public ProtonBuffer setByte(int index, int value) {
+        checkIndex(index, 1);
+        final int component = findComponent(index);
+        components[component].setByte(toComponentIndex(component, index), value);
+        return this;
+    }
+
+    @Override
+    public ProtonBuffer setShort(int index, int value) {
+        checkIndex(index, 2);
+        setByte(index, value >>> 8);
+        setByte(index + 1, value);
+        return this;
+    }
+
+    @Override
+    public ProtonBuffer setInt(int index, int value) {
+        checkIndex(index, 4);
+        setShort(index, value >>> 16);
+        setShort(index + 2, value);
+        return this;
+    }
+
+    @Override
+    public ProtonBuffer setLong(int index, long value) {
+        checkIndex(index, 8);
+        setInt(index, (int) (value >>> 32));
+        setInt(index + 4, (int) value);
+        return this;
+    }
+
+    @Override
+    public ProtonBuffer setBytes(int index, ProtonBuffer source, int sourceIndex, int length) {
+        checkSourceIndex(index, length, sourceIndex, source.capacity());
+
+        while (length > 0) {
+            final int component = findComponent(index);
+            final int chunk = Math.min(length, componentOffset[component + 1] - index);
+
+            components[component].setBytes(toComponentIndex(component, index), source, sourceIndex, chunk);
+
+            index += chunk;
+            sourceIndex += chunk;
+            length -= chunk;
+        }
+
+        return this;
+    }
+
+    @Override
+    public ProtonBuffer setBytes(int index, byte[] source, int sourceIndex, int length) {
+        checkSourceIndex(index, length, sourceIndex, source.length);
+
+        while (length > 0) {
+            final int component = findComponent(index);
+            final int chunk = Math.min(length, componentOffset[component + 1] - index);
+
+            components[component].setBytes(toComponentIndex(component, index), source, sourceIndex, chunk);
+
+            index += chunk;
+            sourceIndex += chunk;
+            length -= chunk;
+        }
+
+        return this;
+    }
+
+    @Override
+    public ProtonBuffer setBytes(int index, ByteBuffer source) {
+        checkIndex(index, source.remaining());
+
+        final int limit = source.limit();
+        try {
+            while (source.hasRemaining()) {
+                final int component = findComponent(index);
+                final int chunk = Math.min(source.remaining(), componentOffset[component + 1] - index);
+
+                source.limit(source.position() + chunk);
+                components[component].setBytes(toComponentIndex(component, index), source);
+                source.limit(limit);
+
+                index += chunk;
+            }
+        } finally {
+            source.limit(limit);
+        }
+
+        return this;
+    }
+
+    //----- Internal implementation ------------------------------------------//
+
+    private void addComponent(ProtonBuffer buffer, int index, int length) {
+        if (componentCount == components.length) {
+            final int newLength = components.length * 2;
+            components = Arrays.copyOf(components, newLength);
+            componentIndex = Arrays.copyOf(componentIndex, newLength);
+            componentOffset = Arrays.copyOf(componentOffset, newLength + 1);
+        }
+
+        components[componentCount] = buffer;
+        componentIndex[componentCount] = index;
+        componentOffset[componentCount + 1] = componentOffset[componentCount] + length;
+        componentCount++;
+    }
+
+    private int findComponent(int index) {
+        int component = lastComponent;
+        if (index >= componentOffset[component] && index < componentOffset[component + 1]) {
+            return component;
+        }
+
+        int low = 0;
+        int high = componentCount - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (componentOffset[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return lastComponent = low;
+    }
+
+    private int toComponentIndex(int component, int index) {
+        return componentIndex[component] + index - componentOffset[component];
+    }
+}
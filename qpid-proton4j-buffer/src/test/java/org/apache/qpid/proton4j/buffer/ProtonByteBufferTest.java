@@ -376,6 +376,37 @@ public class ProtonByteBufferTest {
         }
     }
 
+    @Test
+    public void testEnsureWritableGrowsBufferOnce() {
+        ProtonBuffer buffer = new ProtonByteBuffer(10, 1024);
+
+        buffer.writeByte(1);
+        buffer.ensureWritable(200);
+
+        assertTrue(buffer.capacity() >= 201);
+        assertTrue(buffer.isWritable(200));
+        assertEquals(1, buffer.getReadableBytes());
+
+        int capacity = buffer.capacity();
+        buffer.ensureWritable(10);
+        assertEquals(capacity, buffer.capacity());
+    }
+
+    @Test
+    public void testEnsureWritableExceptions() {
+        ProtonBuffer buffer = new ProtonByteBuffer(10, 100);
+
+        try {
+            buffer.ensureWritable(-1);
+            fail("Should have thrown an IllegalArgumentException");
+        } catch (IllegalArgumentException iae) {}
+
+        try {
+            buffer.ensureWritable(101);
+            fail("Should have thrown an IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException ioe) {}
+    }
+
     //----- Write Bytes Tests ------------------------------------------------//
 
     @Test
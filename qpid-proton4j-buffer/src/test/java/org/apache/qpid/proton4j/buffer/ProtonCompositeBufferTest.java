@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test behavior of the ProtonCompositeBuffer implementation.
+ */
+public class ProtonCompositeBufferTest {
+
+    @Test
+    public void testAppendExposesReadableBytesOfEachBuffer() {
+        ProtonCompositeBuffer buffer = new ProtonCompositeBuffer();
+
+        ProtonBuffer first = new ProtonByteBuffer(new byte[] { 0, 1, 2, 3 });
+        first.setReadIndex(2);
+
+        buffer.append(first);
+        buffer.append(new ProtonByteBuffer(new byte[] { 4, 5 }));
+        buffer.append(new ProtonByteBuffer(new byte[0]));
+
+        assertEquals(2, buffer.getComponentCount());
+        assertEquals(4, buffer.capacity());
+        assertEquals(4, buffer.getReadableBytes());
+        assertFalse(buffer.hasArray());
+
+        assertEquals(2, buffer.readByte());
+        assertEquals(3, buffer.readByte());
+        assertEquals(4, buffer.readByte());
+        assertEquals(5, buffer.readByte());
+
+        // The appended buffer is referenced, not consumed
+        assertEquals(2, first.getReadIndex());
+    }
+
+    @Test
+    public void testPrimitivesSpanningComponents() {
+        ProtonCompositeBuffer buffer = new ProtonCompositeBuffer();
+
+        byte[] source = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14 };
+        for (int i = 0; i < source.length; i += 3) {
+            byte[] chunk = new byte[Math.min(3, source.length - i)];
+            System.arraycopy(source, i, chunk, 0, chunk.length);
+            buffer.append(new ProtonByteBuffer(chunk));
+        }
+
+        ProtonBuffer expected = new ProtonByteBuffer(source);
+
+        assertEquals(expected.getInt(0), buffer.getInt(0));
+        assertEquals(expected.getInt(2), buffer.getInt(2));
+        assertEquals(expected.getLong(1), buffer.getLong(1));
+        assertEquals(expected.getLong(6), buffer.getLong(6));
+        assertEquals((short) 0x0304, buffer.getShort(2));
+
+        assertEquals(expected.readLong(), buffer.readLong());
+        assertEquals(expected.readInt(), buffer.readInt());
+    }
+
+    @Test
+    public void testReadBytesAcrossComponents() {
+        ProtonCompositeBuffer buffer = new ProtonCompositeBuffer();
+        buffer.append(new ProtonByteBuffer(new byte[] { 0, 1, 2 }));
+        buffer.append(new ProtonByteBuffer(new byte[] { 3 }));
+        buffer.append(new ProtonByteBuffer(new byte[] { 4, 5, 6, 7 }));
+
+        byte[] array = new byte[6];
+        buffer.getBytes(1, array, 0, 6);
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, 5, 6 }, array);
+
+        ByteBuffer byteBuffer = ByteBuffer.allocate(5);
+        buffer.getBytes(2, byteBuffer);
+        assertArrayEquals(new byte[] { 2, 3, 4, 5, 6 }, byteBuffer.array());
+
+        ProtonBuffer target = new ProtonByteBuffer(8);
+        buffer.readBytes(target, 8);
+        assertEquals(8, target.getReadableBytes());
+        assertEquals(7, target.getByte(7));
+        assertFalse(buffer.isReadable());
+    }
+
+    @Test
+    public void testSetBytesAcrossComponents() {
+        ProtonCompositeBuffer buffer = new ProtonCompositeBuffer();
+        byte[] first = new byte[] { 0, 0, 0 };
+        byte[] second = new byte[] { 0, 0, 0 };
+        buffer.append(new ProtonByteBuffer(first));
+        buffer.append(new ProtonByteBuffer(second));
+
+        buffer.setBytes(1, new byte[] { 1, 2, 3, 4 });
+        assertArrayEquals(new byte[] { 0, 1, 2 }, first);
+        assertArrayEquals(new byte[] { 3, 4, 0 }, second);
+
+        buffer.setInt(2, 0x01020304);
+        assertEquals(0x01020304, buffer.getInt(2));
+        assertArrayEquals(new byte[] { 0, 1, 1 }, first);
+    }
+
+    @Test
+    public void testWritesGrowIntoNewComponent() {
+        ProtonCompositeBuffer buffer = new ProtonCompositeBuffer();
+        buffer.append(new ProtonByteBuffer(new byte[] { 1, 2 }));
+
+        buffer.writeInt(0x03040506);
+
+        assertEquals(6, buffer.getReadableBytes());
+        assertEquals(1, buffer.readByte());
+        assertEquals(2, buffer.readByte());
+        assertEquals(0x03040506, buffer.readInt());
+
+        try {
+            buffer.append(new ProtonByteBuffer(new byte[] { 7 }));
+            fail("Should not append while writable space remains");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testDiscardReadComponents() {
+        ProtonCompositeBuffer buffer = new ProtonCompositeBuffer();
+        for (int i = 0; i < 20; ++i) {
+            buffer.append(new ProtonByteBuffer(new byte[] { (byte) i, (byte) i }));
+        }
+
+        buffer.skipBytes(5);
+        buffer.discardReadComponents();
+
+        // Only the component holding the partially read byte pair remains ahead of the reader
+        assertEquals(18, buffer.getComponentCount());
+        assertEquals(1, buffer.getReadIndex());
+        assertEquals(35, buffer.getReadableBytes());
+        assertEquals(2, buffer.readByte());
+        assertEquals(3, buffer.readByte());
+
+        buffer.skipBytes(buffer.getReadableBytes());
+        buffer.discardReadComponents();
+
+        assertEquals(0, buffer.getComponentCount());
+        assertEquals(0, buffer.capacity());
+        assertEquals(0, buffer.getReadIndex());
+
+        buffer.append(new ProtonByteBuffer(new byte[] { 42 }));
+        assertEquals(42, buffer.readByte());
+    }
+
+    @Test
+    public void testDiscardReadComponentsRecyclesToAllocator() {
+        final List<ProtonBuffer> recycled = new ArrayList<>();
+        ProtonBufferAllocator allocator = new ProtonByteBufferAllocator() {
+
+            @Override
+            public void recycle(ProtonBuffer buffer) {
+                recycled.add(buffer);
+            }
+        };
+
+        ProtonBuffer first = new ProtonByteBuffer(new byte[] { 1, 2 });
+        ProtonBuffer second = new ProtonByteBuffer(new byte[] { 3, 4 });
+
+        ProtonCompositeBuffer buffer = new ProtonCompositeBuffer();
+        buffer.append(first).append(second);
+
+        buffer.skipBytes(3);
+        buffer.discardReadComponents(allocator);
+
+        assertEquals(1, recycled.size());
+        assertSame(first, recycled.get(0));
+        assertEquals(1, buffer.getComponentCount());
+
+        buffer.readByte();
+        buffer.discardReadComponents(allocator);
+
+        assertEquals(2, recycled.size());
+        assertSame(second, recycled.get(1));
+        assertEquals(0, buffer.getComponentCount());
+    }
+
+    @Test
+    public void testCopyAndDuplicate() {
+        ProtonCompositeBuffer buffer = new ProtonCompositeBuffer();
+        buffer.append(new ProtonByteBuffer(new byte[] { 1, 2 }));
+        buffer.append(new ProtonByteBuffer(new byte[] { 3, 4 }));
+        buffer.readByte();
+
+        ProtonBuffer copy = buffer.copy();
+        assertEquals(3, copy.getReadableBytes());
+        assertEquals(2, copy.getByte(0));
+
+        ProtonBuffer duplicate = buffer.duplicate();
+        duplicate.readByte();
+        assertEquals(1, buffer.getReadIndex());
+        assertEquals(2, duplicate.getReadIndex());
+
+        ByteBuffer nioBuffer = buffer.toByteBuffer();
+        assertEquals(3, nioBuffer.remaining());
+        assertEquals(4, nioBuffer.get(2));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.codec.generator;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a getter on a {@link DescribedListType} annotated class as an element of
+ * the encoded list.  Indices must start at zero and be contiguous.
+ * <p>
+ * An enum typed getter is encoded through the enum's {@code getValue()} method and
+ * decoded through a static {@code valueOf} method taking the type that it returns.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface DescribedListField {
+
+    /**
+     * @return the index of the element in the encoded list.
+     */
+    int index();
+
+    /**
+     * @return the AMQP encoding used for the element, by default derived from the getter type.
+     */
+    FieldEncoding encoding() default FieldEncoding.AUTO;
+
+    /**
+     * Names a no-argument boolean method on the type that reports if the element carries
+     * a value, when it returns false the element is encoded as null and when a null is
+     * decoded the setter is not called.  By default only a null reference is treated as
+     * no value, which leaves every primitive element always present.
+     *
+     * @return the name of the method that reports presence of the element value.
+     */
+    String presence() default "";
+
+}
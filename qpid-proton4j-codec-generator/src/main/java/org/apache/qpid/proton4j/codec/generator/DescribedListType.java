@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.codec.generator;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class as an AMQP Described Type that is encoded as a List, the annotation
+ * processor will generate a TypeEncoder and TypeDecoder pair for the type named
+ * {@code <Name>TypeEncoder} and {@code <Name>TypeDecoder} where a trailing {@code Type}
+ * is dropped from the simple class name, by default in the same package as the
+ * annotated class.
+ * <p>
+ * The annotated class must expose a public no-argument constructor and a setter
+ * for each getter that is annotated with {@link DescribedListField}.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface DescribedListType {
+
+    /**
+     * @return the numeric descriptor code of the described type.
+     */
+    long code();
+
+    /**
+     * @return the symbolic descriptor of the described type.
+     */
+    String symbol();
+
+    /**
+     * @return the package the generated TypeEncoder is written to, by default the package of the type.
+     */
+    String encoderPackage() default "";
+
+    /**
+     * @return the package the generated TypeDecoder is written to, by default the package of the type.
+     */
+    String decoderPackage() default "";
+
+}
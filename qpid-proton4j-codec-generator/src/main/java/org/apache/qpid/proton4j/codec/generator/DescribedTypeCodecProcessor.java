@@ -0,0 +1,973 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.codec.generator;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Annotation processor that generates a monomorphic TypeEncoder and TypeDecoder for each
+ * class annotated with {@link DescribedListType}.
+ * <p>
+ * The generated codecs write and read the list elements in straight line code that calls
+ * the annotated getters and matching setters directly instead of dispatching through a
+ * switch on the element index for every element.  Elements with a primitive AMQP encoding
+ * are written through concrete primitive type encoders and read by inline switches on the
+ * encoding code, only elements encoded as {@link FieldEncoding#OBJECT} go back through the
+ * Encoder or Decoder held in the codec state.
+ */
+@SupportedAnnotationTypes("org.apache.qpid.proton4j.codec.generator.DescribedListType")
+public class DescribedTypeCodecProcessor extends AbstractProcessor {
+
+    private static final String AMQP_PACKAGE = "org.apache.qpid.proton4j.amqp.";
+    private static final String PRIMITIVE_ENCODERS_PACKAGE = "org.apache.qpid.proton4j.codec.encoders.primitives.";
+    private static final String PRIMITIVE_DECODERS_PACKAGE = "org.apache.qpid.proton4j.codec.decoders.primitives.";
+
+    private static final Map<String, FieldEncoding> DECLARED_ENCODINGS = new HashMap<>();
+
+    static {
+        DECLARED_ENCODINGS.put("java.lang.Boolean", FieldEncoding.BOOLEAN);
+        DECLARED_ENCODINGS.put("java.lang.Byte", FieldEncoding.BYTE);
+        DECLARED_ENCODINGS.put("java.lang.Short", FieldEncoding.SHORT);
+        DECLARED_ENCODINGS.put("java.lang.Integer", FieldEncoding.INT);
+        DECLARED_ENCODINGS.put("java.lang.Long", FieldEncoding.LONG);
+        DECLARED_ENCODINGS.put("java.lang.Float", FieldEncoding.FLOAT);
+        DECLARED_ENCODINGS.put("java.lang.Double", FieldEncoding.DOUBLE);
+        DECLARED_ENCODINGS.put("java.lang.Character", FieldEncoding.CHAR);
+        DECLARED_ENCODINGS.put("java.lang.String", FieldEncoding.STRING);
+        DECLARED_ENCODINGS.put(AMQP_PACKAGE + "Symbol", FieldEncoding.SYMBOL);
+        DECLARED_ENCODINGS.put(AMQP_PACKAGE + "Binary", FieldEncoding.BINARY);
+        DECLARED_ENCODINGS.put(AMQP_PACKAGE + "UnsignedByte", FieldEncoding.UBYTE);
+        DECLARED_ENCODINGS.put(AMQP_PACKAGE + "UnsignedShort", FieldEncoding.USHORT);
+        DECLARED_ENCODINGS.put(AMQP_PACKAGE + "UnsignedInteger", FieldEncoding.UINT);
+        DECLARED_ENCODINGS.put(AMQP_PACKAGE + "UnsignedLong", FieldEncoding.ULONG);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(DescribedListType.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@DescribedListType can only be applied to a class");
+                continue;
+            }
+
+            TypeElement type = (TypeElement) element;
+            List<ListField> fields = collectFields(type);
+            if (fields == null) {
+                continue;
+            }
+
+            try {
+                writeEncoder(type, fields);
+                writeDecoder(type, fields);
+            } catch (IOException e) {
+                error(type, "Failed to write generated codec: " + e.getMessage());
+            }
+        }
+
+        return true;
+    }
+
+    //----- Type model -------------------------------------------------------//
+
+    private static final class ListField {
+
+        private final int index;
+        private final TypeMirror type;
+        private final TypeMirror wireType;
+        private final FieldEncoding encoding;
+        private final String getter;
+        private final String setter;
+        private final String presence;
+
+        ListField(int index, TypeMirror type, TypeMirror wireType, FieldEncoding encoding, String getter, String setter, String presence) {
+            this.index = index;
+            this.type = type;
+            this.wireType = wireType;
+            this.encoding = encoding;
+            this.getter = getter;
+            this.setter = setter;
+            this.presence = presence;
+        }
+
+        boolean isEnum() {
+            return type != wireType;
+        }
+
+        boolean isPrimitive() {
+            return type.getKind().isPrimitive();
+        }
+
+        boolean isWirePrimitive() {
+            return wireType.getKind().isPrimitive();
+        }
+
+        boolean hasPresence() {
+            return presence != null;
+        }
+    }
+
+    private List<ListField> collectFields(TypeElement type) {
+        boolean valid = true;
+
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "@DescribedListType cannot be applied to an abstract class");
+            valid = false;
+        }
+
+        boolean hasDefaultConstructor = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                hasDefaultConstructor = true;
+            }
+        }
+
+        if (!hasDefaultConstructor) {
+            error(type, "@DescribedListType requires a public no-argument constructor");
+            valid = false;
+        }
+
+        List<ExecutableElement> methods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type));
+        List<ListField> fields = new ArrayList<>();
+
+        for (ExecutableElement method : methods) {
+            DescribedListField annotation = method.getAnnotation(DescribedListField.class);
+            if (annotation == null) {
+                continue;
+            }
+
+            String getter = method.getSimpleName().toString();
+            String property;
+
+            if (getter.startsWith("get") && getter.length() > 3) {
+                property = getter.substring(3);
+            } else if (getter.startsWith("is") && getter.length() > 2) {
+                property = getter.substring(2);
+            } else {
+                error(method, "@DescribedListField must be applied to a getter method");
+                valid = false;
+                continue;
+            }
+
+            if (!method.getParameters().isEmpty() || method.getReturnType().getKind() == TypeKind.VOID) {
+                error(method, "@DescribedListField getter must take no arguments and return a value");
+                valid = false;
+                continue;
+            }
+
+            TypeMirror fieldType = method.getReturnType();
+            String setter = "set" + property;
+
+            if (findMethod(methods, setter, fieldType, false) == null) {
+                error(method, "No matching setter " + setter + "(" + fieldType + ") found for @DescribedListField");
+                valid = false;
+                continue;
+            }
+
+            String presence = annotation.presence().isEmpty() ? null : annotation.presence();
+            if (presence != null) {
+                ExecutableElement presenceMethod = findMethod(methods, presence, null, false);
+                if (presenceMethod == null || presenceMethod.getReturnType().getKind() != TypeKind.BOOLEAN) {
+                    error(method, "No boolean " + presence + "() method found for @DescribedListField presence");
+                    valid = false;
+                    continue;
+                }
+            }
+
+            TypeMirror wireType = fieldType;
+            if (isEnum(fieldType)) {
+                wireType = enumValueType(methods, method, fieldType);
+                if (wireType == null) {
+                    valid = false;
+                    continue;
+                }
+            }
+
+            FieldEncoding encoding = annotation.encoding();
+            if (encoding == FieldEncoding.AUTO) {
+                encoding = selectEncoding(wireType);
+            }
+
+            if (encoding == null) {
+                error(method, "Cannot select an AMQP encoding for type: " + wireType);
+                valid = false;
+                continue;
+            }
+
+            if (wireType.getKind().isPrimitive() && encoding.compareTo(FieldEncoding.CHAR) > 0) {
+                error(method, "Encoding " + encoding + " cannot be used for primitive type: " + wireType);
+                valid = false;
+                continue;
+            }
+
+            if (wireType.getKind().isPrimitive() && wireType.getKind() != rawTypeOf(encoding)) {
+                error(method, "Encoding " + encoding + " requires primitive type " +
+                              rawTypeOf(encoding).toString().toLowerCase() + " but found: " + wireType);
+                valid = false;
+                continue;
+            }
+
+            fields.add(new ListField(annotation.index(), fieldType, wireType, encoding, getter, setter, presence));
+        }
+
+        Collections.sort(fields, new Comparator<ListField>() {
+
+            @Override
+            public int compare(ListField field1, ListField field2) {
+                return Integer.compare(field1.index, field2.index);
+            }
+        });
+
+        for (int i = 0; i < fields.size(); ++i) {
+            if (fields.get(i).index != i) {
+                error(type, "@DescribedListField indices must be unique, start at zero and be contiguous");
+                valid = false;
+                break;
+            }
+        }
+
+        if (fields.size() > 255) {
+            error(type, "@DescribedListType cannot declare more than 255 elements");
+            valid = false;
+        }
+
+        return valid ? fields : null;
+    }
+
+    private ExecutableElement findMethod(List<ExecutableElement> methods, String name, TypeMirror parameter, boolean isStatic) {
+        for (ExecutableElement candidate : methods) {
+            if (!candidate.getSimpleName().contentEquals(name) ||
+                candidate.getModifiers().contains(Modifier.STATIC) != isStatic) {
+                continue;
+            }
+
+            if (parameter == null && candidate.getParameters().isEmpty()) {
+                return candidate;
+            } else if (parameter != null && candidate.getParameters().size() == 1 &&
+                       processingEnv.getTypeUtils().isSameType(candidate.getParameters().get(0).asType(), parameter)) {
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean isEnum(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED && ((DeclaredType) type).asElement().getKind() == ElementKind.ENUM;
+    }
+
+    private TypeMirror enumValueType(List<ExecutableElement> fieldMethods, ExecutableElement getter, TypeMirror enumType) {
+        TypeElement enumElement = (TypeElement) ((DeclaredType) enumType).asElement();
+        List<ExecutableElement> methods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(enumElement));
+
+        ExecutableElement getValue = findMethod(methods, "getValue", null, false);
+        if (getValue == null) {
+            error(getter, "Enum " + enumType + " must provide a getValue() method to be used as a @DescribedListField");
+            return null;
+        }
+
+        TypeMirror valueType = getValue.getReturnType();
+        if (findMethod(methods, "valueOf", valueType, true) == null) {
+            error(getter, "Enum " + enumType + " must provide a static valueOf(" + valueType + ") method to be used as a @DescribedListField");
+            return null;
+        }
+
+        return valueType;
+    }
+
+    private FieldEncoding selectEncoding(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return FieldEncoding.BOOLEAN;
+            case BYTE:
+                return FieldEncoding.BYTE;
+            case SHORT:
+                return FieldEncoding.SHORT;
+            case INT:
+                return FieldEncoding.INT;
+            case LONG:
+                return FieldEncoding.LONG;
+            case FLOAT:
+                return FieldEncoding.FLOAT;
+            case DOUBLE:
+                return FieldEncoding.DOUBLE;
+            case CHAR:
+                return FieldEncoding.CHAR;
+            case DECLARED:
+                String name = ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+                FieldEncoding encoding = DECLARED_ENCODINGS.get(name);
+                return encoding != null ? encoding : FieldEncoding.OBJECT;
+            case ARRAY:
+                return FieldEncoding.OBJECT;
+            default:
+                return null;
+        }
+    }
+
+    /*
+     * The Java primitive that the generated encode and decode steps use for the encoding.
+     */
+    private static TypeKind rawTypeOf(FieldEncoding encoding) {
+        switch (encoding) {
+            case BOOLEAN:
+                return TypeKind.BOOLEAN;
+            case BYTE:
+            case UBYTE:
+                return TypeKind.BYTE;
+            case SHORT:
+                return TypeKind.SHORT;
+            case USHORT:
+            case INT:
+                return TypeKind.INT;
+            case UINT:
+            case LONG:
+            case ULONG:
+                return TypeKind.LONG;
+            case FLOAT:
+                return TypeKind.FLOAT;
+            case DOUBLE:
+                return TypeKind.DOUBLE;
+            case CHAR:
+                return TypeKind.CHAR;
+            default:
+                return TypeKind.DECLARED;
+        }
+    }
+
+    //----- Encoder generation -----------------------------------------------//
+
+    private void writeEncoder(TypeElement type, List<ListField> fields) throws IOException {
+        final DescribedListType descriptor = type.getAnnotation(DescribedListType.class);
+        final String packageName = descriptor.encoderPackage().isEmpty() ? packageOf(type) : descriptor.encoderPackage();
+        final String typeName = type.getQualifiedName().toString();
+        final String simpleName = type.getSimpleName().toString();
+        final String encoderName = codecBaseName(type) + "TypeEncoder";
+
+        JavaFileObject source = processingEnv.getFiler().createSourceFile(
+            packageName.isEmpty() ? encoderName : packageName + "." + encoderName, type);
+
+        Set<FieldEncoding> encodings = usedEncodings(fields);
+
+        try (PrintWriter out = new PrintWriter(source.openWriter())) {
+            writeFileHeader(out, packageName);
+
+            out.println("import org.apache.qpid.proton4j.amqp.Symbol;");
+            out.println("import org.apache.qpid.proton4j.amqp.UnsignedLong;");
+            out.println("import org.apache.qpid.proton4j.buffer.ProtonBuffer;");
+            out.println("import org.apache.qpid.proton4j.codec.EncoderState;");
+            out.println("import org.apache.qpid.proton4j.codec.EncodingCodes;");
+            out.println("import org.apache.qpid.proton4j.codec.encoders.AbstractDescribedListTypeEncoder;");
+            for (FieldEncoding encoding : encodings) {
+                out.println("import " + PRIMITIVE_ENCODERS_PACKAGE + encoderClassFor(encoding) + ";");
+            }
+            out.println();
+            out.println("/**");
+            out.println(" * Encoder of " + simpleName + " type values to a byte stream.");
+            out.println(" */");
+            out.println("public final class " + encoderName + " extends AbstractDescribedListTypeEncoder<" + typeName + "> {");
+            out.println();
+            out.println("    private static final UnsignedLong DESCRIPTOR_CODE = UnsignedLong.valueOf(0x" + Long.toHexString(descriptor.code()) + "L);");
+            out.println("    private static final Symbol DESCRIPTOR_SYMBOL = Symbol.valueOf(\"" + escape(descriptor.symbol()) + "\");");
+            out.println();
+            for (FieldEncoding encoding : encodings) {
+                out.println("    private static final " + encoderClassFor(encoding) + " " + encoding + "_ENCODER = new " + encoderClassFor(encoding) + "();");
+            }
+            if (!encodings.isEmpty()) {
+                out.println();
+            }
+            out.println("    @Override");
+            out.println("    public UnsignedLong getDescriptorCode() {");
+            out.println("        return DESCRIPTOR_CODE;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Symbol getDescriptorSymbol() {");
+            out.println("        return DESCRIPTOR_SYMBOL;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Class<" + typeName + "> getTypeClass() {");
+            out.println("        return " + typeName + ".class;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public int getElementCount(" + typeName + " value) {");
+            boolean alwaysPresent = false;
+            for (int i = fields.size() - 1; i >= 0 && !alwaysPresent; --i) {
+                ListField field = fields.get(i);
+                if (field.hasPresence()) {
+                    out.println("        if (value." + field.presence + "()) {");
+                } else if (field.isPrimitive()) {
+                    out.println("        return " + (i + 1) + ";");
+                    alwaysPresent = true;
+                    continue;
+                } else {
+                    out.println("        if (value." + field.getter + "() != null) {");
+                }
+                out.println("            return " + (i + 1) + ";");
+                out.println("        }");
+            }
+            if (!alwaysPresent) {
+                out.println("        return 0;");
+            }
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void writeType(ProtonBuffer buffer, EncoderState state, " + typeName + " value) {");
+            out.println("        buffer.writeByte(EncodingCodes.DESCRIBED_TYPE_INDICATOR);");
+            writeDescriptorCode(out, descriptor.code());
+            out.println();
+            out.println("        final int count = getElementCount(value);");
+            out.println("        if (count == 0) {");
+            out.println("            buffer.writeByte(EncodingCodes.LIST0);");
+            out.println("            return;");
+            out.println("        }");
+            out.println();
+            out.println("        // Optimistically write a LIST8 and widen it afterwards if the elements didn't fit.");
+            out.println("        buffer.writeByte(EncodingCodes.LIST8);");
+            out.println("        final int startIndex = buffer.getWriteIndex();");
+            out.println("        buffer.writeByte(0);");
+            out.println("        buffer.writeByte(count);");
+            out.println();
+            out.println("        writeElements(value, count, buffer, state);");
+            out.println();
+            out.println("        final int size = buffer.getWriteIndex() - startIndex - 1;");
+            out.println("        if (size <= 255) {");
+            out.println("            buffer.setByte(startIndex, size);");
+            out.println("        } else {");
+            out.println("            widenToList32(buffer, startIndex, count);");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void writeRawArray(ProtonBuffer buffer, EncoderState state, Object[] values) {");
+            out.println("        buffer.writeByte(EncodingCodes.LIST32);");
+            out.println();
+            out.println("        for (int i = 0; i < values.length; ++i) {");
+            out.println("            final " + typeName + " value = (" + typeName + ") values[i];");
+            out.println("            final int count = getElementCount(value);");
+            out.println("            final int startIndex = buffer.getWriteIndex();");
+            out.println();
+            out.println("            // Reserve space for the size and write the count of list elements.");
+            out.println("            buffer.writeInt(0);");
+            out.println("            buffer.writeInt(count);");
+            out.println();
+            out.println("            writeElements(value, count, buffer, state);");
+            out.println();
+            out.println("            buffer.setInt(startIndex, buffer.getWriteIndex() - startIndex - Integer.BYTES);");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void writeElement(" + typeName + " value, int index, ProtonBuffer buffer, EncoderState state) {");
+            out.println("        switch (index) {");
+            for (ListField field : fields) {
+                out.println("            case " + field.index + ": {");
+                writeElementEncode(out, field, "                ");
+                out.println("                break;");
+                out.println("            }");
+            }
+            out.println("            default:");
+            out.println("                throw new IllegalArgumentException(\"Unknown " + simpleName + " value index: \" + index);");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    private static void writeElements(" + typeName + " value, int count, ProtonBuffer buffer, EncoderState state) {");
+            for (ListField field : fields) {
+                if (field.index > 0) {
+                    out.println();
+                }
+                out.println("        if (count == " + field.index + ") {");
+                out.println("            return;");
+                out.println("        }");
+                writeElementEncode(out, field, "        ");
+            }
+            out.println("    }");
+            out.println();
+            out.println("    private static void widenToList32(ProtonBuffer buffer, int startIndex, int count) {");
+            out.println("        final byte[] elements = new byte[buffer.getWriteIndex() - startIndex - 2];");
+            out.println("        buffer.getBytes(startIndex + 2, elements);");
+            out.println();
+            out.println("        buffer.setWriteIndex(startIndex - 1);");
+            out.println("        buffer.writeByte(EncodingCodes.LIST32);");
+            out.println("        buffer.writeInt(elements.length + Integer.BYTES);");
+            out.println("        buffer.writeInt(count);");
+            out.println("        buffer.writeBytes(elements);");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    private static void writeDescriptorCode(PrintWriter out, long code) {
+        if (code == 0) {
+            out.println("        buffer.writeByte(EncodingCodes.ULONG0);");
+        } else if (code > 0 && code <= 255) {
+            out.println("        buffer.writeByte(EncodingCodes.SMALLULONG);");
+            out.println("        buffer.writeByte(0x" + Long.toHexString(code) + ");");
+        } else {
+            out.println("        buffer.writeByte(EncodingCodes.ULONG);");
+            out.println("        buffer.writeLong(0x" + Long.toHexString(code) + "L);");
+        }
+    }
+
+    private void writeElementEncode(PrintWriter out, ListField field, String indent) {
+        final String access = "value." + field.getter + "()";
+
+        if (field.hasPresence()) {
+            out.println(indent + "if (value." + field.presence + "()) {");
+            out.println(indent + "    " + encodeStatement(field, access + (field.isEnum() ? ".getValue()" : "")));
+            out.println(indent + "} else {");
+            out.println(indent + "    buffer.writeByte(EncodingCodes.NULL);");
+            out.println(indent + "}");
+        } else if (field.isPrimitive()) {
+            out.println(indent + encodeStatement(field, access));
+        } else {
+            final String local = "element" + field.index;
+
+            out.println(indent + "final " + field.type + " " + local + " = " + access + ";");
+            out.println(indent + "if (" + local + " == null) {");
+            out.println(indent + "    buffer.writeByte(EncodingCodes.NULL);");
+            out.println(indent + "} else {");
+            out.println(indent + "    " + encodeStatement(field, local + (field.isEnum() ? ".getValue()" : "")));
+            out.println(indent + "}");
+        }
+    }
+
+    private static String encodeStatement(ListField field, String expression) {
+        if (field.encoding == FieldEncoding.OBJECT) {
+            return "state.getEncoder().writeObject(buffer, state, " + expression + ");";
+        } else if (field.encoding == FieldEncoding.ULONG && field.isWirePrimitive()) {
+            return "ULONG_ENCODER.writeType(buffer, state, UnsignedLong.valueOf(" + expression + "));";
+        } else {
+            return field.encoding + "_ENCODER.writeType(buffer, state, " + expression + ");";
+        }
+    }
+
+    private static String encoderClassFor(FieldEncoding encoding) {
+        switch (encoding) {
+            case BOOLEAN:
+                return "BooleanTypeEncoder";
+            case BYTE:
+                return "ByteTypeEncoder";
+            case UBYTE:
+                return "UnsignedByteTypeEncoder";
+            case SHORT:
+                return "ShortTypeEncoder";
+            case USHORT:
+                return "UnsignedShortTypeEncoder";
+            case INT:
+                return "IntegerTypeEncoder";
+            case UINT:
+                return "UnsignedIntegerTypeEncoder";
+            case LONG:
+                return "LongTypeEncoder";
+            case ULONG:
+                return "UnsignedLongTypeEncoder";
+            case FLOAT:
+                return "FloatTypeEncoder";
+            case DOUBLE:
+                return "DoubleTypeEncoder";
+            case CHAR:
+                return "CharacterTypeEncoder";
+            case STRING:
+                return "StringTypeEncoder";
+            case SYMBOL:
+                return "SymbolTypeEncoder";
+            case BINARY:
+                return "BinaryTypeEncoder";
+            default:
+                throw new IllegalArgumentException("No primitive encoder for encoding: " + encoding);
+        }
+    }
+
+    //----- Decoder generation -----------------------------------------------//
+
+    private void writeDecoder(TypeElement type, List<ListField> fields) throws IOException {
+        final DescribedListType descriptor = type.getAnnotation(DescribedListType.class);
+        final String packageName = descriptor.decoderPackage().isEmpty() ? packageOf(type) : descriptor.decoderPackage();
+        final String typeName = type.getQualifiedName().toString();
+        final String simpleName = type.getSimpleName().toString();
+        final String decoderName = codecBaseName(type) + "TypeDecoder";
+
+        JavaFileObject source = processingEnv.getFiler().createSourceFile(
+            packageName.isEmpty() ? decoderName : packageName + "." + decoderName, type);
+
+        Set<FieldEncoding> encodings = usedEncodings(fields);
+
+        try (PrintWriter out = new PrintWriter(source.openWriter())) {
+            writeFileHeader(out, packageName);
+
+            out.println("import java.io.IOException;");
+            out.println();
+            if (encodings.contains(FieldEncoding.BINARY)) {
+                out.println("import org.apache.qpid.proton4j.amqp.Binary;");
+            }
+            out.println("import org.apache.qpid.proton4j.amqp.Symbol;");
+            out.println("import org.apache.qpid.proton4j.amqp.UnsignedLong;");
+            out.println("import org.apache.qpid.proton4j.buffer.ProtonBuffer;");
+            out.println("import org.apache.qpid.proton4j.codec.DecoderState;");
+            out.println("import org.apache.qpid.proton4j.codec.EncodingCodes;");
+            out.println("import org.apache.qpid.proton4j.codec.decoders.AbstractDescribedTypeDecoder;");
+            for (FieldEncoding encoding : encodings) {
+                if (decoderClassPrefixFor(encoding) != null) {
+                    out.println("import " + PRIMITIVE_DECODERS_PACKAGE + decoderClassPrefixFor(encoding) + "32TypeDecoder;");
+                    out.println("import " + PRIMITIVE_DECODERS_PACKAGE + decoderClassPrefixFor(encoding) + "8TypeDecoder;");
+                }
+            }
+            out.println();
+            out.println("/**");
+            out.println(" * Decoder of " + simpleName + " type values from a byte stream.");
+            out.println(" */");
+            out.println("@SuppressWarnings(\"unchecked\")");
+            out.println("public final class " + decoderName + " extends AbstractDescribedTypeDecoder<" + typeName + "> {");
+            out.println();
+            out.println("    private static final UnsignedLong DESCRIPTOR_CODE = UnsignedLong.valueOf(0x" + Long.toHexString(descriptor.code()) + "L);");
+            out.println("    private static final Symbol DESCRIPTOR_SYMBOL = Symbol.valueOf(\"" + escape(descriptor.symbol()) + "\");");
+            out.println();
+            out.println("    private static final int MAX_LIST_ENTRIES = " + fields.size() + ";");
+            out.println();
+            boolean hasDecoderFields = false;
+            for (FieldEncoding encoding : encodings) {
+                String prefix = decoderClassPrefixFor(encoding);
+                if (prefix != null) {
+                    out.println("    private static final " + prefix + "8TypeDecoder " + encoding + "8_DECODER = new " + prefix + "8TypeDecoder();");
+                    out.println("    private static final " + prefix + "32TypeDecoder " + encoding + "32_DECODER = new " + prefix + "32TypeDecoder();");
+                    hasDecoderFields = true;
+                }
+            }
+            if (hasDecoderFields) {
+                out.println();
+            }
+            out.println("    @Override");
+            out.println("    public Class<" + typeName + "> getTypeClass() {");
+            out.println("        return " + typeName + ".class;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public UnsignedLong getDescriptorCode() {");
+            out.println("        return DESCRIPTOR_CODE;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Symbol getDescriptorSymbol() {");
+            out.println("        return DESCRIPTOR_SYMBOL;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + typeName + " readValue(ProtonBuffer buffer, DecoderState state) throws IOException {");
+            out.println("        return readElements(buffer, state, readListEncoding(buffer));");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + typeName + "[] readArrayElements(ProtonBuffer buffer, DecoderState state, int count) throws IOException {");
+            out.println("        final byte listEncoding = readListEncoding(buffer);");
+            out.println("        final " + typeName + "[] result = new " + typeName + "[count];");
+            out.println("        for (int i = 0; i < count; ++i) {");
+            out.println("            result[i] = readElements(buffer, state, listEncoding);");
+            out.println("        }");
+            out.println();
+            out.println("        return result;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void skipValue(ProtonBuffer buffer, DecoderState state) throws IOException {");
+            out.println("        switch (readListEncoding(buffer)) {");
+            out.println("            case EncodingCodes.LIST8:");
+            out.println("                buffer.skipBytes(buffer.readByte() & 0xff);");
+            out.println("                break;");
+            out.println("            case EncodingCodes.LIST32:");
+            out.println("                buffer.skipBytes(buffer.readInt());");
+            out.println("                break;");
+            out.println("            default:");
+            out.println("                break;");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    private static byte readListEncoding(ProtonBuffer buffer) throws IOException {");
+            out.println("        final byte encodingCode = buffer.readByte();");
+            out.println();
+            out.println("        switch (encodingCode) {");
+            out.println("            case EncodingCodes.LIST0:");
+            out.println("            case EncodingCodes.LIST8:");
+            out.println("            case EncodingCodes.LIST32:");
+            out.println("                return encodingCode;");
+            out.println("            default:");
+            out.println("                throw new IOException(\"Expected List type indicator but found encoding: \" + encodingCode);");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    private static boolean readNullElement(ProtonBuffer buffer) {");
+            out.println("        if (buffer.getByte(buffer.getReadIndex()) == EncodingCodes.NULL) {");
+            out.println("            buffer.readByte();");
+            out.println("            return true;");
+            out.println("        }");
+            out.println();
+            out.println("        return false;");
+            out.println("    }");
+            out.println();
+            out.println("    private static " + typeName + " readElements(ProtonBuffer buffer, DecoderState state, byte listEncoding) throws IOException {");
+            out.println("        final " + typeName + " value = new " + typeName + "();");
+            out.println("        final int count;");
+            out.println();
+            out.println("        switch (listEncoding) {");
+            out.println("            case EncodingCodes.LIST8:");
+            out.println("                buffer.readByte();");
+            out.println("                count = buffer.readByte() & 0xff;");
+            out.println("                break;");
+            out.println("            case EncodingCodes.LIST32:");
+            out.println("                buffer.readInt();");
+            out.println("                count = buffer.readInt();");
+            out.println("                break;");
+            out.println("            default:");
+            out.println("                count = 0;");
+            out.println("        }");
+            out.println();
+            out.println("        // Don't decode anything if things already look wrong.");
+            out.println("        if (count > MAX_LIST_ENTRIES) {");
+            out.println("            throw new IllegalStateException(\"Too many entries in " + simpleName + " list encoding: \" + count);");
+            out.println("        }");
+            out.println();
+            for (ListField field : fields) {
+                out.println("        if (count > " + field.index + " && !readNullElement(buffer)) {");
+                out.println("            value." + field.setter + "(" + readExpressionFor(field) + ");");
+                out.println("        }");
+            }
+            out.println();
+            out.println("        return value;");
+            out.println("    }");
+            for (FieldEncoding encoding : encodings) {
+                out.println();
+                writeReadMethod(out, encoding);
+            }
+            out.println("}");
+        }
+    }
+
+    private String readExpressionFor(ListField field) {
+        final String read;
+
+        if (field.encoding == FieldEncoding.OBJECT) {
+            TypeMirror erasure = processingEnv.getTypeUtils().erasure(field.wireType);
+            if (processingEnv.getTypeUtils().isSameType(erasure, field.wireType)) {
+                read = "state.getDecoder().readObject(buffer, state, " + erasure + ".class)";
+            } else {
+                read = "(" + field.wireType + ") state.getDecoder().readObject(buffer, state, " + erasure + ".class)";
+            }
+        } else {
+            final String raw = readMethodFor(field.encoding) + "(buffer, state)";
+
+            if (field.isWirePrimitive()) {
+                read = raw;
+            } else {
+                String wrapper = ((TypeElement) ((DeclaredType) field.wireType).asElement()).getQualifiedName().toString();
+                if (wrapper.equals(AMQP_PACKAGE + "UnsignedShort")) {
+                    read = wrapper + ".valueOf((short) " + raw + ")";
+                } else if (wrapper.startsWith(AMQP_PACKAGE + "Unsigned")) {
+                    read = wrapper + ".valueOf(" + raw + ")";
+                } else {
+                    read = raw;
+                }
+            }
+        }
+
+        if (field.isEnum()) {
+            return field.type + ".valueOf(" + read + ")";
+        } else {
+            return read;
+        }
+    }
+
+    private static void writeReadMethod(PrintWriter out, FieldEncoding encoding) {
+        final String prefix = decoderClassPrefixFor(encoding);
+        final String returnType = prefix != null ? prefix : rawTypeOf(encoding).toString().toLowerCase();
+
+        out.println("    private static " + returnType + " " + readMethodFor(encoding) + "(ProtonBuffer buffer, DecoderState state) throws IOException {");
+        out.println("        final byte encodingCode = buffer.readByte();");
+        out.println();
+        out.println("        switch (encodingCode) {");
+
+        switch (encoding) {
+            case BOOLEAN:
+                writeReadCase(out, "BOOLEAN_TRUE", "true");
+                writeReadCase(out, "BOOLEAN_FALSE", "false");
+                writeReadCase(out, "BOOLEAN", "buffer.readByte() != 0");
+                break;
+            case BYTE:
+                writeReadCase(out, "BYTE", "buffer.readByte()");
+                break;
+            case UBYTE:
+                writeReadCase(out, "UBYTE", "buffer.readByte()");
+                break;
+            case SHORT:
+                writeReadCase(out, "SHORT", "buffer.readShort()");
+                break;
+            case USHORT:
+                writeReadCase(out, "USHORT", "buffer.readShort() & 0xffff");
+                break;
+            case INT:
+                writeReadCase(out, "SMALLINT", "buffer.readByte()");
+                writeReadCase(out, "INT", "buffer.readInt()");
+                break;
+            case UINT:
+                writeReadCase(out, "UINT0", "0");
+                writeReadCase(out, "SMALLUINT", "buffer.readByte() & 0xff");
+                writeReadCase(out, "UINT", "buffer.readInt() & 0xffffffffL");
+                break;
+            case LONG:
+                writeReadCase(out, "SMALLLONG", "buffer.readByte()");
+                writeReadCase(out, "LONG", "buffer.readLong()");
+                break;
+            case ULONG:
+                writeReadCase(out, "ULONG0", "0");
+                writeReadCase(out, "SMALLULONG", "buffer.readByte() & 0xff");
+                writeReadCase(out, "ULONG", "buffer.readLong()");
+                break;
+            case FLOAT:
+                writeReadCase(out, "FLOAT", "buffer.readFloat()");
+                break;
+            case DOUBLE:
+                writeReadCase(out, "DOUBLE", "buffer.readDouble()");
+                break;
+            case CHAR:
+                writeReadCase(out, "CHAR", "(char) (buffer.readInt() & 0xffff)");
+                break;
+            case STRING:
+                writeReadCase(out, "STR8", encoding + "8_DECODER.readValue(buffer, state)");
+                writeReadCase(out, "STR32", encoding + "32_DECODER.readValue(buffer, state)");
+                break;
+            case SYMBOL:
+                writeReadCase(out, "SYM8", encoding + "8_DECODER.readValue(buffer, state)");
+                writeReadCase(out, "SYM32", encoding + "32_DECODER.readValue(buffer, state)");
+                break;
+            case BINARY:
+                writeReadCase(out, "VBIN8", encoding + "8_DECODER.readValue(buffer, state)");
+                writeReadCase(out, "VBIN32", encoding + "32_DECODER.readValue(buffer, state)");
+                break;
+            default:
+                throw new IllegalArgumentException("No inline read for encoding: " + encoding);
+        }
+
+        out.println("            default:");
+        out.println("                throw new IOException(\"Expected " + encodingName(encoding) + " type but found encoding: \" + encodingCode);");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    private static void writeReadCase(PrintWriter out, String encodingCode, String expression) {
+        out.println("            case EncodingCodes." + encodingCode + ":");
+        out.println("                return " + expression + ";");
+    }
+
+    private static String readMethodFor(FieldEncoding encoding) {
+        return "read" + encodingName(encoding);
+    }
+
+    private static String encodingName(FieldEncoding encoding) {
+        String encoderClass = encoderClassFor(encoding);
+        return encoderClass.substring(0, encoderClass.length() - "TypeEncoder".length());
+    }
+
+    /*
+     * Variable width types are read through the primitive decoders of their 8 and 32
+     * bit size encodings, returns null for the fixed width types that are read inline.
+     */
+    private static String decoderClassPrefixFor(FieldEncoding encoding) {
+        switch (encoding) {
+            case STRING:
+                return "String";
+            case SYMBOL:
+                return "Symbol";
+            case BINARY:
+                return "Binary";
+            default:
+                return null;
+        }
+    }
+
+    //----- Internal support methods -----------------------------------------//
+
+    private static Set<FieldEncoding> usedEncodings(List<ListField> fields) {
+        Set<FieldEncoding> encodings = EnumSet.noneOf(FieldEncoding.class);
+        for (ListField field : fields) {
+            if (field.encoding != FieldEncoding.OBJECT) {
+                encodings.add(field.encoding);
+            }
+        }
+
+        return encodings;
+    }
+
+    private static String codecBaseName(TypeElement type) {
+        String simpleName = type.getSimpleName().toString();
+        if (simpleName.endsWith("Type") && simpleName.length() > "Type".length()) {
+            return simpleName.substring(0, simpleName.length() - "Type".length());
+        } else {
+            return simpleName;
+        }
+    }
+
+    private String packageOf(TypeElement type) {
+        PackageElement element = processingEnv.getElementUtils().getPackageOf(type);
+        return element.isUnnamed() ? "" : element.getQualifiedName().toString();
+    }
+
+    private static void writeFileHeader(PrintWriter out, String packageName) {
+        out.println("// Generated by " + DescribedTypeCodecProcessor.class.getName() + ", do not edit.");
+        if (!packageName.isEmpty()) {
+            out.println("package " + packageName + ";");
+        }
+        out.println();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
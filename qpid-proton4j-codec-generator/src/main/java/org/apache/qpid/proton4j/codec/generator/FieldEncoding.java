@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.codec.generator;
+
+/**
+ * The AMQP encoding used when writing and reading a {@link DescribedListField}.
+ * <p>
+ * When {@link #AUTO} is used the encoding is selected from the type of the annotated
+ * getter, the explicit values are needed for the AMQP unsigned types when the field
+ * is held in a Java primitive, for instance a {@code long} encoded as a {@code uint}.
+ */
+public enum FieldEncoding {
+    AUTO,
+    BOOLEAN,
+    BYTE,
+    UBYTE,
+    SHORT,
+    USHORT,
+    INT,
+    UINT,
+    LONG,
+    ULONG,
+    FLOAT,
+    DOUBLE,
+    CHAR,
+    STRING,
+    SYMBOL,
+    BINARY,
+    OBJECT
+}
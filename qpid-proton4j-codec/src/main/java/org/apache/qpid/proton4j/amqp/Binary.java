@@ -132,6 +132,15 @@ public final class Binary {
         return new Binary(data);
     }
 
+    /**
+     * @return a new Binary holding its own copy of the bytes in this Binary.
+     */
+    public Binary copy() {
+        byte[] copy = new byte[length];
+        System.arraycopy(data, offset, copy, 0, length);
+        return new Binary(copy);
+    }
+
     public Binary subBinary(final int offset, final int length) {
         return new Binary(data, offset + offset, length);
     }
@@ -19,6 +19,7 @@ package org.apache.qpid.proton4j.amqp;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import org.apache.qpid.proton4j.buffer.ProtonBuffer;
 import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
@@ -34,6 +35,9 @@ public final class Symbol implements Comparable<Symbol> {
     private final ProtonBuffer underlying;
     private final int hashCode;
 
+    // Complete encoding of the Symbol, created on first use by whoever encodes it
+    private volatile byte[] encoding;
+
     private Symbol() {
         this.underlying = ProtonByteBufferAllocator.DEFAULT.allocate(0, 0);
         this.hashCode = 31;
@@ -85,6 +89,25 @@ public final class Symbol implements Comparable<Symbol> {
         target.writeBytes(underlying, 0, underlying.getReadableBytes());
     }
 
+    /**
+     * Returns the encoded form of this Symbol, the given function creates it the first time
+     * it is requested and it is then kept with the Symbol.  Since Symbols are interned the
+     * common values are only ever encoded once.
+     *
+     * @param encoder
+     *      the function that creates the encoded form of a Symbol.
+     *
+     * @return the encoded form of this Symbol.
+     */
+    public byte[] getEncoding(Function<Symbol, byte[]> encoder) {
+        byte[] result = encoding;
+        if (result == null) {
+            encoding = result = encoder.apply(this);
+        }
+
+        return result;
+    }
+
     public static Symbol valueOf(String symbolVal) {
         return getSymbol(symbolVal);
     }
@@ -20,7 +20,12 @@ import org.apache.qpid.proton4j.amqp.Binary;
 import org.apache.qpid.proton4j.amqp.Symbol;
 import org.apache.qpid.proton4j.amqp.UnsignedInteger;
 import org.apache.qpid.proton4j.amqp.UnsignedLong;
+import org.apache.qpid.proton4j.codec.generator.DescribedListField;
+import org.apache.qpid.proton4j.codec.generator.DescribedListType;
 
+@DescribedListType(code = 0x15L, symbol = "amqp:disposition:list",
+                   encoderPackage = "org.apache.qpid.proton4j.codec.encoders.transport",
+                   decoderPackage = "org.apache.qpid.proton4j.codec.decoders.transport")
 public final class Disposition implements Performative {
 
     public static final UnsignedLong DESCRIPTOR_CODE = UnsignedLong.valueOf(0x0000000000000015L);
@@ -33,6 +38,7 @@ public final class Disposition implements Performative {
     private DeliveryState state;
     private boolean batchable;
 
+    @DescribedListField(index = 0)
     public Role getRole() {
         return role;
     }
@@ -45,6 +51,7 @@ public final class Disposition implements Performative {
         this.role = role;
     }
 
+    @DescribedListField(index = 1)
     public UnsignedInteger getFirst() {
         return first;
     }
@@ -57,6 +64,7 @@ public final class Disposition implements Performative {
         this.first = first;
     }
 
+    @DescribedListField(index = 2)
     public UnsignedInteger getLast() {
         return last;
     }
@@ -65,6 +73,7 @@ public final class Disposition implements Performative {
         this.last = last;
     }
 
+    @DescribedListField(index = 3, presence = "getSettled")
     public boolean getSettled() {
         return settled;
     }
@@ -73,6 +82,7 @@ public final class Disposition implements Performative {
         this.settled = settled;
     }
 
+    @DescribedListField(index = 4)
     public DeliveryState getState() {
         return state;
     }
@@ -81,6 +91,7 @@ public final class Disposition implements Performative {
         this.state = state;
     }
 
+    @DescribedListField(index = 5, presence = "getBatchable")
     public boolean getBatchable() {
         return batchable;
     }
@@ -21,7 +21,13 @@ import java.util.Map;
 import org.apache.qpid.proton4j.amqp.Binary;
 import org.apache.qpid.proton4j.amqp.Symbol;
 import org.apache.qpid.proton4j.amqp.UnsignedLong;
+import org.apache.qpid.proton4j.codec.generator.DescribedListField;
+import org.apache.qpid.proton4j.codec.generator.DescribedListType;
+import org.apache.qpid.proton4j.codec.generator.FieldEncoding;
 
+@DescribedListType(code = 0x13L, symbol = "amqp:flow:list",
+                   encoderPackage = "org.apache.qpid.proton4j.codec.encoders.transport",
+                   decoderPackage = "org.apache.qpid.proton4j.codec.decoders.transport")
 public final class Flow implements Performative {
 
     public static final UnsignedLong DESCRIPTOR_CODE = UnsignedLong.valueOf(0x0000000000000013L);
@@ -111,6 +117,7 @@ public final class Flow implements Performative {
 
     //----- Access the AMQP Transfer object ------------------------------------//
 
+    @DescribedListField(index = 0, encoding = FieldEncoding.UINT, presence = "hasNextIncomingId")
     public long getNextIncomingId() {
         return nextIncomingId;
     }
@@ -118,15 +125,14 @@ public final class Flow implements Performative {
     public void setNextIncomingId(long nextIncomingId) {
         if (nextIncomingId < 0 || nextIncomingId > UINT_MAX) {
             throw new IllegalArgumentException("Next Incoming Id value given is out of range: " + nextIncomingId);
-        } else if (nextIncomingId == 0) {
-            modified &= ~NEXT_INCOMING_ID;
-        } else {
-            modified |= NEXT_INCOMING_ID;
         }
 
+        modified |= NEXT_INCOMING_ID;
+
         this.nextIncomingId = nextIncomingId;
     }
 
+    @DescribedListField(index = 1, encoding = FieldEncoding.UINT, presence = "hasIncomingWindow")
     public long getIncomingWindow() {
         return incomingWindow;
     }
@@ -134,15 +140,14 @@ public final class Flow implements Performative {
     public void setIncomingWindow(long incomingWindow) {
         if (incomingWindow < 0 || incomingWindow > UINT_MAX) {
             throw new IllegalArgumentException("Incoming Window value given is out of range: " + incomingWindow);
-        } else if (incomingWindow == 0) {
-            modified &= ~INCOMING_WINDOW;
-        } else {
-            modified |= INCOMING_WINDOW;
         }
 
+        modified |= INCOMING_WINDOW;
+
         this.incomingWindow = incomingWindow;
     }
 
+    @DescribedListField(index = 2, encoding = FieldEncoding.UINT, presence = "hasNextOutgoingId")
     public long getNextOutgoingId() {
         return nextOutgoingId;
     }
@@ -150,15 +155,14 @@ public final class Flow implements Performative {
     public void setNextOutgoingId(long nextOutgoingId) {
         if (nextOutgoingId < 0 || nextOutgoingId > UINT_MAX) {
             throw new IllegalArgumentException("Next Outgoing Id value given is out of range: " + nextOutgoingId);
-        } else if (nextOutgoingId == 0) {
-            modified &= ~NEXT_OUTGOING_ID;
-        } else {
-            modified |= NEXT_OUTGOING_ID;
         }
 
+        modified |= NEXT_OUTGOING_ID;
+
         this.nextOutgoingId = nextOutgoingId;
     }
 
+    @DescribedListField(index = 3, encoding = FieldEncoding.UINT, presence = "hasOutgoingWindow")
     public long getOutgoingWindow() {
         return outgoingWindow;
     }
@@ -166,15 +170,14 @@ public final class Flow implements Performative {
     public void setOutgoingWindow(long outgoingWindow) {
         if (outgoingWindow < 0 || outgoingWindow > UINT_MAX) {
             throw new IllegalArgumentException("Outgoing Window value given is out of range: " + outgoingWindow);
-        } else if (outgoingWindow == 0) {
-            modified &= ~OUTGOING_WINDOW;
-        } else {
-            modified |= OUTGOING_WINDOW;
         }
 
+        modified |= OUTGOING_WINDOW;
+
         this.outgoingWindow = outgoingWindow;
     }
 
+    @DescribedListField(index = 4, encoding = FieldEncoding.UINT, presence = "hasHandle")
     public long getHandle() {
         return handle;
     }
@@ -182,15 +185,14 @@ public final class Flow implements Performative {
     public void setHandle(long handle) {
         if (handle < 0 || handle > UINT_MAX) {
             throw new IllegalArgumentException("Handle value given is out of range: " + handle);
-        } else if (handle == 0) {
-            modified &= ~HANDLE;
-        } else {
-            modified |= HANDLE;
         }
 
+        modified |= HANDLE;
+
         this.handle = handle;
     }
 
+    @DescribedListField(index = 5, encoding = FieldEncoding.UINT, presence = "hasDeliveryCount")
     public long getDeliveryCount() {
         return deliveryCount;
     }
@@ -198,15 +200,14 @@ public final class Flow implements Performative {
     public void setDeliveryCount(long deliveryCount) {
         if (deliveryCount < 0 || deliveryCount > UINT_MAX) {
             throw new IllegalArgumentException("Delivery Count value given is out of range: " + deliveryCount);
-        } else if (deliveryCount == 0) {
-            modified &= ~DELIVERY_COUNT;
-        } else {
-            modified |= DELIVERY_COUNT;
         }
 
+        modified |= DELIVERY_COUNT;
+
         this.deliveryCount = deliveryCount;
     }
 
+    @DescribedListField(index = 6, encoding = FieldEncoding.UINT, presence = "hasLinkCredit")
     public long getLinkCredit() {
         return linkCredit;
     }
@@ -214,15 +215,14 @@ public final class Flow implements Performative {
     public void setLinkCredit(long linkCredit) {
         if (linkCredit < 0 || linkCredit > UINT_MAX) {
             throw new IllegalArgumentException("Link Credit value given is out of range: " + linkCredit);
-        } else if (linkCredit == 0) {
-            modified &= ~LINK_CREDIT;
-        } else {
-            modified |= LINK_CREDIT;
         }
 
+        modified |= LINK_CREDIT;
+
         this.linkCredit = linkCredit;
     }
 
+    @DescribedListField(index = 7, encoding = FieldEncoding.UINT, presence = "hasAvailable")
     public long getAvailable() {
         return available;
     }
@@ -230,15 +230,14 @@ public final class Flow implements Performative {
     public void setAvailable(long available) {
         if (available < 0 || available > UINT_MAX) {
             throw new IllegalArgumentException("Available value given is out of range: " + available);
-        } else if (available == 0) {
-            modified &= ~AVAILABLE;
-        } else {
-            modified |= AVAILABLE;
         }
 
+        modified |= AVAILABLE;
+
         this.available = available;
     }
 
+    @DescribedListField(index = 8, presence = "hasDrain")
     public boolean getDrain() {
         return drain;
     }
@@ -253,6 +252,7 @@ public final class Flow implements Performative {
         this.drain = drain;
     }
 
+    @DescribedListField(index = 9, presence = "hasEcho")
     public boolean getEcho() {
         return echo;
     }
@@ -267,6 +267,7 @@ public final class Flow implements Performative {
         this.echo = echo;
     }
 
+    @DescribedListField(index = 10)
     public Map<Object, Object> getProperties() {
         return properties;
     }
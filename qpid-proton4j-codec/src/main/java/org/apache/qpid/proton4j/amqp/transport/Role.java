@@ -23,4 +23,8 @@ public enum Role {
     public boolean getValue() {
         return this == RECEIVER;
     }
+
+    public static Role valueOf(boolean role) {
+        return role ? RECEIVER : SENDER;
+    }
 }
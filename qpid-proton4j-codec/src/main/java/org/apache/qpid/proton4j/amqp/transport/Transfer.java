@@ -19,7 +19,13 @@ package org.apache.qpid.proton4j.amqp.transport;
 import org.apache.qpid.proton4j.amqp.Binary;
 import org.apache.qpid.proton4j.amqp.Symbol;
 import org.apache.qpid.proton4j.amqp.UnsignedLong;
+import org.apache.qpid.proton4j.codec.generator.DescribedListField;
+import org.apache.qpid.proton4j.codec.generator.DescribedListType;
+import org.apache.qpid.proton4j.codec.generator.FieldEncoding;
 
+@DescribedListType(code = 0x14L, symbol = "amqp:transfer:list",
+                   encoderPackage = "org.apache.qpid.proton4j.codec.encoders.transport",
+                   decoderPackage = "org.apache.qpid.proton4j.codec.decoders.transport")
 public final class Transfer implements Performative {
 
     public static final UnsignedLong DESCRIPTOR_CODE = UnsignedLong.valueOf(0x0000000000000014L);
@@ -109,6 +115,7 @@ public final class Transfer implements Performative {
 
     //----- Access the AMQP Transfer object ------------------------------------//
 
+    @DescribedListField(index = 0, encoding = FieldEncoding.UINT, presence = "hasHandle")
     public long getHandle() {
         return handle;
     }
@@ -116,15 +123,14 @@ public final class Transfer implements Performative {
     public void setHandle(long handle) {
         if (handle < 0 || handle > UINT_MAX) {
             throw new IllegalArgumentException("Handle value given is out of range: " + handle);
-        } else if (handle == 0) {
-            modified &= ~HANDLE;
-        } else {
-            modified |= HANDLE;
         }
 
+        modified |= HANDLE;
+
         this.handle = handle;
     }
 
+    @DescribedListField(index = 1, encoding = FieldEncoding.UINT, presence = "hasDeliveryId")
     public long getDeliveryId() {
         return deliveryId;
     }
@@ -132,15 +138,14 @@ public final class Transfer implements Performative {
     public void setDeliveryId(long deliveryId) {
         if (deliveryId < 0 || deliveryId > UINT_MAX) {
             throw new IllegalArgumentException("Delivery ID value given is out of range: " + deliveryId);
-        } else if (deliveryId == 0) {
-            modified &= ~DELIVERY_ID;
-        } else {
-            modified |= DELIVERY_ID;
         }
 
+        modified |= DELIVERY_ID;
+
         this.deliveryId = deliveryId;
     }
 
+    @DescribedListField(index = 2)
     public Binary getDeliveryTag() {
         return deliveryTag;
     }
@@ -155,6 +160,7 @@ public final class Transfer implements Performative {
         this.deliveryTag = deliveryTag;
     }
 
+    @DescribedListField(index = 3, encoding = FieldEncoding.UINT, presence = "hasMessageFormat")
     public long getMessageFormat() {
         return messageFormat;
     }
@@ -171,11 +177,12 @@ public final class Transfer implements Performative {
         this.messageFormat = messageFormat;
     }
 
+    @DescribedListField(index = 4, presence = "hasSettled")
     public boolean getSettled() {
         return settled;
     }
 
-    public void setSettled(Boolean settled) {
+    public void setSettled(boolean settled) {
         if (settled) {
             modified |= SETTLED;
         } else {
@@ -185,6 +192,7 @@ public final class Transfer implements Performative {
         this.settled = settled;
     }
 
+    @DescribedListField(index = 5, presence = "hasMore")
     public boolean getMore() {
         return more;
     }
@@ -199,6 +207,7 @@ public final class Transfer implements Performative {
         this.more = more;
     }
 
+    @DescribedListField(index = 6)
     public ReceiverSettleMode getRcvSettleMode() {
         return rcvSettleMode;
     }
@@ -213,6 +222,7 @@ public final class Transfer implements Performative {
         this.rcvSettleMode = rcvSettleMode;
     }
 
+    @DescribedListField(index = 7)
     public DeliveryState getState() {
         return state;
     }
@@ -227,6 +237,7 @@ public final class Transfer implements Performative {
         this.state = state;
     }
 
+    @DescribedListField(index = 8, presence = "hasResume")
     public boolean getResume() {
         return resume;
     }
@@ -241,6 +252,7 @@ public final class Transfer implements Performative {
         this.resume = resume;
     }
 
+    @DescribedListField(index = 9, presence = "hasAborted")
     public boolean getAborted() {
         return aborted;
     }
@@ -255,6 +267,7 @@ public final class Transfer implements Performative {
         this.aborted = aborted;
     }
 
+    @DescribedListField(index = 10, presence = "hasBatchable")
     public boolean getBatchable() {
         return batchable;
     }
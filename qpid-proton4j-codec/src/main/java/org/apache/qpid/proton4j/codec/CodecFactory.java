@@ -22,13 +22,17 @@ import org.apache.qpid.proton4j.codec.encoders.ProtonEncoderFactory;
 /**
  * Factory Class used to create new instances of AMQP type
  * Encoder and Decoder instances registered in the factory.
+ * <p>
+ * The shared getters return a frozen default instance that can be used by all
+ * callers when no Encoder or Decoder has been configured, only the EncoderState
+ * and DecoderState then need to be created per user.
  */
 public final class CodecFactory {
 
-    private static Encoder amqpTypeEncoder;
-    private static Encoder saslTypeEncoder;
-    private static Decoder amqpTypeDecoder;
-    private static Decoder saslTypeDecoder;
+    private static volatile Encoder amqpTypeEncoder;
+    private static volatile Encoder saslTypeEncoder;
+    private static volatile Decoder amqpTypeDecoder;
+    private static volatile Decoder saslTypeDecoder;
 
     private CodecFactory() {
     }
@@ -81,6 +85,42 @@ public final class CodecFactory {
         return saslTypeDecoder;
     }
 
+    public static Encoder getSharedEncoder() {
+        final Encoder configured = amqpTypeEncoder;
+        if (configured == null) {
+            return SharedCodecs.AMQP_ENCODER;
+        }
+
+        return configured;
+    }
+
+    public static Decoder getSharedDecoder() {
+        final Decoder configured = amqpTypeDecoder;
+        if (configured == null) {
+            return SharedCodecs.AMQP_DECODER;
+        }
+
+        return configured;
+    }
+
+    public static Encoder getSharedSaslEncoder() {
+        final Encoder configured = saslTypeEncoder;
+        if (configured == null) {
+            return SharedCodecs.SASL_ENCODER;
+        }
+
+        return configured;
+    }
+
+    public static Decoder getSharedSaslDecoder() {
+        final Decoder configured = saslTypeDecoder;
+        if (configured == null) {
+            return SharedCodecs.SASL_DECODER;
+        }
+
+        return configured;
+    }
+
     public static Encoder getDefaultEncoder() {
         return ProtonEncoderFactory.create();
     }
@@ -96,4 +136,15 @@ public final class CodecFactory {
     public static Decoder getDefaultSaslDecoder() {
         return ProtonDecoderFactory.createSasl();
     }
+
+    //----- Lazily created shared default codecs -----------------------------//
+
+    private static final class SharedCodecs {
+
+        static final Encoder AMQP_ENCODER = ProtonEncoderFactory.create().freeze();
+        static final Decoder AMQP_DECODER = ProtonDecoderFactory.create().freeze();
+        static final Encoder SASL_ENCODER = ProtonEncoderFactory.createSasl().freeze();
+        static final Decoder SASL_DECODER = ProtonDecoderFactory.createSasl().freeze();
+
+    }
 }
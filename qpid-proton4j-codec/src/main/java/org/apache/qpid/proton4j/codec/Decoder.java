@@ -127,6 +127,16 @@ public interface Decoder {
 
     <V> Decoder registerTypeDecoder(TypeDecoder<V> decoder);
 
+    /**
+     * Prevents any further TypeDecoder registrations, once frozen the Decoder registry no longer
+     * changes and the Decoder can be shared between threads.
+     *
+     * @return this Decoder instance.
+     */
+    Decoder freeze();
+
+    boolean isFrozen();
+
     TypeDecoder<?> getTypeDecoder(Object instance);
 
 }
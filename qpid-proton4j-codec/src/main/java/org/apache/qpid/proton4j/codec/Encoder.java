@@ -119,6 +119,34 @@ public interface Encoder {
 
     void writeObject(ProtonBuffer buffer, EncoderState state, Object value);
 
+    /**
+     * Writes each of the given values into the buffer in order as individual AMQP encoded
+     * values, the result is identical to calling {@link #writeObject} for each value but
+     * the buffer capacity is reserved once for the batch and the type encoder is reused
+     * while consecutive values share a type.
+     *
+     * @param buffer
+     *      the buffer where the encoded values are written.
+     * @param state
+     *      the EncoderState instance to use while encoding.
+     * @param values
+     *      the values (performatives, message sections etc) to be encoded.
+     */
+    void writeObjects(ProtonBuffer buffer, EncoderState state, Object... values);
+
+    /**
+     * Writes each of the given values into the buffer in order as individual AMQP encoded
+     * values, see {@link #writeObjects(ProtonBuffer, EncoderState, Object...)}.
+     *
+     * @param buffer
+     *      the buffer where the encoded values are written.
+     * @param state
+     *      the EncoderState instance to use while encoding.
+     * @param values
+     *      the values (performatives, message sections etc) to be encoded.
+     */
+    void writeObjects(ProtonBuffer buffer, EncoderState state, List<?> values);
+
     void writeArray(ProtonBuffer buffer, EncoderState state, boolean[] value);
 
     void writeArray(ProtonBuffer buffer, EncoderState state, byte[] value);
@@ -157,6 +185,16 @@ public interface Encoder {
 
     <V> Encoder registerTypeEncoder(TypeEncoder<V> encoder);
 
+    /**
+     * Prevents any further TypeEncoder registrations, once frozen the Encoder registry no longer
+     * changes and the Encoder can be shared between threads.
+     *
+     * @return this Encoder instance.
+     */
+    Encoder freeze();
+
+    boolean isFrozen();
+
     TypeEncoder<?> getTypeEncoder(Object value);
 
     TypeEncoder<?> getTypeEncoder(Class<?> typeClass);
@@ -19,10 +19,10 @@ package org.apache.qpid.proton4j.codec.decoders;
 import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.qpid.proton4j.amqp.Binary;
 import org.apache.qpid.proton4j.amqp.Decimal128;
@@ -48,11 +48,13 @@ public class ProtonDecoder implements Decoder {
 
     // The decoders for primitives are fixed and cannot be altered by users who want
     // to register custom decoders.
-    private PrimitiveTypeDecoder<?>[] primitiveDecoders = new PrimitiveTypeDecoder[256];
+    private final PrimitiveTypeDecoder<?>[] primitiveDecoders = new PrimitiveTypeDecoder[256];
 
     // Registry of decoders for described types which can be updated with user defined
     // decoders as well as the default decoders.
-    private Map<Object, DescribedTypeDecoder<?>> describedTypeDecoders = new HashMap<>();
+    private final Map<Object, DescribedTypeDecoder<?>> describedTypeDecoders = new ConcurrentHashMap<>();
+
+    private volatile boolean frozen;
 
     // Internal Decoders used to prevent user to access Proton specific decoding methods
     private static final Symbol8TypeDecoder symbol8TypeDecoder = new Symbol8TypeDecoder();
@@ -63,6 +65,17 @@ public class ProtonDecoder implements Decoder {
         return new ProtonDecoderState(this);
     }
 
+    @Override
+    public ProtonDecoder freeze() {
+        frozen = true;
+        return this;
+    }
+
+    @Override
+    public boolean isFrozen() {
+        return frozen;
+    }
+
     @Override
     public Object readObject(ProtonBuffer buffer, DecoderState state) throws IOException {
         TypeDecoder<?> decoder = readNextTypeDecoder(buffer, state);
@@ -137,7 +150,7 @@ public class ProtonDecoder implements Decoder {
                     descriptor = readObject(buffer, state);
             }
 
-            TypeDecoder<?> typeDecoder = describedTypeDecoders.get(descriptor);
+            TypeDecoder<?> typeDecoder = descriptor != null ? describedTypeDecoders.get(descriptor) : null;
             if (typeDecoder == null) {
                 typeDecoder = handleUnknownDescribedType(descriptor);
             }
@@ -164,6 +177,10 @@ public class ProtonDecoder implements Decoder {
 
     @Override
     public <V> ProtonDecoder registerTypeDecoder(TypeDecoder<V> decoder) {
+        if (frozen) {
+            throw new IllegalStateException("Cannot register a TypeDecoder with a frozen Decoder");
+        }
+
         if (decoder instanceof PrimitiveTypeDecoder) {
             PrimitiveTypeDecoder<?> primitiveTypeDecoder = (PrimitiveTypeDecoder<?>) decoder;
             primitiveDecoders[primitiveTypeDecoder.getTypeCode()] = primitiveTypeDecoder;
@@ -475,7 +492,7 @@ public class ProtonDecoder implements Decoder {
             case EncodingCodes.SMALLUINT:
                 return buffer.readByte() & 0xff;
             case EncodingCodes.UINT:
-                return buffer.readInt();
+                return buffer.readInt() & 0xffffffffl;
             case EncodingCodes.NULL:
                 return defaultValue;
             default:
@@ -763,7 +780,10 @@ public class ProtonDecoder implements Decoder {
             }
         };
 
-        describedTypeDecoders.put(descriptor, (UnknownDescribedTypeDecoder) typeDecoder);
+        // A frozen decoder is shared so it must not grow based on what remote peers send.
+        if (!frozen && descriptor != null) {
+            describedTypeDecoders.putIfAbsent(descriptor, (UnknownDescribedTypeDecoder) typeDecoder);
+        }
 
         return typeDecoder;
     }
@@ -16,11 +16,16 @@
  */
 package org.apache.qpid.proton4j.codec.encoders;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.qpid.proton4j.amqp.Binary;
 import org.apache.qpid.proton4j.amqp.Decimal128;
@@ -67,6 +72,14 @@ import org.apache.qpid.proton4j.codec.encoders.primitives.UnsignedShortTypeEncod
  */
 public class ProtonEncoder implements Encoder {
 
+    // Upper bound on the up front reservation made for a batch write, a single large first
+    // element should not cause a huge allocation for a batch of otherwise small values.
+    private static final int MAX_BATCH_RESERVATION = 64 * 1024;
+
+    private static final Class<?>[] COMMON_COLLECTION_TYPES = new Class<?>[] {
+        ArrayList.class, LinkedList.class, HashMap.class, LinkedHashMap.class, TreeMap.class
+    };
+
     private final ArrayTypeEncoder arrayEncoder = new ArrayTypeEncoder();
     private final BinaryTypeEncoder binaryEncoder = new BinaryTypeEncoder();
     private final BooleanTypeEncoder booleanEncoder = new BooleanTypeEncoder();
@@ -93,13 +106,32 @@ public class ProtonEncoder implements Encoder {
     private final UnsignedIntegerTypeEncoder uintEncoder = new UnsignedIntegerTypeEncoder();
     private final UnsignedLongTypeEncoder ulongEncoder = new UnsignedLongTypeEncoder();
 
-    private final Map<Class<?>, TypeEncoder<?>> typeEncoders = new HashMap<>();
+    private final Map<Class<?>, TypeEncoder<?>> typeEncoders = new ConcurrentHashMap<>();
+
+    private volatile boolean frozen;
 
     @Override
     public ProtonEncoderState newEncoderState() {
         return new ProtonEncoderState(this);
     }
 
+    @Override
+    public ProtonEncoder freeze() {
+        // Resolve the encoders for the common collection types now as nothing is
+        // cached by lookups on a frozen encoder.
+        for (Class<?> typeClass : COMMON_COLLECTION_TYPES) {
+            getTypeEncoder(typeClass);
+        }
+
+        frozen = true;
+        return this;
+    }
+
+    @Override
+    public boolean isFrozen() {
+        return frozen;
+    }
+
     @Override
     public void writeNull(ProtonBuffer buffer, EncoderState state) {
         nullEncoder.writeType(buffer, state, null);
@@ -577,6 +609,70 @@ public class ProtonEncoder implements Encoder {
         }
     }
 
+    @Override
+    public void writeObjects(ProtonBuffer buffer, EncoderState state, Object... values) {
+        final int count = values.length;
+        final int startIndex = buffer.getWriteIndex();
+
+        TypeEncoder<?> encoder = null;
+
+        for (int i = 0; i < count; ++i) {
+            encoder = writeBatchElement(buffer, state, values[i], encoder);
+
+            if (i == 0 && count > 1) {
+                reserveBatchCapacity(buffer, buffer.getWriteIndex() - startIndex, count - 1);
+            }
+        }
+    }
+
+    @Override
+    public void writeObjects(ProtonBuffer buffer, EncoderState state, List<?> values) {
+        final int count = values.size();
+        final int startIndex = buffer.getWriteIndex();
+
+        TypeEncoder<?> encoder = null;
+
+        for (int i = 0; i < count; ++i) {
+            encoder = writeBatchElement(buffer, state, values.get(i), encoder);
+
+            if (i == 0 && count > 1) {
+                reserveBatchCapacity(buffer, buffer.getWriteIndex() - startIndex, count - 1);
+            }
+        }
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private TypeEncoder<?> writeBatchElement(ProtonBuffer buffer, EncoderState state, Object value, TypeEncoder<?> previous) {
+        if (value == null) {
+            buffer.writeByte(EncodingCodes.NULL);
+            return previous;
+        }
+
+        // Batches are usually runs of the same type so avoid the registry lookup when possible.
+        TypeEncoder encoder = previous;
+        if (encoder == null || encoder.getTypeClass() != value.getClass()) {
+            encoder = typeEncoders.get(value.getClass());
+        }
+
+        if (encoder == null) {
+            writeUnregisteredType(buffer, state, value);
+            return previous;
+        } else {
+            encoder.writeType(buffer, state, value);
+            return encoder;
+        }
+    }
+
+    private static void reserveBatchCapacity(ProtonBuffer buffer, int elementSize, int remaining) {
+        // Use the first element as the size estimate for the rest of the batch, capped so that
+        // an outlier does not over allocate, values that end up larger will still grow the
+        // buffer as needed when written.
+        long estimate = Math.min((long) elementSize * remaining, MAX_BATCH_RESERVATION);
+        int available = buffer.maxCapacity() - buffer.getWriteIndex();
+
+        buffer.ensureWritable((int) Math.min(estimate, available));
+    }
+
     @SuppressWarnings("unchecked")
     private void writeUnregisteredType(ProtonBuffer buffer, EncoderState state, Object value) {
         if (value.getClass().isArray()) {
@@ -619,6 +715,10 @@ public class ProtonEncoder implements Encoder {
 
     @Override
     public <V> ProtonEncoder registerTypeEncoder(TypeEncoder<V> encoder) {
+        if (frozen) {
+            throw new IllegalStateException("Cannot register a TypeEncoder with a frozen Encoder");
+        }
+
         typeEncoders.put(encoder.getTypeClass(), encoder);
         return this;
     }
@@ -660,7 +760,11 @@ public class ProtonEncoder implements Encoder {
                 }
             }
 
-            typeEncoders.put(typeClass, encoder);
+            // Remember the resolved encoder for subsequent lookups of the same type unless
+            // frozen, in which case the registry must not change.
+            if (encoder != null && !frozen) {
+                typeEncoders.putIfAbsent(typeClass, encoder);
+            }
         }
 
         return encoder;
@@ -52,10 +52,10 @@ public class SourceTypeEncoder extends AbstractDescribedListTypeEncoder<Source>
                 state.getEncoder().writeString(buffer, state, source.getAddress());
                 break;
             case 1:
-                state.getEncoder().writeObject(buffer, state, source.getDurable());
+                state.getEncoder().writeUnsignedInteger(buffer, state, source.getDurable() == null ? null : source.getDurable().getValue());
                 break;
             case 2:
-                state.getEncoder().writeObject(buffer, state, source.getExpiryPolicy());
+                state.getEncoder().writeSymbol(buffer, state, source.getExpiryPolicy() == null ? null : source.getExpiryPolicy().getPolicy());
                 break;
             case 3:
                 state.getEncoder().writeUnsignedInteger(buffer, state, source.getTimeout());
@@ -52,10 +52,10 @@ public class TargetTypeEncoder extends AbstractDescribedListTypeEncoder<Target>
                 state.getEncoder().writeString(buffer, state, target.getAddress());
                 break;
             case 1:
-                state.getEncoder().writeObject(buffer, state, target.getDurable());
+                state.getEncoder().writeUnsignedInteger(buffer, state, target.getDurable() == null ? null : target.getDurable().getValue());
                 break;
             case 2:
-                state.getEncoder().writeObject(buffer, state, target.getExpiryPolicy());
+                state.getEncoder().writeSymbol(buffer, state, target.getExpiryPolicy() == null ? null : target.getExpiryPolicy().getPolicy());
                 break;
             case 3:
                 state.getEncoder().writeUnsignedInteger(buffer, state, target.getTimeout());
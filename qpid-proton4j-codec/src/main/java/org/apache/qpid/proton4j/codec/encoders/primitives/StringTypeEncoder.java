@@ -111,6 +111,85 @@ public class StringTypeEncoder extends AbstractPrimitiveTypeEncoder<String> {
     }
 
     private void writeString(ProtonBuffer buffer, EncoderState state, String value) {
+        if (buffer.hasArray()) {
+            writeStringToArray(buffer, value);
+        } else {
+            writeStringToBuffer(buffer, value);
+        }
+    }
+
+    private static void writeStringToArray(ProtonBuffer buffer, String value) {
+        final int length = value.length();
+
+        // Reserve for the common all ASCII case up front so that the copy loop below
+        // can write directly into the backing array without any per byte checks.
+        buffer.ensureWritable(length);
+
+        byte[] array = buffer.getArray();
+        int position = buffer.getArrayOffset() + buffer.getWriteIndex();
+        int index = 0;
+
+        for (; index < length; ++index) {
+            final char c = value.charAt(index);
+            if (c >= 0x80) {
+                break;
+            }
+
+            array[position++] = (byte) c;
+        }
+
+        if (index < length) {
+            // Multi-byte content remains, reserve for the worst case of three bytes
+            // per remaining character and then encode the remainder into the array.
+            buffer.setWriteIndex(position - buffer.getArrayOffset());
+            buffer.ensureWritable((length - index) * 3);
+
+            array = buffer.getArray();
+            position = buffer.getArrayOffset() + buffer.getWriteIndex();
+            position = encodeUTF8(value, index, array, position);
+        }
+
+        buffer.setWriteIndex(position - buffer.getArrayOffset());
+    }
+
+    private static int encodeUTF8(String value, int index, byte[] array, int position) {
+        final int length = value.length();
+        int c;
+
+        for (int i = index; i < length; i++) {
+            c = value.charAt(i);
+            if ((c & 0xFF80) == 0) {
+                /* U+0000..U+007F */
+                array[position++] = (byte) c;
+            } else if ((c & 0xF800) == 0) {
+                /* U+0080..U+07FF */
+                array[position++] = (byte)(0xC0 | ((c >> 6) & 0x1F));
+                array[position++] = (byte)(0x80 | (c & 0x3F));
+            } else if ((c & 0xD800) != 0xD800 || (c > 0xDBFF)) {
+                /* U+0800..U+FFFF - excluding surrogate pairs */
+                array[position++] = (byte)(0xE0 | ((c >> 12) & 0x0F));
+                array[position++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+                array[position++] = (byte)(0x80 | (c & 0x3F));
+            } else {
+                int low;
+
+                if ((++i == length) || ((low = value.charAt(i)) & 0xDC00) != 0xDC00) {
+                    throw new IllegalArgumentException("String contains invalid Unicode code points");
+                }
+
+                c = 0x010000 + ((c & 0x03FF) << 10) + (low & 0x03FF);
+
+                array[position++] = (byte)(0xF0 | ((c >> 18) & 0x07));
+                array[position++] = (byte)(0x80 | ((c >> 12) & 0x3F));
+                array[position++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+                array[position++] = (byte)(0x80 | (c & 0x3F));
+            }
+        }
+
+        return position;
+    }
+
+    private static void writeStringToBuffer(ProtonBuffer buffer, String value) {
         final int length = value.length();
         int c;
 
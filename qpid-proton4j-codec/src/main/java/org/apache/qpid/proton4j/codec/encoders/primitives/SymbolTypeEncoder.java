@@ -16,8 +16,11 @@
  */
 package org.apache.qpid.proton4j.codec.encoders.primitives;
 
+import java.util.function.Function;
+
 import org.apache.qpid.proton4j.amqp.Symbol;
 import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
 import org.apache.qpid.proton4j.codec.EncoderState;
 import org.apache.qpid.proton4j.codec.EncodingCodes;
 import org.apache.qpid.proton4j.codec.encoders.AbstractPrimitiveTypeEncoder;
@@ -27,6 +30,18 @@ import org.apache.qpid.proton4j.codec.encoders.AbstractPrimitiveTypeEncoder;
  */
 public class SymbolTypeEncoder extends AbstractPrimitiveTypeEncoder<Symbol> {
 
+    // Symbols of up to this length are interned so the common values (capabilities, annotation
+    // keys) keep their complete encoding and are written with a single bulk copy.
+    private static final int MAX_CACHED_SYMBOL_LENGTH = 64;
+
+    private static final Function<Symbol, byte[]> ENCODING_FACTORY = new Function<Symbol, byte[]>() {
+
+        @Override
+        public byte[] apply(Symbol value) {
+            return createEncoding(value);
+        }
+    };
+
     @Override
     public Class<Symbol> getTypeClass() {
         return Symbol.class;
@@ -34,26 +49,60 @@ public class SymbolTypeEncoder extends AbstractPrimitiveTypeEncoder<Symbol> {
 
     @Override
     public void writeType(ProtonBuffer buffer, EncoderState state, Symbol value) {
-        int symbolBytes = value.getLength();
+        if (value.getLength() <= MAX_CACHED_SYMBOL_LENGTH) {
+            buffer.writeBytes(value.getEncoding(ENCODING_FACTORY));
+        } else {
+            writeUncached(buffer, value);
+        }
+    }
+
+    @Override
+    public void writeRawArray(ProtonBuffer buffer, EncoderState state, Object[] values) {
+        boolean fitsSym8 = true;
+        for (Object value : values) {
+            if (((Symbol) value).getLength() > 255) {
+                fitsSym8 = false;
+                break;
+            }
+        }
 
-        if (symbolBytes <= 255) {
+        if (fitsSym8) {
             buffer.writeByte(EncodingCodes.SYM8);
-            buffer.writeByte(symbolBytes);
+            for (Object value : values) {
+                Symbol symbol = (Symbol) value;
+                buffer.writeByte(symbol.getLength());
+                symbol.writeTo(buffer);
+            }
         } else {
             buffer.writeByte(EncodingCodes.SYM32);
-            buffer.writeInt(symbolBytes);
+            for (Object value : values) {
+                Symbol symbol = (Symbol) value;
+                buffer.writeInt(symbol.getLength());
+                symbol.writeTo(buffer);
+            }
+        }
+    }
+
+    private static void writeUncached(ProtonBuffer buffer, Symbol value) {
+        final int length = value.getLength();
+
+        if (length <= 255) {
+            buffer.writeByte(EncodingCodes.SYM8);
+            buffer.writeByte(length);
+        } else {
+            buffer.writeByte(EncodingCodes.SYM32);
+            buffer.writeInt(length);
         }
 
         value.writeTo(buffer);
     }
 
-    @Override
-    public void writeRawArray(ProtonBuffer buffer, EncoderState state, Object[] values) {
-        buffer.writeByte(EncodingCodes.SYM32);
-        for (Object value : values) {
-            Symbol symbol = (Symbol) value;
-            buffer.writeInt(symbol.getLength());
-            symbol.writeTo(buffer);
-        }
+    private static byte[] createEncoding(Symbol value) {
+        final int size = value.getLength() + (value.getLength() <= 255 ? 2 : 5);
+        final ProtonBuffer encoding = ProtonByteBufferAllocator.DEFAULT.allocate(size, size);
+
+        writeUncached(encoding, value);
+
+        return encoding.getArray();
     }
 }
@@ -20,6 +20,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertSame;
 
+import java.util.function.Function;
+
 import org.apache.qpid.proton4j.amqp.Symbol;
 import org.junit.Test;
 
@@ -91,4 +93,26 @@ public class SymbolTest {
 
         assertSame(symbol1, symbol2);
     }
+
+    @Test
+    public void testEncodingCreatedOnceAndKept() {
+        final int[] created = new int[1];
+        Function<Symbol, byte[]> encoder = new Function<Symbol, byte[]>() {
+
+            @Override
+            public byte[] apply(Symbol symbol) {
+                created[0]++;
+                return new byte[symbol.getLength()];
+            }
+        };
+
+        Symbol symbol = Symbol.valueOf("Symbol-Encoding");
+
+        byte[] encoding = symbol.getEncoding(encoder);
+
+        assertEquals(15, encoding.length);
+        assertSame(encoding, symbol.getEncoding(encoder));
+        assertSame(encoding, Symbol.valueOf("Symbol-Encoding").getEncoding(encoder));
+        assertEquals(1, created[0]);
+    }
 }
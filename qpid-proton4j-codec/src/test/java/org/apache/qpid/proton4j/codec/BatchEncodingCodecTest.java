@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.UnsignedInteger;
+import org.apache.qpid.proton4j.amqp.messaging.Accepted;
+import org.apache.qpid.proton4j.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton4j.amqp.messaging.Header;
+import org.apache.qpid.proton4j.amqp.transport.Disposition;
+import org.apache.qpid.proton4j.amqp.transport.Role;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonByteBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
+import org.junit.Test;
+
+/**
+ * Test for the Encoder batch write methods
+ */
+public class BatchEncodingCodecTest extends CodecTestSupport {
+
+    @Test
+    public void testWriteObjectsMatchesIndividualWrites() throws IOException {
+        List<Disposition> dispositions = new ArrayList<>();
+        for (int i = 0; i < LARGE_SIZE; ++i) {
+            Disposition disposition = new Disposition();
+            disposition.setRole(Role.RECEIVER);
+            disposition.setFirst(UnsignedInteger.valueOf(i));
+            disposition.setSettled(true);
+            disposition.setState(Accepted.getInstance());
+            dispositions.add(disposition);
+        }
+
+        ProtonBuffer expected = ProtonByteBufferAllocator.DEFAULT.allocate();
+        for (Disposition disposition : dispositions) {
+            encoder.writeObject(expected, encoderState, disposition);
+        }
+
+        ProtonBuffer actual = ProtonByteBufferAllocator.DEFAULT.allocate();
+        encoder.writeObjects(actual, encoderState, dispositions);
+
+        assertEquals(expected, actual);
+
+        for (int i = 0; i < LARGE_SIZE; ++i) {
+            Disposition decoded = decoder.readObject(actual, decoderState, Disposition.class);
+            assertEquals(i, decoded.getFirst().intValue());
+            assertEquals(Role.RECEIVER, decoded.getRole());
+            assertTrue(decoded.getSettled());
+            assertTrue(decoded.getState() instanceof Accepted);
+        }
+
+        assertFalse(actual.isReadable());
+    }
+
+    @Test
+    public void testWriteObjectsOfMixedTypes() throws IOException {
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        Header header = new Header();
+        header.setDurable(true);
+
+        encoder.writeObjects(buffer, encoderState, header, null, new AmqpValue("test"), "string", Arrays.asList(1, 2));
+
+        Header decodedHeader = decoder.readObject(buffer, decoderState, Header.class);
+        assertTrue(decodedHeader.isDurable());
+        assertNull(decoder.readObject(buffer, decoderState));
+        AmqpValue decodedValue = decoder.readObject(buffer, decoderState, AmqpValue.class);
+        assertEquals("test", decodedValue.getValue());
+        assertEquals("string", decoder.readString(buffer, decoderState));
+        assertEquals(Arrays.asList(1, 2), decoder.readList(buffer, decoderState));
+        assertFalse(buffer.isReadable());
+    }
+
+    @Test
+    public void testWriteObjectsReservesCapacityUpFront() throws IOException {
+        GrowthCountingBuffer buffer = new GrowthCountingBuffer(16);
+
+        Object[] values = new Object[SMALL_SIZE];
+        Arrays.fill(values, "0123456789");
+
+        encoder.writeObjects(buffer, encoderState, values);
+
+        // Each string encodes to the same size so the estimate made after the first element
+        // covers the batch and the buffer grows only the one time.
+        assertEquals(1, buffer.getGrowthCount());
+        assertEquals(12 * SMALL_SIZE, buffer.getReadableBytes());
+        for (int i = 0; i < SMALL_SIZE; ++i) {
+            assertEquals("0123456789", decoder.readString(buffer, decoderState));
+        }
+    }
+
+    @Test
+    public void testWriteObjectsCapsReservationForLargeFirstElement() throws IOException {
+        GrowthCountingBuffer buffer = new GrowthCountingBuffer(16);
+
+        Object[] values = new Object[LARGE_SIZE];
+        Arrays.fill(values, 1, values.length, Boolean.TRUE);
+        values[0] = new Binary(new byte[16 * 1024]);
+
+        encoder.writeObjects(buffer, encoderState, values);
+
+        // Using the first element alone as the estimate would reserve ~16MB here.
+        assertTrue(buffer.capacity() <= 128 * 1024);
+        assertEquals(16 * 1024 + 5 + LARGE_SIZE - 1, buffer.getReadableBytes());
+    }
+
+    @Test
+    public void testWriteObjectsWithEmptyBatch() throws IOException {
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        encoder.writeObjects(buffer, encoderState, new ArrayList<>());
+        encoder.writeObjects(buffer, encoderState);
+
+        assertFalse(buffer.isReadable());
+    }
+
+    private static class GrowthCountingBuffer extends ProtonByteBuffer {
+
+        private int growthCount;
+
+        public GrowthCountingBuffer(int initialCapacity) {
+            super(initialCapacity);
+        }
+
+        @Override
+        public ProtonBuffer capacity(int newCapacity) {
+            if (newCapacity > capacity()) {
+                growthCount++;
+            }
+
+            return super.capacity(newCapacity);
+        }
+
+        public int getGrowthCount() {
+            return growthCount;
+        }
+    }
+}
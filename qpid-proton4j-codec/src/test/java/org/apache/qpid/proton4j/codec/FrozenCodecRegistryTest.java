@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.DescribedType;
+import org.apache.qpid.proton4j.amqp.UnsignedLong;
+import org.apache.qpid.proton4j.amqp.transport.Transfer;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
+import org.apache.qpid.proton4j.codec.decoders.ProtonDecoder;
+import org.apache.qpid.proton4j.codec.decoders.ProtonDecoderFactory;
+import org.apache.qpid.proton4j.codec.encoders.ProtonEncoder;
+import org.apache.qpid.proton4j.codec.encoders.ProtonEncoderFactory;
+import org.apache.qpid.proton4j.codec.util.NoLocalTypeDecoder;
+import org.apache.qpid.proton4j.codec.util.NoLocalTypeEncoder;
+import org.junit.Test;
+
+/**
+ * Tests for frozen Encoder and Decoder registries shared between users.
+ */
+public class FrozenCodecRegistryTest {
+
+    @Test
+    public void testFrozenEncoderRejectsRegistration() {
+        ProtonEncoder encoder = ProtonEncoderFactory.create();
+        assertFalse(encoder.isFrozen());
+        assertSame(encoder, encoder.freeze());
+        assertTrue(encoder.isFrozen());
+
+        try {
+            encoder.registerTypeEncoder(new NoLocalTypeEncoder());
+            fail("Should not be able to register with a frozen encoder");
+        } catch (IllegalStateException ise) {}
+    }
+
+    @Test
+    public void testFrozenDecoderRejectsRegistration() {
+        ProtonDecoder decoder = ProtonDecoderFactory.create();
+        assertFalse(decoder.isFrozen());
+        assertSame(decoder, decoder.freeze());
+        assertTrue(decoder.isFrozen());
+
+        try {
+            decoder.registerTypeDecoder(new NoLocalTypeDecoder());
+            fail("Should not be able to register with a frozen decoder");
+        } catch (IllegalStateException ise) {}
+    }
+
+    @Test
+    public void testCodecFactoryReturnsSharedFrozenDefaults() {
+        assertSame(CodecFactory.getSharedEncoder(), CodecFactory.getSharedEncoder());
+        assertSame(CodecFactory.getSharedDecoder(), CodecFactory.getSharedDecoder());
+        assertSame(CodecFactory.getSharedSaslEncoder(), CodecFactory.getSharedSaslEncoder());
+        assertSame(CodecFactory.getSharedSaslDecoder(), CodecFactory.getSharedSaslDecoder());
+
+        assertNotSame(CodecFactory.getSharedEncoder(), CodecFactory.getSharedSaslEncoder());
+        assertNotSame(CodecFactory.getSharedDecoder(), CodecFactory.getSharedSaslDecoder());
+
+        assertTrue(CodecFactory.getSharedEncoder().isFrozen());
+        assertTrue(CodecFactory.getSharedDecoder().isFrozen());
+        assertTrue(CodecFactory.getSharedSaslEncoder().isFrozen());
+        assertTrue(CodecFactory.getSharedSaslDecoder().isFrozen());
+    }
+
+    @Test
+    public void testCodecFactoryReturnsNewInstancesByDefault() {
+        assertNotSame(CodecFactory.getEncoder(), CodecFactory.getEncoder());
+        assertNotSame(CodecFactory.getDecoder(), CodecFactory.getDecoder());
+        assertNotSame(CodecFactory.getSaslEncoder(), CodecFactory.getSaslEncoder());
+        assertNotSame(CodecFactory.getSaslDecoder(), CodecFactory.getSaslDecoder());
+
+        assertFalse(CodecFactory.getEncoder().isFrozen());
+        assertFalse(CodecFactory.getDecoder().isFrozen());
+
+        assertNotSame(CodecFactory.getSharedEncoder(), CodecFactory.getEncoder());
+        assertNotSame(CodecFactory.getSharedDecoder(), CodecFactory.getDecoder());
+    }
+
+    @Test
+    public void testFrozenEncoderResolvesUnregisteredTypes() {
+        ProtonEncoder encoder = ProtonEncoderFactory.create().freeze();
+
+        assertSame(encoder.getTypeEncoder(ArrayList.class), encoder.getTypeEncoder(ArrayList.class));
+        assertNotNull(encoder.getTypeEncoder(Collections.emptyList().getClass()));
+        assertNotNull(encoder.getTypeEncoder(Collections.emptyList().getClass()));
+        assertNotNull(encoder.getTypeEncoder(new int[0].getClass()));
+        assertNull(encoder.getTypeEncoder(Thread.class));
+    }
+
+    @Test
+    public void testFrozenDecoderReadsUnknownDescribedTypes() throws Exception {
+        Encoder encoder = CodecFactory.getSharedEncoder();
+        Decoder decoder = CodecFactory.getSharedDecoder();
+        EncoderState encoderState = encoder.newEncoderState();
+        DecoderState decoderState = decoder.newDecoderState();
+
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        for (int i = 0; i < 2; ++i) {
+            encoder.writeObject(buffer, encoderState, new TestDescribedType("test"));
+
+            Object result = decoder.readObject(buffer, decoderState);
+            assertTrue(result instanceof DescribedType);
+            assertEquals("test", ((DescribedType) result).getDescribed());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testSharedCodecsUsedConcurrently() throws Exception {
+        final Encoder encoder = CodecFactory.getSharedEncoder();
+        final Decoder decoder = CodecFactory.getSharedDecoder();
+        final int threads = 4;
+        final int iterations = 2000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < threads; ++t) {
+                final int threadId = t;
+                results.add(executor.submit(new Callable<Boolean>() {
+
+                    @Override
+                    public Boolean call() throws Exception {
+                        EncoderState encoderState = encoder.newEncoderState();
+                        DecoderState decoderState = decoder.newDecoderState();
+                        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+                        for (int i = 0; i < iterations; ++i) {
+                            Transfer transfer = new Transfer();
+                            transfer.setHandle(threadId);
+                            transfer.setDeliveryId(i);
+                            transfer.setDeliveryTag(new Binary(new byte[] { (byte) threadId, (byte) i }));
+
+                            buffer.setReadIndex(0);
+                            buffer.setWriteIndex(0);
+
+                            encoder.writeObject(buffer, encoderState, transfer);
+                            encoder.writeObject(buffer, encoderState, new ArrayList<>());
+
+                            Transfer decoded = (Transfer) decoder.readObject(buffer, decoderState);
+                            if (decoded.getHandle() != threadId || decoded.getDeliveryId() != i ||
+                                !transfer.getDeliveryTag().equals(decoded.getDeliveryTag())) {
+                                return false;
+                            }
+
+                            if (!(decoder.readObject(buffer, decoderState) instanceof List)) {
+                                return false;
+                            }
+                        }
+
+                        return true;
+                    }
+                }));
+            }
+
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private static class TestDescribedType implements DescribedType {
+
+        private static final UnsignedLong DESCRIPTOR = UnsignedLong.valueOf(0x0000468C00000020L);
+
+        private final String described;
+
+        public TestDescribedType(String described) {
+            this.described = described;
+        }
+
+        @Override
+        public Object getDescriptor() {
+            return DESCRIPTOR;
+        }
+
+        @Override
+        public Object getDescribed() {
+            return described;
+        }
+    }
+}
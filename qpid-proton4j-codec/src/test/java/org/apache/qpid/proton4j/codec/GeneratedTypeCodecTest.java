@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.Symbol;
+import org.apache.qpid.proton4j.amqp.UnsignedInteger;
+import org.apache.qpid.proton4j.amqp.messaging.Accepted;
+import org.apache.qpid.proton4j.amqp.transport.Disposition;
+import org.apache.qpid.proton4j.amqp.transport.Flow;
+import org.apache.qpid.proton4j.amqp.transport.ReceiverSettleMode;
+import org.apache.qpid.proton4j.amqp.transport.Role;
+import org.apache.qpid.proton4j.amqp.transport.Transfer;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
+import org.apache.qpid.proton4j.codec.decoders.transport.TransferTypeDecoder;
+import org.apache.qpid.proton4j.codec.encoders.transport.TransferTypeEncoder;
+import org.apache.qpid.proton4j.codec.util.ConsumerFilterType;
+import org.apache.qpid.proton4j.codec.util.ConsumerFilterTypeDecoder;
+import org.apache.qpid.proton4j.codec.util.ConsumerFilterTypeEncoder;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the codecs generated from types annotated with DescribedListType
+ */
+public class GeneratedTypeCodecTest extends CodecTestSupport {
+
+    @Override
+    @Before
+    public void setUp() {
+        super.setUp();
+
+        encoder.registerTypeEncoder(new ConsumerFilterTypeEncoder());
+        decoder.registerTypeDecoder(new ConsumerFilterTypeDecoder());
+    }
+
+    @Test
+    public void testEncodeDecodeFullyPopulatedType() throws IOException {
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        ConsumerFilterType filter = new ConsumerFilterType();
+        filter.setPriority(Integer.MAX_VALUE + 1l);
+        filter.setSelector("color = 'red'");
+        filter.setName(Symbol.valueOf("filter"));
+        filter.setDurable(true);
+        filter.setToken(new Binary(new byte[] { 1, 2, 3 }));
+
+        encoder.writeObject(buffer, encoderState, filter);
+
+        Object result = decoder.readObject(buffer, decoderState);
+        assertTrue(result instanceof ConsumerFilterType);
+        ConsumerFilterType decoded = (ConsumerFilterType) result;
+
+        assertEquals(filter.getPriority(), decoded.getPriority());
+        assertEquals(filter.getSelector(), decoded.getSelector());
+        assertEquals(filter.getName(), decoded.getName());
+        assertEquals(filter.isDurable(), decoded.isDurable());
+        assertEquals(filter.getToken(), decoded.getToken());
+        assertFalse(buffer.isReadable());
+    }
+
+    @Test
+    public void testEncodeDecodeTypeWithNullElements() throws IOException {
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        ConsumerFilterType filter = new ConsumerFilterType();
+        filter.setName(Symbol.valueOf("filter"));
+
+        encoder.writeObject(buffer, encoderState, filter);
+
+        ConsumerFilterType decoded = decoder.readObject(buffer, decoderState, ConsumerFilterType.class);
+        assertNotNull(decoded);
+        assertEquals(0, decoded.getPriority());
+        assertNull(decoded.getSelector());
+        assertEquals(filter.getName(), decoded.getName());
+        assertFalse(decoded.isDurable());
+        assertNull(decoded.getToken());
+        assertFalse(buffer.isReadable());
+    }
+
+    @Test
+    public void testEncodeDecodeArrayOfType() throws IOException {
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        ConsumerFilterType[] filters = new ConsumerFilterType[3];
+        for (int i = 0; i < filters.length; ++i) {
+            filters[i] = new ConsumerFilterType();
+            filters[i].setPriority(i);
+            filters[i].setSelector("selector-" + i);
+        }
+
+        encoder.writeArray(buffer, encoderState, filters);
+
+        Object result = decoder.readObject(buffer, decoderState);
+        assertTrue(result.getClass().isArray());
+
+        Object[] decoded = (Object[]) result;
+        assertEquals(filters.length, decoded.length);
+        for (int i = 0; i < filters.length; ++i) {
+            ConsumerFilterType filter = (ConsumerFilterType) decoded[i];
+            assertEquals(i, filter.getPriority());
+            assertEquals("selector-" + i, filter.getSelector());
+        }
+    }
+
+    @Test
+    public void testBuiltInPerformativesUseGeneratedCodecs() {
+        assertTrue(encoder.getTypeEncoder(new Transfer()) instanceof TransferTypeEncoder);
+        assertTrue(decoder.getTypeDecoder(new Transfer()) instanceof TransferTypeDecoder);
+    }
+
+    @Test
+    public void testEncodeDecodeTransfer() throws IOException {
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        Transfer transfer = new Transfer();
+        transfer.setHandle(1);
+        transfer.setDeliveryId(0xFFFFFFFFL);
+        transfer.setDeliveryTag(new Binary(new byte[] { 0, 1, 2 }));
+        transfer.setMore(true);
+        transfer.setRcvSettleMode(ReceiverSettleMode.SECOND);
+        transfer.setState(Accepted.getInstance());
+
+        encoder.writeObject(buffer, encoderState, transfer);
+
+        // Small enough to be written as a LIST8
+        assertEquals(EncodingCodes.LIST8, buffer.getByte(3));
+
+        Transfer decoded = decoder.readObject(buffer, decoderState, Transfer.class);
+        assertEquals(1, decoded.getHandle());
+        assertEquals(0xFFFFFFFFL, decoded.getDeliveryId());
+        assertEquals(transfer.getDeliveryTag(), decoded.getDeliveryTag());
+        assertFalse(decoded.hasMessageFormat());
+        assertFalse(decoded.hasSettled());
+        assertTrue(decoded.getMore());
+        assertEquals(ReceiverSettleMode.SECOND, decoded.getRcvSettleMode());
+        assertTrue(decoded.getState() instanceof Accepted);
+        assertFalse(decoded.hasAborted());
+        assertEquals(transfer.getElementCount(), decoded.getElementCount());
+        assertFalse(buffer.isReadable());
+    }
+
+    @Test
+    public void testEncodeDecodeTransferWidenedToList32() throws IOException {
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        Transfer transfer = new Transfer();
+        transfer.setHandle(0);
+        transfer.setDeliveryTag(new Binary(new byte[300]));
+        transfer.setAborted(true);
+
+        encoder.writeObject(buffer, encoderState, transfer);
+
+        assertEquals(EncodingCodes.LIST32, buffer.getByte(3));
+
+        Transfer decoded = decoder.readObject(buffer, decoderState, Transfer.class);
+        assertEquals(0, decoded.getHandle());
+        assertEquals(300, decoded.getDeliveryTag().getLength());
+        assertTrue(decoded.getAborted());
+        assertFalse(buffer.isReadable());
+    }
+
+    @Test
+    public void testEncodeDecodeFlow() throws IOException {
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        Flow flow = new Flow();
+        flow.setNextIncomingId(1);
+        flow.setIncomingWindow(2048);
+        flow.setNextOutgoingId(3);
+        flow.setOutgoingWindow(0);
+        flow.setLinkCredit(Integer.MAX_VALUE + 1L);
+        flow.setDrain(true);
+
+        encoder.writeObject(buffer, encoderState, flow);
+
+        Flow decoded = decoder.readObject(buffer, decoderState, Flow.class);
+        assertEquals(1, decoded.getNextIncomingId());
+        assertEquals(2048, decoded.getIncomingWindow());
+        assertEquals(3, decoded.getNextOutgoingId());
+        assertTrue(decoded.hasOutgoingWindow());
+        assertFalse(decoded.hasHandle());
+        assertFalse(decoded.hasDeliveryCount());
+        assertEquals(Integer.MAX_VALUE + 1L, decoded.getLinkCredit());
+        assertTrue(decoded.getDrain());
+        assertFalse(decoded.hasEcho());
+        assertNull(decoded.getProperties());
+        assertFalse(buffer.isReadable());
+    }
+
+    @Test
+    public void testEncodeDecodeDisposition() throws IOException {
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        Disposition disposition = new Disposition();
+        disposition.setRole(Role.RECEIVER);
+        disposition.setFirst(UnsignedInteger.valueOf(2));
+        disposition.setLast(UnsignedInteger.valueOf(10));
+        disposition.setSettled(true);
+        disposition.setState(Accepted.getInstance());
+
+        encoder.writeObject(buffer, encoderState, disposition);
+
+        Disposition decoded = decoder.readObject(buffer, decoderState, Disposition.class);
+        assertEquals(Role.RECEIVER, decoded.getRole());
+        assertEquals(disposition.getFirst(), decoded.getFirst());
+        assertEquals(disposition.getLast(), decoded.getLast());
+        assertTrue(decoded.getSettled());
+        assertTrue(decoded.getState() instanceof Accepted);
+        assertFalse(decoded.getBatchable());
+        assertFalse(buffer.isReadable());
+    }
+}
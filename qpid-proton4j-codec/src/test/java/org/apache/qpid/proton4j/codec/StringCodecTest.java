@@ -16,12 +16,14 @@
  */
 package org.apache.qpid.proton4j.codec;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 import org.apache.qpid.proton4j.buffer.ProtonBuffer;
 import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
@@ -60,6 +62,51 @@ public class StringCodecTest extends CodecTestSupport {
         doTestEncodeDecode(null);
     }
 
+    @Test
+    public void testEncodeSmallStringWithMultiByteCharacters() throws IOException {
+        doTestEncodeDecode("Gr\u00fc\u00dfe \u20ac \ud83d\ude00");
+    }
+
+    @Test
+    public void testEncodeLargeStringWithMultiByteCharacters() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < LARGE_SIZE; ++i) {
+            builder.append("abc\u00e9\u4e2d\ud834\udd1e");
+        }
+
+        doTestEncodeDecode(builder.toString());
+    }
+
+    @Test
+    public void testEncodeStringWithTrailingMultiByteCharacter() throws IOException {
+        doTestEncodeDecode(LARGE_STRING_VALUIE + "\u00ff");
+    }
+
+    @Test
+    public void testEncodedBytesMatchUTF8Encoding() throws IOException {
+        String value = LARGE_STRING_VALUIE + " \u00fc\u0800\uffff\ud83d\ude00";
+        byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate(1, Integer.MAX_VALUE);
+
+        encoder.writeString(buffer, encoderState, value);
+
+        assertEquals(EncodingCodes.STR32, buffer.readByte());
+        assertEquals(expected.length, buffer.readInt());
+
+        byte[] actual = new byte[buffer.getReadableBytes()];
+        buffer.readBytes(actual);
+
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncodeStringWithUnpairedSurrogateFails() throws IOException {
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        encoder.writeString(buffer, encoderState, "invalid \ud83d");
+    }
+
     private void doTestEncodeDecode(String value) throws IOException {
         ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
 
@@ -135,4 +135,78 @@ public class SymbolTypeCodecTest extends CodecTestSupport {
             assertEquals(source[i], array[i]);
         }
     }
+
+    @Test
+    public void testSmallSymbolEncodedAsSym8() throws IOException {
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        encoder.writeSymbol(buffer, encoderState, Symbol.valueOf(SMALL_SYMBOL_VALUIE));
+
+        assertEquals(SMALL_SYMBOL_VALUIE.length() + 2, buffer.getReadableBytes());
+        assertEquals(EncodingCodes.SYM8, buffer.readByte());
+        assertEquals(SMALL_SYMBOL_VALUIE.length(), buffer.readByte() & 0xff);
+    }
+
+    @Test
+    public void testRepeatedSymbolWritesProduceSameEncoding() throws IOException {
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        Symbol cached = Symbol.valueOf(SMALL_SYMBOL_VALUIE);
+        Symbol uncached = Symbol.valueOf(LARGE_SYMBOL_VALUIE.substring(0, 128));
+
+        encoder.writeSymbol(buffer, encoderState, cached);
+        encoder.writeSymbol(buffer, encoderState, cached);
+        encoder.writeSymbol(buffer, encoderState, uncached);
+        encoder.writeSymbol(buffer, encoderState, uncached);
+
+        assertEquals(2 * (SMALL_SYMBOL_VALUIE.length() + 2) + 2 * (128 + 2), buffer.getReadableBytes());
+        assertEquals(cached, decoder.readSymbol(buffer, decoderState));
+        assertEquals(cached, decoder.readSymbol(buffer, decoderState));
+        assertEquals(uncached, decoder.readSymbol(buffer, decoderState));
+        assertEquals(uncached, decoder.readSymbol(buffer, decoderState));
+    }
+
+    @Test
+    public void testLargeSymbolEncodedAsSym32() throws IOException {
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        encoder.writeSymbol(buffer, encoderState, Symbol.valueOf(LARGE_SYMBOL_VALUIE));
+
+        assertEquals(LARGE_SYMBOL_VALUIE.length() + 5, buffer.getReadableBytes());
+        assertEquals(EncodingCodes.SYM32, buffer.readByte());
+        assertEquals(LARGE_SYMBOL_VALUIE.length(), buffer.readInt());
+    }
+
+    @Test
+    public void testSymbolArrayUsesSym8ElementsWhenAllFit() throws IOException {
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        Symbol[] source = new Symbol[] { Symbol.valueOf("ANONYMOUS"), Symbol.valueOf("PLAIN") };
+
+        encoder.writeArray(buffer, encoderState, source);
+
+        // Array constructor, size and count precede the element constructor
+        assertEquals(EncodingCodes.SYM8, buffer.getByte(9));
+
+        Symbol[] result = (Symbol[]) decoder.readObject(buffer, decoderState);
+        assertEquals(source.length, result.length);
+        assertEquals(source[0], result[0]);
+        assertEquals(source[1], result[1]);
+    }
+
+    @Test
+    public void testSymbolArrayUsesSym32ElementsWhenOneIsLarge() throws IOException {
+        ProtonBuffer buffer = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        Symbol[] source = new Symbol[] { Symbol.valueOf(SMALL_SYMBOL_VALUIE), Symbol.valueOf(LARGE_SYMBOL_VALUIE) };
+
+        encoder.writeArray(buffer, encoderState, source);
+
+        assertEquals(EncodingCodes.SYM32, buffer.getByte(9));
+
+        Symbol[] result = (Symbol[]) decoder.readObject(buffer, decoderState);
+        assertEquals(source.length, result.length);
+        assertEquals(source[0], result[0]);
+        assertEquals(source[1], result[1]);
+    }
 }
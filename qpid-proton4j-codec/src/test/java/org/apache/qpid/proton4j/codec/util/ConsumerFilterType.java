@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.codec.util;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.Symbol;
+import org.apache.qpid.proton4j.codec.generator.DescribedListField;
+import org.apache.qpid.proton4j.codec.generator.DescribedListType;
+import org.apache.qpid.proton4j.codec.generator.FieldEncoding;
+
+/**
+ * A Described List Type whose codecs are generated by the annotation processor.
+ */
+@DescribedListType(code = 0x0000468C00000010L, symbol = "apache.org:consumer-filter:list")
+public class ConsumerFilterType {
+
+    private long priority;
+    private String selector;
+    private Symbol name;
+    private boolean durable;
+    private Binary token;
+
+    public ConsumerFilterType() {
+    }
+
+    @DescribedListField(index = 0, encoding = FieldEncoding.UINT)
+    public long getPriority() {
+        return priority;
+    }
+
+    public void setPriority(long priority) {
+        this.priority = priority;
+    }
+
+    @DescribedListField(index = 1)
+    public String getSelector() {
+        return selector;
+    }
+
+    public void setSelector(String selector) {
+        this.selector = selector;
+    }
+
+    @DescribedListField(index = 2)
+    public Symbol getName() {
+        return name;
+    }
+
+    public void setName(Symbol name) {
+        this.name = name;
+    }
+
+    @DescribedListField(index = 3)
+    public boolean isDurable() {
+        return durable;
+    }
+
+    public void setDurable(boolean durable) {
+        this.durable = durable;
+    }
+
+    @DescribedListField(index = 4)
+    public Binary getToken() {
+        return token;
+    }
+
+    public void setToken(Binary token) {
+        this.token = token;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine;
+
+/**
+ * AMQP Connection endpoint.
+ */
+public interface Connection extends Endpoint {
+
+    @Override
+    Connection open();
+
+    @Override
+    Connection close();
+
+    /**
+     * Creates a new Session on this Connection, the Session must be opened before use.
+     *
+     * @return a new Session.
+     */
+    Session session();
+
+    /**
+     * Sets the listener that is notified of remote activity on this Connection and on
+     * all of its Sessions, Links and Deliveries.
+     *
+     * @param listener
+     *      the listener to notify.
+     */
+    void setListener(EngineListener listener);
+
+    /**
+     * @return the listener notified of remote activity.
+     */
+    EngineListener getListener();
+
+    String getContainerId();
+
+    void setContainerId(String containerId);
+
+    String getHostname();
+
+    void setHostname(String hostname);
+
+    /**
+     * @return the largest frame this end of the Connection will accept.
+     */
+    int getMaxFrameSize();
+
+    void setMaxFrameSize(int maxFrameSize);
+
+    /**
+     * @return the highest channel number that the peer may use for a Session.
+     */
+    int getChannelMax();
+
+    void setChannelMax(int channelMax);
+
+    /**
+     * @return the idle timeout in milliseconds requested of the peer, or zero for none.
+     */
+    int getIdleTimeout();
+
+    void setIdleTimeout(int idleTimeout);
+
+    /**
+     * Sets the number of delivery updates a Session may hold back so that updates sharing
+     * an outcome are written as one Disposition covering a range of delivery ids.  Held
+     * updates are written once the limit is reached, once the delay has elapsed or when
+     * {@link #flushDispositions()} is called.  A batch size of one, the default, writes
+     * each update as it is made.
+     *
+     * @param maxBatchSize
+     *      the maximum number of updates held by each Session.
+     */
+    void setMaxDispositionBatchSize(int maxBatchSize);
+
+    int getMaxDispositionBatchSize();
+
+    /**
+     * Sets how long batched delivery updates may be held.  With the default delay of zero
+     * held updates are written when the engine next flushes its output, at the end of
+     * processing incoming frames and of each call into the endpoints, so the updates made
+     * while processing a batch of incoming frames are written together at its end.  A
+     * longer delay is enforced by a timeout on the engine's timing wheel that starts when
+     * the first update is held, an engine without a timing wheel holds the updates until
+     * the batch fills or {@link #flushDispositions()} is called.
+     *
+     * @param maxDelay
+     *      the maximum time in milliseconds that an update is held.
+     */
+    void setMaxDispositionDelay(long maxDelay);
+
+    long getMaxDispositionDelay();
+
+    /**
+     * Writes any delivery updates held for batching on all Sessions of this Connection.
+     */
+    void flushDispositions();
+
+    String getRemoteContainerId();
+
+    String getRemoteHostname();
+
+    /**
+     * @return the largest frame the peer will accept, valid once the remote end has opened.
+     */
+    int getRemoteMaxFrameSize();
+
+    /**
+     * @return the highest channel number the peer allows, valid once the remote end has opened.
+     */
+    int getRemoteChannelMax();
+
+    /**
+     * @return the idle timeout in milliseconds the peer requested, or zero for none.
+     */
+    int getRemoteIdleTimeout();
+
+}
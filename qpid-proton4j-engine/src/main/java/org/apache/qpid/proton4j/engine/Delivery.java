@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine;
+
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.DeliveryState;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+
+/**
+ * A message transfer on a Link and the state the two ends agree on for it.
+ */
+public interface Delivery {
+
+    /**
+     * @return the Link the delivery was sent or received on.
+     */
+    Link getLink();
+
+    /**
+     * @return the delivery tag.
+     */
+    Binary getTag();
+
+    /**
+     * @return true if this is an incoming delivery for which more transfer frames are expected.
+     */
+    boolean isPartial();
+
+    /**
+     * Returns the payload received so far for an incoming delivery.  For a delivery on a
+     * streaming {@link Receiver} this is a composite of the Transfer payloads that have not
+     * yet been read, payload that has been read is released as further Transfers arrive.
+     * The payload is released once the delivery is settled or aborted, after which the
+     * delivery has an empty payload.
+     *
+     * @return the payload of an incoming delivery, or null for an outgoing delivery.
+     */
+    ProtonBuffer getPayload();
+
+    /**
+     * @return the total bytes of payload received for an incoming delivery, including any already read.
+     */
+    long getPayloadSize();
+
+    /**
+     * Returns a stream view that reads and consumes the payload of an incoming delivery.
+     * <p>
+     * The stream never blocks, a read that finds no payload buffered while more Transfers
+     * are expected fails with an IOException and the end of stream is only reported once
+     * the final Transfer has arrived and been read.  Use {@link InputStream#available()}
+     * to read what has arrived from within {@link EngineListener#onDelivery(Delivery)}.
+     *
+     * @return an InputStream over the payload of this incoming delivery.
+     *
+     * @throws IllegalStateException if this is an outgoing delivery.
+     */
+    InputStream getInputStream();
+
+    /**
+     * Returns a channel view that reads and consumes the payload of an incoming delivery,
+     * a read returns zero when no payload is buffered and more Transfers are expected.
+     *
+     * @return a ReadableByteChannel over the payload of this incoming delivery.
+     *
+     * @throws IllegalStateException if this is an outgoing delivery.
+     */
+    ReadableByteChannel getReadableChannel();
+
+    DeliveryState getLocalState();
+
+    DeliveryState getRemoteState();
+
+    /**
+     * Returns true if the sender aborted an incoming delivery before sending all of it.
+     * An aborted delivery is settled at both ends and any payload received for it has
+     * been discarded.
+     *
+     * @return true if the peer aborted this incoming delivery.
+     */
+    boolean isAborted();
+
+    /**
+     * @return true if this end has settled the delivery.
+     */
+    boolean isSettled();
+
+    /**
+     * @return true if the peer has settled the delivery.
+     */
+    boolean isRemotelySettled();
+
+    /**
+     * Updates the local state of the delivery and sends it to the peer.
+     *
+     * @param state
+     *      the new delivery state.
+     * @param settle
+     *      true if the delivery should also be settled.
+     */
+    void disposition(DeliveryState state, boolean settle);
+
+    /**
+     * Settles the delivery, informing the peer unless it settled first.
+     */
+    void settle();
+
+}
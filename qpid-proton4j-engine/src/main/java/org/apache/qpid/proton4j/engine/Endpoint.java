@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine;
+
+import org.apache.qpid.proton4j.amqp.transport.ErrorCondition;
+
+/**
+ * Common interface for the AMQP Connection, Session and Link endpoints.
+ * <p>
+ * Each endpoint tracks the state of both its local and its remote end, the local end is
+ * driven by calls to {@link #open()} and {@link #close()} while the remote end follows the
+ * performatives received from the peer.
+ */
+public interface Endpoint {
+
+    /**
+     * Opens the local end of this endpoint.
+     *
+     * @return this endpoint.
+     *
+     * @throws IllegalStateException if the endpoint has already been closed.
+     */
+    Endpoint open();
+
+    /**
+     * Closes the local end of this endpoint, sending the current error condition if set.
+     *
+     * @return this endpoint.
+     */
+    Endpoint close();
+
+    /**
+     * @return the state of the local end of this endpoint.
+     */
+    EndpointState getLocalState();
+
+    /**
+     * @return the state of the remote end of this endpoint.
+     */
+    EndpointState getRemoteState();
+
+    /**
+     * @return the error condition sent when this endpoint is closed, or null if none set.
+     */
+    ErrorCondition getCondition();
+
+    /**
+     * Sets the error condition sent to the peer when this endpoint is closed.
+     *
+     * @param condition
+     *      the error condition to send, or null for none.
+     */
+    void setCondition(ErrorCondition condition);
+
+    /**
+     * @return the error condition the peer sent when it closed its end, or null if none.
+     */
+    ErrorCondition getRemoteCondition();
+
+    /**
+     * @return the application object attached to this endpoint.
+     */
+    Object getAttachment();
+
+    /**
+     * Attaches an application object to this endpoint.
+     *
+     * @param attachment
+     *      the object to attach, or null to clear any current attachment.
+     */
+    void setAttachment(Object attachment);
+
+}
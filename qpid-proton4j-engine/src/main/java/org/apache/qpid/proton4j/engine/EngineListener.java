@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine;
+
+/**
+ * Listener notified of the remote activity on a Connection and its endpoints.
+ * <p>
+ * Notifications are made from within the Transport pipeline while the frame that caused
+ * them is processed, all methods default to doing nothing.
+ */
+public interface EngineListener {
+
+    default void onConnectionRemoteOpen(Connection connection) {
+    }
+
+    default void onConnectionRemoteClose(Connection connection) {
+    }
+
+    /**
+     * Called when the peer begins or answers the beginning of a Session.  A Session the peer
+     * began must be opened locally to complete it.
+     *
+     * @param session
+     *      the Session whose remote end is now active.
+     */
+    default void onSessionRemoteOpen(Session session) {
+    }
+
+    default void onSessionRemoteClose(Session session) {
+    }
+
+    /**
+     * Called when the peer attaches or answers the attach of a Link.  A Link the peer
+     * attached must be opened locally to complete it.
+     *
+     * @param link
+     *      the Link whose remote end is now active.
+     */
+    default void onLinkRemoteOpen(Link link) {
+    }
+
+    default void onLinkRemoteClose(Link link) {
+    }
+
+    /**
+     * Called when the peer updates the flow state, and so possibly the credit, of a Link.
+     *
+     * @param link
+     *      the Link whose flow state changed.
+     */
+    default void onLinkFlow(Link link) {
+    }
+
+    /**
+     * Called for each transfer frame received for an incoming delivery, the delivery is
+     * complete once {@link Delivery#isPartial()} returns false.
+     *
+     * @param delivery
+     *      the incoming delivery.
+     */
+    default void onDelivery(Delivery delivery) {
+    }
+
+    /**
+     * Called when the peer updates the state of a delivery or settles it.
+     *
+     * @param delivery
+     *      the delivery that was updated.
+     */
+    default void onDeliveryUpdated(Delivery delivery) {
+    }
+
+    /**
+     * Called once when the Transport carrying the Connection fails, whether the failure
+     * came from the IO side or from the engine itself.  No further frames are read or
+     * written for the Connection and its idle timeout is no longer checked.
+     *
+     * @param connection
+     *      the Connection whose Transport failed.
+     * @param cause
+     *      the error that failed the Transport.
+     */
+    default void onTransportFailed(Connection connection, Throwable cause) {
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine;
+
+import org.apache.qpid.proton4j.amqp.messaging.Source;
+import org.apache.qpid.proton4j.amqp.messaging.Target;
+import org.apache.qpid.proton4j.amqp.transport.ReceiverSettleMode;
+import org.apache.qpid.proton4j.amqp.transport.Role;
+import org.apache.qpid.proton4j.amqp.transport.SenderSettleMode;
+
+/**
+ * AMQP Link endpoint, the common base of {@link Sender} and {@link Receiver}.
+ */
+public interface Link extends Endpoint {
+
+    @Override
+    Link open();
+
+    @Override
+    Link close();
+
+    /**
+     * @return the Session this Link belongs to.
+     */
+    Session getSession();
+
+    String getName();
+
+    /**
+     * @return the role this end of the Link plays.
+     */
+    Role getRole();
+
+    Source getSource();
+
+    void setSource(Source source);
+
+    Target getTarget();
+
+    void setTarget(Target target);
+
+    SenderSettleMode getSenderSettleMode();
+
+    void setSenderSettleMode(SenderSettleMode mode);
+
+    ReceiverSettleMode getReceiverSettleMode();
+
+    void setReceiverSettleMode(ReceiverSettleMode mode);
+
+    Source getRemoteSource();
+
+    Target getRemoteTarget();
+
+    SenderSettleMode getRemoteSenderSettleMode();
+
+    ReceiverSettleMode getRemoteReceiverSettleMode();
+
+    /**
+     * @return the number of deliveries the sender may currently send on this Link.
+     */
+    long getCredit();
+
+    /**
+     * @return the delivery count of this Link as defined by the AMQP flow control rules.
+     */
+    long getDeliveryCount();
+
+}
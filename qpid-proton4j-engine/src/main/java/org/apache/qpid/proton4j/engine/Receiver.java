@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine;
+
+import org.apache.qpid.proton4j.engine.credit.CreditPolicy;
+
+/**
+ * Receiving end of an AMQP Link.
+ * <p>
+ * Incoming deliveries are announced through {@link EngineListener#onDelivery(Delivery)}.
+ */
+public interface Receiver extends Link {
+
+    @Override
+    Receiver open();
+
+    @Override
+    Receiver close();
+
+    /**
+     * Grants the sender credit for additional deliveries.
+     *
+     * @param credit
+     *      the number of deliveries to add to the current credit.
+     */
+    void flow(int credit);
+
+    /**
+     * Assigns a policy that grants credit automatically as deliveries are consumed.  The
+     * policy must be set before the Receiver is opened and is in addition to any credit
+     * granted through {@link #flow(int)}.
+     *
+     * @param policy
+     *      the credit policy for this Receiver, or null to manage credit manually.
+     */
+    void setCreditPolicy(CreditPolicy policy);
+
+    /**
+     * @return the credit policy of this Receiver, or null if credit is managed manually.
+     */
+    CreditPolicy getCreditPolicy();
+
+    /**
+     * Controls how the payload of incoming deliveries is held.  By default the Transfer
+     * payloads of a delivery are accumulated into a single buffer, when streaming each
+     * Transfer's payload is kept as it arrived and released once read so that a large
+     * delivery can be processed with memory bounded by the payload not yet consumed.
+     * The setting applies to deliveries that begin after it is changed.
+     *
+     * @param streaming
+     *      true if incoming payload should be streamed rather than accumulated.
+     */
+    void setStreaming(boolean streaming);
+
+    /**
+     * @return true if incoming payload is streamed rather than accumulated.
+     */
+    boolean isStreaming();
+
+}
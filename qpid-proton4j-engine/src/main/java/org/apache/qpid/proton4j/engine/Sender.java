@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+
+/**
+ * Sending end of an AMQP Link.
+ */
+public interface Sender extends Link {
+
+    @Override
+    Sender open();
+
+    @Override
+    Sender close();
+
+    /**
+     * @return true if the Link is open and the receiver has granted credit for another delivery.
+     */
+    boolean isSendable();
+
+    /**
+     * Sends a complete message as a new delivery.
+     * <p>
+     * The payload is written out before this method returns and is not retained.  When the
+     * Link uses the settled sender settle mode the delivery is sent pre-settled.  A payload
+     * larger than the peer's max-frame-size allows is sent as a series of Transfer frames.
+     *
+     * @param tag
+     *      the delivery tag that identifies the delivery on this Link.
+     * @param payload
+     *      the encoded message.
+     *
+     * @return the Delivery that tracks the outcome of the transfer.
+     *
+     * @throws IllegalStateException if the Sender is not sendable.
+     */
+    Delivery send(Binary tag, Binary payload);
+
+    /**
+     * Sends the readable bytes of the given buffer as a new delivery, consuming them.
+     * <p>
+     * A buffer with a backing array is framed directly from that array, any other buffer
+     * is copied once before it is written.
+     *
+     * @param tag
+     *      the delivery tag that identifies the delivery on this Link.
+     * @param payload
+     *      the buffer holding the encoded message.
+     *
+     * @return the Delivery that tracks the outcome of the transfer.
+     *
+     * @throws IllegalStateException if the Sender is not sendable.
+     *
+     * @see #send(Binary, Binary)
+     */
+    Delivery send(Binary tag, ProtonBuffer payload);
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine;
+
+/**
+ * AMQP Session endpoint.
+ */
+public interface Session extends Endpoint {
+
+    @Override
+    Session open();
+
+    @Override
+    Session close();
+
+    /**
+     * @return the Connection this Session belongs to.
+     */
+    Connection getConnection();
+
+    /**
+     * Creates a new sending Link on this Session, the Link must be opened before use.
+     *
+     * @param name
+     *      the name of the link.
+     *
+     * @return a new Sender.
+     */
+    Sender sender(String name);
+
+    /**
+     * Creates a new receiving Link on this Session, the Link must be opened before use.
+     *
+     * @param name
+     *      the name of the link.
+     *
+     * @return a new Receiver.
+     */
+    Receiver receiver(String name);
+
+    /**
+     * @return the highest link handle the peer may use on this Session.
+     */
+    long getHandleMax();
+
+    void setHandleMax(long handleMax);
+
+    /**
+     * @return the number of Transfer frames the peer may send before this end renews the window.
+     */
+    int getIncomingWindow();
+
+    /**
+     * Sets the incoming window of the Session, the number of Transfer frames the peer may
+     * send before this end must renew the window.  A change is advertised with the next
+     * Flow written for the Session or any of its Links.
+     *
+     * @param window
+     *      the incoming window in Transfer frames.
+     */
+    void setIncomingWindow(int window);
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.credit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton4j.engine.Delivery;
+import org.apache.qpid.proton4j.engine.Receiver;
+
+/**
+ * Credit policy that sizes its window from the rate at which the application consumes.
+ * <p>
+ * The policy measures how many deliveries are settled over each sample period and sets
+ * the window to the number that would be consumed over the target buffer time at that
+ * rate, bounded by a minimum and a maximum.  A fast consumer is therefore given enough
+ * credit to never wait on a refill while a slow one holds only a few deliveries.  As with
+ * {@link FixedWindowCreditPolicy} the window covers both the sender's credit and the
+ * unsettled deliveries and is refilled with a single Flow once half of it is consumed.
+ */
+public class AdaptiveCreditPolicy implements CreditPolicy {
+
+    private final int minWindow;
+    private final int maxWindow;
+    private final long targetNanos;
+
+    private int window;
+    private int unsettled;
+
+    private long sampleStart;
+    private int sampleCount;
+
+    /**
+     * @param minWindow
+     *      the smallest window, granted at open and kept while the rate is low.
+     * @param maxWindow
+     *      the largest window however fast the application consumes.
+     * @param targetBufferTime
+     *      the length of consumption the window should cover, also the sample period.
+     * @param unit
+     *      the unit of the target buffer time.
+     */
+    public AdaptiveCreditPolicy(int minWindow, int maxWindow, long targetBufferTime, TimeUnit unit) {
+        if (minWindow <= 0 || maxWindow < minWindow) {
+            throw new IllegalArgumentException("Window bounds must be positive with the minimum not above the maximum");
+        }
+        if (targetBufferTime <= 0) {
+            throw new IllegalArgumentException("Target buffer time must be greater than zero");
+        }
+
+        this.minWindow = minWindow;
+        this.maxWindow = maxWindow;
+        this.targetNanos = unit.toNanos(targetBufferTime);
+        this.window = minWindow;
+    }
+
+    /**
+     * @return the current window computed from the observed consumption rate.
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    @Override
+    public void onOpen(Receiver receiver) {
+        sampleStart = nanoTime();
+        refill(receiver);
+    }
+
+    @Override
+    public void onDelivery(Receiver receiver, Delivery delivery) {
+        unsettled++;
+    }
+
+    @Override
+    public void onSettled(Receiver receiver, Delivery delivery) {
+        unsettled--;
+        sampleCount++;
+
+        final long now = nanoTime();
+        final long elapsed = now - sampleStart;
+        if (elapsed >= targetNanos) {
+            // Deliveries consumed per target buffer time at the rate seen over the sample
+            final long consumed = (long) ((double) sampleCount * targetNanos / elapsed);
+
+            window = (int) Math.max(minWindow, Math.min(maxWindow, consumed));
+            sampleStart = now;
+            sampleCount = 0;
+        }
+
+        if (receiver.getCredit() + unsettled <= window / 2) {
+            refill(receiver);
+        }
+    }
+
+    @Override
+    public void onAborted(Receiver receiver, Delivery delivery) {
+        if (receiver.getCredit() + unsettled <= window / 2) {
+            refill(receiver);
+        }
+    }
+
+    /**
+     * @return the current time in nanoseconds, overridable so that tests can control time.
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private void refill(Receiver receiver) {
+        final long grant = window - receiver.getCredit() - unsettled;
+        if (grant > 0) {
+            receiver.flow((int) grant);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.credit;
+
+import org.apache.qpid.proton4j.engine.Delivery;
+import org.apache.qpid.proton4j.engine.Receiver;
+
+/**
+ * Credit policy that bounds the bytes of message data in flight or awaiting consumption.
+ * <p>
+ * AMQP credit counts deliveries, so the policy converts its byte budget into credit using
+ * a running average of the size of the deliveries received, starting from an estimate.
+ * The budget covers the bytes held by unsettled deliveries plus the expected size of the
+ * deliveries the sender still has credit for.  Once the expected total falls to half of
+ * the budget the remainder is granted with a single Flow.
+ */
+public class ByteCreditPolicy implements CreditPolicy {
+
+    // Weight of the newest sample in the average size, as a power of two divisor
+    private static final int AVERAGE_SHIFT = 3;
+
+    private final long maxBytes;
+
+    private long averageSize;
+    private long unsettledBytes;
+
+    /**
+     * @param maxBytes
+     *      the number of bytes that may be in flight or awaiting consumption.
+     * @param estimatedMessageSize
+     *      the expected delivery size used until deliveries have been received.
+     */
+    public ByteCreditPolicy(long maxBytes, int estimatedMessageSize) {
+        if (estimatedMessageSize <= 0) {
+            throw new IllegalArgumentException("Estimated message size must be greater than zero");
+        }
+        if (maxBytes < estimatedMessageSize) {
+            throw new IllegalArgumentException("Byte budget must allow for at least one message");
+        }
+
+        this.maxBytes = maxBytes;
+        this.averageSize = estimatedMessageSize;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the running average delivery size used to convert bytes into credit.
+     */
+    public long getAverageSize() {
+        return averageSize;
+    }
+
+    /**
+     * @return the bytes held by deliveries that have arrived and are not yet settled.
+     */
+    public long getUnsettledBytes() {
+        return unsettledBytes;
+    }
+
+    @Override
+    public void onOpen(Receiver receiver) {
+        refill(receiver);
+    }
+
+    @Override
+    public void onDelivery(Receiver receiver, Delivery delivery) {
+        final long size = delivery.getPayloadSize();
+
+        unsettledBytes += size;
+        averageSize = Math.max(1, averageSize + ((size - averageSize) >> AVERAGE_SHIFT));
+    }
+
+    @Override
+    public void onSettled(Receiver receiver, Delivery delivery) {
+        unsettledBytes -= delivery.getPayloadSize();
+        if (unsettledBytes + receiver.getCredit() * averageSize <= maxBytes / 2) {
+            refill(receiver);
+        }
+    }
+
+    @Override
+    public void onAborted(Receiver receiver, Delivery delivery) {
+        if (unsettledBytes + receiver.getCredit() * averageSize <= maxBytes / 2) {
+            refill(receiver);
+        }
+    }
+
+    private void refill(Receiver receiver) {
+        final long grant = (maxBytes - unsettledBytes) / averageSize - receiver.getCredit();
+        if (grant > 0) {
+            receiver.flow((int) Math.min(grant, Integer.MAX_VALUE));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.credit;
+
+import org.apache.qpid.proton4j.engine.Delivery;
+import org.apache.qpid.proton4j.engine.Receiver;
+
+/**
+ * Policy that decides when a Receiver grants the sender more credit, and how much.
+ * <p>
+ * The policy is told when the Receiver opens, when a complete delivery arrives and when
+ * the application settles a delivery, and replenishes credit by calling
+ * {@link Receiver#flow(int)}.  Each call results in one Flow frame, so a policy should
+ * gather what it grants into as few calls as it can.  A delivery counts as consumed once
+ * it is settled locally, which includes deliveries the sender sent already settled.
+ * <p>
+ * Policies keep state about the Receiver they manage, an instance must not be shared
+ * between Receivers.
+ */
+public interface CreditPolicy {
+
+    /**
+     * Called once when the Receiver is opened so that the policy can grant initial credit.
+     *
+     * @param receiver
+     *      the Receiver managed by this policy.
+     */
+    void onOpen(Receiver receiver);
+
+    /**
+     * Called when the last transfer of an incoming delivery has arrived, before the
+     * delivery is passed to the application.
+     *
+     * @param receiver
+     *      the Receiver managed by this policy.
+     * @param delivery
+     *      the delivery that arrived.
+     */
+    void onDelivery(Receiver receiver, Delivery delivery);
+
+    /**
+     * Called when the application settles a complete incoming delivery.
+     *
+     * @param receiver
+     *      the Receiver managed by this policy.
+     * @param delivery
+     *      the delivery that was settled.
+     */
+    void onSettled(Receiver receiver, Delivery delivery);
+
+    /**
+     * Called when the sender aborts an incoming delivery.  The delivery used a unit of
+     * credit but was never reported through {@link #onDelivery(Receiver, Delivery)} and
+     * will not be settled by the application.
+     *
+     * @param receiver
+     *      the Receiver managed by this policy.
+     * @param delivery
+     *      the delivery that was aborted.
+     */
+    void onAborted(Receiver receiver, Delivery delivery);
+
+}
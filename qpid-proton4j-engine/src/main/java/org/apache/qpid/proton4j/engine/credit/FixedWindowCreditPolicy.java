@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.credit;
+
+import org.apache.qpid.proton4j.engine.Delivery;
+import org.apache.qpid.proton4j.engine.Receiver;
+
+/**
+ * Credit policy that keeps a fixed window of deliveries in flight or awaiting consumption.
+ * <p>
+ * The window counts both the credit held by the sender and the deliveries that have
+ * arrived but are not yet settled, so the application never holds more than the window
+ * however slowly it consumes.  Once that total drops to the low watermark the window is
+ * refilled with a single Flow.
+ */
+public class FixedWindowCreditPolicy implements CreditPolicy {
+
+    private final int window;
+    private final int lowWatermark;
+
+    private int unsettled;
+
+    /**
+     * Creates a policy that refills when half of the window has been consumed.
+     *
+     * @param window
+     *      the number of deliveries that may be outstanding.
+     */
+    public FixedWindowCreditPolicy(int window) {
+        this(window, window / 2);
+    }
+
+    /**
+     * @param window
+     *      the number of deliveries that may be outstanding.
+     * @param lowWatermark
+     *      the number of outstanding deliveries at or below which the window is refilled.
+     */
+    public FixedWindowCreditPolicy(int window, int lowWatermark) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Credit window must be greater than zero");
+        }
+        if (lowWatermark < 0 || lowWatermark >= window) {
+            throw new IllegalArgumentException("Low watermark must be in the range [0.." + (window - 1) + "]");
+        }
+
+        this.window = window;
+        this.lowWatermark = lowWatermark;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public int getLowWatermark() {
+        return lowWatermark;
+    }
+
+    @Override
+    public void onOpen(Receiver receiver) {
+        refill(receiver);
+    }
+
+    @Override
+    public void onDelivery(Receiver receiver, Delivery delivery) {
+        unsettled++;
+    }
+
+    @Override
+    public void onSettled(Receiver receiver, Delivery delivery) {
+        unsettled--;
+        if (receiver.getCredit() + unsettled <= lowWatermark) {
+            refill(receiver);
+        }
+    }
+
+    @Override
+    public void onAborted(Receiver receiver, Delivery delivery) {
+        if (receiver.getCredit() + unsettled <= lowWatermark) {
+            refill(receiver);
+        }
+    }
+
+    private void refill(Receiver receiver) {
+        final long grant = window - receiver.getCredit() - unsettled;
+        if (grant > 0) {
+            receiver.flow((int) grant);
+        }
+    }
+}
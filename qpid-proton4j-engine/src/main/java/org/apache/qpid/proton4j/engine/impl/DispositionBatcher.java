@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import org.apache.qpid.proton4j.amqp.transport.DeliveryState;
+import org.apache.qpid.proton4j.amqp.transport.Role;
+
+/**
+ * Collects the dispositions of a Session so that updates which share an outcome are
+ * written as a single Disposition covering a first..last range of delivery ids.
+ * <p>
+ * Pending dispositions are held as runs of consecutive delivery ids, a delivery that
+ * extends either end of a run with the same role, state and settled flag joins it and
+ * any other delivery starts a new run.  Runs are written in the order they were started.
+ * A delivery that already has an update waiting is never merged into an earlier run,
+ * the pending runs are written first so that the peer sees its updates in order.
+ */
+final class DispositionBatcher {
+
+    private static final int MAX_RUNS = 16;
+
+    private final int[] first = new int[MAX_RUNS];
+    private final int[] last = new int[MAX_RUNS];
+    private final boolean[] settled = new boolean[MAX_RUNS];
+    private final Role[] roles = new Role[MAX_RUNS];
+    private final DeliveryState[] states = new DeliveryState[MAX_RUNS];
+
+    private int runs;
+    private int count;
+
+    // Deliveries remember the generation they were batched in, flushing starts a new one
+    private int generation;
+
+    /**
+     * @return the number of delivery updates waiting to be written.
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Adds the current local state of the delivery to the pending runs.
+     *
+     * @param delivery
+     *      the delivery whose state should be sent.
+     * @param session
+     *      the Session that writes the pending runs when they must be flushed first.
+     */
+    void add(ProtonDelivery delivery, ProtonSession session) {
+        if (count > 0 && delivery.getBatchGeneration() == generation) {
+            flush(session);
+        }
+
+        final int deliveryId = delivery.getDeliveryId();
+        final Role role = delivery.getLink().getRole();
+        final DeliveryState state = delivery.getLocalState();
+        final boolean settle = delivery.isSettled();
+
+        // The most recent run is the most likely to be extended by the next delivery
+        int run = runs - 1;
+        for (; run >= 0; --run) {
+            if (roles[run] == role && settled[run] == settle && sameState(states[run], state)) {
+                if (deliveryId == last[run] + 1) {
+                    last[run] = deliveryId;
+                    break;
+                } else if (deliveryId == first[run] - 1) {
+                    first[run] = deliveryId;
+                    break;
+                }
+            }
+        }
+
+        if (run < 0) {
+            if (runs == MAX_RUNS) {
+                flush(session);
+            }
+
+            run = runs++;
+            first[run] = deliveryId;
+            last[run] = deliveryId;
+            settled[run] = settle;
+            roles[run] = role;
+            states[run] = state;
+        }
+
+        count++;
+        delivery.setBatchGeneration(generation);
+    }
+
+    /**
+     * Writes one Disposition per pending run.
+     *
+     * @param session
+     *      the Session to write the dispositions to.
+     */
+    void flush(ProtonSession session) {
+        for (int run = 0; run < runs; ++run) {
+            session.writeDisposition(roles[run], first[run], last[run], settled[run], states[run]);
+            roles[run] = null;
+            states[run] = null;
+        }
+
+        runs = 0;
+        count = 0;
+        generation++;
+    }
+
+    /**
+     * Drops the pending runs without writing them, used once the Session can no longer write.
+     */
+    void clear() {
+        for (int run = 0; run < runs; ++run) {
+            roles[run] = null;
+            states[run] = null;
+        }
+
+        runs = 0;
+        count = 0;
+        generation++;
+    }
+
+    private static boolean sameState(DeliveryState current, DeliveryState state) {
+        return current == state || (current != null && current.equals(state));
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import java.util.Arrays;
+
+/**
+ * Table of endpoints keyed by the channel or handle number they were assigned.
+ * <p>
+ * Peers assign channels and handles from zero upwards and reuse freed numbers, so the keys
+ * in use are almost always small.  Keys below the dense limit index directly into an array
+ * that grows by doubling as larger keys are used, which makes the lookup done for every
+ * incoming frame a bounds check and an array load.  Keys at or above the limit, which a peer
+ * is allowed to choose but rarely does, are kept in an open addressing table of primitive
+ * int keys so that a single large handle does not force a large array to be allocated.
+ * <p>
+ * Keys are unsigned 32 bit values held in an int.  Entries are visited by slot, see
+ * {@link #slots()} and {@link #valueAt(int)}, which needs no iterator to be allocated.
+ *
+ * @param <E> the type of endpoint stored in the table
+ */
+public final class EndpointTable<E> {
+
+    public static final int DEFAULT_DENSE_LIMIT = 1024;
+
+    private static final int INITIAL_DENSE_CAPACITY = 4;
+    private static final int INITIAL_SPARSE_CAPACITY = 8;
+
+    private final int denseLimit;
+
+    private Object[] dense;
+    private int denseSize;
+
+    private final IntKeyedTable<E> sparse = new IntKeyedTable<>(INITIAL_SPARSE_CAPACITY);
+
+    public EndpointTable() {
+        this(DEFAULT_DENSE_LIMIT);
+    }
+
+    /**
+     * Creates a table that stores keys below the given limit in a dense array.
+     *
+     * @param denseLimit
+     *      the number of keys, starting from zero, that are stored in the dense array.
+     */
+    public EndpointTable(int denseLimit) {
+        if (denseLimit <= 0 || denseLimit > 1 << 30) {
+            throw new IllegalArgumentException("Dense limit must be positive and not greater than 2^30");
+        }
+
+        this.denseLimit = denseLimit;
+        this.dense = new Object[Math.min(INITIAL_DENSE_CAPACITY, denseLimit)];
+    }
+
+    /**
+     * @return the number of endpoints in the table.
+     */
+    public int size() {
+        return denseSize + sparse.size();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @param key
+     *      the channel or handle to look up.
+     *
+     * @return the endpoint stored under the given key, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public E get(int key) {
+        if (key >= 0 && key < dense.length) {
+            return (E) dense[key];
+        }
+
+        return sparse.get(key);
+    }
+
+    /**
+     * Stores an endpoint in the table, replacing any endpoint already stored with the same key.
+     *
+     * @param key
+     *      the channel or handle the endpoint was assigned.
+     * @param endpoint
+     *      the endpoint to store.
+     */
+    public void put(int key, E endpoint) {
+        if (endpoint == null) {
+            throw new NullPointerException("Cannot store a null endpoint");
+        }
+
+        if (key >= 0 && key < denseLimit) {
+            if (key >= dense.length) {
+                growDense(key);
+            }
+            if (dense[key] == null) {
+                denseSize++;
+            }
+            dense[key] = endpoint;
+        } else {
+            sparse.put(key, endpoint);
+        }
+    }
+
+    /**
+     * @param key
+     *      the channel or handle to remove.
+     *
+     * @return the endpoint that was removed, or null if there was none with the given key.
+     */
+    @SuppressWarnings("unchecked")
+    public E remove(int key) {
+        if (key >= 0 && key < denseLimit) {
+            if (key < dense.length && dense[key] != null) {
+                final Object endpoint = dense[key];
+                dense[key] = null;
+                denseSize--;
+                return (E) endpoint;
+            }
+
+            return null;
+        }
+
+        return sparse.remove(key);
+    }
+
+    /**
+     * Finds the lowest key that has no endpoint stored under it.
+     *
+     * @return the lowest free key as an unsigned value.
+     */
+    public long lowestFreeKey() {
+        if (denseSize < dense.length) {
+            for (int key = 0; key < dense.length; ++key) {
+                if (dense[key] == null) {
+                    return key;
+                }
+            }
+        }
+
+        if (dense.length < denseLimit) {
+            return dense.length;
+        }
+
+        long key = denseLimit;
+        while (sparse.get((int) key) != null) {
+            key++;
+        }
+
+        return key;
+    }
+
+    /**
+     * @return the number of slots that {@link #valueAt(int)} accepts.
+     */
+    public int slots() {
+        return dense.length + sparse.slots();
+    }
+
+    /**
+     * Returns the endpoint held in the given slot, the endpoints in the table are visited by
+     * calling this for every slot from zero up to {@link #slots()}.  The table must not be
+     * modified other than to remove the visited endpoint while its slots are being visited.
+     *
+     * @param slot
+     *      the slot to read.
+     *
+     * @return the endpoint in the slot, or null if the slot is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public E valueAt(int slot) {
+        if (slot < dense.length) {
+            return (E) dense[slot];
+        }
+
+        return sparse.valueAt(slot - dense.length);
+    }
+
+    /**
+     * Removes all endpoints from the table.
+     */
+    public void clear() {
+        Arrays.fill(dense, null);
+        denseSize = 0;
+        sparse.clear();
+    }
+
+    //----- Dense array ------------------------------------------------------//
+
+    private void growDense(int key) {
+        int capacity = dense.length;
+        while (capacity <= key) {
+            capacity <<= 1;
+        }
+
+        dense = Arrays.copyOf(dense, Math.min(capacity, denseLimit));
+    }
+}
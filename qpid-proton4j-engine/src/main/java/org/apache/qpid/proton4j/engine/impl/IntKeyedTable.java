@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table of primitive int keys with linear probing.
+ * <p>
+ * Used where most keys are held in a directly indexed array and only the keys that do not
+ * fit need a fallback, so the arrays are not allocated until the first key is stored.
+ * Removal leaves a tombstone rather than moving entries, which lets the slots be walked
+ * while the visited entries are removed.  Tombstones are dropped when the table is rehashed
+ * and the table only grows when live entries rather than tombstones fill it.
+ *
+ * @param <V> the type of value stored in the table
+ */
+final class IntKeyedTable<V> {
+
+    private static final Object TOMBSTONE = new Object();
+
+    private final int initialCapacity;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int used;
+
+    /**
+     * @param initialCapacity
+     *      the number of slots allocated for the first key, must be a power of two.
+     */
+    IntKeyedTable(int initialCapacity) {
+        if (initialCapacity <= 0 || Integer.bitCount(initialCapacity) != 1) {
+            throw new IllegalArgumentException("Initial capacity must be a positive power of two");
+        }
+
+        this.initialCapacity = initialCapacity;
+    }
+
+    /**
+     * @return the number of entries in the table.
+     */
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        if (size == 0) {
+            return null;
+        }
+
+        final int mask = keys.length - 1;
+        for (int index = hash(key) & mask; ; index = (index + 1) & mask) {
+            final Object value = values[index];
+            if (value == null) {
+                return null;
+            } else if (value != TOMBSTONE && keys[index] == key) {
+                return (V) value;
+            }
+        }
+    }
+
+    /**
+     * Stores a value in the table, replacing any value already stored with the same key.
+     *
+     * @param key
+     *      the key of the value.
+     * @param value
+     *      the value to store.
+     */
+    void put(int key, V value) {
+        if (keys == null) {
+            keys = new int[initialCapacity];
+            values = new Object[initialCapacity];
+        } else {
+            remove(key);
+            if ((used + 1) * 4 > keys.length * 3) {
+                rehash();
+            }
+        }
+
+        final int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        while (values[index] != null && values[index] != TOMBSTONE) {
+            index = (index + 1) & mask;
+        }
+
+        if (values[index] == null) {
+            used++;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+        size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        if (size == 0) {
+            return null;
+        }
+
+        final int mask = keys.length - 1;
+        for (int index = hash(key) & mask; ; index = (index + 1) & mask) {
+            final Object value = values[index];
+            if (value == null) {
+                return null;
+            } else if (value != TOMBSTONE && keys[index] == key) {
+                values[index] = TOMBSTONE;
+                size--;
+                return (V) value;
+            }
+        }
+    }
+
+    void clear() {
+        if (values != null) {
+            Arrays.fill(values, null);
+            size = 0;
+            used = 0;
+        }
+    }
+
+    /**
+     * @return the number of slots that {@link #keyAt(int)} and {@link #valueAt(int)} accept.
+     */
+    int slots() {
+        return values != null ? values.length : 0;
+    }
+
+    /**
+     * @param slot
+     *      the slot to read.
+     *
+     * @return the key in the slot, only meaningful when the slot holds a value.
+     */
+    int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * @param slot
+     *      the slot to read.
+     *
+     * @return the value in the slot, or null if the slot is empty.
+     */
+    @SuppressWarnings("unchecked")
+    V valueAt(int slot) {
+        final Object value = values[slot];
+        return value != TOMBSTONE ? (V) value : null;
+    }
+
+    private void rehash() {
+        final int[] oldKeys = keys;
+        final Object[] oldValues = values;
+
+        final int capacity = size * 2 >= oldKeys.length ? oldKeys.length * 2 : oldKeys.length;
+        final int mask = capacity - 1;
+
+        keys = new int[capacity];
+        values = new Object[capacity];
+        used = size;
+
+        for (int i = 0; i < oldKeys.length; ++i) {
+            final Object value = oldValues[i];
+            if (value != null && value != TOMBSTONE) {
+                int index = hash(oldKeys[i]) & mask;
+                while (values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = value;
+            }
+        }
+    }
+
+    private static int hash(int key) {
+        final int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
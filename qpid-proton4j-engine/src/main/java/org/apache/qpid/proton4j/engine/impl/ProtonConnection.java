@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import org.apache.qpid.proton4j.amqp.UnsignedInteger;
+import org.apache.qpid.proton4j.amqp.UnsignedShort;
+import org.apache.qpid.proton4j.amqp.transport.Begin;
+import org.apache.qpid.proton4j.amqp.transport.Close;
+import org.apache.qpid.proton4j.amqp.transport.End;
+import org.apache.qpid.proton4j.amqp.transport.Open;
+import org.apache.qpid.proton4j.engine.Connection;
+import org.apache.qpid.proton4j.engine.EndpointState;
+import org.apache.qpid.proton4j.engine.EngineListener;
+
+/**
+ * Connection endpoint implementation.
+ * <p>
+ * Sessions are tracked in two {@link EndpointTable}s, one keyed by the channel this end
+ * assigned and one keyed by the channel the peer assigned, so that the Session for an
+ * incoming frame is found without hashing or boxing its channel number.
+ */
+public class ProtonConnection extends ProtonEndpoint implements Connection {
+
+    public static final int DEFAULT_MAX_FRAME_SIZE = 65536;
+    public static final int DEFAULT_CHANNEL_MAX = 65535;
+
+    private static final EngineListener NO_OP_LISTENER = new EngineListener() {};
+
+    private EngineListener listener = NO_OP_LISTENER;
+
+    private String containerId = "";
+    private String hostname;
+    private int maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+    private int channelMax = DEFAULT_CHANNEL_MAX;
+    private int idleTimeout;
+
+    private int maxDispositionBatchSize = 1;
+    private long maxDispositionDelay;
+
+    private String remoteContainerId;
+    private String remoteHostname;
+    private int remoteMaxFrameSize = Integer.MAX_VALUE;
+    private int remoteChannelMax = DEFAULT_CHANNEL_MAX;
+    private int remoteIdleTimeout;
+
+    private final EndpointTable<ProtonSession> localSessions = new EndpointTable<>();
+    private final EndpointTable<ProtonSession> remoteSessions = new EndpointTable<>();
+
+    ProtonConnection(ProtonEngine engine) {
+        super(engine);
+    }
+
+    @Override
+    public ProtonConnection open() {
+        super.open();
+        return this;
+    }
+
+    @Override
+    public ProtonConnection close() {
+        super.close();
+        return this;
+    }
+
+    @Override
+    public ProtonSession session() {
+        if (getLocalState() == EndpointState.CLOSED) {
+            throw new IllegalStateException("Cannot create a Session on a closed Connection");
+        }
+
+        return new ProtonSession(engine, this);
+    }
+
+    @Override
+    public void setListener(EngineListener listener) {
+        this.listener = listener == null ? NO_OP_LISTENER : listener;
+    }
+
+    @Override
+    public EngineListener getListener() {
+        return listener;
+    }
+
+    @Override
+    public String getContainerId() {
+        return containerId;
+    }
+
+    @Override
+    public void setContainerId(String containerId) {
+        checkNotOpened();
+        this.containerId = containerId;
+    }
+
+    @Override
+    public String getHostname() {
+        return hostname;
+    }
+
+    @Override
+    public void setHostname(String hostname) {
+        checkNotOpened();
+        this.hostname = hostname;
+    }
+
+    @Override
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    @Override
+    public void setMaxFrameSize(int maxFrameSize) {
+        checkNotOpened();
+        if (maxFrameSize < 512) {
+            throw new IllegalArgumentException("Max frame size cannot be less than 512 bytes");
+        }
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    @Override
+    public int getChannelMax() {
+        return channelMax;
+    }
+
+    @Override
+    public void setChannelMax(int channelMax) {
+        checkNotOpened();
+        if (channelMax < 0 || channelMax > DEFAULT_CHANNEL_MAX) {
+            throw new IllegalArgumentException("Channel max must be in the range [0..65535]");
+        }
+        this.channelMax = channelMax;
+    }
+
+    @Override
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    @Override
+    public void setIdleTimeout(int idleTimeout) {
+        checkNotOpened();
+        if (idleTimeout < 0) {
+            throw new IllegalArgumentException("Idle timeout cannot be negative");
+        }
+        this.idleTimeout = idleTimeout;
+    }
+
+    @Override
+    public void setMaxDispositionBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Disposition batch size must be at least one");
+        }
+        this.maxDispositionBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public int getMaxDispositionBatchSize() {
+        return maxDispositionBatchSize;
+    }
+
+    @Override
+    public void setMaxDispositionDelay(long maxDelay) {
+        if (maxDelay < 0) {
+            throw new IllegalArgumentException("Disposition delay cannot be negative");
+        }
+        this.maxDispositionDelay = maxDelay;
+    }
+
+    @Override
+    public long getMaxDispositionDelay() {
+        return maxDispositionDelay;
+    }
+
+    @Override
+    public void flushDispositions() {
+        writeBatchedDispositions();
+        engine.flush();
+    }
+
+    @Override
+    public String getRemoteContainerId() {
+        return remoteContainerId;
+    }
+
+    @Override
+    public String getRemoteHostname() {
+        return remoteHostname;
+    }
+
+    @Override
+    public int getRemoteMaxFrameSize() {
+        return remoteMaxFrameSize;
+    }
+
+    @Override
+    public int getRemoteChannelMax() {
+        return remoteChannelMax;
+    }
+
+    @Override
+    public int getRemoteIdleTimeout() {
+        return remoteIdleTimeout;
+    }
+
+    //----- Local endpoint state ---------------------------------------------//
+
+    @Override
+    protected void localOpen() {
+        Open open = new Open();
+        open.setContainerId(containerId);
+        open.setHostname(hostname);
+        open.setMaxFrameSize(UnsignedInteger.valueOf(maxFrameSize));
+        open.setChannelMax(UnsignedShort.valueOf((short) channelMax));
+        if (idleTimeout > 0) {
+            open.setIdleTimeOut(UnsignedInteger.valueOf(idleTimeout));
+        }
+
+        engine.writeHeader();
+        engine.writeFrame(open, 0, null);
+        engine.scheduleIdleCheck();
+
+        // Sessions opened ahead of the Connection were waiting for the Open to be written
+        for (int slot = 0; slot < localSessions.slots(); ++slot) {
+            final ProtonSession session = localSessions.valueAt(slot);
+            if (session != null) {
+                session.connectionOpened();
+            }
+        }
+    }
+
+    @Override
+    protected void localClose() {
+        writeBatchedDispositions();
+
+        Close close = new Close();
+        close.setError(getCondition());
+
+        engine.writeFrame(close, 0, null);
+        engine.scheduleIdleCheck();
+    }
+
+    //----- Session tracking -------------------------------------------------//
+
+    /**
+     * Assigns the lowest free local channel to the given Session, the channel is held
+     * from the time the Session is opened even if its Begin has to wait for the Open.
+     *
+     * @param session
+     *      the Session that is being opened.
+     *
+     * @return the channel assigned to the Session.
+     */
+    int assignLocalChannel(ProtonSession session) {
+        final int limit = Math.min(channelMax, remoteChannelMax);
+        final long channel = localSessions.lowestFreeKey();
+
+        if (channel <= limit) {
+            localSessions.put((int) channel, session);
+            return (int) channel;
+        }
+
+        throw new IllegalStateException("No channels available, the channel max of " + limit + " has been reached");
+    }
+
+    void writeBatchedDispositions() {
+        for (int slot = 0; slot < localSessions.slots(); ++slot) {
+            final ProtonSession session = localSessions.valueAt(slot);
+            if (session != null) {
+                session.flushDispositions();
+            }
+        }
+
+        engine.dispositionsFlushed();
+    }
+
+    void freeLocalChannel(int channel) {
+        localSessions.remove(channel);
+    }
+
+    ProtonSession getRemoteSession(int channel) {
+        final ProtonSession session = remoteSessions.get(channel);
+        if (session == null) {
+            throw new IllegalStateException("Received frame for channel " + channel + " which has no active Session");
+        }
+
+        return session;
+    }
+
+    //----- Remote performatives ---------------------------------------------//
+
+    void remoteOpen(Open open) {
+        if (isRemotelyOpen()) {
+            throw new IllegalStateException("Received second Open for this Connection");
+        }
+
+        remoteContainerId = open.getContainerId();
+        remoteHostname = open.getHostname();
+        if (open.getMaxFrameSize() != null) {
+            remoteMaxFrameSize = (int) Math.min(open.getMaxFrameSize().longValue(), Integer.MAX_VALUE);
+        }
+        if (open.getChannelMax() != null) {
+            remoteChannelMax = open.getChannelMax().intValue();
+        }
+        if (open.getIdleTimeOut() != null) {
+            remoteIdleTimeout = (int) Math.min(open.getIdleTimeOut().longValue(), Integer.MAX_VALUE);
+        }
+
+        remoteOpened();
+        engine.scheduleIdleCheck();
+        getListener().onConnectionRemoteOpen(this);
+    }
+
+    void remoteClose(Close close) {
+        remoteClosed(close.getError());
+        engine.scheduleIdleCheck();
+        getListener().onConnectionRemoteClose(this);
+    }
+
+    void remoteBegin(Begin begin, int channel) {
+        if (channel > channelMax) {
+            throw new IllegalStateException("Received Begin on channel " + channel + " above the channel max of " + channelMax);
+        }
+        if (remoteSessions.get(channel) != null) {
+            throw new IllegalStateException("Received Begin on channel " + channel + " which already has an active Session");
+        }
+
+        final ProtonSession session;
+        if (begin.getRemoteChannel() != null) {
+            final int localChannel = begin.getRemoteChannel().intValue();
+            session = localSessions.get(localChannel);
+            if (session == null || !session.isBeginSent()) {
+                throw new IllegalStateException("Received Begin answering unknown local channel " + localChannel);
+            }
+        } else {
+            session = new ProtonSession(engine, this);
+        }
+
+        remoteSessions.put(channel, session);
+
+        session.remoteBegin(begin, channel);
+    }
+
+    void remoteEnd(End end, int channel) {
+        final ProtonSession session = getRemoteSession(channel);
+
+        remoteSessions.remove(channel);
+
+        session.remoteEnd(end);
+    }
+
+    private void checkNotOpened() {
+        if (getLocalState() != EndpointState.IDLE) {
+            throw new IllegalStateException("Cannot alter Connection settings once it has been opened");
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.DeliveryState;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
+import org.apache.qpid.proton4j.buffer.ProtonCompositeBuffer;
+import org.apache.qpid.proton4j.engine.Delivery;
+
+/**
+ * Delivery implementation.
+ */
+public class ProtonDelivery implements Delivery {
+
+    private final ProtonLink link;
+    private final Binary tag;
+    private ProtonBuffer payload;
+
+    private ProtonDeliveryStream stream;
+    private long payloadSize;
+
+    private int deliveryId;
+    private boolean partial;
+    private boolean aborted;
+
+    private DeliveryState localState;
+    private DeliveryState remoteState;
+    private boolean settled;
+    private boolean remotelySettled;
+
+    private int batchGeneration = -1;
+
+    ProtonDelivery(ProtonLink link, Binary tag, ProtonBuffer payload) {
+        this.link = link;
+        this.tag = tag;
+        this.payload = payload;
+    }
+
+    @Override
+    public ProtonLink getLink() {
+        return link;
+    }
+
+    @Override
+    public Binary getTag() {
+        return tag;
+    }
+
+    @Override
+    public boolean isPartial() {
+        return partial;
+    }
+
+    @Override
+    public ProtonBuffer getPayload() {
+        return payload;
+    }
+
+    @Override
+    public long getPayloadSize() {
+        return payloadSize;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return getStream();
+    }
+
+    @Override
+    public ReadableByteChannel getReadableChannel() {
+        return getStream();
+    }
+
+    @Override
+    public DeliveryState getLocalState() {
+        return localState;
+    }
+
+    @Override
+    public DeliveryState getRemoteState() {
+        return remoteState;
+    }
+
+    @Override
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    @Override
+    public boolean isSettled() {
+        return settled;
+    }
+
+    @Override
+    public boolean isRemotelySettled() {
+        return remotelySettled;
+    }
+
+    @Override
+    public void disposition(DeliveryState state, boolean settle) {
+        if (settled) {
+            throw new IllegalStateException("Cannot update the state of a settled delivery");
+        }
+
+        localState = state;
+        if (settle) {
+            settled = true;
+            link.getSession().settled(this);
+        }
+
+        if (!remotelySettled && link.isLocallyOpen() && link.getSession().isLocallyOpen()) {
+            link.getSession().writeDisposition(this);
+        }
+
+        // Settling may free credit, any resulting Flow goes out with the Disposition
+        if (settle && link instanceof ProtonReceiver) {
+            ((ProtonReceiver) link).deliverySettled(this);
+        }
+
+        if (settle) {
+            releasePayload();
+        }
+
+        link.engine.flush();
+    }
+
+    @Override
+    public void settle() {
+        if (!settled) {
+            disposition(localState, true);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ProtonDelivery { id = " + (deliveryId & 0xFFFFFFFFL) + ", tag = " + tag + ", settled = " + settled +
+               ", remotelySettled = " + remotelySettled + ", remoteState = " + remoteState + " }";
+    }
+
+    //----- Internal state management ----------------------------------------//
+
+    int getDeliveryId() {
+        return deliveryId;
+    }
+
+    void setDeliveryId(int deliveryId) {
+        this.deliveryId = deliveryId;
+    }
+
+    void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+
+    int getBatchGeneration() {
+        return batchGeneration;
+    }
+
+    void setBatchGeneration(int batchGeneration) {
+        this.batchGeneration = batchGeneration;
+    }
+
+    void presettle() {
+        settled = true;
+        remotelySettled = true;
+    }
+
+    void abort() {
+        aborted = true;
+        partial = false;
+        settled = true;
+        remotelySettled = true;
+
+        // Nothing received for an aborted delivery is part of a message
+        releasePayload();
+        payloadSize = 0;
+    }
+
+    /**
+     * Recycles the Transfer payloads of a streaming delivery that have been read in full.
+     */
+    void discardReadPayload() {
+        if (payload instanceof ProtonCompositeBuffer) {
+            ((ProtonCompositeBuffer) payload).discardReadComponents(link.engine.getBufferAllocator());
+        }
+    }
+
+    /**
+     * Recycles all of the payload of an incoming delivery once it is settled or aborted,
+     * the delivery is left with an empty payload.
+     */
+    private void releasePayload() {
+        if (payload == null) {
+            return;
+        }
+
+        if (payload instanceof ProtonCompositeBuffer) {
+            payload.skipBytes(payload.getReadableBytes());
+            discardReadPayload();
+        } else {
+            link.engine.getBufferAllocator().recycle(payload);
+        }
+
+        payload = ProtonByteBufferAllocator.DEFAULT.allocate(0, 0);
+    }
+
+    void appendPayload(Binary data) {
+        if (data != null && data.getLength() > 0) {
+            final int length = data.getLength();
+
+            if (payload instanceof ProtonCompositeBuffer) {
+                // The frame payload is only valid during dispatch so each one is copied once
+                // into a buffer of its own rather than into a buffer that grows and copies.
+                final ProtonCompositeBuffer composite = (ProtonCompositeBuffer) payload;
+                final ProtonBuffer chunk = link.engine.getBufferAllocator().allocate(length, length);
+
+                chunk.writeBytes(data.getArray(), data.getArrayOffset(), length);
+                composite.discardReadComponents(link.engine.getBufferAllocator()).append(chunk);
+            } else {
+                payload.writeBytes(data.getArray(), data.getArrayOffset(), length);
+            }
+
+            payloadSize += length;
+        }
+    }
+
+    private ProtonDeliveryStream getStream() {
+        if (payload == null) {
+            throw new IllegalStateException("Only incoming deliveries have a payload to read");
+        }
+
+        if (stream == null) {
+            stream = new ProtonDeliveryStream(this);
+        }
+
+        return stream;
+    }
+
+    void remoteDisposition(DeliveryState state, boolean settle) {
+        if (state != null) {
+            remoteState = state;
+        }
+        if (settle) {
+            remotelySettled = true;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+
+/**
+ * Non-blocking InputStream and ReadableByteChannel view of the payload of an incoming delivery.
+ * <p>
+ * Reads consume the delivery payload, for a streaming delivery the Transfer payloads that
+ * have been read in full are released as soon as the read completes.
+ */
+public class ProtonDeliveryStream extends InputStream implements ReadableByteChannel {
+
+    private final ProtonDelivery delivery;
+
+    private boolean closed;
+
+    ProtonDeliveryStream(ProtonDelivery delivery) {
+        this.delivery = delivery;
+    }
+
+    @Override
+    public int available() throws IOException {
+        checkClosed();
+        return delivery.getPayload().getReadableBytes();
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+
+        final ProtonBuffer payload = delivery.getPayload();
+        if (!payload.isReadable()) {
+            return endOfStreamOrFail();
+        }
+
+        final int result = payload.readByte() & 0xFF;
+        release();
+        return result;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+        checkClosed();
+
+        if (offset < 0 || length < 0 || length > target.length - offset) {
+            throw new IndexOutOfBoundsException();
+        } else if (length == 0) {
+            return 0;
+        }
+
+        final ProtonBuffer payload = delivery.getPayload();
+        if (!payload.isReadable()) {
+            return endOfStreamOrFail();
+        }
+
+        final int count = Math.min(length, payload.getReadableBytes());
+        payload.readBytes(target, offset, count);
+        release();
+        return count;
+    }
+
+    @Override
+    public int read(ByteBuffer target) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+
+        final ProtonBuffer payload = delivery.getPayload();
+        if (!payload.isReadable()) {
+            return delivery.isPartial() ? 0 : -1;
+        }
+
+        final int count = Math.min(target.remaining(), payload.getReadableBytes());
+        final int limit = target.limit();
+
+        target.limit(target.position() + count);
+        payload.readBytes(target);
+        target.limit(limit);
+
+        release();
+        return count;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        checkClosed();
+
+        final ProtonBuffer payload = delivery.getPayload();
+        final int skipped = (int) Math.max(0, Math.min(count, payload.getReadableBytes()));
+
+        payload.skipBytes(skipped);
+        release();
+        return skipped;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    //----- Internal implementation ------------------------------------------//
+
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("The delivery stream has been closed");
+        }
+    }
+
+    private int endOfStreamOrFail() throws IOException {
+        if (delivery.isPartial()) {
+            throw new IOException("No payload is available until further Transfers of the delivery arrive");
+        }
+
+        return -1;
+    }
+
+    private void release() {
+        delivery.discardReadPayload();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import org.apache.qpid.proton4j.amqp.transport.ErrorCondition;
+import org.apache.qpid.proton4j.engine.Endpoint;
+import org.apache.qpid.proton4j.engine.EndpointState;
+
+/**
+ * Base class for the Connection, Session and Link endpoint implementations.
+ */
+public abstract class ProtonEndpoint implements Endpoint {
+
+    protected final ProtonEngine engine;
+
+    private EndpointState localState = EndpointState.IDLE;
+    private EndpointState remoteState = EndpointState.IDLE;
+
+    private ErrorCondition condition;
+    private ErrorCondition remoteCondition;
+
+    private Object attachment;
+
+    protected ProtonEndpoint(ProtonEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public ProtonEndpoint open() {
+        if (localState == EndpointState.CLOSED) {
+            throw new IllegalStateException("Cannot open an endpoint that has been closed");
+        }
+
+        if (localState == EndpointState.IDLE) {
+            localState = EndpointState.ACTIVE;
+            localOpen();
+            engine.flush();
+        }
+
+        return this;
+    }
+
+    @Override
+    public ProtonEndpoint close() {
+        if (localState == EndpointState.ACTIVE) {
+            localState = EndpointState.CLOSED;
+            localClose();
+            engine.flush();
+        } else if (localState == EndpointState.IDLE) {
+            localState = EndpointState.CLOSED;
+        }
+
+        return this;
+    }
+
+    @Override
+    public EndpointState getLocalState() {
+        return localState;
+    }
+
+    @Override
+    public EndpointState getRemoteState() {
+        return remoteState;
+    }
+
+    @Override
+    public ErrorCondition getCondition() {
+        return condition;
+    }
+
+    @Override
+    public void setCondition(ErrorCondition condition) {
+        this.condition = condition;
+    }
+
+    @Override
+    public ErrorCondition getRemoteCondition() {
+        return remoteCondition;
+    }
+
+    @Override
+    public Object getAttachment() {
+        return attachment;
+    }
+
+    @Override
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    //----- Internal state management ----------------------------------------//
+
+    boolean isLocallyOpen() {
+        return localState == EndpointState.ACTIVE;
+    }
+
+    boolean isRemotelyOpen() {
+        return remoteState == EndpointState.ACTIVE;
+    }
+
+    void remoteOpened() {
+        remoteState = EndpointState.ACTIVE;
+    }
+
+    void remoteClosed(ErrorCondition condition) {
+        remoteState = EndpointState.CLOSED;
+        remoteCondition = condition;
+    }
+
+    /**
+     * Called once when the local end moves to the active state so that the endpoint
+     * can write its opening performative, or arrange for it to be written later.
+     */
+    protected abstract void localOpen();
+
+    /**
+     * Called once when an active local end is closed so that the endpoint can write
+     * its closing performative.
+     */
+    protected abstract void localClose();
+
+}
@@ -0,0 +1,584 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.AMQPHeader;
+import org.apache.qpid.proton4j.amqp.transport.AmqpError;
+import org.apache.qpid.proton4j.amqp.transport.Attach;
+import org.apache.qpid.proton4j.amqp.transport.Begin;
+import org.apache.qpid.proton4j.amqp.transport.Close;
+import org.apache.qpid.proton4j.amqp.transport.Detach;
+import org.apache.qpid.proton4j.amqp.transport.Disposition;
+import org.apache.qpid.proton4j.amqp.transport.End;
+import org.apache.qpid.proton4j.amqp.transport.ErrorCondition;
+import org.apache.qpid.proton4j.amqp.transport.Flow;
+import org.apache.qpid.proton4j.amqp.transport.Open;
+import org.apache.qpid.proton4j.amqp.transport.Performative;
+import org.apache.qpid.proton4j.amqp.transport.Transfer;
+import org.apache.qpid.proton4j.buffer.ProtonBufferAllocator;
+import org.apache.qpid.proton4j.engine.Connection;
+import org.apache.qpid.proton4j.engine.EndpointState;
+import org.apache.qpid.proton4j.transport.EmptyFrame;
+import org.apache.qpid.proton4j.transport.HeaderFrame;
+import org.apache.qpid.proton4j.transport.ProtocolFrame;
+import org.apache.qpid.proton4j.transport.Transport;
+import org.apache.qpid.proton4j.transport.TransportHandler;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.exceptions.TransportException;
+import org.apache.qpid.proton4j.transport.handlers.FrameParsingHandler;
+import org.apache.qpid.proton4j.transport.handlers.FrameWritingHandler;
+import org.apache.qpid.proton4j.transport.impl.TimingWheel;
+import org.apache.qpid.proton4j.transport.nio.EventLoopAffinityHandler;
+import org.apache.qpid.proton4j.transport.nio.NioConnection;
+import org.apache.qpid.proton4j.transport.nio.NioEventLoop;
+import org.apache.qpid.proton4j.transport.nio.NioEventLoopGroup;
+
+/**
+ * The AMQP endpoint engine, the terminal handler of a Transport pipeline.
+ * <p>
+ * Incoming performatives are dispatched through {@link Performative#invoke} to the
+ * Connection, and from there to the Session and Link found by indexing the channel and
+ * handle of the frame into arrays.  Outgoing Transfer, Flow and Disposition performatives
+ * and the frame that carries them are reused for every write, which relies on the frame
+ * being encoded before the write event returns as {@link FrameWritingHandler} does.
+ * <p>
+ * Output is flushed once at the end of each inbound frame or batch of frames, and at the
+ * end of each call into the endpoint API made from outside of the pipeline.  Delivery updates
+ * can be held back at that point so that they are written as ranges, see
+ * {@link Connection#setMaxDispositionBatchSize(int)}.
+ * <p>
+ * When given a {@link TimingWheel} the engine enforces the idle timeout it advertised and
+ * sends empty frames to keep within the idle timeout of the peer.  Traffic only records the
+ * current time of the wheel, a single timeout per engine is rescheduled when it expires to
+ * the next point at which the Connection could become idle.  An engine whose Transport is
+ * registered with a {@link NioEventLoopGroup} uses the wheel of its event loop and only
+ * touches the wheel from that loop's thread.
+ */
+public class ProtonEngine extends TransportHandlerAdapter implements Performative.PerformativeHandler<ProtocolFrame> {
+
+    private final Transport transport;
+    private final TransportHandlerContext context;
+    private final ProtonConnection connection;
+
+    private final ProtocolFrame outgoing = new ProtocolFrame(null, (short) 0, null);
+
+    // Reused for every write of the frequently sent performatives
+    private final Transfer transfer = new Transfer();
+    private final Transfer continuation = new Transfer();
+    private final Flow flow = new Flow();
+    private final Disposition disposition = new Disposition();
+
+    // Sessions that asked for their incoming window to be renewed at the next flush
+    private ProtonSession[] windowUpdates = new ProtonSession[4];
+    private int windowUpdateCount;
+
+    // Idle checking, times are those of the timing wheel so recording traffic reads no clock
+    private final IdleTimeout idleTimeout = new IdleTimeout();
+    private final EmptyFrame heartbeat = new EmptyFrame();
+    private final NioEventLoop eventLoop;
+    private final Runnable idleCheckTask = new Runnable() {
+
+        @Override
+        public void run() {
+            scheduleIdleCheck();
+        }
+    };
+    private TimingWheel timingWheel;
+    private long lastInputTime;
+    private long lastOutputTime;
+
+    private boolean failed;
+    private boolean headerSent;
+    private boolean dispatching;
+    private boolean flushPending;
+
+    // Dispositions held for batching are written when the timeout expires
+    private final DispositionTimeout dispositionTimeout = new DispositionTimeout();
+    private final Runnable dispositionTimeoutTask = new Runnable() {
+
+        @Override
+        public void run() {
+            scheduleDispositionTimeout();
+        }
+    };
+    private boolean dispositionsBatched;
+
+    /**
+     * Creates an engine and adds it to the end of the given Transport's pipeline, the
+     * pipeline must already contain the handlers that parse and encode AMQP frames such as
+     * {@link FrameParsingHandler} and {@link FrameWritingHandler}.  When
+     * the Transport was registered with a {@link NioEventLoopGroup} its affinity handler
+     * must be the last handler in the pipeline so that the engine is added directly behind it,
+     * and the engine takes the timing wheel of the connection's event loop.
+     *
+     * @param transport
+     *      the Transport that the engine reads from and writes to.
+     *
+     * @throws IllegalStateException if the Transport's affinity handler is not the last handler.
+     */
+    public ProtonEngine(Transport transport) {
+        final TransportHandler first = transport.getPipeline().first();
+        if (first instanceof NioConnection) {
+            final EventLoopAffinityHandler affinityHandler = ((NioConnection) first).getAffinityHandler();
+            if (affinityHandler != null && transport.getPipeline().last() != affinityHandler) {
+                throw new IllegalStateException("The engine must be added directly behind the Transport's event loop affinity handler");
+            }
+
+            this.eventLoop = ((NioConnection) first).getEventLoop();
+        } else {
+            this.eventLoop = null;
+        }
+
+        this.transport = transport;
+        this.transport.getPipeline().addLast("engine", this);
+        this.context = transport.getPipeline().lastContext();
+        this.connection = new ProtonConnection(this);
+
+        if (eventLoop != null) {
+            setTimingWheel(eventLoop.getTimingWheel());
+        }
+    }
+
+    /**
+     * @return the Connection managed by this engine.
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * @return the Transport this engine is attached to.
+     */
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * @return the timing wheel that drives idle timeout checks, or null if there is none.
+     */
+    public TimingWheel getTimingWheel() {
+        return timingWheel;
+    }
+
+    /**
+     * Sets the timing wheel that drives the idle timeout and heartbeat checks of the
+     * Connection, the wheel is typically shared by every engine served by the same thread
+     * and must be advanced by that thread.  When the engine belongs to an event loop the
+     * change is made on the loop's thread, otherwise this must be called from the thread
+     * that advances the wheel.
+     *
+     * @param timingWheel
+     *      the timing wheel to use, or null to stop idle checking.
+     */
+    public void setTimingWheel(final TimingWheel timingWheel) {
+        if (eventLoop != null && !eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    setTimingWheel(timingWheel);
+                }
+            });
+            return;
+        }
+
+        if (this.timingWheel != null) {
+            this.timingWheel.cancel(idleTimeout);
+            this.timingWheel.cancel(dispositionTimeout);
+        }
+
+        this.timingWheel = timingWheel;
+
+        if (timingWheel != null) {
+            lastInputTime = timingWheel.currentTime();
+            lastOutputTime = timingWheel.currentTime();
+            scheduleIdleCheck();
+            scheduleDispositionTimeout();
+        }
+    }
+
+    //----- TransportHandler implementation ----------------------------------//
+
+    @Override
+    public void handleHeaderFrame(TransportHandlerContext context, HeaderFrame header) {
+        if (failed) {
+            return;
+        }
+
+        inputReceived();
+
+        if (header.getBody().isSaslHeader()) {
+            failed(new IllegalStateException("Engine received a SASL header, a SASL handler is required"));
+            return;
+        }
+
+        // The server side answers the client's header with its own
+        writeHeader();
+        flush();
+    }
+
+    @Override
+    public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+        if (failed) {
+            return;
+        }
+
+        inputReceived();
+        dispatching = true;
+        try {
+            dispatch(frame);
+        } finally {
+            dispatching = false;
+        }
+
+        flush();
+    }
+
+    @Override
+    public void handleProtocolFrames(TransportHandlerContext context, ProtocolFrame[] frames, int count) {
+        if (failed) {
+            return;
+        }
+
+        inputReceived();
+        dispatching = true;
+        try {
+            // Frames that follow one that failed the Transport are dropped
+            for (int i = 0; i < count && !failed; ++i) {
+                dispatch(frames[i]);
+            }
+        } finally {
+            dispatching = false;
+        }
+
+        flush();
+    }
+
+    @Override
+    public void transportFailed(TransportHandlerContext context, Throwable e) {
+        if (!failed) {
+            markFailed(e);
+        }
+
+        context.fireFailed(e);
+    }
+
+    //----- Performative dispatch --------------------------------------------//
+
+    @Override
+    public void handleOpen(Open open, Binary payload, ProtocolFrame frame) {
+        connection.remoteOpen(open);
+    }
+
+    @Override
+    public void handleBegin(Begin begin, Binary payload, ProtocolFrame frame) {
+        connection.remoteBegin(begin, frame.getChannel() & 0xFFFF);
+    }
+
+    @Override
+    public void handleAttach(Attach attach, Binary payload, ProtocolFrame frame) {
+        connection.getRemoteSession(frame.getChannel() & 0xFFFF).remoteAttach(attach);
+    }
+
+    @Override
+    public void handleFlow(Flow flow, Binary payload, ProtocolFrame frame) {
+        connection.getRemoteSession(frame.getChannel() & 0xFFFF).remoteFlow(flow);
+    }
+
+    @Override
+    public void handleTransfer(Transfer transfer, Binary payload, ProtocolFrame frame) {
+        connection.getRemoteSession(frame.getChannel() & 0xFFFF).remoteTransfer(transfer, payload);
+    }
+
+    @Override
+    public void handleDisposition(Disposition disposition, Binary payload, ProtocolFrame frame) {
+        connection.getRemoteSession(frame.getChannel() & 0xFFFF).remoteDisposition(disposition);
+    }
+
+    @Override
+    public void handleDetach(Detach detach, Binary payload, ProtocolFrame frame) {
+        connection.getRemoteSession(frame.getChannel() & 0xFFFF).remoteDetach(detach);
+    }
+
+    @Override
+    public void handleEnd(End end, Binary payload, ProtocolFrame frame) {
+        connection.remoteEnd(end, frame.getChannel() & 0xFFFF);
+    }
+
+    @Override
+    public void handleClose(Close close, Binary payload, ProtocolFrame frame) {
+        connection.remoteClose(close);
+    }
+
+    //----- Output used by the endpoints -------------------------------------//
+
+    ProtonBufferAllocator getBufferAllocator() {
+        return transport.getBufferAllocator();
+    }
+
+    Transfer getTransfer() {
+        return transfer;
+    }
+
+    /**
+     * @return the Transfer used for the frames after the first of a delivery, which carry only the handle and more flag.
+     */
+    Transfer getContinuationTransfer() {
+        return continuation;
+    }
+
+    Flow getFlow() {
+        return flow;
+    }
+
+    Disposition getDisposition() {
+        return disposition;
+    }
+
+    void writeHeader() {
+        if (!headerSent) {
+            headerSent = true;
+            context.fireWrite(new HeaderFrame(AMQPHeader.getRawAMQPHeader()));
+            outputWritten();
+            flushPending = true;
+        }
+    }
+
+    void writeFrame(Performative performative, int channel, Binary payload) {
+        context.fireWrite(outgoing.reset(performative, (short) channel, payload));
+        outgoing.reset(null, (short) 0, null);
+        outputWritten();
+        flushPending = true;
+    }
+
+    /**
+     * Flushes pending output unless an inbound frame is being processed, in which case
+     * the flush happens once the frame or batch has been fully processed.
+     */
+    void flush() {
+        // Held updates with no delay go out now, others wait for the disposition timeout
+        if (dispositionsBatched && !dispatching && connection.getMaxDispositionDelay() == 0) {
+            connection.writeBatchedDispositions();
+        }
+
+        if (windowUpdateCount > 0 && !dispatching) {
+            writeWindowUpdates();
+        }
+
+        if (flushPending && !dispatching) {
+            flushPending = false;
+            context.fireFlush();
+        }
+    }
+
+    /**
+     * Called when a Session holds the first disposition of a batch, starts the timeout
+     * after which the held dispositions are written.
+     */
+    void dispositionBatched() {
+        if (!dispositionsBatched) {
+            dispositionsBatched = true;
+            scheduleDispositionTimeout();
+        }
+    }
+
+    void dispositionsFlushed() {
+        dispositionsBatched = false;
+
+        // Off the event loop the wheel cannot be touched, an early expiry finds nothing to write
+        if (timingWheel != null && (eventLoop == null || eventLoop.inEventLoop())) {
+            timingWheel.cancel(dispositionTimeout);
+        }
+    }
+
+    void windowUpdateRequired(ProtonSession session) {
+        if (windowUpdateCount == windowUpdates.length) {
+            windowUpdates = Arrays.copyOf(windowUpdates, windowUpdateCount * 2);
+        }
+        windowUpdates[windowUpdateCount++] = session;
+    }
+
+    /**
+     * Reschedules the idle check for the next point at which either end's idle timeout
+     * could expire, called whenever the Connection opens or closes at either end.  When
+     * called from outside of the engine's event loop the check is rescheduled on the loop.
+     */
+    void scheduleIdleCheck() {
+        if (eventLoop != null && !eventLoop.inEventLoop()) {
+            eventLoop.execute(idleCheckTask);
+            return;
+        }
+
+        if (timingWheel == null) {
+            return;
+        }
+
+        if (failed) {
+            timingWheel.cancel(idleTimeout);
+            return;
+        }
+
+        final long now = timingWheel.currentTime();
+        long delay = Long.MAX_VALUE;
+
+        if (isLocalIdleTimeoutActive()) {
+            delay = Math.min(delay, lastInputTime + localIdleNanos() - now);
+        }
+        if (isRemoteIdleTimeoutActive()) {
+            delay = Math.min(delay, lastOutputTime + heartbeatNanos() - now);
+        }
+
+        if (delay == Long.MAX_VALUE) {
+            timingWheel.cancel(idleTimeout);
+        } else {
+            timingWheel.schedule(idleTimeout, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    //----- Internal implementation ------------------------------------------//
+
+    private void scheduleDispositionTimeout() {
+        if (eventLoop != null && !eventLoop.inEventLoop()) {
+            eventLoop.execute(dispositionTimeoutTask);
+            return;
+        }
+
+        final long delay = connection.getMaxDispositionDelay();
+        if (timingWheel != null && !failed && dispositionsBatched && delay > 0 && !dispositionTimeout.isScheduled()) {
+            timingWheel.schedule(dispositionTimeout, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void inputReceived() {
+        if (timingWheel != null) {
+            lastInputTime = timingWheel.currentTime();
+        }
+    }
+
+    private void outputWritten() {
+        if (timingWheel != null) {
+            lastOutputTime = timingWheel.currentTime();
+        }
+    }
+
+    private boolean isLocalIdleTimeoutActive() {
+        return connection.getIdleTimeout() > 0 && connection.getLocalState() == EndpointState.ACTIVE &&
+               connection.getRemoteState() != EndpointState.CLOSED;
+    }
+
+    private boolean isRemoteIdleTimeoutActive() {
+        return connection.getRemoteIdleTimeout() > 0 && connection.getRemoteState() == EndpointState.ACTIVE &&
+               connection.getLocalState() != EndpointState.CLOSED;
+    }
+
+    private long localIdleNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(connection.getIdleTimeout());
+    }
+
+    private long heartbeatNanos() {
+        // The peer is sent a frame at half of its timeout so that it arrives in time
+        return TimeUnit.MILLISECONDS.toNanos(connection.getRemoteIdleTimeout()) / 2;
+    }
+
+    private void checkIdle(long now) {
+        if (isLocalIdleTimeoutActive() && now - lastInputTime >= localIdleNanos()) {
+            connection.setCondition(new ErrorCondition(AmqpError.RESOURCE_LIMIT_EXCEEDED, "local-idle-timeout expired"));
+            connection.close();
+            failed(new TransportException(
+                "Nothing received within the idle timeout of " + connection.getIdleTimeout() + " milliseconds"));
+            return;
+        }
+
+        if (isRemoteIdleTimeoutActive() && now - lastOutputTime >= heartbeatNanos()) {
+            context.fireWrite(heartbeat);
+            outputWritten();
+            flushPending = true;
+            flush();
+        }
+
+        scheduleIdleCheck();
+    }
+
+    /**
+     * Fails the Transport from within the engine, the failure is fired from the IO side of
+     * the pipeline so that the underlying connection is closed before it arrives back here.
+     */
+    private void failed(Throwable e) {
+        if (!failed) {
+            markFailed(e);
+            transport.getPipeline().fireFailed(e);
+        }
+    }
+
+    /**
+     * Stops idle checking, drops all further input and tells the Connection's listener.
+     */
+    private void markFailed(Throwable e) {
+        failed = true;
+        if (timingWheel != null) {
+            timingWheel.cancel(idleTimeout);
+            timingWheel.cancel(dispositionTimeout);
+        }
+
+        connection.getListener().onTransportFailed(connection, e);
+    }
+
+    private final class IdleTimeout extends TimingWheel.Timeout {
+
+        @Override
+        protected void expired(long now) {
+            checkIdle(now);
+        }
+    }
+
+    private final class DispositionTimeout extends TimingWheel.Timeout {
+
+        @Override
+        protected void expired(long now) {
+            if (dispositionsBatched && !failed) {
+                connection.writeBatchedDispositions();
+                flush();
+            }
+        }
+    }
+
+    private void writeWindowUpdates() {
+        for (int i = 0; i < windowUpdateCount; ++i) {
+            windowUpdates[i].writeWindowUpdate();
+            windowUpdates[i] = null;
+        }
+        windowUpdateCount = 0;
+    }
+
+    private void dispatch(ProtocolFrame frame) {
+        final Performative performative = frame.getBody();
+
+        // Empty frames only keep the connection alive and carry nothing for the endpoints
+        if (performative != null) {
+            try {
+                performative.invoke(this, frame.getPayload(), frame);
+            } catch (RuntimeException e) {
+                failed(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import org.apache.qpid.proton4j.amqp.UnsignedInteger;
+import org.apache.qpid.proton4j.amqp.messaging.Source;
+import org.apache.qpid.proton4j.amqp.messaging.Target;
+import org.apache.qpid.proton4j.amqp.transport.Attach;
+import org.apache.qpid.proton4j.amqp.transport.Detach;
+import org.apache.qpid.proton4j.amqp.transport.Flow;
+import org.apache.qpid.proton4j.amqp.transport.ReceiverSettleMode;
+import org.apache.qpid.proton4j.amqp.transport.SenderSettleMode;
+import org.apache.qpid.proton4j.engine.EndpointState;
+import org.apache.qpid.proton4j.engine.Link;
+
+/**
+ * Common base of the Sender and Receiver Link implementations.
+ */
+public abstract class ProtonLink extends ProtonEndpoint implements Link {
+
+    private static final long UINT_MAX = 0xFFFFFFFFL;
+
+    protected final ProtonSession session;
+
+    private final String name;
+
+    private Source source;
+    private Target target;
+    private SenderSettleMode senderSettleMode = SenderSettleMode.MIXED;
+    private ReceiverSettleMode receiverSettleMode = ReceiverSettleMode.FIRST;
+
+    private Source remoteSource;
+    private Target remoteTarget;
+    private SenderSettleMode remoteSenderSettleMode;
+    private ReceiverSettleMode remoteReceiverSettleMode;
+
+    private int localHandle = -1;
+    private int remoteHandle = -1;
+    private boolean attachSent;
+
+    // Link flow control state, the delivery count is a serial number held in 32 bits
+    protected int deliveryCount;
+    protected int credit;
+    protected boolean drain;
+
+    protected ProtonLink(ProtonEngine engine, ProtonSession session, String name) {
+        super(engine);
+        this.session = session;
+        this.name = name;
+    }
+
+    @Override
+    public ProtonLink open() {
+        super.open();
+        return this;
+    }
+
+    @Override
+    public ProtonLink close() {
+        super.close();
+        return this;
+    }
+
+    @Override
+    public ProtonSession getSession() {
+        return session;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Source getSource() {
+        return source;
+    }
+
+    @Override
+    public void setSource(Source source) {
+        checkNotOpened();
+        this.source = source;
+    }
+
+    @Override
+    public Target getTarget() {
+        return target;
+    }
+
+    @Override
+    public void setTarget(Target target) {
+        checkNotOpened();
+        this.target = target;
+    }
+
+    @Override
+    public SenderSettleMode getSenderSettleMode() {
+        return senderSettleMode;
+    }
+
+    @Override
+    public void setSenderSettleMode(SenderSettleMode mode) {
+        checkNotOpened();
+        this.senderSettleMode = mode;
+    }
+
+    @Override
+    public ReceiverSettleMode getReceiverSettleMode() {
+        return receiverSettleMode;
+    }
+
+    @Override
+    public void setReceiverSettleMode(ReceiverSettleMode mode) {
+        checkNotOpened();
+        this.receiverSettleMode = mode;
+    }
+
+    @Override
+    public Source getRemoteSource() {
+        return remoteSource;
+    }
+
+    @Override
+    public Target getRemoteTarget() {
+        return remoteTarget;
+    }
+
+    @Override
+    public SenderSettleMode getRemoteSenderSettleMode() {
+        return remoteSenderSettleMode;
+    }
+
+    @Override
+    public ReceiverSettleMode getRemoteReceiverSettleMode() {
+        return remoteReceiverSettleMode;
+    }
+
+    @Override
+    public long getCredit() {
+        return Math.max(0, credit);
+    }
+
+    @Override
+    public long getDeliveryCount() {
+        return deliveryCount & UINT_MAX;
+    }
+
+    boolean getDrain() {
+        return drain;
+    }
+
+    int getLocalHandle() {
+        return localHandle;
+    }
+
+    int getRemoteHandle() {
+        return remoteHandle;
+    }
+
+    boolean isAttachSent() {
+        return attachSent;
+    }
+
+    //----- Local endpoint state ---------------------------------------------//
+
+    @Override
+    protected void localOpen() {
+        if (session.getLocalState() == EndpointState.CLOSED) {
+            throw new IllegalStateException("Cannot open a Link on a closed Session");
+        }
+
+        localHandle = session.assignLocalHandle(this);
+        if (session.isBeginSent()) {
+            writeAttach();
+        }
+    }
+
+    @Override
+    protected void localClose() {
+        if (attachSent) {
+            // Updates for this link's deliveries must reach the peer before the Detach
+            session.flushDispositions();
+
+            Detach detach = new Detach();
+            detach.setHandle(UnsignedInteger.valueOf(localHandle));
+            detach.setClosed(true);
+            detach.setError(getCondition());
+
+            engine.writeFrame(detach, session.getLocalChannel(), null);
+        }
+
+        if (!attachSent || getRemoteState() == EndpointState.CLOSED) {
+            session.freeLocalHandle(localHandle);
+        }
+    }
+
+    /**
+     * Called when the Session writes its Begin so that a Link opened ahead of it can
+     * now write its Attach.
+     */
+    void sessionBegun() {
+        if (isLocallyOpen() && !attachSent) {
+            writeAttach();
+        }
+    }
+
+    private void writeAttach() {
+        Attach attach = new Attach();
+        attach.setName(name);
+        attach.setHandle(UnsignedInteger.valueOf(localHandle));
+        attach.setRole(getRole());
+        attach.setSndSettleMode(senderSettleMode);
+        attach.setRcvSettleMode(receiverSettleMode);
+        attach.setSource(source);
+        attach.setTarget(target);
+        configureAttach(attach);
+
+        engine.writeFrame(attach, session.getLocalChannel(), null);
+        attachSent = true;
+
+        linkAttached();
+    }
+
+    /**
+     * Allows the Link to set the role specific fields of its outgoing Attach.
+     *
+     * @param attach
+     *      the Attach about to be written.
+     */
+    protected void configureAttach(Attach attach) {
+    }
+
+    /**
+     * Called once the Attach has been written.
+     */
+    protected void linkAttached() {
+    }
+
+    //----- Remote performatives ---------------------------------------------//
+
+    void remoteAttach(Attach attach, int handle) {
+        remoteHandle = handle;
+        remoteSource = attach.getSource();
+        remoteTarget = attach.getTarget();
+        remoteSenderSettleMode = attach.getSndSettleMode();
+        remoteReceiverSettleMode = attach.getRcvSettleMode();
+
+        remoteAttached(attach);
+
+        remoteOpened();
+        session.getConnection().getListener().onLinkRemoteOpen(this);
+    }
+
+    void remoteDetach(Detach detach) {
+        remoteClosed(detach.getError());
+        if (getLocalState() == EndpointState.CLOSED) {
+            session.freeLocalHandle(localHandle);
+        }
+
+        session.getConnection().getListener().onLinkRemoteClose(this);
+    }
+
+    /**
+     * Allows the Link to read the role specific fields of the peer's Attach.
+     *
+     * @param attach
+     *      the Attach that was received.
+     */
+    protected void remoteAttached(Attach attach) {
+    }
+
+    abstract void remoteFlow(Flow flow);
+
+    private void checkNotOpened() {
+        if (getLocalState() != EndpointState.IDLE) {
+            throw new IllegalStateException("Cannot alter Link settings once it has been opened");
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.Attach;
+import org.apache.qpid.proton4j.amqp.transport.Flow;
+import org.apache.qpid.proton4j.amqp.transport.Role;
+import org.apache.qpid.proton4j.amqp.transport.Transfer;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonCompositeBuffer;
+import org.apache.qpid.proton4j.engine.EndpointState;
+import org.apache.qpid.proton4j.engine.Receiver;
+import org.apache.qpid.proton4j.engine.credit.CreditPolicy;
+
+/**
+ * Receiver Link implementation.
+ */
+public class ProtonReceiver extends ProtonLink implements Receiver {
+
+    private ProtonDelivery current;
+    private CreditPolicy creditPolicy;
+    private boolean streaming;
+
+    ProtonReceiver(ProtonEngine engine, ProtonSession session, String name) {
+        super(engine, session, name);
+    }
+
+    @Override
+    public ProtonReceiver open() {
+        super.open();
+        return this;
+    }
+
+    @Override
+    public ProtonReceiver close() {
+        super.close();
+        return this;
+    }
+
+    @Override
+    public Role getRole() {
+        return Role.RECEIVER;
+    }
+
+    @Override
+    public void flow(int credit) {
+        if (credit < 0) {
+            throw new IllegalArgumentException("Credit cannot be negative");
+        }
+
+        this.credit += credit;
+
+        if (isAttachSent() && isLocallyOpen()) {
+            session.writeFlow(this);
+            engine.flush();
+        }
+    }
+
+    @Override
+    public void setCreditPolicy(CreditPolicy policy) {
+        if (getLocalState() != EndpointState.IDLE) {
+            throw new IllegalStateException("Cannot change the credit policy once the Receiver has been opened");
+        }
+        this.creditPolicy = policy;
+    }
+
+    @Override
+    public CreditPolicy getCreditPolicy() {
+        return creditPolicy;
+    }
+
+    @Override
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    //----- Link flow control ------------------------------------------------//
+
+    @Override
+    protected void localOpen() {
+        super.localOpen();
+        if (creditPolicy != null) {
+            creditPolicy.onOpen(this);
+        }
+    }
+
+    @Override
+    protected void linkAttached() {
+        // Credit granted before the Attach was written is sent now
+        if (credit > 0) {
+            session.writeFlow(this);
+        }
+    }
+
+    @Override
+    protected void remoteAttached(Attach attach) {
+        if (attach.getInitialDeliveryCount() != null) {
+            deliveryCount = attach.getInitialDeliveryCount().intValue();
+        }
+    }
+
+    @Override
+    void remoteFlow(Flow flow) {
+        if (flow.hasDeliveryCount()) {
+            // Credit is relative to the delivery count, the sender advancing it without
+            // sending, as it does when draining, consumes credit.
+            final int limit = deliveryCount + credit;
+            deliveryCount = (int) flow.getDeliveryCount();
+            credit = Math.max(0, limit - deliveryCount);
+        }
+
+        session.getConnection().getListener().onLinkFlow(this);
+
+        if (flow.getEcho()) {
+            session.writeFlow(this);
+        }
+    }
+
+    void deliverySettled(ProtonDelivery delivery) {
+        if (creditPolicy != null && !delivery.isPartial()) {
+            creditPolicy.onSettled(this, delivery);
+        }
+    }
+
+    void remoteTransfer(Transfer transfer, Binary payload) {
+        ProtonDelivery delivery = current;
+        if (delivery == null) {
+            if (!transfer.hasDeliveryId()) {
+                throw new IllegalStateException("Received first Transfer of a delivery without a delivery id");
+            }
+            if (credit <= 0) {
+                throw new IllegalStateException("Received Transfer for Link " + getName() + " which has no credit");
+            }
+
+            final ProtonBuffer payloadBuffer =
+                streaming ? new ProtonCompositeBuffer() : engine.getBufferAllocator().allocate();
+
+            delivery = new ProtonDelivery(this, transfer.getDeliveryTag(), payloadBuffer);
+            delivery.setDeliveryId((int) transfer.getDeliveryId());
+
+            deliveryCount++;
+            credit--;
+
+            if (!transfer.getSettled()) {
+                session.addIncoming(delivery);
+            }
+
+            current = delivery;
+        }
+
+        if (transfer.getAborted()) {
+            remoteAbort(delivery);
+            return;
+        }
+
+        if (transfer.getSettled()) {
+            delivery.remoteDisposition(transfer.getState(), true);
+        }
+
+        delivery.appendPayload(payload);
+        delivery.setPartial(transfer.getMore());
+        if (!transfer.getMore()) {
+            current = null;
+            if (creditPolicy != null) {
+                creditPolicy.onDelivery(this, delivery);
+            }
+        }
+
+        session.getConnection().getListener().onDelivery(delivery);
+    }
+
+    private void remoteAbort(ProtonDelivery delivery) {
+        // The aborted delivery used its credit but never completes, it is implicitly
+        // settled and the application is told so that it can drop what it has read.
+        current = null;
+        delivery.abort();
+        session.settled(delivery);
+
+        if (creditPolicy != null) {
+            creditPolicy.onAborted(this, delivery);
+        }
+
+        session.getConnection().getListener().onDelivery(delivery);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.UnsignedInteger;
+import org.apache.qpid.proton4j.amqp.transport.Attach;
+import org.apache.qpid.proton4j.amqp.transport.Flow;
+import org.apache.qpid.proton4j.amqp.transport.Role;
+import org.apache.qpid.proton4j.amqp.transport.SenderSettleMode;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.engine.Sender;
+
+/**
+ * Sender Link implementation.
+ */
+public class ProtonSender extends ProtonLink implements Sender {
+
+    ProtonSender(ProtonEngine engine, ProtonSession session, String name) {
+        super(engine, session, name);
+    }
+
+    @Override
+    public ProtonSender open() {
+        super.open();
+        return this;
+    }
+
+    @Override
+    public ProtonSender close() {
+        super.close();
+        return this;
+    }
+
+    @Override
+    public Role getRole() {
+        return Role.SENDER;
+    }
+
+    @Override
+    public boolean isSendable() {
+        return credit > 0 && isAttachSent() && isLocallyOpen() && isRemotelyOpen() && session.isSendable();
+    }
+
+    @Override
+    public ProtonDelivery send(Binary tag, Binary payload) {
+        if (!isSendable()) {
+            throw new IllegalStateException("Sender is not sendable, it must be open and have credit");
+        }
+
+        final ProtonDelivery delivery = new ProtonDelivery(this, tag, null);
+        if (getSenderSettleMode() == SenderSettleMode.SETTLED) {
+            delivery.presettle();
+        }
+
+        session.writeTransfer(this, delivery, payload);
+
+        deliveryCount++;
+        credit--;
+
+        engine.flush();
+
+        return delivery;
+    }
+
+    @Override
+    public ProtonDelivery send(Binary tag, ProtonBuffer payload) {
+        final int length = payload.getReadableBytes();
+        final Binary view;
+
+        if (payload.hasArray()) {
+            view = new Binary(payload.getArray(), payload.getArrayOffset() + payload.getReadIndex(), length);
+        } else {
+            final byte[] copy = new byte[length];
+            payload.getBytes(payload.getReadIndex(), copy);
+            view = new Binary(copy);
+        }
+
+        final ProtonDelivery delivery = send(tag, view);
+        payload.skipBytes(length);
+
+        return delivery;
+    }
+
+    //----- Link flow control ------------------------------------------------//
+
+    @Override
+    protected void configureAttach(Attach attach) {
+        attach.setInitialDeliveryCount(UnsignedInteger.valueOf(deliveryCount));
+    }
+
+    @Override
+    void remoteFlow(Flow flow) {
+        // The receiver computes its credit from the delivery count it last saw, which is
+        // the initial delivery count if it has not yet seen the sender's Attach.
+        final int remoteDeliveryCount = flow.hasDeliveryCount() ? (int) flow.getDeliveryCount() : 0;
+
+        credit = (int) (remoteDeliveryCount + flow.getLinkCredit() - deliveryCount);
+        drain = flow.getDrain();
+
+        session.getConnection().getListener().onLinkFlow(this);
+
+        if (drain && credit > 0) {
+            // Nothing was sent in response to the flow so the remaining credit is consumed
+            deliveryCount += credit;
+            credit = 0;
+            session.writeFlow(this);
+        } else if (flow.getEcho()) {
+            session.writeFlow(this);
+        }
+    }
+}
@@ -0,0 +1,608 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.UnsignedInteger;
+import org.apache.qpid.proton4j.amqp.UnsignedShort;
+import org.apache.qpid.proton4j.amqp.transport.Attach;
+import org.apache.qpid.proton4j.amqp.transport.Begin;
+import org.apache.qpid.proton4j.amqp.transport.DeliveryState;
+import org.apache.qpid.proton4j.amqp.transport.Detach;
+import org.apache.qpid.proton4j.amqp.transport.Disposition;
+import org.apache.qpid.proton4j.amqp.transport.End;
+import org.apache.qpid.proton4j.amqp.transport.Flow;
+import org.apache.qpid.proton4j.amqp.transport.Role;
+import org.apache.qpid.proton4j.amqp.transport.Transfer;
+import org.apache.qpid.proton4j.engine.EndpointState;
+import org.apache.qpid.proton4j.engine.Session;
+
+/**
+ * Session endpoint implementation.
+ * <p>
+ * Links are tracked in {@link EndpointTable}s keyed by the handle this end assigned and by
+ * the handle the peer assigned.  The AMQP sequence numbers of the session are held in primitive
+ * fields and compared using serial number arithmetic.  Unsettled deliveries are tracked by
+ * delivery-id in an {@link UnsettledDeliveryMap} for each direction.
+ * <p>
+ * Every Flow written for a Link also carries the session state and so renews the incoming
+ * window.  Once half of the window has been used without such a Flow being written a
+ * window update is requested from the engine, which writes a single session Flow when
+ * it next flushes, alongside any Dispositions written in the same pass.
+ */
+public class ProtonSession extends ProtonEndpoint implements Session {
+
+    public static final long DEFAULT_HANDLE_MAX = 65535;
+    public static final int DEFAULT_WINDOW = Integer.MAX_VALUE;
+
+    private static final long UINT_MAX = 0xFFFFFFFFL;
+
+    // Frame header plus the largest encoding of a Transfer carrying the handle, delivery-id,
+    // message-format, settled and more fields, the delivery tag length is added to this.
+    private static final int TRANSFER_FRAME_OVERHEAD = 8 + 40;
+
+    private final ProtonConnection connection;
+
+    private long handleMax = DEFAULT_HANDLE_MAX;
+    private long remoteHandleMax = UINT_MAX;
+
+    private int localChannel = -1;
+    private int remoteChannel = -1;
+    private boolean beginSent;
+
+    private final EndpointTable<ProtonLink> localLinks = new EndpointTable<>();
+    private final EndpointTable<ProtonLink> remoteLinks = new EndpointTable<>();
+
+    // Session flow control state, identifiers are serial numbers held in the low 32 bits
+    private int initialOutgoingId;
+    private int nextOutgoingId;
+    private int nextIncomingId;
+    private int incomingCapacity = DEFAULT_WINDOW;
+    private int incomingWindow = DEFAULT_WINDOW;
+    private int outgoingWindow = DEFAULT_WINDOW;
+    private long remoteIncomingWindow;
+    private long remoteOutgoingWindow;
+    private int nextDeliveryId;
+    private boolean windowUpdatePending;
+
+    // Remainder of a delivery whose frames did not all fit within the peer's incoming window
+    private ProtonSender pendingSender;
+    private Binary pendingPayload;
+    private int pendingOffset;
+
+    // Deliveries sent and received that this end has not yet settled
+    private final UnsettledDeliveryMap<ProtonDelivery> outgoingUnsettled = new UnsettledDeliveryMap<>();
+    private final UnsettledDeliveryMap<ProtonDelivery> incomingUnsettled = new UnsettledDeliveryMap<>();
+
+    private final Flow sessionFlow = new Flow();
+    private final DispositionBatcher dispositionBatcher = new DispositionBatcher();
+
+    // State of the Disposition being applied by the visitor
+    private DeliveryState dispositionState;
+    private boolean dispositionSettled;
+
+    private final UnsettledDeliveryMap.Visitor<ProtonDelivery> dispositionVisitor = new UnsettledDeliveryMap.Visitor<ProtonDelivery>() {
+
+        @Override
+        public void visit(int deliveryId, ProtonDelivery delivery) {
+            delivery.remoteDisposition(dispositionState, dispositionSettled);
+            connection.getListener().onDeliveryUpdated(delivery);
+        }
+    };
+
+    ProtonSession(ProtonEngine engine, ProtonConnection connection) {
+        super(engine);
+        this.connection = connection;
+    }
+
+    @Override
+    public ProtonSession open() {
+        super.open();
+        return this;
+    }
+
+    @Override
+    public ProtonSession close() {
+        super.close();
+        return this;
+    }
+
+    @Override
+    public ProtonConnection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public ProtonSender sender(String name) {
+        checkNotClosed();
+        return new ProtonSender(engine, this, name);
+    }
+
+    @Override
+    public ProtonReceiver receiver(String name) {
+        checkNotClosed();
+        return new ProtonReceiver(engine, this, name);
+    }
+
+    @Override
+    public long getHandleMax() {
+        return handleMax;
+    }
+
+    @Override
+    public void setHandleMax(long handleMax) {
+        if (getLocalState() != EndpointState.IDLE) {
+            throw new IllegalStateException("Cannot alter the handle max once the Session has been opened");
+        }
+        if (handleMax < 0 || handleMax > UINT_MAX) {
+            throw new IllegalArgumentException("Handle max must be in the range [0..4294967295]");
+        }
+        this.handleMax = handleMax;
+    }
+
+    @Override
+    public int getIncomingWindow() {
+        return incomingCapacity;
+    }
+
+    @Override
+    public void setIncomingWindow(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Incoming window must be greater than zero");
+        }
+        this.incomingCapacity = window;
+    }
+
+    //----- Local endpoint state ---------------------------------------------//
+
+    @Override
+    protected void localOpen() {
+        if (connection.getLocalState() == EndpointState.CLOSED) {
+            throw new IllegalStateException("Cannot open a Session on a closed Connection");
+        }
+
+        localChannel = connection.assignLocalChannel(this);
+        if (connection.isLocallyOpen()) {
+            writeBegin();
+        }
+    }
+
+    @Override
+    protected void localClose() {
+        if (beginSent) {
+            flushDispositions();
+
+            End end = new End();
+            end.setError(getCondition());
+            engine.writeFrame(end, localChannel, null);
+        }
+
+        if (!beginSent || getRemoteState() == EndpointState.CLOSED) {
+            connection.freeLocalChannel(localChannel);
+        }
+    }
+
+    /**
+     * Called when the Connection writes its Open so that a Session opened ahead of
+     * it can now write its Begin.
+     */
+    void connectionOpened() {
+        if (isLocallyOpen() && !beginSent) {
+            writeBegin();
+        }
+    }
+
+    boolean isBeginSent() {
+        return beginSent;
+    }
+
+    int getLocalChannel() {
+        return localChannel;
+    }
+
+    private void writeBegin() {
+        Begin begin = new Begin();
+        if (remoteChannel >= 0) {
+            begin.setRemoteChannel(UnsignedShort.valueOf((short) remoteChannel));
+        }
+        begin.setNextOutgoingId(UnsignedInteger.valueOf(nextOutgoingId));
+        begin.setIncomingWindow(UnsignedInteger.valueOf(incomingCapacity));
+        incomingWindow = incomingCapacity;
+        begin.setOutgoingWindow(UnsignedInteger.valueOf(outgoingWindow));
+        begin.setHandleMax(UnsignedInteger.valueOf(handleMax));
+
+        engine.writeFrame(begin, localChannel, null);
+        beginSent = true;
+
+        // Links opened ahead of the Session were waiting for the Begin to be written
+        for (int slot = 0; slot < localLinks.slots(); ++slot) {
+            final ProtonLink link = localLinks.valueAt(slot);
+            if (link != null) {
+                link.sessionBegun();
+            }
+        }
+    }
+
+    //----- Link tracking ----------------------------------------------------//
+
+    /**
+     * Assigns the lowest free local handle to the given Link, the handle is held from
+     * the time the Link is opened even if its Attach has to wait for the Begin.
+     *
+     * @param link
+     *      the Link that is being opened.
+     *
+     * @return the handle assigned to the Link.
+     */
+    int assignLocalHandle(ProtonLink link) {
+        final long limit = Math.min(Integer.MAX_VALUE - 1, remoteHandleMax);
+        final long handle = localLinks.lowestFreeKey();
+
+        if (handle <= limit) {
+            localLinks.put((int) handle, link);
+            return (int) handle;
+        }
+
+        throw new IllegalStateException("No handles available, the handle max of " + limit + " has been reached");
+    }
+
+    void freeLocalHandle(int handle) {
+        localLinks.remove(handle);
+    }
+
+    private ProtonLink getRemoteLink(long handle) {
+        final ProtonLink link = remoteLinks.get((int) handle);
+        if (link == null) {
+            throw new IllegalStateException("Received frame for handle " + handle + " which has no attached Link");
+        }
+
+        return link;
+    }
+
+    //----- Outgoing performatives used by the Links -------------------------//
+
+    boolean isSendable() {
+        return beginSent && isLocallyOpen() && isRemotelyOpen() && remoteIncomingWindow > 0 && pendingPayload == null;
+    }
+
+    /**
+     * Writes the Transfer frames of a new delivery.  A payload that does not fit within the
+     * peer's max-frame-size is split across frames that each carry a view of the next part
+     * of the payload array, only the first frame carries the delivery-id, tag and format.
+     */
+    void writeTransfer(ProtonSender sender, ProtonDelivery delivery, Binary payload) {
+        final int deliveryId = nextDeliveryId++;
+        final int length = payload == null ? 0 : payload.getLength();
+        final Transfer transfer = engine.getTransfer();
+
+        int offset = Math.min(length, maxTransferPayload(delivery.getTag().getLength()));
+
+        transfer.setHandle(sender.getLocalHandle());
+        transfer.setDeliveryId(deliveryId & UINT_MAX);
+        transfer.setDeliveryTag(delivery.getTag());
+        transfer.setSettled(delivery.isSettled());
+        transfer.setMore(offset < length);
+
+        engine.writeFrame(transfer, localChannel, slice(payload, 0, offset));
+        transferWritten();
+
+        if (offset < length) {
+            offset = writeContinuations(sender, payload, offset);
+            if (offset < length) {
+                // The caller does not retain the payload so what is left must be copied
+                final byte[] remainder = new byte[length - offset];
+                System.arraycopy(payload.getArray(), payload.getArrayOffset() + offset, remainder, 0, remainder.length);
+
+                pendingSender = sender;
+                pendingPayload = new Binary(remainder);
+                pendingOffset = 0;
+            }
+        }
+
+        delivery.setDeliveryId(deliveryId);
+        if (!delivery.isSettled()) {
+            outgoingUnsettled.put(deliveryId, delivery);
+        }
+    }
+
+    /**
+     * Writes the frames that follow the first frame of a delivery for as long as the peer's
+     * incoming window allows.
+     *
+     * @return the offset into the payload of the first byte not yet written.
+     */
+    private int writeContinuations(ProtonSender sender, Binary payload, int offset) {
+        final int length = payload.getLength();
+        final int maxPayload = maxTransferPayload(0);
+        final Transfer continuation = engine.getContinuationTransfer();
+
+        continuation.setHandle(sender.getLocalHandle());
+        while (offset < length && remoteIncomingWindow > 0) {
+            final int chunk = Math.min(length - offset, maxPayload);
+
+            continuation.setMore(offset + chunk < length);
+            engine.writeFrame(continuation, localChannel, slice(payload, offset, chunk));
+            transferWritten();
+
+            offset += chunk;
+        }
+
+        return offset;
+    }
+
+    /**
+     * Writes a session Flow if the incoming window still needs renewing, called by the
+     * engine when it flushes after a window update was requested.
+     */
+    void writeWindowUpdate() {
+        if (windowUpdatePending && beginSent && isLocallyOpen()) {
+            writeSessionFlow();
+        }
+    }
+
+    /**
+     * Writes a Flow that carries the session state and the flow state of the given Link.
+     */
+    void writeFlow(ProtonLink link) {
+        // Until the peer's Begin arrives the next-incoming-id must be left unset, which the
+        // reused Flow cannot express once the field has been written.
+        final Flow flow = getRemoteState() != EndpointState.IDLE ? engine.getFlow() : new Flow();
+
+        populateSessionFlow(flow);
+        flow.setHandle(link.getLocalHandle());
+        flow.setDeliveryCount(link.getDeliveryCount());
+        flow.setLinkCredit(link.getCredit());
+        flow.setDrain(link.getDrain());
+        flow.setEcho(false);
+
+        engine.writeFrame(flow, localChannel, null);
+    }
+
+    /**
+     * Sends the local state of the delivery, either at once or through the batcher when
+     * the Connection allows dispositions to be coalesced.
+     */
+    void writeDisposition(ProtonDelivery delivery) {
+        final int maxBatchSize = connection.getMaxDispositionBatchSize();
+
+        if (maxBatchSize > 1) {
+            dispositionBatcher.add(delivery, this);
+            if (dispositionBatcher.getCount() >= maxBatchSize) {
+                dispositionBatcher.flush(this);
+            } else {
+                engine.dispositionBatched();
+            }
+        } else {
+            writeDisposition(delivery.getLink().getRole(), delivery.getDeliveryId(), delivery.getDeliveryId(),
+                             delivery.isSettled(), delivery.getLocalState());
+        }
+    }
+
+    void writeDisposition(Role role, int first, int last, boolean settled, DeliveryState state) {
+        final Disposition disposition = engine.getDisposition();
+
+        disposition.setRole(role);
+        disposition.setFirst(UnsignedInteger.valueOf(first));
+        disposition.setLast(first == last ? null : UnsignedInteger.valueOf(last));
+        disposition.setSettled(settled);
+        disposition.setState(state);
+
+        engine.writeFrame(disposition, localChannel, null);
+    }
+
+    /**
+     * Writes any dispositions held by the batcher.
+     */
+    void flushDispositions() {
+        if (dispositionBatcher.getCount() > 0) {
+            dispositionBatcher.flush(this);
+        }
+    }
+
+    void settled(ProtonDelivery delivery) {
+        if (delivery.getLink().getRole() == Role.SENDER) {
+            outgoingUnsettled.remove(delivery.getDeliveryId());
+        } else {
+            incomingUnsettled.remove(delivery.getDeliveryId());
+        }
+    }
+
+    //----- Remote performatives ---------------------------------------------//
+
+    void remoteBegin(Begin begin, int channel) {
+        remoteChannel = channel;
+
+        nextIncomingId = begin.getNextOutgoingId().intValue();
+        remoteOutgoingWindow = begin.getOutgoingWindow().longValue();
+        remoteIncomingWindow = begin.getIncomingWindow().longValue() - (nextOutgoingId - initialOutgoingId);
+        if (begin.getHandleMax() != null) {
+            remoteHandleMax = begin.getHandleMax().longValue();
+        }
+
+        remoteOpened();
+        connection.getListener().onSessionRemoteOpen(this);
+    }
+
+    void remoteEnd(End end) {
+        remoteClosed(end.getError());
+        if (getLocalState() == EndpointState.CLOSED) {
+            connection.freeLocalChannel(localChannel);
+        }
+
+        connection.getListener().onSessionRemoteClose(this);
+    }
+
+    void remoteAttach(Attach attach) {
+        final long handle = attach.getHandle().longValue();
+        if (handle > handleMax) {
+            throw new IllegalStateException("Received Attach with handle " + handle + " above the handle max of " + handleMax);
+        }
+        if (remoteLinks.get((int) handle) != null) {
+            throw new IllegalStateException("Received Attach for handle " + handle + " which is already in use");
+        }
+
+        ProtonLink link = findLinkAwaitingAttach(attach.getName(), attach.getRole());
+        if (link == null) {
+            if (attach.getRole() == Role.SENDER) {
+                link = new ProtonReceiver(engine, this, attach.getName());
+            } else {
+                link = new ProtonSender(engine, this, attach.getName());
+            }
+        }
+
+        remoteLinks.put((int) handle, link);
+
+        link.remoteAttach(attach, (int) handle);
+    }
+
+    void remoteDetach(Detach detach) {
+        final long handle = detach.getHandle().longValue();
+        final ProtonLink link = getRemoteLink(handle);
+
+        remoteLinks.remove((int) handle);
+
+        link.remoteDetach(detach);
+    }
+
+    void remoteFlow(Flow flow) {
+        // The peer's view of its incoming window is relative to the next-incoming-id it
+        // reported, transfers sent since then have already consumed part of the window.
+        final int peerNextIncomingId = flow.hasNextIncomingId() ? (int) flow.getNextIncomingId() : initialOutgoingId;
+        remoteIncomingWindow = flow.getIncomingWindow() - (nextOutgoingId - peerNextIncomingId);
+        remoteOutgoingWindow = flow.getOutgoingWindow();
+
+        if (pendingPayload != null && remoteIncomingWindow > 0) {
+            resumePendingTransfer();
+        }
+
+        if (flow.hasHandle()) {
+            getRemoteLink(flow.getHandle()).remoteFlow(flow);
+        } else if (flow.getEcho()) {
+            writeSessionFlow();
+        }
+    }
+
+    void remoteTransfer(Transfer transfer, Binary payload) {
+        final ProtonLink link = getRemoteLink(transfer.getHandle());
+        if (!(link instanceof ProtonReceiver)) {
+            throw new IllegalStateException("Received Transfer for handle " + transfer.getHandle() + " which is not a receiving Link");
+        }
+
+        if (--incomingWindow < 0) {
+            throw new IllegalStateException("Received Transfer beyond the incoming window of the Session");
+        }
+
+        nextIncomingId++;
+        remoteOutgoingWindow--;
+
+        if (!windowUpdatePending && incomingWindow <= incomingCapacity >>> 1) {
+            windowUpdatePending = true;
+            engine.windowUpdateRequired(this);
+        }
+
+        ((ProtonReceiver) link).remoteTransfer(transfer, payload);
+    }
+
+    void remoteDisposition(Disposition disposition) {
+        final int first = disposition.getFirst().intValue();
+        final int last = disposition.getLast() == null ? first : disposition.getLast().intValue();
+
+        dispositionState = disposition.getState();
+        dispositionSettled = disposition.getSettled();
+        try {
+            // A receiver's disposition refers to the deliveries this end sent and vice versa
+            if (disposition.getRole() == Role.RECEIVER) {
+                outgoingUnsettled.forEach(first, last, dispositionVisitor);
+            } else {
+                incomingUnsettled.forEach(first, last, dispositionVisitor);
+            }
+        } finally {
+            dispositionState = null;
+        }
+    }
+
+    /**
+     * Adds a newly arrived delivery that the peer has not settled to the incoming list.
+     */
+    void addIncoming(ProtonDelivery delivery) {
+        incomingUnsettled.put(delivery.getDeliveryId(), delivery);
+    }
+
+    //----- Internal implementation ------------------------------------------//
+
+    private void writeSessionFlow() {
+        populateSessionFlow(sessionFlow);
+        engine.writeFrame(sessionFlow, localChannel, null);
+    }
+
+    private void populateSessionFlow(Flow flow) {
+        if (getRemoteState() != EndpointState.IDLE) {
+            flow.setNextIncomingId(nextIncomingId & UINT_MAX);
+        }
+        flow.setIncomingWindow(incomingCapacity);
+        flow.setNextOutgoingId(nextOutgoingId & UINT_MAX);
+        flow.setOutgoingWindow(outgoingWindow);
+
+        incomingWindow = incomingCapacity;
+        windowUpdatePending = false;
+    }
+
+    private void resumePendingTransfer() {
+        pendingOffset = writeContinuations(pendingSender, pendingPayload, pendingOffset);
+        if (pendingOffset == pendingPayload.getLength()) {
+            pendingSender = null;
+            pendingPayload = null;
+        }
+    }
+
+    private void transferWritten() {
+        nextOutgoingId++;
+        remoteIncomingWindow--;
+    }
+
+    private int maxTransferPayload(int tagLength) {
+        final long frameLimit = connection.getRemoteMaxFrameSize() & UINT_MAX;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, frameLimit - TRANSFER_FRAME_OVERHEAD - tagLength));
+    }
+
+    private static Binary slice(Binary payload, int offset, int length) {
+        if (payload == null || (offset == 0 && length == payload.getLength())) {
+            return payload;
+        }
+
+        return new Binary(payload.getArray(), payload.getArrayOffset() + offset, length);
+    }
+
+    private ProtonLink findLinkAwaitingAttach(String name, Role remoteRole) {
+        for (int slot = 0; slot < localLinks.slots(); ++slot) {
+            final ProtonLink link = localLinks.valueAt(slot);
+            if (link != null && link.getRemoteState() == EndpointState.IDLE &&
+                link.getRole() != remoteRole && link.getName().equals(name)) {
+
+                return link;
+            }
+        }
+
+        return null;
+    }
+
+    private void checkNotClosed() {
+        if (getLocalState() == EndpointState.CLOSED) {
+            throw new IllegalStateException("Cannot create a Link on a closed Session");
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import java.util.Arrays;
+
+/**
+ * Map of unsettled deliveries keyed by their AMQP delivery-id.
+ * <p>
+ * Delivery ids are assigned in sequence, so the deliveries in flight on a session occupy a
+ * narrow window of ids.  Entries whose id falls within the current window are stored in a
+ * ring buffer at the index given by the id modulo the ring capacity, which makes lookup,
+ * insertion and removal a single array access.  The window starts at the oldest id in the
+ * ring and slides forward as that delivery is settled.  The ring grows by doubling up to a
+ * maximum capacity, ids that still do not fit, for instance a delivery left unsettled far
+ * behind the rest, are stored in an open addressing table of primitive int keys.
+ * <p>
+ * Ids are unsigned 32 bit serial numbers held in an int and compared using serial number
+ * arithmetic, so the window may wrap past 2^32 - 1.  No objects are allocated other than
+ * when either of the arrays has to grow.
+ *
+ * @param <D> the type of delivery stored in the map
+ */
+public final class UnsettledDeliveryMap<D> {
+
+    public static final int DEFAULT_INITIAL_CAPACITY = 64;
+    public static final int DEFAULT_MAX_RING_CAPACITY = 64 * 1024;
+
+    private static final int INITIAL_OVERFLOW_CAPACITY = 16;
+
+    /**
+     * Visitor used to walk the deliveries whose ids fall within a range.
+     *
+     * @param <D> the type of delivery stored in the map
+     */
+    public interface Visitor<D> {
+
+        /**
+         * Called for each delivery in the range, the visitor may remove the visited delivery.
+         *
+         * @param deliveryId
+         *      the delivery-id of the visited delivery.
+         * @param delivery
+         *      the visited delivery.
+         */
+        void visit(int deliveryId, D delivery);
+
+    }
+
+    private final int maxRingCapacity;
+
+    private Object[] ring;
+    private int ringMask;
+    private int ringBase;
+    private int ringSize;
+
+    private final IntKeyedTable<D> overflow = new IntKeyedTable<>(INITIAL_OVERFLOW_CAPACITY);
+
+    public UnsettledDeliveryMap() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_MAX_RING_CAPACITY);
+    }
+
+    /**
+     * Creates a map whose ring starts at the given capacity and may grow up to the given
+     * maximum, both values are rounded up to a power of two.
+     *
+     * @param initialCapacity
+     *      the initial number of ids the ring can hold.
+     * @param maxRingCapacity
+     *      the largest number of ids the ring can grow to hold.
+     */
+    public UnsettledDeliveryMap(int initialCapacity, int maxRingCapacity) {
+        if (initialCapacity <= 0 || maxRingCapacity < initialCapacity) {
+            throw new IllegalArgumentException("Initial capacity must be positive and not greater than the maximum");
+        }
+        if (maxRingCapacity > 1 << 30) {
+            throw new IllegalArgumentException("Maximum ring capacity cannot be greater than 2^30");
+        }
+
+        this.ring = new Object[powerOfTwo(initialCapacity)];
+        this.ringMask = ring.length - 1;
+        this.maxRingCapacity = powerOfTwo(maxRingCapacity);
+    }
+
+    /**
+     * @return the number of deliveries in the map.
+     */
+    public int size() {
+        return ringSize + overflow.size();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Adds a delivery to the map, replacing any delivery already stored with the same id.
+     *
+     * @param deliveryId
+     *      the delivery-id of the delivery.
+     * @param delivery
+     *      the delivery to store.
+     */
+    public void put(int deliveryId, D delivery) {
+        if (delivery == null) {
+            throw new NullPointerException("Cannot store a null delivery");
+        }
+
+        // The id may be moving from the overflow table into the ring
+        overflow.remove(deliveryId);
+
+        if (ringSize == 0) {
+            ringBase = deliveryId;
+        }
+
+        int offset = deliveryId - ringBase;
+        if (offset >= ring.length && offset < maxRingCapacity) {
+            growRing(offset);
+        }
+
+        if (offset >= 0 && offset < ring.length) {
+            final int index = deliveryId & ringMask;
+            if (ring[index] == null) {
+                ringSize++;
+            }
+            ring[index] = delivery;
+        } else {
+            overflow.put(deliveryId, delivery);
+        }
+    }
+
+    /**
+     * @param deliveryId
+     *      the delivery-id to look up.
+     *
+     * @return the delivery with the given id, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public D get(int deliveryId) {
+        final Object delivery = ringGet(deliveryId);
+        if (delivery != null) {
+            return (D) delivery;
+        }
+
+        return overflow.get(deliveryId);
+    }
+
+    /**
+     * @param deliveryId
+     *      the delivery-id to remove.
+     *
+     * @return the delivery that was removed, or null if there was none with the given id.
+     */
+    @SuppressWarnings("unchecked")
+    public D remove(int deliveryId) {
+        final int offset = deliveryId - ringBase;
+        if (offset >= 0 && offset < ring.length) {
+            final int index = deliveryId & ringMask;
+            final Object delivery = ring[index];
+            if (delivery != null) {
+                ring[index] = null;
+                if (--ringSize > 0 && offset == 0) {
+                    // Slide the window up to the oldest remaining delivery
+                    do {
+                        ringBase++;
+                    } while (ring[ringBase & ringMask] == null);
+                }
+
+                return (D) delivery;
+            }
+        }
+
+        return overflow.remove(deliveryId);
+    }
+
+    /**
+     * Visits each delivery whose id lies in the serial number range [first, last].
+     * <p>
+     * The cost is bounded by the capacity of the map rather than by the width of the range,
+     * so a peer naming an arbitrarily wide range cannot cause a long walk.
+     *
+     * @param first
+     *      the first delivery-id of the range.
+     * @param last
+     *      the last delivery-id of the range, inclusive.
+     * @param visitor
+     *      the visitor to call for each delivery found.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(int first, int last, Visitor<D> visitor) {
+        final long span = (last - first) & 0xFFFFFFFFL;
+
+        if (ringSize > 0) {
+            // Offsets are taken from the base at the start since visitors may slide the window
+            final int base = ringBase;
+            final long from = Math.max(0, first - base);
+            final long to = Math.min(ring.length - 1, (long) (first - base) + span);
+
+            for (long offset = from; offset <= to; ++offset) {
+                final int deliveryId = base + (int) offset;
+                final Object delivery = ringGet(deliveryId);
+                if (delivery != null) {
+                    visitor.visit(deliveryId, (D) delivery);
+                }
+            }
+        }
+
+        if (overflow.size() > 0 && span < overflow.size()) {
+            // Narrow ranges are looked up directly rather than scanning the whole table
+            for (long offset = 0; offset <= span; ++offset) {
+                final int deliveryId = first + (int) offset;
+                final D delivery = overflow.get(deliveryId);
+                if (delivery != null) {
+                    visitor.visit(deliveryId, delivery);
+                }
+            }
+        } else if (overflow.size() > 0) {
+            // Removal never moves entries so visiting cannot skip entries that are yet to be seen
+            final int slots = overflow.slots();
+            for (int i = 0; i < slots; ++i) {
+                final D delivery = overflow.valueAt(i);
+                if (delivery != null && ((overflow.keyAt(i) - first) & 0xFFFFFFFFL) <= span) {
+                    visitor.visit(overflow.keyAt(i), delivery);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all deliveries from the map.
+     */
+    public void clear() {
+        Arrays.fill(ring, null);
+        ringSize = 0;
+
+        overflow.clear();
+    }
+
+    //----- Ring buffer ------------------------------------------------------//
+
+    private Object ringGet(int deliveryId) {
+        final int offset = deliveryId - ringBase;
+        if (offset >= 0 && offset < ring.length) {
+            return ring[deliveryId & ringMask];
+        }
+
+        return null;
+    }
+
+    private void growRing(int offset) {
+        int capacity = ring.length;
+        while (capacity <= offset) {
+            capacity <<= 1;
+        }
+
+        final Object[] newRing = new Object[capacity];
+        final int newMask = capacity - 1;
+        for (int i = 0; i < ring.length; ++i) {
+            final int deliveryId = ringBase + i;
+            newRing[deliveryId & newMask] = ring[deliveryId & ringMask];
+        }
+
+        ring = newRing;
+        ringMask = newMask;
+    }
+
+    private static int powerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+}
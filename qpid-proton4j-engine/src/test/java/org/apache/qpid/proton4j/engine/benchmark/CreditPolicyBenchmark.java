@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.Performative.PerformativeType;
+import org.apache.qpid.proton4j.engine.Connection;
+import org.apache.qpid.proton4j.engine.Delivery;
+import org.apache.qpid.proton4j.engine.EngineListener;
+import org.apache.qpid.proton4j.engine.Link;
+import org.apache.qpid.proton4j.engine.Receiver;
+import org.apache.qpid.proton4j.engine.Sender;
+import org.apache.qpid.proton4j.engine.Session;
+import org.apache.qpid.proton4j.engine.credit.AdaptiveCreditPolicy;
+import org.apache.qpid.proton4j.engine.credit.ByteCreditPolicy;
+import org.apache.qpid.proton4j.engine.credit.CreditPolicy;
+import org.apache.qpid.proton4j.engine.credit.FixedWindowCreditPolicy;
+import org.apache.qpid.proton4j.engine.impl.ProtonEnginePair;
+import org.apache.qpid.proton4j.transport.metrics.Histogram;
+import org.apache.qpid.proton4j.transport.metrics.TransportMetrics;
+
+/**
+ * Measures throughput, Flow frames per message and delivery latency for each credit policy.
+ * <p>
+ * The sender transfers whenever it holds credit while the consumer settles a limited number
+ * of deliveries on each pass over the in-memory connection, latency is the time from send
+ * until the consumer settles the delivery.
+ */
+public class CreditPolicyBenchmark implements Runnable {
+
+    private static final int MESSAGES = 1024 * 1024;
+    private static final int MESSAGE_SIZE = 256;
+    private static final int CONSUMER_BATCH = 64;
+
+    private boolean warming = true;
+
+    public static final void main(String[] args) throws IOException, InterruptedException {
+        System.out.println("Current PID: " + ManagementFactory.getRuntimeMXBean().getName());
+        CreditPolicyBenchmark benchmark = new CreditPolicyBenchmark();
+        benchmark.run();
+    }
+
+    @Override
+    public void run() {
+        try {
+            doBenchmarks();
+            warming = false;
+            doBenchmarks();
+        } catch (IOException e) {
+            System.out.println("Unexpected error: " + e.getMessage());
+        }
+    }
+
+    private void doBenchmarks() throws IOException {
+        benchmark("Fixed window of 1 (refill per message)", new FixedWindowCreditPolicy(1));
+        benchmark("Fixed window of 100", new FixedWindowCreditPolicy(100));
+        benchmark("Fixed window of 1000", new FixedWindowCreditPolicy(1000));
+        benchmark("Byte budget of 256K", new ByteCreditPolicy(256 * 1024, 1024));
+        benchmark("Adaptive window 10..1000", new AdaptiveCreditPolicy(10, 1000, 10, TimeUnit.MILLISECONDS));
+    }
+
+    private void benchmark(String name, CreditPolicy policy) throws IOException {
+        final ProtonEnginePair pair = new ProtonEnginePair();
+        final TransportMetrics metrics = new TransportMetrics();
+        final Histogram latency = new Histogram();
+        final ArrayDeque<Delivery> queued = new ArrayDeque<>();
+        final long[] sendTimes = new long[MESSAGES];
+        final Sender[] sender = new Sender[1];
+
+        pair.getClientTransport().setMetrics(metrics);
+        pair.getServer().getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onConnectionRemoteOpen(Connection connection) {
+                connection.open();
+            }
+
+            @Override
+            public void onSessionRemoteOpen(Session session) {
+                session.open();
+            }
+
+            @Override
+            public void onLinkRemoteOpen(Link link) {
+                sender[0] = (Sender) link;
+                sender[0].open();
+            }
+
+            @Override
+            public void onDeliveryUpdated(Delivery delivery) {
+                if (delivery.isRemotelySettled()) {
+                    delivery.settle();
+                }
+            }
+        });
+        pair.getClient().getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onDelivery(Delivery delivery) {
+                queued.add(delivery);
+            }
+        });
+
+        Receiver receiver = pair.getClient().getConnection().session().open().receiver("benchmark");
+        receiver.setCreditPolicy(policy);
+        receiver.open();
+        pair.getClient().getConnection().open();
+        pair.pump();
+
+        final Binary payload = new Binary(new byte[MESSAGE_SIZE]);
+        final long startTime = System.nanoTime();
+
+        int sent = 0;
+        int settled = 0;
+
+        while (settled < MESSAGES) {
+            while (sent < MESSAGES && sender[0].getCredit() > 0) {
+                sendTimes[sent] = System.nanoTime();
+                sender[0].send(new Binary(toTag(sent)), payload);
+                sent++;
+            }
+
+            pair.pump();
+
+            for (int i = 0; i < CONSUMER_BATCH && !queued.isEmpty(); ++i) {
+                queued.poll().settle();
+                latency.record(System.nanoTime() - sendTimes[settled++]);
+            }
+
+            pair.pump();
+        }
+
+        final long totalTime = System.nanoTime() - startTime;
+
+        if (!warming) {
+            final long flows = metrics.getFramesOut(PerformativeType.FLOW);
+
+            System.out.println("Benchmark of credit policy: " + name + ": ");
+            System.out.println("    Throughput (msg/s) = " + (long) (MESSAGES / (totalTime / 1e9)));
+            System.out.println("    Flow frames = " + flows + ", per message = " + ((double) flows / MESSAGES));
+            System.out.println("    Latency p50 (us) = " + TimeUnit.NANOSECONDS.toMicros(latency.getValueAtPercentile(50)));
+            System.out.println("    Latency p99 (us) = " + TimeUnit.NANOSECONDS.toMicros(latency.getValueAtPercentile(99)));
+            System.out.println("    Latency max (us) = " + TimeUnit.NANOSECONDS.toMicros(latency.getMax()));
+        }
+    }
+
+    private static byte[] toTag(int value) {
+        return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.Performative.PerformativeType;
+import org.apache.qpid.proton4j.engine.Connection;
+import org.apache.qpid.proton4j.engine.Delivery;
+import org.apache.qpid.proton4j.engine.EngineListener;
+import org.apache.qpid.proton4j.engine.Link;
+import org.apache.qpid.proton4j.engine.Receiver;
+import org.apache.qpid.proton4j.engine.Sender;
+import org.apache.qpid.proton4j.engine.Session;
+import org.apache.qpid.proton4j.engine.credit.FixedWindowCreditPolicy;
+import org.apache.qpid.proton4j.engine.impl.ProtonEnginePair;
+import org.apache.qpid.proton4j.transport.metrics.TransportMetrics;
+
+/**
+ * Measures the frames written per message by the receiving end for a range of Session
+ * incoming window sizes, with each delivery settled as it arrives.
+ */
+public class SessionWindowBenchmark implements Runnable {
+
+    private static final int MESSAGES = 512 * 1024;
+    private static final int MESSAGE_SIZE = 256;
+    private static final int CREDIT_WINDOW = 1000;
+
+    private static final int[] WINDOWS = new int[] { 1, 2, 16, 128, 1024, Integer.MAX_VALUE };
+
+    private boolean warming = true;
+
+    public static final void main(String[] args) throws IOException, InterruptedException {
+        System.out.println("Current PID: " + ManagementFactory.getRuntimeMXBean().getName());
+        SessionWindowBenchmark benchmark = new SessionWindowBenchmark();
+        benchmark.run();
+    }
+
+    @Override
+    public void run() {
+        try {
+            doBenchmarks();
+            warming = false;
+            doBenchmarks();
+        } catch (IOException e) {
+            System.out.println("Unexpected error: " + e.getMessage());
+        }
+    }
+
+    private void doBenchmarks() throws IOException {
+        for (int window : WINDOWS) {
+            benchmark(window);
+        }
+    }
+
+    private void benchmark(int window) throws IOException {
+        final ProtonEnginePair pair = new ProtonEnginePair();
+        final TransportMetrics receiverMetrics = new TransportMetrics();
+        final TransportMetrics senderMetrics = new TransportMetrics();
+        final Sender[] sender = new Sender[1];
+
+        pair.getClientTransport().setMetrics(receiverMetrics);
+        pair.getServerTransport().setMetrics(senderMetrics);
+        pair.getServer().getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onConnectionRemoteOpen(Connection connection) {
+                connection.open();
+            }
+
+            @Override
+            public void onSessionRemoteOpen(Session session) {
+                session.open();
+            }
+
+            @Override
+            public void onLinkRemoteOpen(Link link) {
+                sender[0] = (Sender) link;
+                sender[0].open();
+            }
+
+            @Override
+            public void onDeliveryUpdated(Delivery delivery) {
+                if (delivery.isRemotelySettled()) {
+                    delivery.settle();
+                }
+            }
+        });
+        pair.getClient().getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onDelivery(Delivery delivery) {
+                if (!delivery.isPartial()) {
+                    delivery.settle();
+                }
+            }
+        });
+
+        Session session = pair.getClient().getConnection().session();
+        session.setIncomingWindow(window);
+
+        Receiver receiver = session.open().receiver("benchmark");
+        receiver.setCreditPolicy(new FixedWindowCreditPolicy(CREDIT_WINDOW));
+        receiver.open();
+        pair.getClient().getConnection().open();
+        pair.pump();
+
+        receiverMetrics.reset();
+        senderMetrics.reset();
+
+        final Binary payload = new Binary(new byte[MESSAGE_SIZE]);
+        final long startTime = System.nanoTime();
+
+        int sent = 0;
+        while (sent < MESSAGES) {
+            while (sent < MESSAGES && sender[0].isSendable()) {
+                sender[0].send(new Binary(toTag(sent++)), payload);
+            }
+
+            pair.pump();
+        }
+
+        final long totalTime = System.nanoTime() - startTime;
+
+        if (!warming) {
+            System.out.println("Benchmark of session incoming window: " + (window == Integer.MAX_VALUE ? "unlimited" : window) + ": ");
+            System.out.println("    Throughput (msg/s) = " + (long) (MESSAGES / (totalTime / 1e9)));
+            System.out.println("    Receiver frames per message = " + perMessage(receiverMetrics.getFramesOut()));
+            System.out.println("        Flow = " + perMessage(receiverMetrics.getFramesOut(PerformativeType.FLOW)));
+            System.out.println("        Disposition = " + perMessage(receiverMetrics.getFramesOut(PerformativeType.DISPOSITION)));
+            System.out.println("    Sender frames per message = " + perMessage(senderMetrics.getFramesOut()));
+        }
+    }
+
+    private static double perMessage(long frames) {
+        return (double) frames / MESSAGES;
+    }
+
+    private static byte[] toTag(int value) {
+        return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.credit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.Performative.PerformativeType;
+import org.apache.qpid.proton4j.engine.Connection;
+import org.apache.qpid.proton4j.engine.Delivery;
+import org.apache.qpid.proton4j.engine.EngineListener;
+import org.apache.qpid.proton4j.engine.Link;
+import org.apache.qpid.proton4j.engine.Receiver;
+import org.apache.qpid.proton4j.engine.Sender;
+import org.apache.qpid.proton4j.engine.Session;
+import org.apache.qpid.proton4j.engine.impl.ProtonEnginePair;
+import org.apache.qpid.proton4j.transport.metrics.TransportMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the Receiver credit policies
+ */
+public class CreditPolicyTest {
+
+    private ProtonEnginePair pair;
+    private TransportMetrics clientMetrics;
+    private Sender sender;
+    private Receiver receiver;
+
+    private final List<Delivery> received = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        pair = new ProtonEnginePair();
+        clientMetrics = new TransportMetrics();
+        pair.getClientTransport().setMetrics(clientMetrics);
+
+        pair.getServer().getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onConnectionRemoteOpen(Connection connection) {
+                connection.open();
+            }
+
+            @Override
+            public void onSessionRemoteOpen(Session session) {
+                session.open();
+            }
+
+            @Override
+            public void onLinkRemoteOpen(Link link) {
+                sender = (Sender) link;
+                sender.open();
+            }
+        });
+
+        pair.getClient().getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onDelivery(Delivery delivery) {
+                received.add(delivery);
+            }
+        });
+    }
+
+    @Test
+    public void testFixedWindowRefillsAtLowWatermark() throws Exception {
+        openReceiver(new FixedWindowCreditPolicy(10, 5));
+
+        assertEquals(10, sender.getCredit());
+        assertEquals(1, flowsSent());
+
+        send(6, 10);
+        assertEquals(4, sender.getCredit());
+
+        // Consuming the first delivery takes the outstanding total to nine, no refill yet
+        settle(1);
+        assertEquals(1, flowsSent());
+
+        // The refill happens once one delivery is left unsettled and tops the window back up
+        settle(5);
+        pair.pump();
+
+        assertEquals(2, flowsSent());
+        assertEquals(9, sender.getCredit());
+        assertTrue(pair.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testFixedWindowHoldsBackCreditWhileUnconsumed() throws Exception {
+        openReceiver(new FixedWindowCreditPolicy(8));
+
+        send(8, 10);
+        assertEquals(0, sender.getCredit());
+
+        // Nothing is consumed so the application never holds more than the window
+        pair.pump();
+        assertEquals(1, flowsSent());
+
+        settle(4);
+        pair.pump();
+
+        assertEquals(2, flowsSent());
+        assertEquals(4, sender.getCredit());
+    }
+
+    @Test
+    public void testByteCreditConvertsBudgetUsingAverageSize() throws Exception {
+        ByteCreditPolicy policy = new ByteCreditPolicy(10000, 1000);
+        openReceiver(policy);
+
+        assertEquals(10, sender.getCredit());
+
+        send(10, 500);
+        assertTrue(policy.getAverageSize() < 1000);
+        assertEquals(5000, policy.getUnsettledBytes());
+
+        settle(10);
+        pair.pump();
+
+        // One Flow for the refill once half the budget is free, sized from the smaller average
+        assertEquals(2, flowsSent());
+        assertEquals((10000 - 4500) / policy.getAverageSize(), sender.getCredit());
+        assertEquals(0, policy.getUnsettledBytes());
+    }
+
+    @Test
+    public void testAdaptiveWindowFollowsConsumptionRate() throws Exception {
+        final long[] now = new long[1];
+        AdaptiveCreditPolicy policy = new AdaptiveCreditPolicy(4, 64, 100, TimeUnit.MILLISECONDS) {
+
+            @Override
+            protected long nanoTime() {
+                return now[0];
+            }
+        };
+
+        openReceiver(policy);
+        assertEquals(4, sender.getCredit());
+
+        // Consume 40 deliveries over 100ms, a rate that fills a 40 delivery window
+        for (int i = 0; i < 10; ++i) {
+            send(4, 10);
+            settle(3);
+            now[0] += TimeUnit.MILLISECONDS.toNanos(10);
+            settle(1);
+            pair.pump();
+        }
+
+        assertEquals(40, policy.getWindow());
+        assertEquals(40, sender.getCredit());
+
+        // A slow consumer shrinks the window back to the minimum
+        send(40, 10);
+        now[0] += TimeUnit.SECONDS.toNanos(10);
+        settle(40);
+        pair.pump();
+
+        assertEquals(4, policy.getWindow());
+        assertEquals(4, sender.getCredit());
+        assertTrue(pair.getFailures().isEmpty());
+    }
+
+    private void openReceiver(CreditPolicy policy) throws Exception {
+        receiver = pair.getClient().getConnection().session().open().receiver("receiver");
+        receiver.setCreditPolicy(policy);
+        receiver.open();
+        pair.getClient().getConnection().open();
+        pair.pump();
+    }
+
+    private void send(int count, int size) throws Exception {
+        for (int i = 0; i < count; ++i) {
+            sender.send(new Binary(new byte[] { (byte) i }), new Binary(new byte[size]));
+        }
+        pair.pump();
+    }
+
+    private void settle(int count) {
+        for (Delivery delivery : received) {
+            if (count == 0) {
+                break;
+            } else if (!delivery.isSettled()) {
+                delivery.settle();
+                count--;
+            }
+        }
+    }
+
+    private long flowsSent() {
+        return clientMetrics.getFramesOut(PerformativeType.FLOW);
+    }
+}
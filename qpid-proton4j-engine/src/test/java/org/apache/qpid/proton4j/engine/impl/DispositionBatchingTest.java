@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.messaging.Accepted;
+import org.apache.qpid.proton4j.amqp.messaging.Rejected;
+import org.apache.qpid.proton4j.amqp.transport.Performative.PerformativeType;
+import org.apache.qpid.proton4j.engine.Connection;
+import org.apache.qpid.proton4j.engine.Delivery;
+import org.apache.qpid.proton4j.engine.EngineListener;
+import org.apache.qpid.proton4j.engine.Link;
+import org.apache.qpid.proton4j.engine.Receiver;
+import org.apache.qpid.proton4j.engine.Sender;
+import org.apache.qpid.proton4j.engine.Session;
+import org.apache.qpid.proton4j.transport.impl.TimingWheel;
+import org.apache.qpid.proton4j.transport.metrics.TransportMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for coalescing delivery updates into ranged Disposition frames
+ */
+public class DispositionBatchingTest {
+
+    private ProtonEnginePair pair;
+    private Connection server;
+    private TransportMetrics serverMetrics;
+    private Sender sender;
+    private Receiver receiver;
+
+    private final List<Delivery> received = new ArrayList<>();
+    private final List<Delivery> updated = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        pair = new ProtonEnginePair();
+        server = pair.getServer().getConnection();
+        serverMetrics = new TransportMetrics();
+        pair.getServerTransport().setMetrics(serverMetrics);
+
+        server.setListener(new EngineListener() {
+
+            @Override
+            public void onConnectionRemoteOpen(Connection connection) {
+                connection.open();
+            }
+
+            @Override
+            public void onSessionRemoteOpen(Session session) {
+                session.open();
+            }
+
+            @Override
+            public void onLinkRemoteOpen(Link link) {
+                receiver = (Receiver) link;
+                receiver.open();
+                receiver.flow(100);
+            }
+
+            @Override
+            public void onDelivery(Delivery delivery) {
+                received.add(delivery);
+            }
+        });
+
+        Connection client = pair.getClient().getConnection();
+        client.setListener(new EngineListener() {
+
+            @Override
+            public void onDeliveryUpdated(Delivery delivery) {
+                updated.add(delivery);
+            }
+        });
+
+        sender = client.session().open().sender("sender").open();
+        client.open();
+        pair.pump();
+    }
+
+    @Test
+    public void testUnbatchedWritesDispositionPerDelivery() throws Exception {
+        sendAndSettle(5, 5);
+
+        assertEquals(5, serverMetrics.getFramesOut(PerformativeType.DISPOSITION));
+        assertEquals(5, updated.size());
+    }
+
+    @Test
+    public void testBatchWrittenWhenMaxCountReached() throws Exception {
+        server.setMaxDispositionBatchSize(4);
+        server.setMaxDispositionDelay(60000);
+
+        sendAndSettle(10, 10);
+
+        assertEquals(2, serverMetrics.getFramesOut(PerformativeType.DISPOSITION));
+        assertEquals(8, updated.size());
+
+        server.flushDispositions();
+        pair.pump();
+
+        assertEquals(3, serverMetrics.getFramesOut(PerformativeType.DISPOSITION));
+        assertEquals(10, updated.size());
+        for (int i = 0; i < 10; ++i) {
+            assertTrue(updated.get(i).isRemotelySettled());
+            assertEquals(Accepted.getInstance(), updated.get(i).getRemoteState());
+        }
+        assertTrue(pair.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testBatchWrittenOnceDelayElapses() throws Exception {
+        server.setMaxDispositionBatchSize(100);
+        server.setMaxDispositionDelay(0);
+
+        sendAndSettle(6, 6);
+
+        // Each settle made outside the pipeline finds the zero delay already elapsed
+        assertEquals(6, serverMetrics.getFramesOut(PerformativeType.DISPOSITION));
+
+        server.setMaxDispositionDelay(60000);
+        updated.clear();
+        sendAndSettle(6, 6);
+
+        assertEquals(6, serverMetrics.getFramesOut(PerformativeType.DISPOSITION));
+        assertTrue(updated.isEmpty());
+
+        server.flushDispositions();
+        pair.pump();
+
+        assertEquals(7, serverMetrics.getFramesOut(PerformativeType.DISPOSITION));
+        assertEquals(6, updated.size());
+    }
+
+    @Test
+    public void testBatchWrittenByTimeoutOnTimingWheel() throws Exception {
+        TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 64, 0);
+        pair.getServer().setTimingWheel(wheel);
+
+        server.setMaxDispositionBatchSize(100);
+        server.setMaxDispositionDelay(100);
+
+        sendAndSettle(6, 6);
+
+        // The first held update started the timeout, the rest wait for it
+        assertEquals(0, serverMetrics.getFramesOut(PerformativeType.DISPOSITION));
+        assertEquals(1, wheel.getScheduledCount());
+
+        wheel.advance(TimeUnit.MILLISECONDS.toNanos(50));
+        pair.pump();
+        assertTrue(updated.isEmpty());
+
+        wheel.advance(TimeUnit.MILLISECONDS.toNanos(110));
+        pair.pump();
+
+        assertEquals(1, serverMetrics.getFramesOut(PerformativeType.DISPOSITION));
+        assertEquals(6, updated.size());
+        assertEquals(0, wheel.getScheduledCount());
+
+        // A batch written before the delay elapses takes its timeout with it
+        sendAndSettle(3, 3);
+        assertEquals(1, wheel.getScheduledCount());
+
+        server.flushDispositions();
+        pair.pump();
+
+        assertEquals(2, serverMetrics.getFramesOut(PerformativeType.DISPOSITION));
+        assertEquals(0, wheel.getScheduledCount());
+        assertTrue(pair.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testUpdatesMadeWhileProcessingFramesAreCoalesced() throws Exception {
+        server.setMaxDispositionBatchSize(100);
+
+        server.setListener(new EngineListener() {
+
+            @Override
+            public void onDelivery(Delivery delivery) {
+                delivery.disposition(Accepted.getInstance(), true);
+            }
+        });
+
+        for (int i = 0; i < 8; ++i) {
+            sender.send(new Binary(new byte[] { (byte) i }), new Binary(new byte[] { 1 }));
+        }
+
+        // Deliver all of the transfers in one read dispatched as a single batch
+        pair.setServerBatchSize(8);
+        pair.pump();
+
+        assertEquals(1, serverMetrics.getFramesOut(PerformativeType.DISPOSITION));
+        assertEquals(8, updated.size());
+    }
+
+    @Test
+    public void testDifferentOutcomesAreWrittenAsSeparateRanges() throws Exception {
+        server.setMaxDispositionBatchSize(100);
+        server.setMaxDispositionDelay(60000);
+
+        sendAndSettle(5, 0);
+
+        received.get(0).disposition(Accepted.getInstance(), true);
+        received.get(1).disposition(Accepted.getInstance(), true);
+        received.get(2).disposition(new Rejected(), true);
+        received.get(3).disposition(Accepted.getInstance(), true);
+        received.get(4).disposition(Accepted.getInstance(), true);
+
+        server.flushDispositions();
+        pair.pump();
+
+        assertEquals(3, serverMetrics.getFramesOut(PerformativeType.DISPOSITION));
+        assertEquals(5, updated.size());
+        assertTrue(updated.get(2).getRemoteState() instanceof Rejected);
+    }
+
+    @Test
+    public void testRepeatUpdateForDeliveryFlushesEarlierUpdate() throws Exception {
+        server.setMaxDispositionBatchSize(100);
+        server.setMaxDispositionDelay(60000);
+
+        sendAndSettle(2, 0);
+
+        received.get(0).disposition(Accepted.getInstance(), false);
+        received.get(1).disposition(Accepted.getInstance(), false);
+        received.get(0).settle();
+
+        assertEquals(1, serverMetrics.getFramesOut(PerformativeType.DISPOSITION));
+
+        server.flushDispositions();
+        pair.pump();
+
+        assertEquals(2, serverMetrics.getFramesOut(PerformativeType.DISPOSITION));
+        assertEquals(3, updated.size());
+        assertTrue(updated.get(2).isRemotelySettled());
+        assertEquals(updated.get(0), updated.get(2));
+    }
+
+    @Test
+    public void testClosingLinkWritesHeldDispositions() throws Exception {
+        server.setMaxDispositionBatchSize(100);
+        server.setMaxDispositionDelay(60000);
+
+        sendAndSettle(3, 3);
+        assertTrue(updated.isEmpty());
+
+        receiver.close();
+        pair.pump();
+
+        assertEquals(1, serverMetrics.getFramesOut(PerformativeType.DISPOSITION));
+        assertEquals(3, updated.size());
+    }
+
+    private void sendAndSettle(int count, int settle) throws Exception {
+        final int start = received.size();
+        for (int i = 0; i < count; ++i) {
+            sender.send(new Binary(new byte[] { (byte) i }), new Binary(new byte[] { 1, 2 }));
+        }
+        pair.pump();
+
+        for (int i = 0; i < settle; ++i) {
+            received.get(start + i).disposition(Accepted.getInstance(), true);
+        }
+        pair.pump();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for the channel and handle keyed endpoint table
+ */
+public class EndpointTableTest {
+
+    @Test
+    public void testDenseKeysPutGetRemove() {
+        EndpointTable<String> table = new EndpointTable<>(16);
+
+        for (int i = 0; i < 16; ++i) {
+            table.put(i, "e" + i);
+        }
+
+        assertEquals(16, table.size());
+        assertEquals("e0", table.get(0));
+        assertEquals("e15", table.get(15));
+        assertNull(table.get(16));
+        assertNull(table.get(-1));
+
+        for (int i = 0; i < 16; ++i) {
+            assertEquals("e" + i, table.remove(i));
+        }
+
+        assertTrue(table.isEmpty());
+        assertNull(table.remove(3));
+    }
+
+    @Test
+    public void testLargeKeysUseSparseTable() {
+        EndpointTable<String> table = new EndpointTable<>(8);
+
+        table.put(1, "small");
+        table.put(4000000, "large");
+        table.put(0xFFFFFFFF, "max");
+
+        // Only the dense array that covers the small key should have been allocated
+        assertEquals(3, table.size());
+        assertTrue(table.slots() < 64);
+        assertEquals("small", table.get(1));
+        assertEquals("large", table.get(4000000));
+        assertEquals("max", table.get(0xFFFFFFFF));
+        assertNull(table.get(4000001));
+
+        table.put(4000000, "replaced");
+        assertEquals(3, table.size());
+        assertEquals("replaced", table.get(4000000));
+
+        assertEquals("replaced", table.remove(4000000));
+        assertEquals("max", table.remove(0xFFFFFFFF));
+        assertNull(table.get(4000000));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void testLowestFreeKey() {
+        EndpointTable<String> table = new EndpointTable<>(4);
+
+        assertEquals(0, table.lowestFreeKey());
+
+        for (int i = 0; i < 4; ++i) {
+            table.put((int) table.lowestFreeKey(), "e" + i);
+        }
+        assertEquals(4, table.lowestFreeKey());
+
+        table.remove(2);
+        assertEquals(2, table.lowestFreeKey());
+        table.put(2, "e2");
+
+        table.put(4, "e4");
+        table.put(5, "e5");
+        assertEquals(6, table.lowestFreeKey());
+    }
+
+    @Test
+    public void testSlotsVisitEveryEndpoint() {
+        EndpointTable<Integer> table = new EndpointTable<>(8);
+
+        Set<Integer> expected = new HashSet<>();
+        for (int key : new int[] { 0, 3, 7, 8, 100, 65535, 0x80000000 }) {
+            table.put(key, key);
+            expected.add(key);
+        }
+        table.remove(100);
+        expected.remove(100);
+
+        Set<Integer> visited = new HashSet<>();
+        for (int slot = 0; slot < table.slots(); ++slot) {
+            Integer value = table.valueAt(slot);
+            if (value != null) {
+                visited.add(value);
+            }
+        }
+
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    public void testRandomOperationsMatchHashMap() {
+        EndpointTable<Integer> table = new EndpointTable<>(32);
+        Map<Integer, Integer> reference = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20000; ++i) {
+            final int key = random.nextBoolean() ? random.nextInt(64) : random.nextInt();
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(key), table.remove(key));
+            } else {
+                reference.put(key, i);
+                table.put(key, i);
+            }
+
+            assertEquals(reference.size(), table.size());
+        }
+
+        for (Map.Entry<Integer, Integer> entry : reference.entrySet()) {
+            assertEquals(entry.getValue(), table.get(entry.getKey()));
+        }
+    }
+}
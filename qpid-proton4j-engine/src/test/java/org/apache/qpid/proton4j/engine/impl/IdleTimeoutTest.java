@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton4j.amqp.transport.AmqpError;
+import org.apache.qpid.proton4j.engine.Connection;
+import org.apache.qpid.proton4j.engine.EndpointState;
+import org.apache.qpid.proton4j.engine.EngineListener;
+import org.apache.qpid.proton4j.transport.exceptions.TransportException;
+import org.apache.qpid.proton4j.transport.impl.TimingWheel;
+import org.apache.qpid.proton4j.transport.metrics.TransportMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for idle timeout enforcement and heartbeats driven by a shared timing wheel
+ */
+public class IdleTimeoutTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private ProtonEnginePair pair;
+    private TimingWheel wheel;
+    private TransportMetrics clientMetrics;
+    private TransportMetrics serverMetrics;
+
+    @Before
+    public void setUp() throws Exception {
+        pair = new ProtonEnginePair();
+        wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 64, 0);
+
+        clientMetrics = new TransportMetrics();
+        serverMetrics = new TransportMetrics();
+        pair.getClientTransport().setMetrics(clientMetrics);
+        pair.getServerTransport().setMetrics(serverMetrics);
+
+        pair.getServer().getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onConnectionRemoteOpen(Connection connection) {
+                connection.open();
+            }
+        });
+
+        pair.getClient().getConnection().setIdleTimeout(1000);
+    }
+
+    @Test
+    public void testHeartbeatsKeepIdleConnectionOpen() throws Exception {
+        pair.getClient().setTimingWheel(wheel);
+        pair.getServer().setTimingWheel(wheel);
+        open();
+
+        // Only the client's check and the server's heartbeat need to be scheduled
+        assertEquals(2, wheel.getScheduledCount());
+
+        advanceTo(5000);
+
+        // The server writes an empty frame every half of the client's idle timeout
+        assertEquals(10, serverMetrics.getEmptyFramesOut());
+        assertEquals(10, clientMetrics.getEmptyFramesIn());
+        assertEquals(0, clientMetrics.getEmptyFramesOut());
+        assertEquals(EndpointState.ACTIVE, pair.getClient().getConnection().getLocalState());
+        assertTrue(pair.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testTrafficDefersHeartbeat() throws Exception {
+        pair.getClient().setTimingWheel(wheel);
+        pair.getServer().setTimingWheel(wheel);
+        open();
+
+        // Other output from the server within each period leaves nothing for a heartbeat to do
+        for (long time = 100; time <= 2000; time += 100) {
+            advanceTo(time);
+            pair.getServer().getConnection().session().open();
+            pair.pump();
+        }
+
+        assertEquals(0, serverMetrics.getEmptyFramesOut());
+        assertTrue(pair.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testSilentPeerFailsIdleTimeout() throws Exception {
+        // Without a wheel the server never sends heartbeats
+        pair.getClient().setTimingWheel(wheel);
+        open();
+
+        advanceTo(999);
+        assertTrue(pair.getFailures().isEmpty());
+
+        advanceTo(1010);
+
+        assertEquals(1, pair.getFailures().size());
+        assertTrue(pair.getFailures().get(0) instanceof TransportException);
+        assertTrue(pair.isClientClosed());
+        assertFalse(pair.isServerClosed());
+
+        Connection client = pair.getClient().getConnection();
+        assertEquals(EndpointState.CLOSED, client.getLocalState());
+        assertEquals(AmqpError.RESOURCE_LIMIT_EXCEEDED, client.getCondition().getCondition());
+        assertEquals(EndpointState.CLOSED, pair.getServer().getConnection().getRemoteState());
+        assertEquals(0, wheel.getScheduledCount());
+    }
+
+    @Test
+    public void testTransportFailureCancelsIdleCheck() throws Exception {
+        final List<Throwable> clientFailures = new ArrayList<>();
+        pair.getClient().getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onTransportFailed(Connection connection, Throwable cause) {
+                clientFailures.add(cause);
+            }
+        });
+
+        pair.getClient().setTimingWheel(wheel);
+        open();
+
+        assertEquals(1, wheel.getScheduledCount());
+
+        IOException failure = new IOException("Connection reset");
+        pair.getClientTransport().getPipeline().fireFailed(failure);
+
+        assertEquals(0, wheel.getScheduledCount());
+        assertEquals(1, clientFailures.size());
+        assertSame(failure, clientFailures.get(0));
+        assertEquals(1, pair.getFailures().size());
+
+        // Nothing is rescheduled by later endpoint activity or by the wheel moving on
+        pair.getClient().getConnection().close();
+        advanceTo(2000);
+
+        assertEquals(0, wheel.getScheduledCount());
+        assertEquals(1, clientFailures.size());
+        assertEquals(1, pair.getFailures().size());
+    }
+
+    private void open() throws Exception {
+        pair.getClient().getConnection().open();
+        pair.pump();
+    }
+
+    private void advanceTo(long millis) throws Exception {
+        for (long time = wheel.currentTime() / MILLIS + 10; time <= millis; time += 10) {
+            wheel.advance(time * MILLIS);
+            pair.pump();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the open addressing int keyed table shared by the engine's lookup structures
+ */
+public class IntKeyedTableTest {
+
+    @Test
+    public void testNothingAllocatedUntilFirstPut() {
+        IntKeyedTable<String> table = new IntKeyedTable<>(8);
+
+        assertEquals(0, table.slots());
+        assertNull(table.get(1));
+        assertNull(table.remove(1));
+
+        table.put(1, "a");
+
+        assertEquals(8, table.slots());
+        assertEquals("a", table.get(1));
+    }
+
+    @Test
+    public void testPutReplacesExistingEntry() {
+        IntKeyedTable<String> table = new IntKeyedTable<>(8);
+
+        table.put(-1, "a");
+        table.put(-1, "b");
+
+        assertEquals(1, table.size());
+        assertEquals("b", table.get(-1));
+    }
+
+    @Test
+    public void testTombstonesDoNotGrowTable() {
+        IntKeyedTable<Integer> table = new IntKeyedTable<>(16);
+
+        // Each key is removed before the next is added so only tombstones accumulate
+        for (int i = 0; i < 1000; ++i) {
+            table.put(i * 7919, i);
+            assertEquals(Integer.valueOf(i), table.remove(i * 7919));
+        }
+
+        assertEquals(0, table.size());
+        assertEquals(16, table.slots());
+    }
+
+    @Test
+    public void testSlotsVisitedWhileRemoving() {
+        IntKeyedTable<Integer> table = new IntKeyedTable<>(8);
+        for (int i = 0; i < 100; ++i) {
+            table.put(i << 16, i);
+        }
+
+        int visited = 0;
+        for (int slot = 0; slot < table.slots(); ++slot) {
+            final Integer value = table.valueAt(slot);
+            if (value != null) {
+                assertEquals(value.intValue() << 16, table.keyAt(slot));
+                assertEquals(value, table.remove(table.keyAt(slot)));
+                visited++;
+            }
+        }
+
+        assertEquals(100, visited);
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testRandomOperationsMatchHashMap() {
+        IntKeyedTable<Integer> table = new IntKeyedTable<>(8);
+        Map<Integer, Integer> reference = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20000; ++i) {
+            final int key = random.nextBoolean() ? random.nextInt(256) : random.nextInt();
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(key), table.remove(key));
+            } else {
+                reference.put(key, i);
+                table.put(key, i);
+            }
+
+            assertEquals(reference.size(), table.size());
+        }
+
+        for (Map.Entry<Integer, Integer> entry : reference.entrySet()) {
+            assertEquals(entry.getValue(), table.get(entry.getKey()));
+        }
+    }
+}
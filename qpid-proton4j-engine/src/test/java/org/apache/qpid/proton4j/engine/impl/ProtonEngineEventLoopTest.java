@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton4j.amqp.transport.AMQPHeader;
+import org.apache.qpid.proton4j.amqp.transport.Flow;
+import org.apache.qpid.proton4j.amqp.transport.Open;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
+import org.apache.qpid.proton4j.codec.CodecFactory;
+import org.apache.qpid.proton4j.engine.Connection;
+import org.apache.qpid.proton4j.engine.EngineListener;
+import org.apache.qpid.proton4j.transport.ProtocolFrame;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.exceptions.TransportException;
+import org.apache.qpid.proton4j.transport.handlers.FrameParsingHandler;
+import org.apache.qpid.proton4j.transport.handlers.FrameWritingHandler;
+import org.apache.qpid.proton4j.transport.impl.AmqpFrameParser;
+import org.apache.qpid.proton4j.transport.impl.ProtonTransport;
+import org.apache.qpid.proton4j.transport.impl.TimingWheel;
+import org.apache.qpid.proton4j.transport.nio.NioEventLoop;
+import org.apache.qpid.proton4j.transport.nio.NioConnection;
+import org.apache.qpid.proton4j.transport.nio.NioEventLoopGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for an engine whose Transport is served by an event loop
+ */
+public class ProtonEngineEventLoopTest {
+
+    private ServerSocketChannel server;
+    private NioEventLoopGroup group;
+
+    @Before
+    public void setUp() throws Exception {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        group = new NioEventLoopGroup("engine", 1).start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        group.close(5, TimeUnit.SECONDS);
+        server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testEngineAddedDirectlyBehindAffinityHandler() throws Exception {
+        SocketChannel client = SocketChannel.open(server.getLocalAddress());
+        server.accept().close();
+
+        ProtonTransport transport = new ProtonTransport();
+        transport.getPipeline().addLast("writer", new FrameWritingHandler());
+        NioConnection connection = group.register(client, transport);
+
+        assertSame(connection.getAffinityHandler(), transport.getPipeline().last());
+
+        ProtonEngine engine = new ProtonEngine(transport);
+
+        assertSame(engine, transport.getPipeline().last());
+    }
+
+    @Test(timeout = 10000)
+    public void testEngineUsesEventLoopTimingWheel() throws Exception {
+        SocketChannel client = SocketChannel.open(server.getLocalAddress());
+        SocketChannel accepted = server.accept();
+
+        ProtonTransport transport = new ProtonTransport();
+        transport.getPipeline().addLast("writer", new FrameWritingHandler());
+        final NioConnection connection = group.register(client, transport);
+        final ProtonEngine engine = new ProtonEngine(transport);
+
+        // Opening from this thread schedules the idle check on the event loop
+        engine.getConnection().setIdleTimeout(60000);
+        engine.getConnection().open();
+
+        final TimingWheel[] wheel = new TimingWheel[1];
+        final int[] scheduled = new int[1];
+        final CountDownLatch checked = new CountDownLatch(1);
+        connection.getEventLoop().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                wheel[0] = engine.getTimingWheel();
+                scheduled[0] = wheel[0].getScheduledCount();
+                checked.countDown();
+            }
+        });
+
+        assertTrue(checked.await(5, TimeUnit.SECONDS));
+        assertSame(connection.getEventLoop().getTimingWheel(), wheel[0]);
+        assertEquals(1, scheduled[0]);
+
+        accepted.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testEngineRejectedWhenAffinityHandlerIsNotLast() throws Exception {
+        SocketChannel client = SocketChannel.open(server.getLocalAddress());
+        server.accept().close();
+
+        ProtonTransport transport = new ProtonTransport();
+        transport.getPipeline().addLast("writer", new FrameWritingHandler());
+        group.register(client, transport);
+        transport.getPipeline().addLast("late", new TransportHandlerAdapter() {});
+
+        try {
+            new ProtonEngine(transport);
+            fail("Should not be able to add the engine behind a handler other than the affinity handler");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testRegisterRejectedOnceEngineAttached() throws Exception {
+        SocketChannel client = SocketChannel.open(server.getLocalAddress());
+        server.accept().close();
+
+        ProtonTransport transport = new ProtonTransport();
+        transport.getPipeline().addLast("writer", new FrameWritingHandler());
+        new ProtonEngine(transport);
+
+        try {
+            group.register(client, transport);
+            fail("Should not be able to register a Transport that already has an engine");
+        } catch (IllegalStateException expected) {
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testProtocolErrorClosesConnection() throws Exception {
+        SocketChannel client = SocketChannel.open(server.getLocalAddress());
+        SocketChannel accepted = server.accept();
+
+        ProtonTransport transport = new ProtonTransport();
+        transport.getPipeline().addLast("writer", new FrameWritingHandler());
+        transport.getPipeline().addLast("parser", new FrameParsingHandler(
+            new AmqpFrameParser(CodecFactory.getDecoder(), 65536, true)));
+        NioConnection connection = group.register(accepted, transport);
+        ProtonEngine engine = new ProtonEngine(transport);
+
+        final Throwable[] failure = new Throwable[1];
+        engine.getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onTransportFailed(Connection connection, Throwable cause) {
+                failure[0] = cause;
+            }
+        });
+
+        Flow flow = new Flow();
+        flow.setIncomingWindow(1);
+        flow.setNextOutgoingId(0);
+        flow.setOutgoingWindow(1);
+
+        Open open = new Open();
+        open.setContainerId("client");
+
+        // A Flow for a session that was never begun fails the server's Transport
+        ProtonBuffer output = ProtonByteBufferAllocator.DEFAULT.allocate();
+        output.writeBytes(AMQPHeader.getRawAMQPHeader().getBuffer());
+        encode(output, new ProtocolFrame(open, (short) 0, null));
+        encode(output, new ProtocolFrame(flow, (short) 3, null));
+        encode(output, new ProtocolFrame(flow, (short) 4, null));
+
+        ByteBuffer data = output.toByteBuffer();
+        while (data.hasRemaining()) {
+            client.write(data);
+        }
+
+        // The server's header is read and then the server closes its end
+        ByteBuffer input = ByteBuffer.allocate(1024);
+        while (client.read(input) >= 0) {
+            input.clear();
+        }
+
+        awaitConnectionCount(connection.getEventLoop(), 0);
+        assertNotNull(failure[0]);
+        assertTrue(failure[0].getMessage().contains("channel 3"));
+
+        client.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleTimeoutClosesConnection() throws Exception {
+        SocketChannel client = SocketChannel.open(server.getLocalAddress());
+        SocketChannel accepted = server.accept();
+
+        ProtonTransport transport = new ProtonTransport();
+        transport.getPipeline().addLast("writer", new FrameWritingHandler());
+        transport.getPipeline().addLast("parser", new FrameParsingHandler(
+            new AmqpFrameParser(CodecFactory.getDecoder(), 65536, true)));
+        NioConnection connection = group.register(accepted, transport);
+        ProtonEngine engine = new ProtonEngine(transport);
+
+        final Throwable[] failure = new Throwable[1];
+        engine.getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onTransportFailed(Connection connection, Throwable cause) {
+                failure[0] = cause;
+            }
+        });
+
+        // The client never writes anything so the server's idle timeout expires
+        engine.getConnection().setIdleTimeout(100);
+        engine.getConnection().open();
+
+        ByteBuffer input = ByteBuffer.allocate(1024);
+        while (client.read(input) >= 0) {
+            input.clear();
+        }
+
+        awaitConnectionCount(connection.getEventLoop(), 0);
+        assertTrue(failure[0] instanceof TransportException);
+
+        client.close();
+    }
+
+    private static void encode(final ProtonBuffer output, ProtocolFrame frame) throws Exception {
+        ProtonTransport transport = new ProtonTransport();
+        transport.getPipeline().addLast("io", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleWrite(TransportHandlerContext context, ProtonBuffer buffer) {
+                output.writeBytes(buffer);
+            }
+
+            @Override
+            public void handleFlush(TransportHandlerContext context) {
+            }
+        });
+        transport.getPipeline().addLast("writer", new FrameWritingHandler());
+
+        transport.write(frame);
+        transport.flush();
+    }
+
+    private static void awaitConnectionCount(final NioEventLoop eventLoop, int expected) throws Exception {
+        final int[] count = new int[1];
+        for (;;) {
+            final CountDownLatch checked = new CountDownLatch(1);
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    count[0] = eventLoop.getConnectionCount();
+                    checked.countDown();
+                }
+            });
+
+            assertTrue(checked.await(5, TimeUnit.SECONDS));
+            if (count[0] == expected) {
+                return;
+            }
+
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
+import org.apache.qpid.proton4j.codec.CodecFactory;
+import org.apache.qpid.proton4j.transport.Transport;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.TransportListener;
+import org.apache.qpid.proton4j.transport.handlers.FrameParsingHandler;
+import org.apache.qpid.proton4j.transport.handlers.FrameWritingHandler;
+import org.apache.qpid.proton4j.transport.impl.AmqpFrameParser;
+import org.apache.qpid.proton4j.transport.impl.ProtonTransport;
+import org.apache.qpid.proton4j.transport.sasl.SaslHandler;
+
+/**
+ * A client and a server engine whose transports are connected in memory.
+ * <p>
+ * Output written by either side is queued until {@link #pump()} delivers it to the
+ * other side, which allows tests to control exactly when frames cross the wire.  All
+ * output queued for one side is delivered to it in a single read.
+ */
+public class ProtonEnginePair {
+
+    private final Deque<ProtonBuffer> toServer = new ArrayDeque<>();
+    private final Deque<ProtonBuffer> toClient = new ArrayDeque<>();
+
+    private final AmqpFrameParser clientParser = new AmqpFrameParser(CodecFactory.getDecoder(), 65536, true);
+    private final AmqpFrameParser serverParser = new AmqpFrameParser(CodecFactory.getDecoder(), 65536, true);
+
+    private final ProtonTransport clientTransport;
+    private final ProtonTransport serverTransport;
+
+    private final ProtonEngine client;
+    private final ProtonEngine server;
+
+    private final List<Throwable> failures = new ArrayList<>();
+    private final Set<Transport> closed = new HashSet<>();
+
+    public ProtonEnginePair() {
+        this(null, null);
+    }
+
+    /**
+     * Creates a pair whose transports authenticate using the given SASL handlers.
+     *
+     * @param clientSasl
+     *      the SASL handler of the client, or null for none.
+     * @param serverSasl
+     *      the SASL handler of the server, or null for none.
+     */
+    public ProtonEnginePair(SaslHandler clientSasl, SaslHandler serverSasl) {
+        clientTransport = createTransport(toServer, clientParser, clientSasl);
+        serverTransport = createTransport(toClient, serverParser, serverSasl);
+
+        client = new ProtonEngine(clientTransport);
+        server = new ProtonEngine(serverTransport);
+    }
+
+    public ProtonEngine getClient() {
+        return client;
+    }
+
+    public ProtonEngine getServer() {
+        return server;
+    }
+
+    public ProtonTransport getClientTransport() {
+        return clientTransport;
+    }
+
+    public ProtonTransport getServerTransport() {
+        return serverTransport;
+    }
+
+    /**
+     * Sets the number of frames the client's parser dispatches together in one batch.
+     *
+     * @param batchSize
+     *      the parser batch size.
+     */
+    public void setClientBatchSize(int batchSize) {
+        clientParser.setBatchSize(batchSize);
+    }
+
+    /**
+     * Sets the number of frames the server's parser dispatches together in one batch.
+     *
+     * @param batchSize
+     *      the parser batch size.
+     */
+    public void setServerBatchSize(int batchSize) {
+        serverParser.setBatchSize(batchSize);
+    }
+
+    /**
+     * @return the errors that either transport has failed with.
+     */
+    public List<Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return true if a failure has reached the IO side of the client's transport.
+     */
+    public boolean isClientClosed() {
+        return closed.contains(clientTransport);
+    }
+
+    /**
+     * @return true if a failure has reached the IO side of the server's transport.
+     */
+    public boolean isServerClosed() {
+        return closed.contains(serverTransport);
+    }
+
+    /**
+     * @return the number of bytes the client has written that the server has not yet read.
+     */
+    public int getPendingServerBytes() {
+        int pending = 0;
+        for (ProtonBuffer buffer : toServer) {
+            pending += buffer.getReadableBytes();
+        }
+
+        return pending;
+    }
+
+    /**
+     * Delivers all queued output in both directions until neither side writes anything more.
+     *
+     * @throws IOException if a transport fails to process its input.
+     */
+    public void pump() throws IOException {
+        while (!toServer.isEmpty() || !toClient.isEmpty()) {
+            deliverToServer();
+            deliverToClient();
+        }
+    }
+
+    /**
+     * Delivers the output the client has queued to the server in a single read.
+     *
+     * @return true if there was output to deliver.
+     *
+     * @throws IOException if the server transport fails to process its input.
+     */
+    public boolean deliverToServer() throws IOException {
+        if (toServer.isEmpty()) {
+            return false;
+        }
+
+        serverTransport.processIncoming(drain(toServer));
+        return true;
+    }
+
+    /**
+     * Delivers the output the server has queued to the client in a single read.
+     *
+     * @return true if there was output to deliver.
+     *
+     * @throws IOException if the client transport fails to process its input.
+     */
+    public boolean deliverToClient() throws IOException {
+        if (toClient.isEmpty()) {
+            return false;
+        }
+
+        clientTransport.processIncoming(drain(toClient));
+        return true;
+    }
+
+    private static ProtonBuffer drain(Deque<ProtonBuffer> queue) {
+        ProtonBuffer buffer = queue.poll();
+        if (!queue.isEmpty()) {
+            ProtonBuffer combined = ProtonByteBufferAllocator.DEFAULT.allocate();
+            combined.writeBytes(buffer);
+            while (!queue.isEmpty()) {
+                combined.writeBytes(queue.poll());
+            }
+            buffer = combined;
+        }
+
+        return buffer;
+    }
+
+    private ProtonTransport createTransport(final Deque<ProtonBuffer> output, final AmqpFrameParser parser, SaslHandler sasl) {
+        final ProtonTransport transport = new ProtonTransport();
+
+        transport.setTransportListener(new TransportListener() {
+
+            @Override
+            public void onTransportFailed(Transport transport, Throwable error) {
+                failures.add(error);
+            }
+        });
+
+        transport.getPipeline().addLast("io", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleWrite(TransportHandlerContext context, ProtonBuffer buffer) {
+                output.add(buffer);
+            }
+
+            @Override
+            public void handleFlush(TransportHandlerContext context) {
+            }
+
+            @Override
+            public void transportFailed(TransportHandlerContext context, Throwable e) {
+                closed.add(transport);
+                context.fireFailed(e);
+            }
+        });
+        if (sasl != null) {
+            transport.getPipeline().addLast("sasl", sasl);
+        }
+        transport.getPipeline().addLast("writer", new FrameWritingHandler());
+        transport.getPipeline().addLast("parser", new FrameParsingHandler(parser));
+
+        return transport;
+    }
+}
@@ -0,0 +1,460 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.messaging.Accepted;
+import org.apache.qpid.proton4j.amqp.messaging.Source;
+import org.apache.qpid.proton4j.amqp.messaging.Target;
+import org.apache.qpid.proton4j.amqp.transport.Flow;
+import org.apache.qpid.proton4j.amqp.transport.Role;
+import org.apache.qpid.proton4j.amqp.transport.SenderSettleMode;
+import org.apache.qpid.proton4j.amqp.transport.Transfer;
+import org.apache.qpid.proton4j.engine.Connection;
+import org.apache.qpid.proton4j.engine.Delivery;
+import org.apache.qpid.proton4j.engine.EndpointState;
+import org.apache.qpid.proton4j.engine.EngineListener;
+import org.apache.qpid.proton4j.engine.Link;
+import org.apache.qpid.proton4j.engine.Receiver;
+import org.apache.qpid.proton4j.engine.Sender;
+import org.apache.qpid.proton4j.engine.Session;
+import org.apache.qpid.proton4j.engine.credit.FixedWindowCreditPolicy;
+import org.apache.qpid.proton4j.transport.EmptyFrame;
+import org.apache.qpid.proton4j.transport.ProtocolFrame;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the endpoint state machine driven by a pair of connected engines
+ */
+public class ProtonEngineTest {
+
+    private ProtonEnginePair pair;
+    private Connection client;
+    private Connection server;
+
+    private final List<Link> serverLinks = new ArrayList<>();
+    private final List<Delivery> serverDeliveries = new ArrayList<>();
+    private final List<Delivery> clientUpdates = new ArrayList<>();
+
+    private int serverCredit;
+
+    @Before
+    public void setUp() {
+        pair = new ProtonEnginePair();
+        client = pair.getClient().getConnection();
+        server = pair.getServer().getConnection();
+
+        client.setContainerId("client");
+        server.setContainerId("server");
+
+        // The server answers everything the client opens and grants credit to new receivers
+        server.setListener(new EngineListener() {
+
+            @Override
+            public void onConnectionRemoteOpen(Connection connection) {
+                connection.open();
+            }
+
+            @Override
+            public void onConnectionRemoteClose(Connection connection) {
+                connection.close();
+            }
+
+            @Override
+            public void onSessionRemoteOpen(Session session) {
+                if (session.getLocalState() == EndpointState.IDLE) {
+                    session.open();
+                }
+            }
+
+            @Override
+            public void onSessionRemoteClose(Session session) {
+                session.close();
+            }
+
+            @Override
+            public void onLinkRemoteOpen(Link link) {
+                serverLinks.add(link);
+                if (link.getLocalState() == EndpointState.IDLE) {
+                    link.setSource(link.getRemoteSource());
+                    link.setTarget(link.getRemoteTarget());
+                    link.open();
+                    if (link instanceof Receiver && serverCredit > 0) {
+                        ((Receiver) link).flow(serverCredit);
+                    }
+                }
+            }
+
+            @Override
+            public void onLinkRemoteClose(Link link) {
+                link.close();
+            }
+
+            @Override
+            public void onDelivery(Delivery delivery) {
+                serverDeliveries.add(delivery);
+            }
+        });
+
+        client.setListener(new EngineListener() {
+
+            @Override
+            public void onDeliveryUpdated(Delivery delivery) {
+                clientUpdates.add(delivery);
+            }
+        });
+    }
+
+    @Test
+    public void testOpenAndCloseConnection() throws Exception {
+        client.setMaxFrameSize(16384);
+        client.open();
+        pair.pump();
+
+        assertTrue(pair.getFailures().isEmpty());
+        assertEquals(EndpointState.ACTIVE, client.getRemoteState());
+        assertEquals(EndpointState.ACTIVE, server.getRemoteState());
+        assertEquals("server", client.getRemoteContainerId());
+        assertEquals("client", server.getRemoteContainerId());
+        assertEquals(16384, server.getRemoteMaxFrameSize());
+
+        client.close();
+        pair.pump();
+
+        assertEquals(EndpointState.CLOSED, client.getRemoteState());
+        assertEquals(EndpointState.CLOSED, server.getLocalState());
+        assertTrue(pair.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testEndpointsOpenedBeforeConnectionArePipelined() throws Exception {
+        Session session = client.session().open();
+        Sender sender = session.sender("pipelined");
+        Target target = new Target();
+        target.setAddress("queue");
+        sender.setTarget(target);
+        sender.open();
+
+        assertEquals(0, pair.getPendingServerBytes());
+
+        client.open();
+        pair.pump();
+
+        assertTrue(pair.getFailures().isEmpty());
+        assertEquals(EndpointState.ACTIVE, session.getRemoteState());
+        assertEquals(EndpointState.ACTIVE, sender.getRemoteState());
+        assertEquals(1, serverLinks.size());
+
+        Link remote = serverLinks.get(0);
+        assertEquals("pipelined", remote.getName());
+        assertEquals(Role.RECEIVER, remote.getRole());
+        assertEquals("queue", remote.getRemoteTarget().getAddress());
+        assertEquals("queue", sender.getRemoteTarget().getAddress());
+    }
+
+    @Test
+    public void testSendAndAcceptDeliveries() throws Exception {
+        serverCredit = 2;
+
+        Sender sender = openSender("sender");
+        assertEquals(2, sender.getCredit());
+        assertTrue(sender.isSendable());
+
+        Delivery first = sender.send(new Binary(new byte[] { 0 }), new Binary(new byte[] { 1, 2, 3 }));
+        Delivery second = sender.send(new Binary(new byte[] { 1 }), new Binary(new byte[] { 4, 5 }));
+
+        assertEquals(0, sender.getCredit());
+        assertFalse(sender.isSendable());
+        assertEquals(2, sender.getDeliveryCount());
+
+        pair.pump();
+
+        assertEquals(2, serverDeliveries.size());
+        Delivery received = serverDeliveries.get(0);
+        assertFalse(received.isPartial());
+        assertFalse(received.isRemotelySettled());
+        assertEquals(new Binary(new byte[] { 0 }), received.getTag());
+        assertEquals(3, received.getPayload().getReadableBytes());
+        assertEquals(1, received.getPayload().getByte(0));
+        assertEquals(2, serverDeliveries.get(1).getPayload().getReadableBytes());
+        assertEquals(2, received.getLink().getDeliveryCount());
+        assertEquals(0, received.getLink().getCredit());
+
+        for (Delivery delivery : serverDeliveries) {
+            delivery.disposition(Accepted.getInstance(), true);
+        }
+        pair.pump();
+
+        assertTrue(pair.getFailures().isEmpty());
+        assertEquals(2, clientUpdates.size());
+        assertSame(first, clientUpdates.get(0));
+        assertSame(second, clientUpdates.get(1));
+        assertTrue(first.isRemotelySettled());
+        assertSame(Accepted.getInstance(), first.getRemoteState());
+        assertFalse(first.isSettled());
+
+        first.settle();
+        second.settle();
+        pair.pump();
+
+        assertTrue(first.isSettled());
+        assertTrue(pair.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testPresettledSend() throws Exception {
+        serverCredit = 1;
+
+        Sender sender = client.session().open().sender("presettled");
+        sender.setSenderSettleMode(SenderSettleMode.SETTLED);
+        sender.open();
+        client.open();
+        pair.pump();
+
+        Delivery delivery = sender.send(new Binary(new byte[] { 7 }), new Binary(new byte[10]));
+        assertTrue(delivery.isSettled());
+        pair.pump();
+
+        assertEquals(1, serverDeliveries.size());
+        assertTrue(serverDeliveries.get(0).isRemotelySettled());
+        assertTrue(clientUpdates.isEmpty());
+        assertTrue(pair.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testSendWithoutCreditFails() throws Exception {
+        Sender sender = openSender("no-credit");
+
+        assertFalse(sender.isSendable());
+        try {
+            sender.send(new Binary(new byte[] { 0 }), new Binary(new byte[1]));
+            fail("Should not be able to send without credit");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testCreditGrantedLater() throws Exception {
+        Sender sender = openSender("later");
+        Receiver receiver = (Receiver) serverLinks.get(0);
+
+        receiver.flow(5);
+        pair.pump();
+
+        assertEquals(5, sender.getCredit());
+        assertEquals(5, receiver.getCredit());
+    }
+
+    @Test
+    public void testReceiverOnClientSide() throws Exception {
+        final List<Delivery> clientDeliveries = new ArrayList<>();
+        client.setListener(new EngineListener() {
+
+            @Override
+            public void onDelivery(Delivery delivery) {
+                clientDeliveries.add(delivery);
+            }
+        });
+
+        Receiver receiver = client.session().open().receiver("receiver");
+        Source source = new Source();
+        source.setAddress("topic");
+        receiver.setSource(source);
+        receiver.open();
+        receiver.flow(1);
+        client.open();
+        pair.pump();
+
+        assertEquals(1, serverLinks.size());
+        Sender sender = (Sender) serverLinks.get(0);
+        assertEquals(1, sender.getCredit());
+
+        sender.send(new Binary(new byte[] { 9 }), new Binary(new byte[] { 1 }));
+        pair.pump();
+
+        assertEquals(1, clientDeliveries.size());
+        assertEquals("topic", sender.getSource().getAddress());
+        assertTrue(pair.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testAbortedTransferDiscardsDelivery() throws Exception {
+        final List<Delivery> clientDeliveries = new ArrayList<>();
+        client.setListener(new EngineListener() {
+
+            @Override
+            public void onDelivery(Delivery delivery) {
+                clientDeliveries.add(delivery);
+            }
+        });
+
+        Receiver receiver = client.session().open().receiver("receiver");
+        receiver.setCreditPolicy(new FixedWindowCreditPolicy(1, 0));
+        receiver.open();
+        client.open();
+        pair.pump();
+
+        assertEquals(1, receiver.getCredit());
+
+        Transfer transfer = new Transfer();
+        transfer.setHandle(0);
+        transfer.setDeliveryId(0);
+        transfer.setDeliveryTag(new Binary(new byte[] { 0 }));
+        transfer.setMore(true);
+        writeServerTransfer(transfer, new Binary(new byte[] { 1, 2, 3 }));
+
+        assertEquals(1, clientDeliveries.size());
+        Delivery delivery = clientDeliveries.get(0);
+        assertTrue(delivery.isPartial());
+        assertEquals(3, delivery.getPayload().getReadableBytes());
+
+        Transfer abort = new Transfer();
+        abort.setHandle(0);
+        abort.setAborted(true);
+        writeServerTransfer(abort, new Binary(new byte[] { 4, 5 }));
+
+        assertTrue(pair.getFailures().isEmpty());
+        assertEquals(2, clientDeliveries.size());
+        assertSame(delivery, clientDeliveries.get(1));
+        assertTrue(delivery.isAborted());
+        assertFalse(delivery.isPartial());
+        assertTrue(delivery.isSettled());
+        assertTrue(delivery.isRemotelySettled());
+        assertEquals(0, delivery.getPayload().getReadableBytes());
+        assertEquals(0, delivery.getPayloadSize());
+
+        // The aborted delivery used its credit and the policy granted it again
+        assertEquals(1, receiver.getDeliveryCount());
+        assertEquals(1, receiver.getCredit());
+
+        Transfer next = new Transfer();
+        next.setHandle(0);
+        next.setDeliveryId(1);
+        next.setDeliveryTag(new Binary(new byte[] { 1 }));
+        writeServerTransfer(next, new Binary(new byte[] { 6 }));
+
+        assertTrue(pair.getFailures().isEmpty());
+        assertEquals(3, clientDeliveries.size());
+        assertFalse(clientDeliveries.get(2).isAborted());
+        assertFalse(clientDeliveries.get(2).isPartial());
+        assertEquals(1, clientDeliveries.get(2).getPayload().getReadableBytes());
+    }
+
+    @Test
+    public void testTransferWithoutCreditFailsTransport() throws Exception {
+        Receiver receiver = client.session().open().receiver("receiver").open();
+        client.open();
+        pair.pump();
+
+        assertEquals(0, receiver.getCredit());
+
+        Transfer transfer = new Transfer();
+        transfer.setHandle(0);
+        transfer.setDeliveryId(0);
+        transfer.setDeliveryTag(new Binary(new byte[] { 0 }));
+        writeServerTransfer(transfer, new Binary(new byte[] { 1 }));
+
+        assertEquals(1, pair.getFailures().size());
+        assertTrue(pair.getFailures().get(0).getMessage().contains("no credit"));
+        assertEquals(0, receiver.getCredit());
+    }
+
+    @Test
+    public void testCloseLinkAndSession() throws Exception {
+        Sender sender = openSender("closing");
+        Session session = sender.getSession();
+
+        sender.close();
+        pair.pump();
+
+        assertEquals(EndpointState.CLOSED, sender.getRemoteState());
+        assertEquals(EndpointState.CLOSED, serverLinks.get(0).getLocalState());
+
+        session.close();
+        pair.pump();
+
+        assertEquals(EndpointState.CLOSED, session.getRemoteState());
+
+        // The freed channel and handle can be used again
+        Sender another = client.session().open().sender("another").open();
+        pair.pump();
+
+        assertEquals(EndpointState.ACTIVE, another.getRemoteState());
+        assertTrue(pair.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testFrameForUnknownChannelFailsTransport() throws Exception {
+        client.open();
+        pair.pump();
+
+        Flow flow = new Flow();
+        flow.setIncomingWindow(1);
+        flow.setNextOutgoingId(0);
+        flow.setOutgoingWindow(1);
+
+        pair.getServerTransport().write(new ProtocolFrame(flow, (short) 3, null));
+        pair.getServerTransport().flush();
+        pair.pump();
+
+        assertEquals(1, pair.getFailures().size());
+        assertNotNull(pair.getFailures().get(0).getMessage());
+        assertTrue(pair.getFailures().get(0).getMessage().contains("channel 3"));
+    }
+
+    @Test
+    public void testEmptyFramesAreIgnored() throws Exception {
+        client.open();
+        pair.pump();
+
+        pair.getServerTransport().write(new EmptyFrame());
+        pair.getServerTransport().flush();
+        pair.pump();
+
+        assertTrue(pair.getFailures().isEmpty());
+        assertNull(client.getRemoteCondition());
+    }
+
+    private void writeServerTransfer(Transfer transfer, Binary payload) throws Exception {
+        pair.getServerTransport().write(new ProtocolFrame(transfer, (short) 0, payload));
+        pair.getServerTransport().flush();
+        pair.pump();
+    }
+
+    private Sender openSender(String name) throws Exception {
+        Sender sender = client.session().open().sender(name).open();
+        client.open();
+        pair.pump();
+
+        assertTrue(pair.getFailures().isEmpty());
+        assertEquals(EndpointState.ACTIVE, sender.getRemoteState());
+
+        return sender;
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
+import org.apache.qpid.proton4j.engine.Connection;
+import org.apache.qpid.proton4j.engine.EndpointState;
+import org.apache.qpid.proton4j.engine.EngineListener;
+import org.apache.qpid.proton4j.engine.Link;
+import org.apache.qpid.proton4j.engine.Receiver;
+import org.apache.qpid.proton4j.engine.Session;
+import org.apache.qpid.proton4j.transport.exceptions.TransportException;
+import org.apache.qpid.proton4j.transport.sasl.SaslClientContext;
+import org.apache.qpid.proton4j.transport.sasl.SaslClientListener;
+import org.apache.qpid.proton4j.transport.sasl.SaslConstants.SaslOutcomes;
+import org.apache.qpid.proton4j.transport.sasl.SaslHandler;
+import org.apache.qpid.proton4j.transport.sasl.SaslServerContext;
+import org.apache.qpid.proton4j.transport.sasl.SaslServerListener;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for opening a Connection with SASL and the AMQP open pipelined behind it
+ */
+public class SaslPipelinedOpenTest {
+
+    private ProtonEnginePair pair;
+    private SaslClientContext clientSasl;
+    private SaslServerContext serverSasl;
+
+    // Outcome the server sends from within its init callback, or null to defer it
+    private SaslOutcomes serverOutcome = SaslOutcomes.PN_SASL_OK;
+    // Mechanism the client chooses once the server's mechanisms arrive
+    private String lateMechanism;
+
+    private String[] offeredMechanisms;
+    private boolean clientOutcomeReceived;
+    private boolean serverInitReceived;
+    private Link serverLink;
+
+    private Session session;
+    private Receiver receiver;
+
+    @Before
+    public void setUp() throws Exception {
+        SaslHandler client = SaslHandler.client(new SaslClientListener() {
+
+            @Override
+            public void onSaslMechanisms(SaslClientContext context, String[] mechanisms) {
+                offeredMechanisms = mechanisms;
+                if (lateMechanism != null) {
+                    context.setMechanism(lateMechanism);
+                }
+            }
+
+            @Override
+            public void onSaslChallenge(SaslClientContext context) {
+            }
+
+            @Override
+            public void onSaslOutcome(SaslClientContext context) {
+                clientOutcomeReceived = true;
+            }
+        });
+
+        SaslHandler server = SaslHandler.server(new SaslServerListener() {
+
+            @Override
+            public void onSaslInit(SaslServerContext context) {
+                serverInitReceived = true;
+                if (serverOutcome != null) {
+                    context.sendOutcome(serverOutcome);
+                }
+            }
+
+            @Override
+            public void onSaslResponse(SaslServerContext context) {
+            }
+        });
+
+        clientSasl = (SaslClientContext) client.getSaslContext();
+        serverSasl = (SaslServerContext) server.getSaslContext();
+        serverSasl.setMechanisms(new String[] { "PLAIN", "ANONYMOUS" });
+
+        pair = new ProtonEnginePair(client, server);
+        pair.getServer().getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onConnectionRemoteOpen(Connection connection) {
+                connection.open();
+            }
+
+            @Override
+            public void onSessionRemoteOpen(Session session) {
+                session.open();
+            }
+
+            @Override
+            public void onLinkRemoteOpen(Link link) {
+                serverLink = link;
+                link.open();
+            }
+        });
+    }
+
+    @Test
+    public void testPipelinedOpenCompletesInOneRoundTrip() throws Exception {
+        clientSasl.setMechanism("PLAIN");
+        clientSasl.setInitialResponse(new byte[] { 0, 'u', 's', 'e', 'r', 0, 'p', 'a', 's', 's' });
+
+        openClient();
+
+        // The SASL exchange and the AMQP open cross in a single flight each way
+        assertTrue(pair.deliverToServer());
+        assertTrue(serverInitReceived);
+        assertEquals("PLAIN", serverSasl.getClientMechanism());
+        assertEquals(EndpointState.ACTIVE, pair.getServer().getConnection().getRemoteState());
+        assertEquals(EndpointState.ACTIVE, serverLink.getRemoteState());
+
+        assertTrue(pair.deliverToClient());
+        assertTrue(clientOutcomeReceived);
+        assertEquals(SaslOutcomes.PN_SASL_OK, clientSasl.getOutcome());
+        assertArrayEquals(new String[] { "PLAIN", "ANONYMOUS" }, offeredMechanisms);
+        assertEquals(EndpointState.ACTIVE, pair.getClient().getConnection().getRemoteState());
+        assertEquals(EndpointState.ACTIVE, session.getRemoteState());
+        assertEquals(EndpointState.ACTIVE, receiver.getRemoteState());
+
+        assertTrue(pair.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testServerHoldsPipelinedInputUntilOutcomeSent() throws Exception {
+        serverOutcome = null;
+        clientSasl.setMechanism("ANONYMOUS");
+
+        openClient();
+
+        assertTrue(pair.deliverToServer());
+        assertTrue(serverInitReceived);
+        assertEquals(EndpointState.IDLE, pair.getServer().getConnection().getRemoteState());
+        assertNull(serverLink);
+
+        // Authentication completes later, the held Open, Begin and Attach are then processed
+        serverSasl.sendOutcome(SaslOutcomes.PN_SASL_OK);
+        assertEquals(EndpointState.ACTIVE, pair.getServer().getConnection().getRemoteState());
+        assertEquals(EndpointState.ACTIVE, serverLink.getRemoteState());
+
+        assertTrue(pair.deliverToClient());
+        assertEquals(EndpointState.ACTIVE, receiver.getRemoteState());
+        assertTrue(pair.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testFailedOutcomeDropsPipelinedInput() throws Exception {
+        serverOutcome = SaslOutcomes.PN_SASL_AUTH;
+        clientSasl.setMechanism("PLAIN");
+
+        openClient();
+
+        assertTrue(pair.deliverToServer());
+        assertEquals(EndpointState.IDLE, pair.getServer().getConnection().getRemoteState());
+        assertTrue(pair.deliverToClient());
+
+        assertTrue(clientOutcomeReceived);
+        assertTrue(clientSasl.isFailed());
+        assertEquals(EndpointState.IDLE, pair.getClient().getConnection().getRemoteState());
+        assertEquals(1, pair.getFailures().size());
+        assertTrue(pair.getFailures().get(0) instanceof TransportException);
+    }
+
+    @Test
+    public void testOutputHeldUntilMechanismChosen() throws Exception {
+        lateMechanism = "ANONYMOUS";
+
+        openClient();
+
+        // Only the SASL header can be sent before the server's mechanisms arrive
+        assertEquals(8, pair.getPendingServerBytes());
+
+        pair.pump();
+
+        assertEquals("ANONYMOUS", serverSasl.getClientMechanism());
+        assertEquals(EndpointState.ACTIVE, pair.getClient().getConnection().getRemoteState());
+        assertEquals(EndpointState.ACTIVE, receiver.getRemoteState());
+        assertFalse(clientSasl.isFailed());
+        assertTrue(pair.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testHeldInputRecycledOnceReplayed() throws Exception {
+        final List<ProtonBuffer> allocated = new ArrayList<>();
+        final List<ProtonBuffer> recycled = new ArrayList<>();
+        pair.getServerTransport().setBufferAllocator(createTrackingAllocator(allocated, recycled));
+
+        serverOutcome = null;
+        clientSasl.setMechanism("ANONYMOUS");
+
+        openClient();
+        assertTrue(pair.deliverToServer());
+
+        ProtonBuffer held = findHeldInput(allocated);
+        assertFalse(containsSame(recycled, held));
+
+        serverSasl.sendOutcome(SaslOutcomes.PN_SASL_OK);
+
+        assertTrue(containsSame(recycled, held));
+        assertEquals(EndpointState.ACTIVE, pair.getServer().getConnection().getRemoteState());
+        assertTrue(pair.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testHeldInputRecycledWhenDropped() throws Exception {
+        final List<ProtonBuffer> allocated = new ArrayList<>();
+        final List<ProtonBuffer> recycled = new ArrayList<>();
+        pair.getServerTransport().setBufferAllocator(createTrackingAllocator(allocated, recycled));
+
+        serverOutcome = null;
+        clientSasl.setMechanism("PLAIN");
+
+        openClient();
+        assertTrue(pair.deliverToServer());
+
+        ProtonBuffer held = findHeldInput(allocated);
+        serverSasl.sendOutcome(SaslOutcomes.PN_SASL_AUTH);
+
+        assertTrue(containsSame(recycled, held));
+        assertEquals(EndpointState.IDLE, pair.getServer().getConnection().getRemoteState());
+    }
+
+    @Test
+    public void testHeldOutputIsNotRecycled() throws Exception {
+        final List<ProtonBuffer> allocated = new ArrayList<>();
+        final List<ProtonBuffer> recycled = new ArrayList<>();
+        pair.getClientTransport().setBufferAllocator(createTrackingAllocator(allocated, recycled));
+
+        lateMechanism = "ANONYMOUS";
+
+        openClient();
+
+        // The AMQP output written so far is held and handed on unchanged once the init is sent
+        final List<ProtonBuffer> written = new ArrayList<>(allocated);
+        assertFalse(written.isEmpty());
+
+        pair.pump();
+
+        for (ProtonBuffer buffer : written) {
+            assertFalse(containsSame(recycled, buffer));
+        }
+        assertEquals(EndpointState.ACTIVE, pair.getClient().getConnection().getRemoteState());
+        assertTrue(pair.getFailures().isEmpty());
+    }
+
+    private void openClient() {
+        pair.getClient().getConnection().open();
+        session = pair.getClient().getConnection().session().open();
+        receiver = session.receiver("receiver").open();
+    }
+
+    private static ProtonByteBufferAllocator createTrackingAllocator(final List<ProtonBuffer> allocated, final List<ProtonBuffer> recycled) {
+        return new ProtonByteBufferAllocator() {
+
+            @Override
+            public ProtonBuffer allocate(int initialCapacity) {
+                ProtonBuffer buffer = super.allocate(initialCapacity);
+                allocated.add(buffer);
+                return buffer;
+            }
+
+            @Override
+            public ProtonBuffer allocate(int initialCapacity, int maximumCapacity) {
+                ProtonBuffer buffer = super.allocate(initialCapacity, maximumCapacity);
+                allocated.add(buffer);
+                return buffer;
+            }
+
+            @Override
+            public void recycle(ProtonBuffer buffer) {
+                recycled.add(buffer);
+            }
+        };
+    }
+
+    /**
+     * Finds the buffer the server allocated to hold the AMQP input that followed the sasl-init,
+     * the only one it allocated before its outcome that starts with the AMQP header.
+     */
+    private static ProtonBuffer findHeldInput(List<ProtonBuffer> allocated) {
+        for (ProtonBuffer buffer : allocated) {
+            if (buffer.getWriteIndex() > 4 && buffer.getByte(0) == 'A' && buffer.getByte(1) == 'M' &&
+                buffer.getByte(2) == 'Q' && buffer.getByte(3) == 'P' && buffer.getByte(4) == 0) {
+                return buffer;
+            }
+        }
+
+        fail("No held input buffer was allocated");
+        return null;
+    }
+
+    private static boolean containsSame(List<ProtonBuffer> buffers, ProtonBuffer buffer) {
+        for (ProtonBuffer candidate : buffers) {
+            if (candidate == buffer) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
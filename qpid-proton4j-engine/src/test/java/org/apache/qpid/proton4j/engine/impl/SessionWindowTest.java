@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.Performative.PerformativeType;
+import org.apache.qpid.proton4j.amqp.transport.Transfer;
+import org.apache.qpid.proton4j.engine.Connection;
+import org.apache.qpid.proton4j.engine.Delivery;
+import org.apache.qpid.proton4j.engine.EngineListener;
+import org.apache.qpid.proton4j.engine.Link;
+import org.apache.qpid.proton4j.engine.Receiver;
+import org.apache.qpid.proton4j.engine.Session;
+import org.apache.qpid.proton4j.transport.metrics.TransportMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for Session incoming window accounting and renewal
+ */
+public class SessionWindowTest {
+
+    private ProtonEnginePair pair;
+    private TransportMetrics clientMetrics;
+    private ProtonSender sender;
+    private Session session;
+    private Receiver receiver;
+
+    private final List<Delivery> received = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        pair = new ProtonEnginePair();
+        clientMetrics = new TransportMetrics();
+        pair.getClientTransport().setMetrics(clientMetrics);
+
+        pair.getServer().getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onConnectionRemoteOpen(Connection connection) {
+                connection.open();
+            }
+
+            @Override
+            public void onSessionRemoteOpen(Session session) {
+                session.open();
+            }
+
+            @Override
+            public void onLinkRemoteOpen(Link link) {
+                sender = (ProtonSender) link;
+                sender.open();
+            }
+        });
+
+        pair.getClient().getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onDelivery(Delivery delivery) {
+                received.add(delivery);
+            }
+        });
+
+        session = pair.getClient().getConnection().session();
+        receiver = session.receiver("receiver");
+    }
+
+    @Test
+    public void testWindowRenewedWithSessionFlowAtHalfUsed() throws Exception {
+        open(10, 100);
+
+        sendAll(20, new byte[10]);
+
+        assertEquals(20, received.size());
+        assertTrue(pair.getFailures().isEmpty());
+
+        // The Flow granting credit and then one window update per five Transfers
+        assertEquals(5, flowsSent());
+    }
+
+    @Test
+    public void testWindowRenewalRidesOnLinkFlow() throws Exception {
+        pair.getClient().getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onDelivery(Delivery delivery) {
+                received.add(delivery);
+                receiver.flow(1);
+            }
+        });
+
+        open(10, 1);
+
+        sendAll(20, new byte[10]);
+
+        assertEquals(20, received.size());
+        assertEquals(21, flowsSent());
+    }
+
+    @Test
+    public void testLargeWindowNeedsNoUpdates() throws Exception {
+        open(1000, 100);
+
+        sendAll(100, new byte[10]);
+
+        assertEquals(100, received.size());
+        assertEquals(1, flowsSent());
+    }
+
+    @Test
+    public void testFragmentedDeliveryWaitsForWindow() throws Exception {
+        pair.getClient().getConnection().setMaxFrameSize(512);
+        open(2, 10);
+
+        final byte[] payload = new byte[2000];
+        for (int i = 0; i < payload.length; ++i) {
+            payload[i] = (byte) i;
+        }
+
+        sender.send(new Binary(new byte[] { 1 }), new Binary(payload));
+
+        // The delivery needs more frames than the window allows and is held until renewed
+        assertFalse(sender.isSendable());
+
+        pair.pump();
+
+        assertTrue(pair.getFailures().isEmpty());
+        assertTrue(sender.isSendable());
+
+        Delivery delivery = received.get(received.size() - 1);
+        assertFalse(delivery.isPartial());
+
+        byte[] result = new byte[payload.length];
+        delivery.getPayload().readBytes(result);
+        assertArrayEquals(payload, result);
+    }
+
+    @Test
+    public void testTransferBeyondWindowFailsTransport() throws Exception {
+        pair.setClientBatchSize(8);
+        open(2, 10);
+
+        // Written directly so that the sender's own window accounting is bypassed
+        ProtonEngine engine = pair.getServer();
+        for (int i = 0; i < 3; ++i) {
+            Transfer transfer = new Transfer();
+            transfer.setHandle(sender.getLocalHandle());
+            transfer.setDeliveryId(i);
+            transfer.setDeliveryTag(new Binary(new byte[] { (byte) i }));
+            transfer.setSettled(true);
+            engine.writeFrame(transfer, sender.getSession().getLocalChannel(), new Binary(new byte[1]));
+        }
+        engine.flush();
+        pair.pump();
+
+        assertEquals(1, pair.getFailures().size());
+        assertEquals(2, received.size());
+    }
+
+    private void open(int window, int credit) throws Exception {
+        session.setIncomingWindow(window);
+        session.open();
+        receiver.open();
+        receiver.flow(credit);
+        pair.getClient().getConnection().open();
+        pair.pump();
+    }
+
+    private void sendAll(int count, byte[] payload) throws Exception {
+        int sent = 0;
+        while (sent < count) {
+            while (sent < count && sender.isSendable()) {
+                sender.send(new Binary(new byte[] { (byte) sent }), new Binary(payload));
+                sent++;
+            }
+
+            pair.pump();
+        }
+    }
+
+    private long flowsSent() {
+        return clientMetrics.getFramesOut(PerformativeType.FLOW);
+    }
+}
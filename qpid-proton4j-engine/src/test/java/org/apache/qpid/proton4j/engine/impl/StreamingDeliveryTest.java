@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.Transfer;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
+import org.apache.qpid.proton4j.buffer.ProtonCompositeBuffer;
+import org.apache.qpid.proton4j.engine.Connection;
+import org.apache.qpid.proton4j.engine.Delivery;
+import org.apache.qpid.proton4j.engine.EngineListener;
+import org.apache.qpid.proton4j.engine.Link;
+import org.apache.qpid.proton4j.engine.Receiver;
+import org.apache.qpid.proton4j.engine.Session;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for streaming the payload of multi-frame deliveries to a Receiver
+ */
+public class StreamingDeliveryTest {
+
+    private ProtonEnginePair pair;
+    private ProtonSender sender;
+    private Receiver receiver;
+
+    private final List<Delivery> received = new ArrayList<>();
+    private final List<ProtonBuffer> recycled = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        pair = new ProtonEnginePair();
+        pair.getClientTransport().setBufferAllocator(new ProtonByteBufferAllocator() {
+
+            @Override
+            public void recycle(ProtonBuffer buffer) {
+                recycled.add(buffer);
+            }
+        });
+
+        pair.getServer().getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onConnectionRemoteOpen(Connection connection) {
+                connection.open();
+            }
+
+            @Override
+            public void onSessionRemoteOpen(Session session) {
+                session.open();
+            }
+
+            @Override
+            public void onLinkRemoteOpen(Link link) {
+                sender = (ProtonSender) link;
+                sender.open();
+            }
+        });
+
+        pair.getClient().getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onDelivery(Delivery delivery) {
+                received.add(delivery);
+            }
+        });
+
+        receiver = pair.getClient().getConnection().session().open().receiver("receiver");
+    }
+
+    @Test
+    public void testAccumulatedPayloadByDefault() throws Exception {
+        openReceiver(false);
+
+        transfer(true, true, new byte[] { 0, 1, 2 });
+        transfer(false, false, new byte[] { 3, 4 });
+
+        assertEquals(2, received.size());
+
+        Delivery delivery = received.get(1);
+        assertFalse(delivery.isPartial());
+        assertFalse(delivery.getPayload() instanceof ProtonCompositeBuffer);
+        assertEquals(5, delivery.getPayloadSize());
+        assertEquals(5, delivery.getPayload().getReadableBytes());
+    }
+
+    @Test
+    public void testStreamingPayloadKeepsEachTransfer() throws Exception {
+        openReceiver(true);
+
+        transfer(true, true, new byte[] { 0, 1, 2 });
+        transfer(false, true, new byte[] { 3, 4 });
+        transfer(false, false, new byte[] { 5 });
+
+        Delivery delivery = received.get(0);
+        ProtonCompositeBuffer payload = (ProtonCompositeBuffer) delivery.getPayload();
+
+        assertEquals(3, payload.getComponentCount());
+        assertEquals(6, payload.getReadableBytes());
+        assertEquals(6, delivery.getPayloadSize());
+        assertEquals(0x00010203, payload.readInt());
+    }
+
+    @Test
+    public void testStreamReleasesPayloadAsItIsRead() throws Exception {
+        openReceiver(true);
+
+        final ByteArrayOutputStream consumed = new ByteArrayOutputStream();
+        final int[] maxBuffered = new int[1];
+
+        pair.getClient().getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onDelivery(Delivery delivery) {
+                try {
+                    InputStream stream = delivery.getInputStream();
+                    maxBuffered[0] = Math.max(maxBuffered[0], stream.available());
+
+                    byte[] chunk = new byte[7];
+                    while (stream.available() > 0) {
+                        consumed.write(chunk, 0, stream.read(chunk));
+                    }
+
+                    if (!delivery.isPartial()) {
+                        assertEquals(-1, stream.read());
+                    }
+                } catch (IOException e) {
+                    fail("Unexpected error reading stream: " + e.getMessage());
+                }
+
+                received.add(delivery);
+            }
+        });
+
+        final byte[] expected = new byte[100 * 64];
+        for (int i = 0; i < expected.length; ++i) {
+            expected[i] = (byte) i;
+        }
+
+        for (int i = 0; i < 100; ++i) {
+            byte[] frame = new byte[64];
+            System.arraycopy(expected, i * 64, frame, 0, 64);
+            transfer(i == 0, i < 99, frame);
+        }
+
+        assertTrue(pair.getFailures().isEmpty());
+        assertArrayEquals(expected, consumed.toByteArray());
+
+        // Only the frame most recently arrived was ever held
+        assertEquals(64, maxBuffered[0]);
+        assertEquals(0, ((ProtonCompositeBuffer) received.get(0).getPayload()).getComponentCount());
+        assertEquals(expected.length, received.get(0).getPayloadSize());
+    }
+
+    @Test
+    public void testReadTransferPayloadsAreRecycled() throws Exception {
+        openReceiver(true);
+
+        transfer(true, true, new byte[] { 0, 1, 2 });
+        transfer(false, true, new byte[] { 3, 4 });
+
+        Delivery delivery = received.get(0);
+        InputStream stream = delivery.getInputStream();
+
+        recycled.clear();
+        assertEquals(4, stream.skip(4));
+
+        // Only the first Transfer payload was read in full
+        assertEquals(1, recycled.size());
+        assertEquals(3, recycled.get(0).capacity());
+
+        transfer(false, false, new byte[] { 5 });
+
+        recycled.clear();
+        delivery.settle();
+
+        assertEquals(2, recycled.size());
+        assertEquals(0, delivery.getPayload().getReadableBytes());
+    }
+
+    @Test
+    public void testPayloadRecycledWhenSettled() throws Exception {
+        openReceiver(false);
+
+        transfer(true, false, new byte[] { 0, 1, 2 });
+
+        Delivery delivery = received.get(0);
+        ProtonBuffer payload = delivery.getPayload();
+
+        recycled.clear();
+        delivery.settle();
+
+        assertTrue(recycled.contains(payload));
+        assertEquals(0, delivery.getPayload().getReadableBytes());
+    }
+
+    @Test
+    public void testPayloadRecycledWhenAborted() throws Exception {
+        openReceiver(true);
+
+        transfer(true, true, new byte[] { 0, 1, 2 });
+        transfer(false, true, new byte[] { 3, 4 });
+
+        recycled.clear();
+        abort();
+
+        Delivery delivery = received.get(received.size() - 1);
+        assertTrue(delivery.isAborted());
+        assertEquals(2, recycled.size());
+        assertEquals(0, delivery.getPayload().getReadableBytes());
+    }
+
+    @Test
+    public void testStreamDoesNotBlockOnIncompleteDelivery() throws Exception {
+        openReceiver(true);
+
+        transfer(true, true, new byte[] { 1, 2 });
+
+        Delivery delivery = received.get(0);
+        InputStream stream = delivery.getInputStream();
+
+        assertEquals(1, stream.read());
+        assertEquals(1, stream.skip(5));
+
+        try {
+            stream.read();
+            fail("Should not be able to read when the payload has not arrived");
+        } catch (IOException expected) {
+        }
+
+        ReadableByteChannel channel = delivery.getReadableChannel();
+        ByteBuffer target = ByteBuffer.allocate(10);
+
+        assertEquals(0, channel.read(target));
+
+        transfer(false, false, new byte[] { 3, 4, 5 });
+
+        assertEquals(3, channel.read(target));
+        assertEquals(-1, channel.read(target));
+        assertEquals(5, target.get(2));
+
+        channel.close();
+        assertFalse(channel.isOpen());
+    }
+
+    private void openReceiver(boolean streaming) throws Exception {
+        receiver.setStreaming(streaming);
+        receiver.open();
+        receiver.flow(10);
+        pair.getClient().getConnection().open();
+        pair.pump();
+    }
+
+    private void abort() throws Exception {
+        Transfer transfer = new Transfer();
+        transfer.setHandle(sender.getLocalHandle());
+        transfer.setAborted(true);
+
+        ProtonEngine engine = pair.getServer();
+        engine.writeFrame(transfer, sender.getSession().getLocalChannel(), null);
+        engine.flush();
+        pair.pump();
+    }
+
+    private void transfer(boolean first, boolean more, byte[] payload) throws Exception {
+        Transfer transfer = new Transfer();
+        transfer.setHandle(sender.getLocalHandle());
+        if (first) {
+            transfer.setDeliveryId(0);
+            transfer.setDeliveryTag(new Binary(new byte[] { 0 }));
+            transfer.setMessageFormat(0);
+        }
+        transfer.setMore(more);
+
+        ProtonEngine engine = pair.getServer();
+        engine.writeFrame(transfer, sender.getSession().getLocalChannel(), new Binary(payload));
+        engine.flush();
+        pair.pump();
+    }
+}
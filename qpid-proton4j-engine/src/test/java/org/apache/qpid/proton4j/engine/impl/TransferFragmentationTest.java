@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.Transfer;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonByteBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonCompositeBuffer;
+import org.apache.qpid.proton4j.codec.CodecFactory;
+import org.apache.qpid.proton4j.engine.Connection;
+import org.apache.qpid.proton4j.engine.Delivery;
+import org.apache.qpid.proton4j.engine.EngineListener;
+import org.apache.qpid.proton4j.engine.Link;
+import org.apache.qpid.proton4j.engine.Receiver;
+import org.apache.qpid.proton4j.engine.Sender;
+import org.apache.qpid.proton4j.engine.Session;
+import org.apache.qpid.proton4j.transport.HeaderFrame;
+import org.apache.qpid.proton4j.transport.ProtocolFrame;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.handlers.FrameParsingHandler;
+import org.apache.qpid.proton4j.transport.impl.AmqpFrameParser;
+import org.apache.qpid.proton4j.transport.impl.ProtonTransport;
+import org.apache.qpid.proton4j.transport.metrics.TransportMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for splitting deliveries into Transfer frames that fit the peer's max-frame-size
+ */
+public class TransferFragmentationTest {
+
+    private static final int MAX_FRAME_SIZE = 512;
+
+    private ProtonEnginePair pair;
+    private TransportMetrics clientMetrics;
+    private Sender sender;
+    private Receiver receiver;
+
+    private final List<Delivery> received = new ArrayList<>();
+    private final List<Transfer> transfers = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        pair = new ProtonEnginePair();
+        clientMetrics = new TransportMetrics();
+        pair.getClientTransport().setMetrics(clientMetrics);
+        captureClientTransfers();
+
+        pair.getServer().getConnection().setListener(new EngineListener() {
+
+            @Override
+            public void onConnectionRemoteOpen(Connection connection) {
+                connection.open();
+            }
+
+            @Override
+            public void onSessionRemoteOpen(Session session) {
+                session.open();
+            }
+
+            @Override
+            public void onLinkRemoteOpen(Link link) {
+                sender = (Sender) link;
+                sender.open();
+            }
+        });
+
+        Connection client = pair.getClient().getConnection();
+        client.setListener(new EngineListener() {
+
+            @Override
+            public void onDelivery(Delivery delivery) {
+                received.add(delivery);
+            }
+        });
+        client.setMaxFrameSize(MAX_FRAME_SIZE);
+
+        receiver = client.session().open().receiver("receiver").open();
+        receiver.flow(10);
+        client.open();
+        pair.pump();
+    }
+
+    @Test
+    public void testSmallPayloadSentInOneFrame() throws Exception {
+        sender.send(new Binary(new byte[] { 1 }), new Binary(new byte[100]));
+        pair.pump();
+
+        assertEquals(1, transfers.size());
+        assertFalse(transfers.get(0).getMore());
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    public void testLargePayloadSplitWithinMaxFrameSize() throws Exception {
+        final byte[] payload = createPayload(5000);
+
+        sender.send(new Binary(new byte[] { 1, 2, 3, 4 }), new Binary(payload));
+        pair.pump();
+
+        assertTrue(pair.getFailures().isEmpty());
+        assertTrue(transfers.size() > 1);
+        assertTrue(clientMetrics.getFrameSizeIn().getMax() <= MAX_FRAME_SIZE);
+        assertTrue(clientMetrics.getFrameSizeIn().getMax() > MAX_FRAME_SIZE - 64);
+
+        // Only the first frame identifies the delivery, all but the last announce more to come
+        Transfer first = transfers.get(0);
+        assertTrue(first.hasDeliveryId());
+        assertTrue(first.hasDeliveryTag());
+        for (int i = 1; i < transfers.size(); ++i) {
+            assertFalse(transfers.get(i).hasDeliveryId());
+            assertFalse(transfers.get(i).hasDeliveryTag());
+            assertEquals(first.getHandle(), transfers.get(i).getHandle());
+        }
+        for (int i = 0; i < transfers.size(); ++i) {
+            assertEquals(i < transfers.size() - 1, transfers.get(i).getMore());
+        }
+
+        assertEquals(transfers.size(), received.size());
+
+        Delivery delivery = received.get(received.size() - 1);
+        assertFalse(delivery.isPartial());
+        assertEquals(new Binary(new byte[] { 1, 2, 3, 4 }), delivery.getTag());
+
+        byte[] result = new byte[payload.length];
+        delivery.getPayload().readBytes(result);
+        assertArrayEquals(payload, result);
+    }
+
+    @Test
+    public void testConsecutiveFragmentedDeliveries() throws Exception {
+        final byte[] first = createPayload(1500);
+        final byte[] second = createPayload(2500);
+
+        sender.send(new Binary(new byte[] { 1 }), new Binary(first));
+        sender.send(new Binary(new byte[] { 2 }), new Binary(second));
+        pair.pump();
+
+        Delivery last = received.get(received.size() - 1);
+        assertEquals(first.length, received.get(0).getPayloadSize());
+        assertEquals(second.length, last.getPayloadSize());
+        assertEquals(new Binary(new byte[] { 2 }), last.getTag());
+    }
+
+    @Test
+    public void testSendFromBufferConsumesReadableBytes() throws Exception {
+        final byte[] payload = createPayload(3000);
+
+        ProtonBuffer buffer = new ProtonByteBuffer(4000);
+        buffer.writeBytes(new byte[] { 9, 9 });
+        buffer.writeBytes(payload);
+        buffer.skipBytes(2);
+
+        sender.send(new Binary(new byte[] { 1 }), buffer);
+        assertFalse(buffer.isReadable());
+
+        ProtonCompositeBuffer composite = new ProtonCompositeBuffer();
+        composite.append(new ProtonByteBuffer(new byte[1000])).append(new ProtonByteBuffer(payload));
+
+        sender.send(new Binary(new byte[] { 2 }), composite);
+        assertFalse(composite.isReadable());
+
+        pair.pump();
+
+        byte[] result = new byte[payload.length];
+        received.get(0).getPayload().readBytes(result);
+        assertArrayEquals(payload, result);
+
+        Delivery last = received.get(received.size() - 1);
+        assertEquals(1000 + payload.length, last.getPayloadSize());
+    }
+
+    private static byte[] createPayload(int size) {
+        byte[] payload = new byte[size];
+        for (int i = 0; i < size; ++i) {
+            payload[i] = (byte) i;
+        }
+
+        return payload;
+    }
+
+    /*
+     * Decodes a copy of everything the client reads with a separate parser so that the
+     * Transfer frames can be examined as they appeared on the wire.
+     */
+    private void captureClientTransfers() {
+        final AmqpFrameParser parser = new AmqpFrameParser(CodecFactory.getDecoder(), 65536, true);
+        final ProtonTransport capture = new ProtonTransport();
+
+        capture.getPipeline().addLast("parser", new FrameParsingHandler(parser));
+        capture.getPipeline().addLast("capture", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleHeaderFrame(TransportHandlerContext context, HeaderFrame header) {
+            }
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+                if (frame.getBody() instanceof Transfer) {
+                    transfers.add((Transfer) frame.getBody());
+                }
+            }
+        });
+
+        pair.getClientTransport().getPipeline().addFirst("capture", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleRead(TransportHandlerContext context, ProtonBuffer buffer) {
+                try {
+                    capture.processIncoming(buffer.duplicate());
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                context.fireRead(buffer);
+            }
+        });
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the delivery-id keyed unsettled delivery map
+ */
+public class UnsettledDeliveryMapTest {
+
+    @Test
+    public void testPutGetRemoveInSequence() {
+        UnsettledDeliveryMap<String> map = new UnsettledDeliveryMap<>(4, 16);
+
+        for (int i = 0; i < 10; ++i) {
+            map.put(i, "d" + i);
+        }
+
+        assertEquals(10, map.size());
+        assertEquals("d0", map.get(0));
+        assertEquals("d9", map.get(9));
+        assertNull(map.get(10));
+
+        for (int i = 0; i < 10; ++i) {
+            assertEquals("d" + i, map.remove(i));
+        }
+
+        assertTrue(map.isEmpty());
+        assertNull(map.remove(3));
+    }
+
+    @Test
+    public void testWindowSlidesAsOldestIsSettled() {
+        UnsettledDeliveryMap<Integer> map = new UnsettledDeliveryMap<>(4, 4);
+
+        // With a fixed ring of four the window keeps moving without spilling to the overflow
+        for (int i = 0; i < 1000; ++i) {
+            map.put(i, i);
+            if (i >= 3) {
+                assertEquals(Integer.valueOf(i - 3), map.remove(i - 3));
+            }
+        }
+
+        assertEquals(3, map.size());
+        assertEquals(Integer.valueOf(997), map.get(997));
+        assertEquals(Integer.valueOf(999), map.get(999));
+    }
+
+    @Test
+    public void testIdsWrapPastMaxUnsignedInt() {
+        UnsettledDeliveryMap<Integer> map = new UnsettledDeliveryMap<>(8, 8);
+
+        final int start = -3;  // 4294967293 as an unsigned delivery-id
+        for (int i = 0; i < 6; ++i) {
+            map.put(start + i, i);
+        }
+
+        assertEquals(Integer.valueOf(3), map.get(0));
+        assertEquals(Integer.valueOf(0), map.get(-3));
+
+        final List<Integer> visited = new ArrayList<>();
+        map.forEach(-2, 1, new UnsettledDeliveryMap.Visitor<Integer>() {
+
+            @Override
+            public void visit(int deliveryId, Integer delivery) {
+                visited.add(delivery);
+            }
+        });
+
+        assertEquals(4, visited.size());
+        assertEquals(Integer.valueOf(1), visited.get(0));
+        assertEquals(Integer.valueOf(4), visited.get(3));
+    }
+
+    @Test
+    public void testStragglerMovesToOverflow() {
+        UnsettledDeliveryMap<Integer> map = new UnsettledDeliveryMap<>(4, 8);
+
+        map.put(0, 0);
+        for (int i = 1; i < 100; ++i) {
+            map.put(i, i);
+        }
+
+        // Ids beyond the maximum ring window from the unsettled id 0 go to the overflow table
+        assertEquals(100, map.size());
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(Integer.valueOf(i), map.get(i));
+        }
+
+        for (int i = 99; i >= 0; --i) {
+            assertEquals(Integer.valueOf(i), map.remove(i));
+        }
+
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testPutReplacesExistingEntry() {
+        UnsettledDeliveryMap<String> map = new UnsettledDeliveryMap<>(4, 4);
+
+        map.put(10, "a");
+        map.put(100, "b");
+        map.put(10, "c");
+        map.put(100, "d");
+
+        assertEquals(2, map.size());
+        assertEquals("c", map.get(10));
+        assertEquals("d", map.get(100));
+    }
+
+    @Test
+    public void testForEachVisitsRangeAndAllowsRemoval() {
+        final UnsettledDeliveryMap<Integer> map = new UnsettledDeliveryMap<>(4, 8);
+        for (int i = 0; i < 20; ++i) {
+            map.put(i, i);
+        }
+
+        final List<Integer> visited = new ArrayList<>();
+        map.forEach(2, 15, new UnsettledDeliveryMap.Visitor<Integer>() {
+
+            @Override
+            public void visit(int deliveryId, Integer delivery) {
+                assertEquals(deliveryId, delivery.intValue());
+                visited.add(delivery);
+                map.remove(deliveryId);
+            }
+        });
+
+        assertEquals(14, visited.size());
+        assertEquals(6, map.size());
+        assertEquals(Integer.valueOf(0), map.get(0));
+        assertNull(map.get(2));
+        assertEquals(Integer.valueOf(16), map.get(16));
+    }
+
+    @Test
+    public void testForEachNarrowRangeInOverflow() {
+        final UnsettledDeliveryMap<Integer> map = new UnsettledDeliveryMap<>(4, 8);
+        for (int i = 0; i < 1000; ++i) {
+            map.put(i, i);
+        }
+
+        // Disposition ranges of a few ids against a large overflow table
+        final List<Integer> visited = new ArrayList<>();
+        for (int first = 1; first < 1000; first += 3) {
+            map.forEach(first, first + 1, new UnsettledDeliveryMap.Visitor<Integer>() {
+
+                @Override
+                public void visit(int deliveryId, Integer delivery) {
+                    assertEquals(deliveryId, delivery.intValue());
+                    visited.add(delivery);
+                    map.remove(deliveryId);
+                }
+            });
+        }
+
+        assertEquals(666, visited.size());
+        assertEquals(334, map.size());
+        assertEquals(Integer.valueOf(0), map.get(0));
+        assertNull(map.get(1));
+        assertNull(map.get(2));
+        assertEquals(Integer.valueOf(3), map.get(3));
+        assertEquals(Integer.valueOf(999), map.get(999));
+    }
+
+    @Test
+    public void testForEachOverWholeIdSpaceIsBounded() {
+        UnsettledDeliveryMap<Integer> map = new UnsettledDeliveryMap<>();
+        map.put(5, 5);
+        map.put(1 << 20, 1);
+
+        final int[] count = new int[1];
+        map.forEach(0, -1, new UnsettledDeliveryMap.Visitor<Integer>() {
+
+            @Override
+            public void visit(int deliveryId, Integer delivery) {
+                count[0]++;
+            }
+        });
+
+        assertEquals(2, count[0]);
+    }
+
+    @Test
+    public void testRandomOperationsMatchHashMap() {
+        final Random random = new Random(42);
+        final UnsettledDeliveryMap<Integer> map = new UnsettledDeliveryMap<>(8, 64);
+        final Map<Integer, Integer> expected = new HashMap<>();
+
+        int next = Integer.MAX_VALUE - 500;
+        for (int i = 0; i < 20000; ++i) {
+            if (random.nextInt(3) != 0) {
+                map.put(next, next);
+                expected.put(next, next);
+                next++;
+            } else if (!expected.isEmpty()) {
+                // Settle mostly recent deliveries so that some old ones linger
+                int id = next - 1 - random.nextInt(Math.min(expected.size() + 50, 200));
+                assertEquals(expected.remove(id), map.remove(id));
+            }
+
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+}
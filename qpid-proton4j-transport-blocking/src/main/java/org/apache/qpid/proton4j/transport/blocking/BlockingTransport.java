@@ -0,0 +1,451 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.blocking;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
+import org.apache.qpid.proton4j.common.logging.ProtonLogger;
+import org.apache.qpid.proton4j.common.logging.ProtonLoggerFactory;
+import org.apache.qpid.proton4j.transport.ProtocolFrame;
+import org.apache.qpid.proton4j.transport.Transport;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.exceptions.IOExceptionSupport;
+
+/**
+ * Blocking thread per connection adapter for a {@link Transport}.
+ * <p>
+ * A dedicated reader thread reads from the channel and feeds the Transport while a
+ * dedicated writer thread writes the Transport output to the channel.  Frames are written
+ * on the calling thread and {@link #flush()} does not return until the output has been
+ * written to the channel.  Access to the Transport is serialized with a lock so the reader
+ * and any number of writer threads can share it.
+ * <p>
+ * Output that the Transport produces while the reader thread is processing input, for
+ * example a response to an incoming frame, is only queued.  The reader never blocks on a
+ * socket write, so two peers that both have full send buffers keep draining each other's
+ * output instead of deadlocking.
+ * <p>
+ * Queued output is bounded by a high-water mark.  Once the queue holds that many bytes
+ * callers of {@link #write(ProtocolFrame)} block until the writer thread has drained the
+ * queue back below the mark.  The reader also stops reading while the queue is above the
+ * mark and still holds output that the reader itself produced, so a peer that sends
+ * without reading the responses cannot grow the queue without limit.
+ * <p>
+ * By default the connection threads come from {@link ConnectionThreads} which supplies
+ * virtual threads when running on Java 21 and later, making a thread per connection affordable for
+ * large numbers of connections.
+ */
+public class BlockingTransport implements Closeable {
+
+    private static final ProtonLogger LOG = ProtonLoggerFactory.getLogger(BlockingTransport.class);
+
+    public static final int DEFAULT_READ_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_OUTPUT_HIGH_WATER_MARK = 1024 * 1024;
+
+    private final SocketChannel channel;
+    private final Transport transport;
+    private final ThreadFactory threadFactory;
+
+    // A ReentrantLock rather than synchronized so a virtual thread that waits on it does
+    // not pin its carrier thread.  The lock is never held across a blocking socket call.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition outputQueued = lock.newCondition();
+    private final Condition outputWritten = lock.newCondition();
+
+    private final ArrayDeque<ProtonBuffer> pendingOutput = new ArrayDeque<>();
+    private long pendingBytes;
+    private long queuedCount;
+    private long writtenCount;
+    private long readerQueuedCount;
+    private int outputHighWaterMark = DEFAULT_OUTPUT_HIGH_WATER_MARK;
+
+    private final ByteBuffer readBuffer;
+    private final ProtonBuffer readView;
+
+    private Thread reader;
+    private Thread writer;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    public BlockingTransport(SocketChannel channel, Transport transport) {
+        this(channel, transport, ConnectionThreads.factory());
+    }
+
+    public BlockingTransport(SocketChannel channel, Transport transport, ThreadFactory threadFactory) {
+        this(channel, transport, threadFactory, DEFAULT_READ_BUFFER_SIZE);
+    }
+
+    public BlockingTransport(SocketChannel channel, Transport transport, ThreadFactory threadFactory, int readBufferSize) {
+        byte[] readArray = new byte[readBufferSize];
+
+        this.channel = channel;
+        this.transport = transport;
+        this.threadFactory = threadFactory;
+        this.readBuffer = ByteBuffer.wrap(readArray);
+        this.readView = ProtonByteBufferAllocator.DEFAULT.wrap(readArray);
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * @return the number of queued output bytes at which writes and reads block.
+     */
+    public int getOutputHighWaterMark() {
+        return outputHighWaterMark;
+    }
+
+    /**
+     * Sets the number of queued output bytes at which writes and reads block until the
+     * writer thread has written enough of the queue to the channel.
+     *
+     * @param outputHighWaterMark
+     *      The high-water mark in bytes, must be greater than zero.
+     */
+    public void setOutputHighWaterMark(int outputHighWaterMark) {
+        if (outputHighWaterMark <= 0) {
+            throw new IllegalArgumentException("Output high-water mark must be greater than zero");
+        }
+
+        lock.lock();
+        try {
+            this.outputHighWaterMark = outputHighWaterMark;
+            outputWritten.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of output bytes queued that the writer thread has not yet written.
+     */
+    public long getPendingBytes() {
+        lock.lock();
+        try {
+            return pendingBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if this connection has been closed or has failed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Installs the channel writer as the first handler of the Transport pipeline and starts
+     * the connection threads that read from and write to the channel.
+     *
+     * @return this blocking transport.
+     *
+     * @throws IOException if the channel cannot be placed in blocking mode.
+     */
+    public BlockingTransport start() throws IOException {
+        if (reader != null) {
+            throw new IllegalStateException("Blocking transport already started");
+        }
+
+        channel.configureBlocking(true);
+        transport.getPipeline().addFirst("blocking-io", new ChannelWriter());
+
+        reader = threadFactory.newThread(new Runnable() {
+
+            @Override
+            public void run() {
+                readLoop();
+            }
+        });
+        writer = threadFactory.newThread(new Runnable() {
+
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        });
+
+        reader.start();
+        writer.start();
+
+        return this;
+    }
+
+    /**
+     * Writes the frame into the Transport, the encoded bytes reach the channel no later
+     * than the next {@link #flush()}.  Blocks while the queued output is at or above the
+     * output high-water mark.
+     *
+     * @param frame
+     *      The frame to write.
+     *
+     * @throws IOException if the connection has failed.
+     * @throws InterruptedIOException if interrupted while waiting for queued output to drain.
+     */
+    public void write(ProtocolFrame frame) throws IOException {
+        lock.lock();
+        try {
+            awaitOutputDrained();
+            checkFailed();
+            transport.write(frame);
+            checkFailed();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for output to drain");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the Transport and blocks until all of its output is written to the channel.
+     *
+     * @throws IOException if the connection has failed or the write fails.
+     * @throws InterruptedIOException if interrupted while waiting for the output to be written.
+     */
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            checkFailed();
+            transport.flush();
+
+            final long target = queuedCount;
+            while (writtenCount < target) {
+                checkFailed();
+                outputWritten.await();
+            }
+
+            checkFailed();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for output to be written");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the connection threads to exit after the channel has been closed.
+     *
+     * @param millis
+     *      The time to wait in milliseconds for each of the connection threads.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void join(long millis) throws InterruptedException {
+        if (reader != null) {
+            reader.join(millis);
+            writer.join(millis);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.debug("Error while closing channel: {}", e.getMessage());
+        }
+
+        lock.lock();
+        try {
+            for (ProtonBuffer buffer : pendingOutput) {
+                pendingBytes -= buffer.getReadableBytes();
+                transport.getBufferAllocator().recycle(buffer);
+            }
+            pendingOutput.clear();
+
+            // Wake the writer so it exits and any flush waiting on output so it can fail.
+            outputQueued.signalAll();
+            outputWritten.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //----- Internal implementation ------------------------------------------//
+
+    private void readLoop() {
+        try {
+            while (!closed) {
+                readBuffer.clear();
+
+                int bytesRead = channel.read(readBuffer);
+                if (bytesRead < 0) {
+                    failed(new EOFException("Connection closed by remote peer"));
+                    break;
+                }
+
+                lock.lock();
+                try {
+                    // Stop reading while output produced by earlier input is still queued
+                    while (pendingBytes >= outputHighWaterMark && writtenCount < readerQueuedCount && !closed) {
+                        outputWritten.await();
+                    }
+
+                    if (closed) {
+                        break;
+                    }
+
+                    readView.setIndex(0, bytesRead);
+                    transport.processIncoming(readView);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                failed(e);
+            }
+        } catch (RuntimeException e) {
+            failed(IOExceptionSupport.create(e));
+        } catch (InterruptedException e) {
+            failed(new InterruptedIOException("Connection reader interrupted"));
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                final ProtonBuffer buffer;
+                final int size;
+
+                lock.lock();
+                try {
+                    while (pendingOutput.isEmpty() && !closed) {
+                        outputQueued.await();
+                    }
+
+                    if (closed) {
+                        return;
+                    }
+
+                    buffer = pendingOutput.poll();
+                    size = buffer.getReadableBytes();
+                } finally {
+                    lock.unlock();
+                }
+
+                try {
+                    ByteBuffer output = buffer.toByteBuffer();
+                    while (output.hasRemaining()) {
+                        channel.write(output);
+                    }
+                } finally {
+                    transport.getBufferAllocator().recycle(buffer);
+                }
+
+                lock.lock();
+                try {
+                    writtenCount++;
+                    pendingBytes -= size;
+                    outputWritten.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                failed(e);
+            }
+        } catch (InterruptedException e) {
+            failed(new InterruptedIOException("Connection writer interrupted"));
+        }
+    }
+
+    private void failed(IOException cause) {
+        if (failure == null) {
+            failure = cause;
+        }
+
+        close();
+
+        lock.lock();
+        try {
+            transport.getPipeline().fireFailed(cause);
+        } catch (RuntimeException e) {
+            LOG.warn("Error thrown while failing connection: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Waits with the lock held until the queued output is below the high-water mark or the
+     * connection is closed.
+     */
+    private void awaitOutputDrained() throws InterruptedException {
+        while (pendingBytes >= outputHighWaterMark && !closed) {
+            outputWritten.await();
+        }
+    }
+
+    private void checkFailed() throws IOException {
+        if (failure != null) {
+            throw failure;
+        } else if (closed) {
+            throw new IOException("Blocking transport has been closed");
+        }
+    }
+
+    /*
+     * IO side handler that queues the Transport output for the writer thread, it is only
+     * ever called while the lock is held.
+     */
+    private final class ChannelWriter extends TransportHandlerAdapter {
+
+        @Override
+        public void handleWrite(TransportHandlerContext context, ProtonBuffer buffer) {
+            if (closed || !buffer.isReadable()) {
+                transport.getBufferAllocator().recycle(buffer);
+            } else {
+                pendingOutput.add(buffer);
+                pendingBytes += buffer.getReadableBytes();
+                queuedCount++;
+                if (Thread.currentThread() == reader) {
+                    readerQueuedCount = queuedCount;
+                }
+                outputQueued.signal();
+            }
+        }
+
+        @Override
+        public void handleFlush(TransportHandlerContext context) {
+            // Output is queued to the writer thread as it arrives so there is nothing left to flush.
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.blocking;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.proton4j.common.logging.ProtonLogger;
+import org.apache.qpid.proton4j.common.logging.ProtonLoggerFactory;
+
+/**
+ * Supplies the threads that run blocking connections.
+ * <p>
+ * On Java 21 and later each connection runs on its own virtual thread, so blocking reads
+ * and writes park the virtual thread instead of holding a platform thread.  The module is
+ * compiled for Java 8 so the virtual thread factory is looked up reflectively, on older
+ * runtimes a daemon platform thread is created per connection instead.
+ */
+public final class ConnectionThreads {
+
+    private static final ProtonLogger LOG = ProtonLoggerFactory.getLogger(ConnectionThreads.class);
+
+    private static final String THREAD_NAME_PREFIX = "proton-connection-";
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final ThreadFactory PLATFORM_FACTORY = new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, THREAD_NAME_PREFIX + THREAD_COUNTER.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private static final ThreadFactory VIRTUAL_FACTORY = createVirtualThreadFactory();
+
+    private ConnectionThreads() {
+    }
+
+    /**
+     * @return the default ThreadFactory used to create connection threads.
+     */
+    public static ThreadFactory factory() {
+        return VIRTUAL_FACTORY != null ? VIRTUAL_FACTORY : PLATFORM_FACTORY;
+    }
+
+    /**
+     * @return true if the default connection threads are virtual threads.
+     */
+    public static boolean isVirtual() {
+        return VIRTUAL_FACTORY != null;
+    }
+
+    private static ThreadFactory createVirtualThreadFactory() {
+        final Method ofVirtual;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+
+        // Invoked through the public Thread.Builder interface, the builder classes are not public
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = ofVirtual.invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, THREAD_NAME_PREFIX, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.warn("Virtual threads are unavailable, using platform threads: {}", e.getMessage());
+            return null;
+        }
+    }
+}
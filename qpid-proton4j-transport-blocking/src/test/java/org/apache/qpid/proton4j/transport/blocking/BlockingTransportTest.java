@@ -0,0 +1,397 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.blocking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.Transfer;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.codec.CodecFactory;
+import org.apache.qpid.proton4j.transport.ProtocolFrame;
+import org.apache.qpid.proton4j.transport.Transport;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.handlers.FrameParsingHandler;
+import org.apache.qpid.proton4j.transport.handlers.FrameWritingHandler;
+import org.apache.qpid.proton4j.transport.impl.AmqpFrameParser;
+import org.apache.qpid.proton4j.transport.impl.ProtonTransport;
+import org.apache.qpid.proton4j.transport.nio.NioEventLoop;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loopback tests for the blocking transport adapter, including a comparison with the
+ * NIO event loop driver running the same workload.
+ */
+public class BlockingTransportTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BlockingTransportTest.class);
+
+    private static final int CONNECTIONS = 256;
+    private static final int PLATFORM_THREAD_CONNECTIONS = 32;
+    private static final int MAX_FRAME_SIZE = 1024 * 1024;
+    private static final int FRAMES_PER_CONNECTION = 200;
+    private static final int PAYLOAD_SIZE = 256;
+
+    private ServerSocketChannel server;
+    private final List<BlockingTransport> transports = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), CONNECTIONS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (BlockingTransport transport : transports) {
+            transport.close();
+        }
+        server.close();
+    }
+
+    @Test(timeout = 60000)
+    public void testManyConnectionsOnDefaultConnectionThreads() throws Exception {
+        long elapsed = runBlockingWorkload(ConnectionThreads.factory(), PLATFORM_THREAD_CONNECTIONS);
+        LOG.info("Blocking adapter on default connection threads: {} connections, {} frames in {} ms",
+                 PLATFORM_THREAD_CONNECTIONS, PLATFORM_THREAD_CONNECTIONS * FRAMES_PER_CONNECTION,
+                 TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    @Test
+    public void testConnectionThreadsAreVirtualWhenAvailable() throws Exception {
+        boolean available;
+        try {
+            Thread.class.getMethod("ofVirtual");
+            available = true;
+        } catch (NoSuchMethodException e) {
+            available = false;
+        }
+
+        assertEquals(available, ConnectionThreads.isVirtual());
+    }
+
+    @Test(timeout = 60000)
+    public void testManyConnectionsOnVirtualThreads() throws Exception {
+        assumeTrue(ConnectionThreads.isVirtual());
+
+        long elapsed = runBlockingWorkload(ConnectionThreads.factory(), CONNECTIONS);
+        LOG.info("Blocking adapter on virtual threads: {} connections, {} frames in {} ms",
+                 CONNECTIONS, CONNECTIONS * FRAMES_PER_CONNECTION, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    @Test(timeout = 60000)
+    public void testThroughputAgainstNioEventLoop() throws Exception {
+        assumeTrue(ConnectionThreads.isVirtual());
+
+        long blocking = runBlockingWorkload(ConnectionThreads.factory(), CONNECTIONS);
+        long nio = runNioWorkload();
+
+        LOG.info("{} connections x {} frames: virtual thread blocking adapter {} ms, NIO event loop {} ms",
+                 CONNECTIONS, FRAMES_PER_CONNECTION,
+                 TimeUnit.NANOSECONDS.toMillis(blocking), TimeUnit.NANOSECONDS.toMillis(nio));
+    }
+
+    @Test(timeout = 60000)
+    public void testResponsesFromReaderThreadDoNotDeadlock() throws Exception {
+        // Enough output in both directions to fill the socket buffers of both peers
+        final int frames = 256;
+        final int payloadSize = 64 * 1024;
+
+        final CountDownLatch echoed = new CountDownLatch(frames);
+
+        SocketChannel client = SocketChannel.open(server.getLocalAddress());
+        SocketChannel accepted = server.accept();
+
+        ProtonTransport echoTransport = new ProtonTransport();
+        echoTransport.getPipeline().addLast("writer", new FrameWritingHandler());
+        echoTransport.getPipeline().addLast("parser", new FrameParsingHandler(new AmqpFrameParser(CodecFactory.getDecoder(), MAX_FRAME_SIZE)));
+        echoTransport.getPipeline().addLast("echo", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+                // Written from the reader thread while the peer is also still writing
+                context.fireWrite(frame.copy());
+                context.fireFlush();
+            }
+        });
+        transports.add(new BlockingTransport(accepted, echoTransport, ConnectionThreads.factory()).start());
+
+        ProtonTransport transport = new ProtonTransport();
+        transport.getPipeline().addLast("writer", new FrameWritingHandler());
+        transport.getPipeline().addLast("parser", new FrameParsingHandler(new AmqpFrameParser(CodecFactory.getDecoder(), MAX_FRAME_SIZE)));
+        transport.getPipeline().addLast("receiver", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+                echoed.countDown();
+            }
+        });
+        BlockingTransport blocking = new BlockingTransport(client, transport, ConnectionThreads.factory()).start();
+        transports.add(blocking);
+
+        for (int i = 0; i < frames; ++i) {
+            blocking.write(createTransfer(i, payloadSize));
+        }
+        blocking.flush();
+
+        assertTrue("Not all frames were echoed", echoed.await(30, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 30000)
+    public void testWriteBlocksAtOutputHighWaterMark() throws Exception {
+        final int frames = 1024;
+        final int payloadSize = 16 * 1024;
+        final int highWaterMark = 64 * 1024;
+
+        SocketChannel client = SocketChannel.open(server.getLocalAddress());
+        final SocketChannel accepted = server.accept();
+
+        ProtonTransport transport = new ProtonTransport();
+        transport.getPipeline().addLast("writer", new FrameWritingHandler());
+        final BlockingTransport blocking = new BlockingTransport(client, transport, ConnectionThreads.factory()).start();
+        blocking.setOutputHighWaterMark(highWaterMark);
+        transports.add(blocking);
+
+        final CountDownLatch written = new CountDownLatch(1);
+        Thread sender = ConnectionThreads.factory().newThread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < frames; ++i) {
+                        blocking.write(createTransfer(i, payloadSize));
+                    }
+                    blocking.flush();
+                    written.countDown();
+                } catch (IOException e) {
+                    LOG.warn("Send failed: {}", e.getMessage());
+                }
+            }
+        });
+        sender.start();
+
+        // The peer is not reading so the sender stalls once the socket buffers fill
+        assertFalse(written.await(500, TimeUnit.MILLISECONDS));
+        assertTrue(blocking.getPendingBytes() < highWaterMark + FrameWritingHandler.DEFAULT_OUTPUT_BUFFER_SIZE + payloadSize);
+
+        Thread drain = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                ByteBuffer input = ByteBuffer.allocate(64 * 1024);
+                try {
+                    while (accepted.read(input) >= 0) {
+                        input.clear();
+                    }
+                } catch (IOException e) {
+                }
+            }
+        });
+        drain.setDaemon(true);
+        drain.start();
+
+        assertTrue("Output was not written once the peer read it", written.await(20, TimeUnit.SECONDS));
+
+        accepted.close();
+    }
+
+    @Test(timeout = 30000)
+    public void testHandlerErrorOnReaderThreadFailsConnection() throws Exception {
+        final CountDownLatch failed = new CountDownLatch(1);
+
+        SocketChannel client = SocketChannel.open(server.getLocalAddress());
+        SocketChannel accepted = server.accept();
+
+        ProtonTransport failingTransport = new ProtonTransport();
+        failingTransport.getPipeline().addLast("thrower", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleRead(TransportHandlerContext context, ProtonBuffer buffer) {
+                throw new IllegalStateException("Handler failure");
+            }
+
+            @Override
+            public void transportFailed(TransportHandlerContext context, Throwable e) {
+                failed.countDown();
+            }
+        });
+        BlockingTransport failing = new BlockingTransport(accepted, failingTransport, ConnectionThreads.factory()).start();
+        transports.add(failing);
+
+        ProtonTransport transport = new ProtonTransport();
+        transport.getPipeline().addLast("writer", new FrameWritingHandler());
+        BlockingTransport blocking = new BlockingTransport(client, transport, ConnectionThreads.factory()).start();
+        transports.add(blocking);
+
+        try {
+            blocking.write(createTransfer(0, PAYLOAD_SIZE));
+            blocking.flush();
+        } catch (IOException ignored) {
+            // The failing side may close the socket before this side finishes flushing
+        }
+
+        assertTrue("Connection was not failed", failed.await(10, TimeUnit.SECONDS));
+        assertTrue(failing.isClosed());
+
+        try {
+            failing.write(createTransfer(1, PAYLOAD_SIZE));
+            fail("Should not be able to write to a failed connection");
+        } catch (IOException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+
+        failing.join(5000);
+    }
+
+    private long runBlockingWorkload(ThreadFactory threads, int connections) throws Exception {
+        final CountDownLatch received = new CountDownLatch(connections * FRAMES_PER_CONNECTION);
+        final List<BlockingTransport> clients = new ArrayList<>();
+
+        for (int i = 0; i < connections; ++i) {
+            SocketChannel client = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            transports.add(new BlockingTransport(accepted, createReceivingTransport(received), threads).start());
+
+            ProtonTransport transport = new ProtonTransport();
+            transport.getPipeline().addLast("writer", new FrameWritingHandler());
+            BlockingTransport blocking = new BlockingTransport(client, transport, threads).start();
+            transports.add(blocking);
+            clients.add(blocking);
+        }
+
+        final long start = System.nanoTime();
+
+        List<Thread> senders = new ArrayList<>();
+        for (final BlockingTransport client : clients) {
+            senders.add(threads.newThread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < FRAMES_PER_CONNECTION; ++i) {
+                            client.write(createTransfer(i, PAYLOAD_SIZE));
+                        }
+                        client.flush();
+                    } catch (IOException e) {
+                        LOG.warn("Send failed: {}", e.getMessage());
+                    }
+                }
+            }));
+        }
+
+        for (Thread sender : senders) {
+            sender.start();
+        }
+
+        assertTrue("Not all frames arrived", received.await(30, TimeUnit.SECONDS));
+
+        return System.nanoTime() - start;
+    }
+
+    private long runNioWorkload() throws Exception {
+        final CountDownLatch received = new CountDownLatch(CONNECTIONS * FRAMES_PER_CONNECTION);
+        final List<ProtonTransport> clients = new ArrayList<>();
+
+        final NioEventLoop serverLoop = new NioEventLoop("server-loop").start();
+        final NioEventLoop clientLoop = new NioEventLoop("client-loop").start();
+
+        try {
+            for (int i = 0; i < CONNECTIONS; ++i) {
+                SocketChannel client = SocketChannel.open(server.getLocalAddress());
+                SocketChannel accepted = server.accept();
+
+                serverLoop.register(accepted, createReceivingTransport(received));
+
+                ProtonTransport transport = new ProtonTransport();
+                transport.getPipeline().addLast("writer", new FrameWritingHandler());
+                clientLoop.register(client, transport);
+                clients.add(transport);
+            }
+
+            final long start = System.nanoTime();
+
+            for (final ProtonTransport transport : clients) {
+                clientLoop.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            for (int i = 0; i < FRAMES_PER_CONNECTION; ++i) {
+                                transport.write(createTransfer(i, PAYLOAD_SIZE));
+                            }
+                        } catch (IOException e) {
+                            LOG.warn("Send failed: {}", e.getMessage());
+                        }
+                        transport.flush();
+                    }
+                });
+            }
+
+            assertTrue("Not all frames arrived", received.await(30, TimeUnit.SECONDS));
+
+            return System.nanoTime() - start;
+        } finally {
+            clientLoop.close(5, TimeUnit.SECONDS);
+            serverLoop.close(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static Transport createReceivingTransport(final CountDownLatch received) {
+        ProtonTransport transport = new ProtonTransport();
+        transport.getPipeline().addLast("parser", new FrameParsingHandler(new AmqpFrameParser(CodecFactory.getDecoder(), MAX_FRAME_SIZE)));
+        transport.getPipeline().addLast("receiver", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+                received.countDown();
+            }
+        });
+
+        return transport;
+    }
+
+    private static ProtocolFrame createTransfer(int deliveryId, int payloadSize) {
+        Transfer transfer = new Transfer();
+        transfer.setHandle(0);
+        transfer.setDeliveryId(deliveryId);
+        transfer.setDeliveryTag(new Binary(new byte[] { (byte) deliveryId }));
+
+        return new ProtocolFrame(transfer, (short) 0, new Binary(new byte[payloadSize]));
+    }
+}
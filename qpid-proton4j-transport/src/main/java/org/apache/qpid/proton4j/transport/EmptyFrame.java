@@ -16,6 +16,9 @@
  */
 package org.apache.qpid.proton4j.transport;
 
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.Performative;
+
 /**
  * An empty frame which can be used to drive transport activity when idle.
  */
@@ -25,6 +28,16 @@ public final class EmptyFrame extends ProtocolFrame {
         super(null, (byte) 0, null);
     }
 
+    @Override
+    public ProtocolFrame reset(Performative performative, short channel, Binary payload) {
+        throw new UnsupportedOperationException("Empty Frames cannot carry a performative");
+    }
+
+    @Override
+    public EmptyFrame copy() {
+        return this;
+    }
+
     @Override
     public String toString() {
         return "Empty Frame";
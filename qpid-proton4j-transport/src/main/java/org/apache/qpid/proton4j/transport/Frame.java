@@ -20,17 +20,17 @@ import org.apache.qpid.proton4j.amqp.Binary;
 
 /**
  * Base class for Frames that travel through the Transport
- *
- * TODO - Creating a new frame instance for every incoming frame may
- *        become expensive in GC terms, pooling could reduce GC pressure
- *        but increase CPU time to get and return pooled frames
+ * <p>
+ * Incoming frames are owned by the parser that produced them and may be reused for the
+ * next frame read, a handler that needs a frame after the event that delivered it returns
+ * must take a copy of it.
  */
 public abstract class Frame<V> {
 
-    private final V body;
-    private final short channel;
+    private V body;
+    private short channel;
     private final byte type;
-    private final Binary payload;
+    private Binary payload;
 
     public Frame(V body, short channel, byte type, Binary payload) {
         this.body = body;
@@ -39,6 +39,22 @@ public abstract class Frame<V> {
         this.payload = payload;
     }
 
+    /**
+     * Replaces the contents of this frame so that the instance can carry the next frame.
+     *
+     * @param body
+     *      the new body of the frame.
+     * @param channel
+     *      the channel the frame was read from or is to be written to.
+     * @param payload
+     *      the payload that follows the body, or null if none.
+     */
+    protected void initialize(V body, short channel, Binary payload) {
+        this.body = body;
+        this.channel = channel;
+        this.payload = payload;
+    }
+
     public V getBody() {
         return body;
     }
@@ -51,6 +67,15 @@ public abstract class Frame<V> {
         return type;
     }
 
+    /**
+     * Returns the payload bytes that followed the frame body, if any.
+     * <p>
+     * The payload of an incoming frame is a view of the buffer it was parsed from and
+     * is only valid until the event that delivered the frame returns.  A handler that
+     * needs the payload after that point must take a copy of it.
+     *
+     * @return the frame payload or null if the frame carried none.
+     */
     public Binary getPayload() {
         return payload;
     }
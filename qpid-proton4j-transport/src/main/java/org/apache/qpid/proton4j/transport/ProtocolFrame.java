@@ -27,4 +27,32 @@ public class ProtocolFrame extends Frame<Performative> {
     public ProtocolFrame(Performative performative, short channel, Binary payload) {
         super(performative, channel, (byte) 0, payload);
     }
+
+    /**
+     * Reuses this frame instance to carry a newly read performative.
+     *
+     * @param performative
+     *      the performative the frame now carries.
+     * @param channel
+     *      the channel the performative was read from.
+     * @param payload
+     *      the payload that followed the performative, or null if none.
+     *
+     * @return this frame instance.
+     */
+    public ProtocolFrame reset(Performative performative, short channel, Binary payload) {
+        initialize(performative, channel, payload);
+        return this;
+    }
+
+    /**
+     * Creates a copy of this frame that remains valid after the event that delivered this
+     * frame has returned, including a copy of any payload view.
+     *
+     * @return a new frame instance with the same contents as this one.
+     */
+    public ProtocolFrame copy() {
+        Binary payload = getPayload();
+        return new ProtocolFrame(getBody(), getChannel(), payload == null ? null : payload.copy());
+    }
 }
@@ -20,6 +20,7 @@ import java.io.IOException;
 
 import org.apache.qpid.proton4j.buffer.ProtonBuffer;
 import org.apache.qpid.proton4j.buffer.ProtonBufferAllocator;
+import org.apache.qpid.proton4j.transport.metrics.TransportMetrics;
 
 /**
  * AMQP Transport interface.
@@ -102,6 +103,22 @@ public interface Transport {
      */
     void setMaxFrameSize(int size);
 
+    /**
+     * Assigns the TransportMetrics that records the traffic through this Transport.
+     * <p>
+     * No metrics are gathered unless an instance has been assigned, the same instance may
+     * be shared by several Transports to gather aggregate metrics.
+     *
+     * @param metrics
+     *      the metrics to record into, or null to stop recording.
+     */
+    void setMetrics(TransportMetrics metrics);
+
+    /**
+     * @return the assigned {@link TransportMetrics} or null if metrics are not being gathered.
+     */
+    TransportMetrics getMetrics();
+
     /**
      * Gets the TransportPipeline for this Transport.
      *
@@ -38,6 +38,26 @@ public interface TransportHandler {
 
     void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame);
 
+    /**
+     * Handles a batch of protocol frames that were all parsed from a single read.
+     * <p>
+     * The array and the frames in it belong to the parser that produced them and are only
+     * valid until this method returns.  The default implementation hands each frame to
+     * {@link #handleProtocolFrame(TransportHandlerContext, ProtocolFrame)} in order.
+     *
+     * @param context
+     *      the context of this handler in the pipeline.
+     * @param frames
+     *      the array holding the frames of the batch.
+     * @param count
+     *      the number of frames in the array that make up the batch.
+     */
+    default void handleProtocolFrames(TransportHandlerContext context, ProtocolFrame[] frames, int count) {
+        for (int i = 0; i < count; ++i) {
+            handleProtocolFrame(context, frames[i]);
+        }
+    }
+
     void transportEncodingError(TransportHandlerContext context, Throwable e);
 
     void transportDecodingError(TransportHandlerContext context, Throwable e);
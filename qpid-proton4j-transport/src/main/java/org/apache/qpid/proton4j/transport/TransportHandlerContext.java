@@ -37,6 +37,8 @@ public interface TransportHandlerContext {
 
     void fireProtocolFrame(ProtocolFrame frame);
 
+    void fireProtocolFrames(ProtocolFrame[] frames, int count);
+
     void fireEncodingError(Throwable e);
 
     void fireDecodingError(Throwable e);
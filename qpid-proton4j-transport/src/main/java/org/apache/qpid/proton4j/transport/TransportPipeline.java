@@ -55,6 +55,8 @@ public interface TransportPipeline {
 
     TransportPipeline fireProtocolFrame(ProtocolFrame frame);
 
+    TransportPipeline fireProtocolFrames(ProtocolFrame[] frames, int count);
+
     TransportPipeline fireWrite(Frame<?> frame);
 
     TransportPipeline fireFlush();
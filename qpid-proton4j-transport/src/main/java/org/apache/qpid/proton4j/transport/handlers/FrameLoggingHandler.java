@@ -57,6 +57,16 @@ public class FrameLoggingHandler implements TransportHandler {
         context.fireProtocolFrame(frame);
     }
 
+    @Override
+    public void handleProtocolFrames(TransportHandlerContext context, ProtocolFrame[] frames, int count) {
+        if (LOG.isTraceEnabled()) {
+            for (int i = 0; i < count; ++i) {
+                LOG.trace("<- AMQP: {}", frames[i]);
+            }
+        }
+        context.fireProtocolFrames(frames, count);
+    }
+
     @Override
     public void transportEncodingError(TransportHandlerContext context, Throwable e) {
         LOG.warn("-> Error while encoding: {}", e);
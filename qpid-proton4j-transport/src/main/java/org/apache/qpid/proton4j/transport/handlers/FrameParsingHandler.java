@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.handlers;
+
+import java.io.IOException;
+
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.transport.FrameParser;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+
+/**
+ * Handler that parses incoming AMQP frame data into frame events.
+ * <p>
+ * Each buffer read from the IO side of the pipeline is handed to the configured
+ * {@link FrameParser} which fires the frames it contains towards the engine.  A
+ * failure to parse the data is passed on as a decoding error.
+ */
+public class FrameParsingHandler extends TransportHandlerAdapter {
+
+    private final FrameParser parser;
+
+    /**
+     * @param parser
+     *      the FrameParser that decodes the incoming data.
+     */
+    public FrameParsingHandler(FrameParser parser) {
+        if (parser == null) {
+            throw new IllegalArgumentException("Frame parser cannot be null");
+        }
+
+        this.parser = parser;
+    }
+
+    /**
+     * @return the FrameParser that decodes the incoming data.
+     */
+    public FrameParser getParser() {
+        return parser;
+    }
+
+    @Override
+    public void handleRead(TransportHandlerContext context, ProtonBuffer buffer) {
+        try {
+            parser.parse(context, buffer);
+        } catch (IOException e) {
+            context.fireDecodingError(e);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.handlers;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.AMQPHeader;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.codec.CodecFactory;
+import org.apache.qpid.proton4j.codec.Encoder;
+import org.apache.qpid.proton4j.codec.EncoderState;
+import org.apache.qpid.proton4j.amqp.transport.Performative;
+import org.apache.qpid.proton4j.transport.Frame;
+import org.apache.qpid.proton4j.transport.HeaderFrame;
+import org.apache.qpid.proton4j.transport.SaslFrame;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.metrics.TransportMetrics;
+
+/**
+ * Handler that encodes outgoing frames into buffers of AMQP frame data.
+ * <p>
+ * All frames written between two flush events are encoded into a single output
+ * buffer which is only passed on towards the IO side of the pipeline when the
+ * flush arrives, or early if the pending data grows beyond the configured output
+ * buffer size.  A burst of frames therefore results in one buffer write instead
+ * of one write per frame.
+ * <p>
+ * Output buffers are allocated from the Transport's {@link org.apache.qpid.proton4j.buffer.ProtonBufferAllocator}
+ * and ownership passes to the handler that receives the write, which should recycle the buffer
+ * to that allocator once the bytes have been written out.
+ */
+public class FrameWritingHandler extends TransportHandlerAdapter {
+
+    public static final int DEFAULT_OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    public static final byte AMQP_FRAME_TYPE = (byte) 0;
+    public static final byte SASL_FRAME_TYPE = (byte) 1;
+
+    private static final int FRAME_HEADER_SIZE = 8;
+    private static final int FRAME_DATA_OFFSET = 2;
+    private static final int INITIAL_OUTPUT_BUFFER_SIZE = 1024;
+
+    private final Encoder encoder;
+    private final EncoderState encoderState;
+    private final Encoder saslEncoder;
+    private final EncoderState saslEncoderState;
+
+    private int outputBufferSize = DEFAULT_OUTPUT_BUFFER_SIZE;
+    private ProtonBuffer output;
+
+    public FrameWritingHandler() {
+        this(CodecFactory.getSharedEncoder(), CodecFactory.getSharedSaslEncoder());
+    }
+
+    public FrameWritingHandler(Encoder encoder, Encoder saslEncoder) {
+        this.encoder = encoder;
+        this.encoderState = encoder.newEncoderState();
+        this.saslEncoder = saslEncoder;
+        this.saslEncoderState = saslEncoder.newEncoderState();
+    }
+
+    /**
+     * @return the number of pending bytes after which output is written without waiting for a flush.
+     */
+    public int getOutputBufferSize() {
+        return outputBufferSize;
+    }
+
+    /**
+     * Sets the number of pending bytes after which the encoded output is written
+     * into the pipeline ahead of the next flush.
+     *
+     * @param outputBufferSize
+     *      The soft limit on the size of a single coalesced output buffer.
+     */
+    public void setOutputBufferSize(int outputBufferSize) {
+        if (outputBufferSize <= 0) {
+            throw new IllegalArgumentException("Output buffer size must be greater than zero");
+        }
+
+        this.outputBufferSize = outputBufferSize;
+    }
+
+    /**
+     * @return the number of encoded bytes waiting for the next flush.
+     */
+    public int getPendingBytes() {
+        return output == null ? 0 : output.getReadableBytes();
+    }
+
+    //----- TransportHandler implementation ----------------------------------//
+
+    @Override
+    public void handleWrite(TransportHandlerContext context, Frame<?> frame) {
+        final ProtonBuffer output = getOrCreateOutput(context);
+        final int frameStart = output.getWriteIndex();
+
+        try {
+            encodeFrame(output, frame, encoder, encoderState, saslEncoder, saslEncoderState);
+        } catch (RuntimeException e) {
+            // Drop any partially encoded frame so that earlier frames remain intact.
+            output.setWriteIndex(frameStart);
+            context.fireEncodingError(e);
+            return;
+        }
+
+        final TransportMetrics metrics = context.getTransport().getMetrics();
+        if (metrics != null) {
+            recordFrameOut(metrics, frame);
+        }
+
+        if (output.getReadableBytes() >= outputBufferSize) {
+            writeOutput(context);
+        }
+    }
+
+    @Override
+    public void handleWrite(TransportHandlerContext context, ProtonBuffer buffer) {
+        if (output != null && output.getReadableBytes() + buffer.getReadableBytes() <= outputBufferSize) {
+            output.writeBytes(buffer);
+        } else {
+            writeOutput(context);
+            context.fireWrite(buffer);
+        }
+    }
+
+    @Override
+    public void handleFlush(TransportHandlerContext context) {
+        writeOutput(context);
+        context.fireFlush();
+    }
+
+    /**
+     * Encodes a single frame into the given buffer using the framing applied by this handler.
+     * <p>
+     * This allows a frame to be turned into bytes outside of the pipeline's own writer, for
+     * instance when the frame cannot be retained until a handler on another thread writes it.
+     *
+     * @param output
+     *      The buffer that receives the encoded frame.
+     * @param frame
+     *      The frame to encode.
+     * @param encoder
+     *      The Encoder used for AMQP frame bodies.
+     * @param encoderState
+     *      The EncoderState used with the AMQP Encoder.
+     * @param saslEncoder
+     *      The Encoder used for SASL frame bodies.
+     * @param saslEncoderState
+     *      The EncoderState used with the SASL Encoder.
+     */
+    public static void encodeFrame(ProtonBuffer output, Frame<?> frame, Encoder encoder, EncoderState encoderState, Encoder saslEncoder, EncoderState saslEncoderState) {
+        if (frame instanceof HeaderFrame) {
+            writeHeader(output, ((HeaderFrame) frame).getBody());
+        } else if (frame instanceof SaslFrame) {
+            writeFrame(output, saslEncoder, saslEncoderState, frame.getBody(), SASL_FRAME_TYPE, (short) 0, frame.getPayload());
+        } else {
+            writeFrame(output, encoder, encoderState, frame.getBody(), AMQP_FRAME_TYPE, frame.getChannel(), frame.getPayload());
+        }
+    }
+
+    /**
+     * Records an outgoing frame in the given metrics the same way this handler does for the
+     * frames it encodes.
+     *
+     * @param metrics
+     *      The metrics that count the frame.
+     * @param frame
+     *      The frame that was encoded for output.
+     */
+    public static void recordFrameOut(TransportMetrics metrics, Frame<?> frame) {
+        if (frame instanceof SaslFrame) {
+            metrics.recordSaslFrameOut();
+        } else if (frame.getBody() instanceof Performative) {
+            Binary payload = frame.getPayload();
+            metrics.recordFrameOut(((Performative) frame.getBody()).getPerformativeType(), payload == null ? 0 : payload.getLength());
+        } else if (!(frame instanceof HeaderFrame)) {
+            metrics.recordEmptyFrameOut();
+        }
+    }
+
+    //----- Internal implementation ------------------------------------------//
+
+    private ProtonBuffer getOrCreateOutput(TransportHandlerContext context) {
+        if (output == null) {
+            output = context.getTransport().getBufferAllocator().allocate(Math.min(INITIAL_OUTPUT_BUFFER_SIZE, outputBufferSize));
+        }
+
+        return output;
+    }
+
+    private void writeOutput(TransportHandlerContext context) {
+        if (output != null && output.isReadable()) {
+            ProtonBuffer pending = output;
+            output = null;
+            context.fireWrite(pending);
+        }
+    }
+
+    private static void writeHeader(ProtonBuffer output, AMQPHeader header) {
+        output.ensureWritable(FRAME_HEADER_SIZE);
+        for (int i = 0; i < FRAME_HEADER_SIZE; ++i) {
+            output.writeByte(header.getByteAt(i));
+        }
+    }
+
+    private static void writeFrame(ProtonBuffer output, Encoder encoder, EncoderState state, Object body, byte type, short channel, Binary payload) {
+        final int frameStart = output.getWriteIndex();
+
+        output.ensureWritable(FRAME_HEADER_SIZE);
+        output.writeInt(0);  // Size is filled in once the body has been encoded
+        output.writeByte(FRAME_DATA_OFFSET);
+        output.writeByte(type);
+        output.writeShort(channel);
+
+        if (body != null) {
+            encoder.writeObject(output, state, body);
+        }
+
+        if (payload != null) {
+            output.writeBytes(payload.getArray(), payload.getArrayOffset(), payload.getLength());
+        }
+
+        output.setInt(frameStart, output.getWriteIndex() - frameStart);
+    }
+}
@@ -73,6 +73,16 @@ public class LockingHandler implements TransportHandler {
         }
     }
 
+    @Override
+    public void handleProtocolFrames(TransportHandlerContext context, ProtocolFrame[] frames, int count) {
+        lock.lock();
+        try {
+            context.fireProtocolFrames(frames, count);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @Override
     public void transportEncodingError(TransportHandlerContext context, Throwable e) {
         lock.lock();
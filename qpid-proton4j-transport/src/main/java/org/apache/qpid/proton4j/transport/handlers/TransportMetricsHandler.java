@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.handlers;
+
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.metrics.TransportMetrics;
+
+/**
+ * Handler that records the bytes read and written by a Transport into its
+ * {@link TransportMetrics}.
+ * <p>
+ * The handler counts the raw bytes that pass through it and so belongs at the IO end of
+ * the pipeline, ahead of any frame parser and of the frame writer.  Frame level metrics
+ * are recorded by the parsers and the writer themselves.  Nothing is recorded while the
+ * Transport has no metrics assigned.
+ */
+public class TransportMetricsHandler extends TransportHandlerAdapter {
+
+    @Override
+    public void handleRead(TransportHandlerContext context, ProtonBuffer buffer) {
+        final TransportMetrics metrics = context.getTransport().getMetrics();
+        if (metrics != null) {
+            metrics.recordBytesRead(buffer.getReadableBytes());
+        }
+
+        context.fireRead(buffer);
+    }
+
+    @Override
+    public void handleWrite(TransportHandlerContext context, ProtonBuffer buffer) {
+        final TransportMetrics metrics = context.getTransport().getMetrics();
+        if (metrics != null) {
+            metrics.recordBytesWritten(buffer.getReadableBytes());
+        }
+
+        context.fireWrite(buffer);
+    }
+}
@@ -22,7 +22,7 @@ import org.apache.qpid.proton4j.amqp.Binary;
 import org.apache.qpid.proton4j.amqp.transport.AMQPHeader;
 import org.apache.qpid.proton4j.amqp.transport.Performative;
 import org.apache.qpid.proton4j.buffer.ProtonBuffer;
-import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
+import org.apache.qpid.proton4j.buffer.ProtonBufferAllocator;
 import org.apache.qpid.proton4j.codec.Decoder;
 import org.apache.qpid.proton4j.codec.DecoderState;
 import org.apache.qpid.proton4j.transport.EmptyFrame;
@@ -32,7 +32,7 @@ import org.apache.qpid.proton4j.transport.ProtocolFrame;
 import org.apache.qpid.proton4j.transport.TransportHandlerContext;
 import org.apache.qpid.proton4j.transport.exceptions.IOExceptionSupport;
 import org.apache.qpid.proton4j.transport.exceptions.TransportException;
-import org.apache.qpid.proton4j.transport.sasl.SaslHandler;
+import org.apache.qpid.proton4j.transport.metrics.TransportMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,47 +63,128 @@ public class AmqpFrameParser implements FrameParser {
         ERROR
     }
 
+    private static final int HEADER_SIZE = 8;
+
     private final int localMaxFrameSize;
     private final AMQPHeader header = AMQPHeader.getRawAMQPHeader();
     private final HeaderFrame headerFrame = new HeaderFrame(header);
+    private final long headerBits = toLong(header);
+    private final State initialState;
+    private final ProtocolFrame protocolFrame = new ProtocolFrame(null, (short) 0, null);
+    private final EmptyFrame emptyFrame = new EmptyFrame();
 
-    private State state = State.SIZE_0;
+    private State state;
     private int size;
 
-    private SaslHandler sasl;
+    private ProtocolFrame[] batch;
+    private ProtocolFrame[] batchFrames;
+    private int batchCount;
+
+    private long dispatchTime;
+
     private ProtonBuffer buffer;
-    private int frameSizeLimit;
+    private ProtonBufferAllocator bufferAllocator;
     private Decoder decoder;
     private DecoderState decoderState;
 
     public AmqpFrameParser(Decoder decoder, int localMaxFrameSize) {
+        this(decoder, localMaxFrameSize, false);
+    }
+
+    /**
+     * Creates a new frame parser.
+     *
+     * @param decoder
+     *      the decoder used to read frame bodies.
+     * @param localMaxFrameSize
+     *      the largest frame that the parser will accept.
+     * @param expectHeader
+     *      true if the input starts with the AMQP header rather than with the first frame.
+     */
+    public AmqpFrameParser(Decoder decoder, int localMaxFrameSize, boolean expectHeader) {
         this.decoder = decoder;
         this.decoderState = decoder.newDecoderState();
         this.localMaxFrameSize = localMaxFrameSize;
+        this.initialState = expectHeader ? State.HEADER0 : State.SIZE_0;
+        this.state = initialState;
+    }
+
+    /**
+     * @return the maximum number of frames delivered in a single batch, or 1 if batching is disabled.
+     */
+    public int getBatchSize() {
+        return batch == null ? 1 : batch.length;
+    }
+
+    /**
+     * Sets the maximum number of frames that are delivered together in a batch.
+     * <p>
+     * When batching is enabled every complete frame in the input is parsed before any is
+     * dispatched, and the frames are then fired as a single protocol frames event.  The
+     * frame array and the frames in it are reused for each batch.  A batch size of one or
+     * less disables batching and each frame is fired as soon as it has been parsed.
+     *
+     * @param batchSize
+     *      the maximum number of frames that are dispatched in one event.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchCount > 0) {
+            throw new IllegalStateException("Cannot change batch size while frames are pending dispatch");
+        }
+
+        if (batchSize <= 1) {
+            batch = null;
+            batchFrames = null;
+        } else {
+            batch = new ProtocolFrame[batchSize];
+            batchFrames = new ProtocolFrame[batchSize];
+            for (int i = 0; i < batchSize; ++i) {
+                batchFrames[i] = new ProtocolFrame(null, (short) 0, null);
+            }
+        }
     }
 
     @Override
     public void reset() {
         decoderState.reset();
-        state = State.SIZE_0;
-        buffer = null;
+        state = initialState;
+        recycleBuffer();
     }
 
     @Override
     public void parse(TransportHandlerContext context, ProtonBuffer incoming) throws IOException {
+        final TransportMetrics metrics = context.getTransport().getMetrics();
+        final long parseStart = metrics == null ? 0 : System.nanoTime();
+        dispatchTime = 0;
+
         TransportException parsingError = null;
         int size = this.size;
         State parsingState = this.state;
         ProtonBuffer input = incoming;
+        boolean frameHeaderRead = false;
+        int frameHeader = 0;
 
-        while (input.isReadable() && parsingState != State.ERROR && !sasl.isDone()) {
+        // A frame whose header was taken by the fast path is parsed before returning even
+        // if it carried no body and so left nothing readable.
+        while ((input.isReadable() || frameHeaderRead) && parsingState != State.ERROR) {
             switch (parsingState) {
                 case HEADER0:
-                    if (incoming.isReadable()) {
-                        byte c = incoming.readByte();
-                        if (c != header.getByteAt(state.ordinal())) {
+                    if (input.getReadableBytes() >= HEADER_SIZE &&
+                        input.getLong(input.getReadIndex()) == headerBits) {
+
+                        input.setReadIndex(input.getReadIndex() + HEADER_SIZE);
+                        context.fireHeaderFrame(headerFrame);
+                        parsingState = State.SIZE_0;
+                        break;
+                    }
+
+                    // Slow path used when the header arrives fragmented or fails to match
+                    // so that the mismatched byte can be reported.
+                    if (input.isReadable()) {
+                        byte c = input.readByte();
+                        if (c != header.getByteAt(0)) {
                             parsingError = new TransportException(String.format(
-                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(state.ordinal()), parsingState));
+                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(0), parsingState));
                             parsingState = State.ERROR;
                             break;
                         }
@@ -112,11 +193,11 @@ public class AmqpFrameParser implements FrameParser {
                         break;
                     }
                 case HEADER1:
-                    if (incoming.isReadable()) {
-                        byte c = incoming.readByte();
+                    if (input.isReadable()) {
+                        byte c = input.readByte();
                         if (c != header.getByteAt(1)) {
                             parsingError = new TransportException(String.format(
-                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(state.ordinal()), parsingState));
+                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(1), parsingState));
                             parsingState = State.ERROR;
                             break;
                         }
@@ -125,11 +206,11 @@ public class AmqpFrameParser implements FrameParser {
                         break;
                     }
                 case HEADER2:
-                    if (incoming.isReadable()) {
-                        byte c = incoming.readByte();
-                        if (c != header.getByteAt(state.ordinal())) {
+                    if (input.isReadable()) {
+                        byte c = input.readByte();
+                        if (c != header.getByteAt(2)) {
                             parsingError = new TransportException(String.format(
-                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(state.ordinal()), parsingState));
+                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(2), parsingState));
                             parsingState = State.ERROR;
                             break;
                         }
@@ -138,11 +219,11 @@ public class AmqpFrameParser implements FrameParser {
                         break;
                     }
                 case HEADER3:
-                    if (incoming.isReadable()) {
-                        byte c = incoming.readByte();
-                        if (c != header.getByteAt(state.ordinal())) {
+                    if (input.isReadable()) {
+                        byte c = input.readByte();
+                        if (c != header.getByteAt(3)) {
                             parsingError = new TransportException(String.format(
-                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(state.ordinal()), parsingState));
+                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(3), parsingState));
                             parsingState = State.ERROR;
                             break;
                         }
@@ -151,11 +232,11 @@ public class AmqpFrameParser implements FrameParser {
                         break;
                     }
                 case HEADER4:
-                    if (incoming.isReadable()) {
-                        byte c = incoming.readByte();
-                        if (c != header.getByteAt(state.ordinal())) {
+                    if (input.isReadable()) {
+                        byte c = input.readByte();
+                        if (c != header.getByteAt(4)) {
                             parsingError = new TransportException(String.format(
-                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(state.ordinal()), parsingState));
+                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(4), parsingState));
                             parsingState = State.ERROR;
                             break;
                         }
@@ -164,11 +245,11 @@ public class AmqpFrameParser implements FrameParser {
                         break;
                     }
                 case HEADER5:
-                    if (incoming.isReadable()) {
-                        byte c = incoming.readByte();
-                        if (c != header.getByteAt(state.ordinal())) {
+                    if (input.isReadable()) {
+                        byte c = input.readByte();
+                        if (c != header.getByteAt(5)) {
                             parsingError = new TransportException(String.format(
-                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(state.ordinal()), parsingState));
+                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(5), parsingState));
                             parsingState = State.ERROR;
                             break;
                         }
@@ -177,11 +258,11 @@ public class AmqpFrameParser implements FrameParser {
                         break;
                     }
                 case HEADER6:
-                    if (incoming.isReadable()) {
-                        byte c = incoming.readByte();
-                        if (c != header.getByteAt(state.ordinal())) {
+                    if (input.isReadable()) {
+                        byte c = input.readByte();
+                        if (c != header.getByteAt(6)) {
                             parsingError = new TransportException(String.format(
-                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(state.ordinal()), parsingState));
+                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(6), parsingState));
                             parsingState = State.ERROR;
                             break;
                         }
@@ -190,17 +271,16 @@ public class AmqpFrameParser implements FrameParser {
                         break;
                     }
                 case HEADER7:
-                    if (incoming.isReadable()) {
-                        byte c = incoming.readByte();
-                        if (c != header.getByteAt(state.ordinal())) {
+                    if (input.isReadable()) {
+                        byte c = input.readByte();
+                        if (c != header.getByteAt(7)) {
                             parsingError = new TransportException(String.format(
-                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(state.ordinal()), parsingState));
+                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(7), parsingState));
                             parsingState = State.ERROR;
                             break;
-                        } else {
-                            sasl.handleHeaderFrame(context, headerFrame);
-                            parsingState = State.SIZE_0;
                         }
+                        context.fireHeaderFrame(headerFrame);
+                        parsingState = State.SIZE_0;
                     } else {
                         break;
                     }
@@ -209,7 +289,23 @@ public class AmqpFrameParser implements FrameParser {
                         break;
                     }
 
-                    if (input.getReadableBytes() >= 4) {
+                    if (input.getReadableBytes() >= 8) {
+                        // Fast path, the size, data offset, type and channel are read at once
+                        // and when the whole frame is present parsing can start immediately.
+                        final long frameHeaderBits = input.getLong(input.getReadIndex());
+                        size = (int) (frameHeaderBits >>> 32);
+
+                        if (size >= 8 && size <= localMaxFrameSize && input.getReadableBytes() >= size) {
+                            input.setReadIndex(input.getReadIndex() + 8);
+                            frameHeader = (int) frameHeaderBits;
+                            frameHeaderRead = true;
+                            parsingState = State.PARSING;
+                        } else {
+                            input.setReadIndex(input.getReadIndex() + 4);
+                            parsingState = State.PRE_PARSE;
+                        }
+                        break;
+                    } else if (input.getReadableBytes() >= 4) {
                         size = input.readInt();
                         parsingState = State.PRE_PARSE;
                         break;
@@ -243,17 +339,21 @@ public class AmqpFrameParser implements FrameParser {
                         break;
                     }
 
-                    if (size > frameSizeLimit) {
+                    if (size > localMaxFrameSize) {
                         parsingError = new TransportException(String.format(
-                            "specified frame size %d larger than maximum frame size %d", size, frameSizeLimit));
+                            "specified frame size %d larger than maximum frame size %d", size, localMaxFrameSize));
                         parsingState = State.ERROR;
                         break;
                     }
 
                     if (input.getReadableBytes() < size - 4) {
-                        buffer = ProtonByteBufferAllocator.DEFAULT.allocate(size - 4, size - 4);
+                        bufferAllocator = context.getTransport().getBufferAllocator();
+                        buffer = bufferAllocator.allocate(size - 4, size - 4);
                         buffer.writeBytes(input);
                         parsingState = State.BUFFERING;
+                        if (metrics != null) {
+                            metrics.recordBufferedFrame();
+                        }
                         break;
                     }
                 case BUFFERING:
@@ -268,26 +368,35 @@ public class AmqpFrameParser implements FrameParser {
                         }
                     }
                 case PARSING:
-                    int dataOffset = (input.readByte() << 2) & 0x3FF;
+                    final int frameEnd;
+                    if (frameHeaderRead) {
+                        frameEnd = input.getReadIndex() + size - 8;
+                        frameHeaderRead = false;
+                    } else {
+                        frameEnd = input.getReadIndex() + size - 4;
+                        frameHeader = input.readInt();
+                    }
+
+                    int dataOffset = ((frameHeader >>> 24) & 0xFF) << 2;
 
                     if (dataOffset < 8) {
                         parsingError = new TransportException(String.format(
                             "specified frame data offset %d smaller than minimum frame header size %d", dataOffset, 8));
-                        state = State.ERROR;
+                        parsingState = State.ERROR;
                         break;
                     } else if (dataOffset > size) {
                         parsingError = new TransportException(String.format(
                             "specified frame data offset %d larger than the frame size %d", dataOffset, size));
-                        state = State.ERROR;
+                        parsingState = State.ERROR;
                         break;
                     }
 
-                    int type = input.readByte() & 0xFF;
-                    short channel = input.readShort();
+                    int type = (frameHeader >>> 16) & 0xFF;
+                    short channel = (short) frameHeader;
 
                     if (type != 0) {
                         parsingError = new TransportException(String.format("unknown frame type: %d", type));
-                        state = State.ERROR;
+                        parsingState = State.ERROR;
                         break;
                     }
 
@@ -296,7 +405,6 @@ public class AmqpFrameParser implements FrameParser {
                         input.setReadIndex(input.getReadIndex() + dataOffset - 8);
                     }
 
-                    // oldIn null iff not working on duplicated buffer
                     final int frameBodySize = size - dataOffset;
 
                     try {
@@ -304,31 +412,63 @@ public class AmqpFrameParser implements FrameParser {
                         Object val = null;
 
                         if (frameBodySize > 0) {
+                            final long decodeStart = metrics == null ? 0 : System.nanoTime();
                             val = decoder.readObject(input, decoderState);
+                            if (metrics != null) {
+                                metrics.recordDecodeTime(System.nanoTime() - decodeStart);
+                            }
 
-                            if (input.isReadable()) {
-                                byte[] payloadBytes = new byte[input.getReadableBytes()];
-                                input.readBytes(payloadBytes);
-                                payload = new Binary(payloadBytes);
-                            } else {
-                                payload = null;
+                            if (input.getReadIndex() < frameEnd) {
+                                payload = readPayload(input, frameEnd - input.getReadIndex());
                             }
                         } else {
-                            val = new EmptyFrame();
+                            val = emptyFrame;
                         }
 
                         if (val instanceof Performative) {
                             Performative frameBody = (Performative) val;
-                            LOG.trace("IN: {} CH[{}] : {} [{}]", channel, frameBody, payload);
-                            context.fireProtocolFrame(new ProtocolFrame(frameBody, channel, payload));
+                            LOG.trace("IN: CH[{}] : {} [{}]", channel, frameBody, payload);
+                            if (metrics != null) {
+                                metrics.recordFrameSizeIn(size);
+                                metrics.recordFrameIn(frameBody.getPerformativeType(), payload == null ? 0 : payload.getLength());
+                            }
+
+                            if (batch != null) {
+                                batch[batchCount] = batchFrames[batchCount].reset(frameBody, channel, payload);
+                                batchCount++;
+                            } else {
+                                dispatch(context, protocolFrame.reset(frameBody, channel, payload), metrics);
+                                protocolFrame.reset(null, (short) 0, null);
+                            }
+                        } else if (val instanceof EmptyFrame) {
+                            if (metrics != null) {
+                                metrics.recordFrameSizeIn(size);
+                                metrics.recordEmptyFrameIn();
+                            }
+
+                            if (batch != null) {
+                                batch[batchCount++] = emptyFrame;
+                            } else {
+                                dispatch(context, emptyFrame, metrics);
+                            }
                         } else {
                             throw new TransportException("Frameparser encountered a "
                                     + (val == null? "null" : val.getClass())
                                     + " which is not a " + Performative.class);
                         }
 
-                        reset();
-                        state = State.SIZE_0;
+                        // A frame read from the staging buffer is dispatched along with the
+                        // rest of its batch before the buffer is recycled.
+                        if (batchCount > 0 && (batchCount == batch.length || buffer != null)) {
+                            dispatchBatch(context, metrics);
+                        }
+
+                        // The payload view is no longer valid once dispatch returns so the
+                        // staging buffer can be handed back to the allocator for reuse.
+                        recycleBuffer();
+
+                        input = incoming;
+                        parsingState = State.SIZE_0;
                     } catch (IOException ex) {
                         parsingState = State.ERROR;
                         parsingError = new TransportException(ex);
@@ -340,10 +480,22 @@ public class AmqpFrameParser implements FrameParser {
             }
         }
 
+        // Frames parsed before an error was encountered are still delivered.
+        if (batchCount > 0) {
+            dispatchBatch(context, metrics);
+        }
+
         this.state = parsingState;
         this.size = size;
 
+        if (metrics != null) {
+            metrics.recordParseTime(System.nanoTime() - parseStart - dispatchTime);
+        }
+
         if (this.state == State.ERROR) {
+            // No more input is accepted after an error so a partially staged frame is dropped.
+            recycleBuffer();
+
             if (parsingError != null) {
                 throw parsingError;
             } else {
@@ -354,6 +506,71 @@ public class AmqpFrameParser implements FrameParser {
 
     //----- Internal support methods -----------------------------------------//
 
+    private void recycleBuffer() {
+        if (buffer != null) {
+            bufferAllocator.recycle(buffer);
+            buffer = null;
+            bufferAllocator = null;
+        }
+    }
+
+    /*
+     * Payloads are handed off as a view of the buffer the frame was parsed from rather
+     * than a copy.  The view is only guaranteed to be valid until the protocol frame
+     * event returns, handlers that need the payload after that must copy it.
+     */
+    private static Binary readPayload(ProtonBuffer input, int length) {
+        final Binary payload;
+
+        if (input.hasArray()) {
+            payload = new Binary(input.getArray(), input.getArrayOffset() + input.getReadIndex(), length);
+            input.setReadIndex(input.getReadIndex() + length);
+        } else {
+            byte[] payloadBytes = new byte[length];
+            input.readBytes(payloadBytes);
+            payload = new Binary(payloadBytes);
+        }
+
+        return payload;
+    }
+
+    private void dispatch(TransportHandlerContext context, ProtocolFrame frame, TransportMetrics metrics) {
+        if (metrics == null) {
+            context.fireProtocolFrame(frame);
+        } else {
+            final long start = System.nanoTime();
+            context.fireProtocolFrame(frame);
+            dispatchTime += System.nanoTime() - start;
+        }
+    }
+
+    private void dispatchBatch(TransportHandlerContext context, TransportMetrics metrics) {
+        final int count = batchCount;
+        batchCount = 0;
+
+        if (metrics == null) {
+            context.fireProtocolFrames(batch, count);
+        } else {
+            final long start = System.nanoTime();
+            context.fireProtocolFrames(batch, count);
+            dispatchTime += System.nanoTime() - start;
+        }
+
+        for (int i = 0; i < count; ++i) {
+            batch[i] = null;
+            batchFrames[i].reset(null, (short) 0, null);
+        }
+    }
+
+    private static long toLong(AMQPHeader header) {
+        long value = 0;
+        for (int i = 0; i < HEADER_SIZE; ++i) {
+            value = (value << 8) | (header.getByteAt(i) & 0xFF);
+        }
+
+        return value;
+    }
+
     private void validateFrameSize(int frameSize, int currentLimit) throws IOException {
         if (frameSize > localMaxFrameSize) {
             throw IOExceptionSupport.createFrameSizeException(frameSize, currentLimit);
@@ -20,10 +20,12 @@ import java.io.IOException;
 
 import org.apache.qpid.proton4j.buffer.ProtonBuffer;
 import org.apache.qpid.proton4j.buffer.ProtonBufferAllocator;
+import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
 import org.apache.qpid.proton4j.transport.ProtocolFrame;
 import org.apache.qpid.proton4j.transport.Transport;
 import org.apache.qpid.proton4j.transport.TransportListener;
 import org.apache.qpid.proton4j.transport.TransportPipeline;
+import org.apache.qpid.proton4j.transport.metrics.TransportMetrics;
 
 /**
  * The default Proton-J Transport implementation.
@@ -35,8 +37,9 @@ public class ProtonTransport implements Transport {
 
     private final ProtonTransportPipeline pipeline;
 
-    private ProtonBufferAllocator bufferAllocator;
+    private ProtonBufferAllocator bufferAllocator = ProtonByteBufferAllocator.DEFAULT;
     private TransportListener listener;
+    private TransportMetrics metrics;
 
     public ProtonTransport() {
         this.pipeline = new ProtonTransportPipeline(this);
@@ -46,7 +49,7 @@ public class ProtonTransport implements Transport {
 
     @Override
     public void setBufferAllocator(ProtonBufferAllocator allocator) {
-        this.bufferAllocator = allocator;
+        this.bufferAllocator = allocator != null ? allocator : ProtonByteBufferAllocator.DEFAULT;
     }
 
     @Override
@@ -72,6 +75,16 @@ public class ProtonTransport implements Transport {
         this.initialMaxFrameSize = initialMaxFrameSize;
     }
 
+    @Override
+    public void setMetrics(TransportMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public TransportMetrics getMetrics() {
+        return metrics;
+    }
+
     @Override
     public TransportPipeline getPipeline() {
         return pipeline;
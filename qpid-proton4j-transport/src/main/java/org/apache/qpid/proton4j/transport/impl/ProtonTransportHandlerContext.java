@@ -16,6 +16,18 @@
  */
 package org.apache.qpid.proton4j.transport.impl;
 
+import static org.apache.qpid.proton4j.transport.impl.TransportHandlerMask.MASK_DECODING_ERROR;
+import static org.apache.qpid.proton4j.transport.impl.TransportHandlerMask.MASK_ENCODING_ERROR;
+import static org.apache.qpid.proton4j.transport.impl.TransportHandlerMask.MASK_FAILED;
+import static org.apache.qpid.proton4j.transport.impl.TransportHandlerMask.MASK_FLUSH;
+import static org.apache.qpid.proton4j.transport.impl.TransportHandlerMask.MASK_HEADER_FRAME;
+import static org.apache.qpid.proton4j.transport.impl.TransportHandlerMask.MASK_PROTOCOL_FRAME;
+import static org.apache.qpid.proton4j.transport.impl.TransportHandlerMask.MASK_PROTOCOL_FRAMES;
+import static org.apache.qpid.proton4j.transport.impl.TransportHandlerMask.MASK_READ;
+import static org.apache.qpid.proton4j.transport.impl.TransportHandlerMask.MASK_SASL_FRAME;
+import static org.apache.qpid.proton4j.transport.impl.TransportHandlerMask.MASK_WRITE_BUFFER;
+import static org.apache.qpid.proton4j.transport.impl.TransportHandlerMask.MASK_WRITE_FRAME;
+
 import org.apache.qpid.proton4j.buffer.ProtonBuffer;
 import org.apache.qpid.proton4j.transport.Frame;
 import org.apache.qpid.proton4j.transport.HeaderFrame;
@@ -27,6 +39,9 @@ import org.apache.qpid.proton4j.transport.TransportHandlerContext;
 
 /**
  * Context for a registered TransportHandler
+ * <p>
+ * Events are delivered to the nearest context whose handler overrides the event, contexts
+ * whose handler would only forward the event are stepped over.
  */
 public class ProtonTransportHandlerContext implements TransportHandlerContext {
 
@@ -36,11 +51,13 @@ public class ProtonTransportHandlerContext implements TransportHandlerContext {
     private final String name;
     private final Transport transport;
     private final TransportHandler handler;
+    private final int executionMask;
 
     public ProtonTransportHandlerContext(String name, Transport transport, TransportHandler handler) {
         this.name = name;
         this.transport = transport;
         this.handler = handler;
+        this.executionMask = TransportHandlerMask.mask(handler);
     }
 
     @Override
@@ -60,51 +77,88 @@ public class ProtonTransportHandlerContext implements TransportHandlerContext {
 
     @Override
     public void fireRead(ProtonBuffer buffer) {
-        previous.getHandler().handleRead(previous, buffer);
+        ProtonTransportHandlerContext ctx = findInbound(MASK_READ);
+        ctx.getHandler().handleRead(ctx, buffer);
     }
 
     @Override
     public void fireHeaderFrame(HeaderFrame header) {
-        previous.getHandler().handleHeaderFrame(previous, header);
+        ProtonTransportHandlerContext ctx = findInbound(MASK_HEADER_FRAME);
+        ctx.getHandler().handleHeaderFrame(ctx, header);
     }
 
     @Override
     public void fireSaslFrame(SaslFrame frame) {
-        previous.getHandler().handleSaslFrame(previous, frame);
+        ProtonTransportHandlerContext ctx = findInbound(MASK_SASL_FRAME);
+        ctx.getHandler().handleSaslFrame(ctx, frame);
     }
 
     @Override
     public void fireProtocolFrame(ProtocolFrame frame) {
-        previous.getHandler().handleProtocolFrame(previous, frame);
+        ProtonTransportHandlerContext ctx = findInbound(MASK_PROTOCOL_FRAME);
+        ctx.getHandler().handleProtocolFrame(ctx, frame);
+    }
+
+    @Override
+    public void fireProtocolFrames(ProtocolFrame[] frames, int count) {
+        // A handler that only handles single frames receives the batch one frame at a time.
+        ProtonTransportHandlerContext ctx = findInbound(MASK_PROTOCOL_FRAMES | MASK_PROTOCOL_FRAME);
+        ctx.getHandler().handleProtocolFrames(ctx, frames, count);
     }
 
     @Override
     public void fireEncodingError(Throwable e) {
-        previous.getHandler().transportEncodingError(previous, e);
+        ProtonTransportHandlerContext ctx = findInbound(MASK_ENCODING_ERROR);
+        ctx.getHandler().transportEncodingError(ctx, e);
     }
 
     @Override
     public void fireDecodingError(Throwable e) {
-        previous.getHandler().transportDecodingError(previous, e);
+        ProtonTransportHandlerContext ctx = findInbound(MASK_DECODING_ERROR);
+        ctx.getHandler().transportDecodingError(ctx, e);
     }
 
     @Override
     public void fireFailed(Throwable e) {
-        previous.getHandler().transportFailed(previous, e);
+        ProtonTransportHandlerContext ctx = findInbound(MASK_FAILED);
+        ctx.getHandler().transportFailed(ctx, e);
     }
 
     @Override
     public void fireWrite(Frame<?> frame) {
-        next.getHandler().handleWrite(next, frame);
+        ProtonTransportHandlerContext ctx = findOutbound(MASK_WRITE_FRAME);
+        ctx.getHandler().handleWrite(ctx, frame);
     }
 
     @Override
     public void fireWrite(ProtonBuffer buffer) {
-        next.getHandler().handleWrite(next, buffer);
+        ProtonTransportHandlerContext ctx = findOutbound(MASK_WRITE_BUFFER);
+        ctx.getHandler().handleWrite(ctx, buffer);
     }
 
     @Override
     public void fireFlush() {
-        next.getHandler().handleFlush(next);
+        ProtonTransportHandlerContext ctx = findOutbound(MASK_FLUSH);
+        ctx.getHandler().handleFlush(ctx);
+    }
+
+    //----- Internal implementation ------------------------------------------//
+
+    private ProtonTransportHandlerContext findInbound(int mask) {
+        ProtonTransportHandlerContext ctx = next;
+        while ((ctx.executionMask & mask) == 0) {
+            ctx = ctx.next;
+        }
+
+        return ctx;
+    }
+
+    private ProtonTransportHandlerContext findOutbound(int mask) {
+        ProtonTransportHandlerContext ctx = previous;
+        while ((ctx.executionMask & mask) == 0) {
+            ctx = ctx.previous;
+        }
+
+        return ctx;
     }
 }
@@ -30,9 +30,32 @@ import org.apache.qpid.proton4j.transport.TransportPipeline;
 
 /**
  * Pipeline of TransportHandlers used to process IO
+ * <p>
+ * The head of the pipeline is the IO side of the Transport, inbound events such as
+ * reads and decoded frames travel from the first handler towards the last while
+ * outbound writes and flushes travel from the last handler towards the first.  Events
+ * that pass through every handler without being consumed fail the Transport.
  */
 public class ProtonTransportPipeline implements TransportPipeline {
 
+    // Unhandled events are reported with instances that carry no stack trace and are created
+    // once per pipeline, an event that no handler consumes should not cost an allocation every
+    // time it occurs.  They are not shared between pipelines since a listener may mutate them.
+    private final IOException unhandledRead =
+        new UnhandledEventException("No handler processed Transport read event.");
+    private final IOException unhandledHeader =
+        new UnhandledEventException("No handler processed AMQP Header event.");
+    private final IOException unhandledSaslFrame =
+        new UnhandledEventException("No handler processed SASL frame event.");
+    private final IOException unhandledProtocolFrame =
+        new UnhandledEventException("No handler processed protocol frame event.");
+    private final IOException unhandledWriteFrame =
+        new UnhandledEventException("No handler processed write frame event.");
+    private final IOException unhandledWriteData =
+        new UnhandledEventException("No handler processed write data event.");
+    private final IOException unhandledFlush =
+        new UnhandledEventException("No handler processed flush event.");
+
     TransportHandlerContextBoundry head;
     TransportHandlerContextBoundry tail;
 
@@ -82,7 +105,7 @@ public class ProtonTransportPipeline implements TransportPipeline {
             throw new IllegalArgumentException("Handler provided cannot be null");
         }
 
-        ProtonTransportHandlerContext oldLast = head.next;
+        ProtonTransportHandlerContext oldLast = tail.previous;
         ProtonTransportHandlerContext newLast = createContext(name, handler);
 
         newLast.next = tail;
@@ -128,6 +151,8 @@ public class ProtonTransportPipeline implements TransportPipeline {
                 current.previous.next = newNext;
                 newNext.previous = current.previous;
             }
+
+            current = current.next;
         }
 
         return this;
@@ -135,12 +160,12 @@ public class ProtonTransportPipeline implements TransportPipeline {
 
     @Override
     public TransportHandler first() {
-        return head.next.getHandler();
+        return head.next == tail ? null : head.next.getHandler();
     }
 
     @Override
     public TransportHandler last() {
-        return tail.previous.getHandler();
+        return tail.previous == head ? null : tail.previous.getHandler();
     }
 
     @Override
@@ -157,55 +182,61 @@ public class ProtonTransportPipeline implements TransportPipeline {
 
     @Override
     public TransportPipeline fireRead(ProtonBuffer input) {
-        head.next.fireRead(input);
+        head.fireRead(input);
         return this;
     }
 
     @Override
     public TransportPipeline fireHeaderFrame(HeaderFrame header) {
-        head.next.fireHeaderFrame(header);
+        head.fireHeaderFrame(header);
         return this;
     }
 
     @Override
     public TransportPipeline fireSaslFrame(SaslFrame frame) {
-        head.next.fireSaslFrame(frame);
+        head.fireSaslFrame(frame);
         return this;
     }
 
     @Override
     public TransportPipeline fireProtocolFrame(ProtocolFrame frame) {
-        head.next.fireProtocolFrame(frame);
+        head.fireProtocolFrame(frame);
+        return this;
+    }
+
+    @Override
+    public TransportPipeline fireProtocolFrames(ProtocolFrame[] frames, int count) {
+        head.fireProtocolFrames(frames, count);
         return this;
     }
 
     @Override
     public TransportPipeline fireWrite(Frame<?> frame) {
-        tail.previous.fireWrite(frame);
+        tail.fireWrite(frame);
         return this;
     }
 
     @Override
     public TransportPipeline fireFlush() {
-        tail.previous.fireFlush();
+        tail.fireFlush();
         return this;
     }
 
     @Override
     public TransportPipeline fireEncodingError(Throwable e) {
-        head.next.fireEncodingError(e);
+        head.fireEncodingError(e);
         return this;
     }
 
     @Override
     public TransportPipeline fireDecodingError(Throwable e) {
-        head.next.fireDecodingError(e);
+        head.fireDecodingError(e);
         return this;
     }
 
     @Override
     public TransportPipeline fireFailed(Throwable e) {
-        head.next.fireFailed(e);
+        head.fireFailed(e);
         return this;
     }
 
@@ -217,54 +248,55 @@ public class ProtonTransportPipeline implements TransportPipeline {
 
     //----- Synthetic handler context that bounds the pipeline ---------------//
 
-    private class TransportHandlerContextBoundry extends ProtonTransportHandlerContext {
+    private class TransportHandlerContextBoundry extends ProtonTransportHandlerContext implements TransportHandler {
 
         public TransportHandlerContextBoundry() {
             super("Boundry", transport, null);
         }
 
         @Override
-        public void fireRead(ProtonBuffer buffer) {
+        public TransportHandler getHandler() {
+            return this;
+        }
+
+        @Override
+        public void handleRead(TransportHandlerContext context, ProtonBuffer buffer) {
             // TODO Decide on the exact error to be fired, move Transport to failed state.
             TransportListener listener = transport.getTransportListener();
             if (listener != null) {
-                listener.onTransportFailed(transport,
-                    new IOException("No handler processed Transport read event."));
+                listener.onTransportFailed(transport, unhandledRead);
             }
         }
 
         @Override
-        public void fireHeaderFrame(HeaderFrame header) {
+        public void handleHeaderFrame(TransportHandlerContext context, HeaderFrame header) {
             // TODO Decide on the exact error to be fired, move Transport to failed state.
             TransportListener listener = transport.getTransportListener();
             if (listener != null) {
-                listener.onTransportFailed(transport,
-                    new IOException("No handler processed AMQP Header event."));
+                listener.onTransportFailed(transport, unhandledHeader);
             }
         }
 
         @Override
-        public void fireSaslFrame(SaslFrame frame) {
+        public void handleSaslFrame(TransportHandlerContext context, SaslFrame frame) {
             // TODO Decide on the exact error to be fired, move Transport to failed state.
             TransportListener listener = transport.getTransportListener();
             if (listener != null) {
-                listener.onTransportFailed(transport,
-                    new IOException("No handler processed SASL frame event."));
+                listener.onTransportFailed(transport, unhandledSaslFrame);
             }
         }
 
         @Override
-        public void fireProtocolFrame(ProtocolFrame frame) {
+        public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
             // TODO Decide on the exact error to be fired, move Transport to failed state.
             TransportListener listener = transport.getTransportListener();
             if (listener != null) {
-                listener.onTransportFailed(transport,
-                    new IOException("No handler processed protocol frame event."));
+                listener.onTransportFailed(transport, unhandledProtocolFrame);
             }
         }
 
         @Override
-        public void fireEncodingError(Throwable e) {
+        public void transportEncodingError(TransportHandlerContext context, Throwable e) {
             // TODO Decide on the exact error to be fired, move Transport to failed state.
             TransportListener listener = transport.getTransportListener();
             if (listener != null) {
@@ -274,7 +306,7 @@ public class ProtonTransportPipeline implements TransportPipeline {
         }
 
         @Override
-        public void fireDecodingError(Throwable e) {
+        public void transportDecodingError(TransportHandlerContext context, Throwable e) {
             // TODO Decide on the exact error to be fired, move Transport to failed state.
             TransportListener listener = transport.getTransportListener();
             if (listener != null) {
@@ -284,7 +316,7 @@ public class ProtonTransportPipeline implements TransportPipeline {
         }
 
         @Override
-        public void fireFailed(Throwable e) {
+        public void transportFailed(TransportHandlerContext context, Throwable e) {
             // TODO Decide on the exact error to be fired, move Transport to failed state.
             TransportListener listener = transport.getTransportListener();
             if (listener != null) {
@@ -293,33 +325,46 @@ public class ProtonTransportPipeline implements TransportPipeline {
         }
 
         @Override
-        public void fireWrite(Frame<?> frame) {
+        public void handleWrite(TransportHandlerContext context, Frame<?> frame) {
             // TODO Decide on the exact error to be fired, move Transport to failed state.
             TransportListener listener = transport.getTransportListener();
             if (listener != null) {
-                listener.onTransportFailed(transport,
-                    new IOException("No handler processed write frame event."));
+                listener.onTransportFailed(transport, unhandledWriteFrame);
             }
         }
 
         @Override
-        public void fireWrite(ProtonBuffer buffer) {
+        public void handleWrite(TransportHandlerContext context, ProtonBuffer buffer) {
             // TODO Decide on the exact error to be fired, move Transport to failed state.
             TransportListener listener = transport.getTransportListener();
             if (listener != null) {
-                listener.onTransportFailed(transport,
-                    new IOException("No handler processed write data event."));
+                listener.onTransportFailed(transport, unhandledWriteData);
             }
         }
 
         @Override
-        public void fireFlush() {
+        public void handleFlush(TransportHandlerContext context) {
             // TODO Decide on the exact error to be fired, move Transport to failed state.
             TransportListener listener = transport.getTransportListener();
             if (listener != null) {
-                listener.onTransportFailed(transport,
-                    new IOException("No handler processed flush event."));
+                listener.onTransportFailed(transport, unhandledFlush);
             }
         }
     }
+
+    //----- Exception used to report events no handler consumed --------------//
+
+    private static final class UnhandledEventException extends IOException {
+
+        private static final long serialVersionUID = 4315027146396853418L;
+
+        public UnhandledEventException(String message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
 }
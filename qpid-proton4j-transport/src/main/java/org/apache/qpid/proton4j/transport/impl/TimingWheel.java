@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.impl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel that runs timeouts for any number of Transports from one thread.
+ * <p>
+ * Time is divided into ticks and each tick hashes to one of a fixed number of buckets, a
+ * bucket being a doubly linked list threaded through the {@link Timeout} entries themselves.
+ * Scheduling, rescheduling and cancelling a timeout therefore unlink and link a single
+ * entry and allocate nothing.  Advancing the wheel visits only the buckets of the ticks
+ * that have passed, an entry whose deadline lies more than one revolution ahead stays in
+ * its bucket until the revolution in which it is due.
+ * <p>
+ * The wheel is not thread safe, it is driven by calling {@link #advance(long)} from the
+ * thread that owns it, for instance an {@link org.apache.qpid.proton4j.transport.nio.NioEventLoop},
+ * and timeouts must be scheduled from that thread.  Expiry callbacks may reschedule or
+ * cancel their own timeout but should not cancel others.
+ */
+public final class TimingWheel {
+
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * An entry in the wheel, an instance is scheduled repeatedly rather than created for
+     * each deadline.
+     */
+    public abstract static class Timeout {
+
+        private Timeout previous;
+        private Timeout next;
+        private long deadlineTick;
+        private int bucket = -1;
+
+        /**
+         * @return true if this timeout is currently scheduled.
+         */
+        public final boolean isScheduled() {
+            return bucket >= 0;
+        }
+
+        /**
+         * Called from {@link TimingWheel#advance(long)} once the deadline has passed, the
+         * timeout is no longer scheduled when this is called.
+         *
+         * @param now
+         *      the current time of the wheel in nanoseconds.
+         */
+        protected abstract void expired(long now);
+
+    }
+
+    private final long tickNanos;
+    private final long startTime;
+    private final Timeout[] heads;
+    private final Timeout[] tails;
+    private final int mask;
+
+    private long currentTime;
+    private long currentTick;
+    private int scheduled;
+
+    /**
+     * Creates a wheel with the default tick and size whose time starts now.
+     */
+    public TimingWheel() {
+        this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE, System.nanoTime());
+    }
+
+    /**
+     * Creates a wheel, the size is rounded up to a power of two.
+     *
+     * @param tickDuration
+     *      the length of one tick, deadlines are rounded up to a whole tick.
+     * @param unit
+     *      the unit of the tick duration.
+     * @param wheelSize
+     *      the number of buckets in the wheel.
+     * @param startTime
+     *      the time in nanoseconds at which the wheel starts, as given by {@link System#nanoTime()}.
+     */
+    public TimingWheel(long tickDuration, TimeUnit unit, int wheelSize, long startTime) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive");
+        }
+        if (wheelSize <= 0 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException("Wheel size must be positive and not greater than 2^30");
+        }
+
+        final int size = wheelSize == 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.startTime = startTime;
+        this.currentTime = startTime;
+        this.heads = new Timeout[size];
+        this.tails = new Timeout[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return the time in nanoseconds that the wheel was last advanced to.
+     */
+    public long currentTime() {
+        return currentTime;
+    }
+
+    /**
+     * @return the number of timeouts currently scheduled.
+     */
+    public int getScheduledCount() {
+        return scheduled;
+    }
+
+    /**
+     * Schedules the timeout to expire after the given delay from the current time of the
+     * wheel, replacing any deadline it was already scheduled for.
+     *
+     * @param timeout
+     *      the timeout to schedule.
+     * @param delay
+     *      the delay after which the timeout expires.
+     * @param unit
+     *      the unit of the delay.
+     */
+    public void schedule(Timeout timeout, long delay, TimeUnit unit) {
+        final long delayTicks = (Math.max(0, unit.toNanos(delay)) + tickNanos - 1) / tickNanos;
+
+        if (timeout.isScheduled()) {
+            unlink(timeout);
+        }
+
+        timeout.deadlineTick = currentTick + Math.max(1, delayTicks);
+        link(timeout, (int) (timeout.deadlineTick & mask));
+    }
+
+    /**
+     * Cancels the timeout if it is scheduled.
+     *
+     * @param timeout
+     *      the timeout to cancel.
+     */
+    public void cancel(Timeout timeout) {
+        if (timeout.isScheduled()) {
+            unlink(timeout);
+        }
+    }
+
+    /**
+     * Advances the wheel to the given time and expires every timeout whose deadline has passed.
+     *
+     * @param now
+     *      the current time in nanoseconds, as given by {@link System#nanoTime()}.
+     *
+     * @return the number of timeouts that expired.
+     */
+    public int advance(long now) {
+        if (now - currentTime <= 0) {
+            return 0;
+        }
+
+        currentTime = now;
+
+        final long targetTick = (now - startTime) / tickNanos;
+        if (scheduled == 0) {
+            currentTick = targetTick;
+            return 0;
+        }
+
+        // Each bucket needs visiting at most once however far the wheel has to move
+        long tick = Math.max(currentTick, targetTick - heads.length);
+        int expired = 0;
+
+        while (tick < targetTick) {
+            currentTick = ++tick;
+
+            Timeout timeout = heads[(int) (tick & mask)];
+            while (timeout != null) {
+                final Timeout next = timeout.next;
+                if (timeout.deadlineTick <= tick) {
+                    unlink(timeout);
+                    expired++;
+                    timeout.expired(now);
+                }
+                timeout = next;
+            }
+        }
+
+        currentTick = targetTick;
+
+        return expired;
+    }
+
+    /**
+     * @param now
+     *      the current time in nanoseconds.
+     *
+     * @return the nanoseconds until the wheel next needs advancing, or -1 if nothing is scheduled.
+     */
+    public long nanosToNextTick(long now) {
+        if (scheduled == 0) {
+            return -1;
+        }
+
+        final long nextTickTime = startTime + (currentTick + 1) * tickNanos;
+        return Math.max(0, nextTickTime - now);
+    }
+
+    //----- Internal implementation ------------------------------------------//
+
+    private void link(Timeout timeout, int bucket) {
+        final Timeout tail = tails[bucket];
+
+        timeout.bucket = bucket;
+        timeout.previous = tail;
+        timeout.next = null;
+
+        if (tail == null) {
+            heads[bucket] = timeout;
+        } else {
+            tail.next = timeout;
+        }
+        tails[bucket] = timeout;
+
+        scheduled++;
+    }
+
+    private void unlink(Timeout timeout) {
+        final int bucket = timeout.bucket;
+
+        if (timeout.previous == null) {
+            heads[bucket] = timeout.next;
+        } else {
+            timeout.previous.next = timeout.next;
+        }
+
+        if (timeout.next == null) {
+            tails[bucket] = timeout.previous;
+        } else {
+            timeout.next.previous = timeout.previous;
+        }
+
+        // The next link is kept so that an advance visiting this entry can move past it
+        timeout.previous = null;
+        timeout.bucket = -1;
+
+        scheduled--;
+    }
+}
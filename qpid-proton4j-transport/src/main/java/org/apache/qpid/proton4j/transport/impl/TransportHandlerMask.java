@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.impl;
+
+import java.lang.reflect.Method;
+
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.transport.Frame;
+import org.apache.qpid.proton4j.transport.HeaderFrame;
+import org.apache.qpid.proton4j.transport.ProtocolFrame;
+import org.apache.qpid.proton4j.transport.SaslFrame;
+import org.apache.qpid.proton4j.transport.TransportHandler;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+
+/**
+ * Computes which pipeline events a TransportHandler implementation actually handles.
+ * <p>
+ * A handler that inherits an event method from {@link TransportHandlerAdapter} only
+ * forwards that event to the next context, so the pipeline can step over it without
+ * calling into the handler at all.  The same holds for the batch frame event when it is
+ * left to the default implementation in {@link TransportHandler}, the batch is then
+ * delivered to whichever handler next handles single frames.  The mask is computed once
+ * per handler class.
+ */
+final class TransportHandlerMask {
+
+    static final int MASK_READ = 1;
+    static final int MASK_HEADER_FRAME = 1 << 1;
+    static final int MASK_SASL_FRAME = 1 << 2;
+    static final int MASK_PROTOCOL_FRAME = 1 << 3;
+    static final int MASK_ENCODING_ERROR = 1 << 4;
+    static final int MASK_DECODING_ERROR = 1 << 5;
+    static final int MASK_FAILED = 1 << 6;
+    static final int MASK_WRITE_FRAME = 1 << 7;
+    static final int MASK_WRITE_BUFFER = 1 << 8;
+    static final int MASK_FLUSH = 1 << 9;
+    static final int MASK_PROTOCOL_FRAMES = 1 << 10;
+
+    static final int MASK_ALL = (1 << 11) - 1;
+
+    private static final ClassValue<Integer> MASKS = new ClassValue<Integer>() {
+
+        @Override
+        protected Integer computeValue(Class<?> handlerClass) {
+            return computeMask(handlerClass);
+        }
+    };
+
+    private TransportHandlerMask() {
+    }
+
+    static int mask(TransportHandler handler) {
+        return handler == null ? MASK_ALL : MASKS.get(handler.getClass());
+    }
+
+    //----- Internal implementation ------------------------------------------//
+
+    private static int computeMask(Class<?> handlerClass) {
+        int mask = MASK_ALL;
+
+        if (!TransportHandlerAdapter.class.isAssignableFrom(handlerClass)) {
+            return mask;
+        }
+
+        mask = clearIfInherited(mask, MASK_READ, handlerClass, "handleRead", ProtonBuffer.class);
+        mask = clearIfInherited(mask, MASK_HEADER_FRAME, handlerClass, "handleHeaderFrame", HeaderFrame.class);
+        mask = clearIfInherited(mask, MASK_SASL_FRAME, handlerClass, "handleSaslFrame", SaslFrame.class);
+        mask = clearIfInherited(mask, MASK_PROTOCOL_FRAME, handlerClass, "handleProtocolFrame", ProtocolFrame.class);
+        mask = clearIfInherited(mask, MASK_PROTOCOL_FRAMES, handlerClass, "handleProtocolFrames", ProtocolFrame[].class, int.class);
+        mask = clearIfInherited(mask, MASK_ENCODING_ERROR, handlerClass, "transportEncodingError", Throwable.class);
+        mask = clearIfInherited(mask, MASK_DECODING_ERROR, handlerClass, "transportDecodingError", Throwable.class);
+        mask = clearIfInherited(mask, MASK_FAILED, handlerClass, "transportFailed", Throwable.class);
+        mask = clearIfInherited(mask, MASK_WRITE_FRAME, handlerClass, "handleWrite", Frame.class);
+        mask = clearIfInherited(mask, MASK_WRITE_BUFFER, handlerClass, "handleWrite", ProtonBuffer.class);
+        mask = clearIfInherited(mask, MASK_FLUSH, handlerClass, "handleFlush");
+
+        return mask;
+    }
+
+    private static int clearIfInherited(int mask, int eventMask, Class<?> handlerClass, String name, Class<?>... eventTypes) {
+        Class<?>[] parameterTypes = new Class<?>[eventTypes.length + 1];
+        parameterTypes[0] = TransportHandlerContext.class;
+        System.arraycopy(eventTypes, 0, parameterTypes, 1, eventTypes.length);
+
+        try {
+            Method method = handlerClass.getMethod(name, parameterTypes);
+            if (method.getDeclaringClass() == TransportHandlerAdapter.class ||
+                method.getDeclaringClass() == TransportHandler.class) {
+                mask &= ~eventMask;
+            }
+        } catch (NoSuchMethodException | SecurityException e) {
+            // Be safe and always dispatch to the handler if it cannot be inspected.
+        }
+
+        return mask;
+    }
+}
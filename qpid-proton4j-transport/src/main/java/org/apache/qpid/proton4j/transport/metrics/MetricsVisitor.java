@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.metrics;
+
+/**
+ * Visitor used to export the values held in a {@link TransportMetrics} instance to any
+ * metrics or monitoring system.
+ */
+public interface MetricsVisitor {
+
+    /**
+     * Visits a monotonically increasing counter.
+     *
+     * @param name
+     *      the dotted name of the counter.
+     * @param value
+     *      the current value of the counter.
+     */
+    void counter(String name, long value);
+
+    /**
+     * Visits a histogram.
+     *
+     * @param name
+     *      the dotted name of the histogram.
+     * @param histogram
+     *      the live histogram, which may continue to change while it is being read.
+     */
+    void histogram(String name, Histogram histogram);
+
+}
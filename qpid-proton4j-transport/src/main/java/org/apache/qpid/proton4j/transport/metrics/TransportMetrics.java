@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.qpid.proton4j.amqp.transport.Performative.PerformativeType;
+
+/**
+ * Counters and histograms describing the traffic through a single Transport.
+ * <p>
+ * Metrics are only gathered for a Transport that has been assigned an instance of this
+ * class.  Byte counts are recorded by the {@link org.apache.qpid.proton4j.transport.handlers.TransportMetricsHandler}
+ * while frame counts, timings and sizes are recorded by the frame parsers and writer as
+ * they do their work.  All recording methods are safe to call from any thread and never
+ * allocate, the values can be read at any time or exported through a {@link MetricsVisitor}.
+ */
+public class TransportMetrics {
+
+    private static final PerformativeType[] PERFORMATIVE_TYPES = PerformativeType.values();
+
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    private final LongAdder[] framesIn = createCounters(PERFORMATIVE_TYPES.length);
+    private final LongAdder emptyFramesIn = new LongAdder();
+    private final LongAdder saslFramesIn = new LongAdder();
+    private final LongAdder payloadBytesIn = new LongAdder();
+    private final LongAdder bufferedFrames = new LongAdder();
+
+    private final LongAdder[] framesOut = createCounters(PERFORMATIVE_TYPES.length);
+    private final LongAdder emptyFramesOut = new LongAdder();
+    private final LongAdder saslFramesOut = new LongAdder();
+    private final LongAdder payloadBytesOut = new LongAdder();
+
+    private final Histogram parseTime = new Histogram();
+    private final Histogram decodeTime = new Histogram();
+    private final Histogram frameSizeIn = new Histogram();
+
+    //----- Recording --------------------------------------------------------//
+
+    public void recordBytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    public void recordBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    public void recordFrameIn(PerformativeType type, int payloadBytes) {
+        framesIn[type.ordinal()].increment();
+        if (payloadBytes > 0) {
+            payloadBytesIn.add(payloadBytes);
+        }
+    }
+
+    public void recordEmptyFrameIn() {
+        emptyFramesIn.increment();
+    }
+
+    public void recordSaslFrameIn() {
+        saslFramesIn.increment();
+    }
+
+    public void recordFrameOut(PerformativeType type, int payloadBytes) {
+        framesOut[type.ordinal()].increment();
+        if (payloadBytes > 0) {
+            payloadBytesOut.add(payloadBytes);
+        }
+    }
+
+    public void recordEmptyFrameOut() {
+        emptyFramesOut.increment();
+    }
+
+    public void recordSaslFrameOut() {
+        saslFramesOut.increment();
+    }
+
+    /**
+     * Records an incoming frame that was not complete in a single read and had to be
+     * staged in a buffer until the rest of it arrived.
+     */
+    public void recordBufferedFrame() {
+        bufferedFrames.increment();
+    }
+
+    /**
+     * Records the time the parser spent on one read, excluding the time spent in handlers
+     * the decoded frames were dispatched to.
+     *
+     * @param nanos
+     *      the elapsed time in nanoseconds.
+     */
+    public void recordParseTime(long nanos) {
+        parseTime.record(nanos);
+    }
+
+    /**
+     * Records the time taken to decode the body of one incoming frame.
+     *
+     * @param nanos
+     *      the elapsed time in nanoseconds.
+     */
+    public void recordDecodeTime(long nanos) {
+        decodeTime.record(nanos);
+    }
+
+    public void recordFrameSizeIn(int size) {
+        frameSizeIn.record(size);
+    }
+
+    //----- Access -----------------------------------------------------------//
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public long getFramesIn(PerformativeType type) {
+        return framesIn[type.ordinal()].sum();
+    }
+
+    /**
+     * @return the total number of incoming AMQP frames including empty frames.
+     */
+    public long getFramesIn() {
+        return sum(framesIn) + emptyFramesIn.sum();
+    }
+
+    public long getEmptyFramesIn() {
+        return emptyFramesIn.sum();
+    }
+
+    public long getSaslFramesIn() {
+        return saslFramesIn.sum();
+    }
+
+    public long getPayloadBytesIn() {
+        return payloadBytesIn.sum();
+    }
+
+    public long getBufferedFrames() {
+        return bufferedFrames.sum();
+    }
+
+    public long getFramesOut(PerformativeType type) {
+        return framesOut[type.ordinal()].sum();
+    }
+
+    /**
+     * @return the total number of outgoing AMQP frames including empty frames.
+     */
+    public long getFramesOut() {
+        return sum(framesOut) + emptyFramesOut.sum();
+    }
+
+    public long getEmptyFramesOut() {
+        return emptyFramesOut.sum();
+    }
+
+    public long getSaslFramesOut() {
+        return saslFramesOut.sum();
+    }
+
+    public long getPayloadBytesOut() {
+        return payloadBytesOut.sum();
+    }
+
+    /**
+     * @return histogram of the nanoseconds spent parsing each read.
+     */
+    public Histogram getParseTime() {
+        return parseTime;
+    }
+
+    /**
+     * @return histogram of the nanoseconds spent decoding each incoming frame body.
+     */
+    public Histogram getDecodeTime() {
+        return decodeTime;
+    }
+
+    /**
+     * @return histogram of the size in bytes of each incoming frame.
+     */
+    public Histogram getFrameSizeIn() {
+        return frameSizeIn;
+    }
+
+    //----- Export -----------------------------------------------------------//
+
+    /**
+     * Passes every counter and histogram to the given visitor.
+     *
+     * @param visitor
+     *      the visitor that exports the metrics.
+     */
+    public void export(MetricsVisitor visitor) {
+        visitor.counter("bytes.read", getBytesRead());
+        visitor.counter("bytes.written", getBytesWritten());
+
+        for (PerformativeType type : PERFORMATIVE_TYPES) {
+            visitor.counter("frames.in." + name(type), getFramesIn(type));
+        }
+        visitor.counter("frames.in.empty", getEmptyFramesIn());
+        visitor.counter("frames.in.sasl", getSaslFramesIn());
+        visitor.counter("frames.in.buffered", getBufferedFrames());
+        visitor.counter("payload.bytes.in", getPayloadBytesIn());
+
+        for (PerformativeType type : PERFORMATIVE_TYPES) {
+            visitor.counter("frames.out." + name(type), getFramesOut(type));
+        }
+        visitor.counter("frames.out.empty", getEmptyFramesOut());
+        visitor.counter("frames.out.sasl", getSaslFramesOut());
+        visitor.counter("payload.bytes.out", getPayloadBytesOut());
+
+        visitor.histogram("parse.time.ns", parseTime);
+        visitor.histogram("decode.time.ns", decodeTime);
+        visitor.histogram("frame.size.in", frameSizeIn);
+    }
+
+    /**
+     * Clears all counters and histograms.
+     */
+    public void reset() {
+        bytesRead.reset();
+        bytesWritten.reset();
+        reset(framesIn);
+        emptyFramesIn.reset();
+        saslFramesIn.reset();
+        payloadBytesIn.reset();
+        bufferedFrames.reset();
+        reset(framesOut);
+        emptyFramesOut.reset();
+        saslFramesOut.reset();
+        payloadBytesOut.reset();
+        parseTime.reset();
+        decodeTime.reset();
+        frameSizeIn.reset();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("TransportMetrics {");
+
+        export(new MetricsVisitor() {
+
+            @Override
+            public void counter(String name, long value) {
+                if (value != 0) {
+                    builder.append(' ').append(name).append('=').append(value);
+                }
+            }
+
+            @Override
+            public void histogram(String name, Histogram histogram) {
+                if (histogram.getCount() != 0) {
+                    builder.append(' ').append(name).append('=').append(histogram);
+                }
+            }
+        });
+
+        return builder.append(" }").toString();
+    }
+
+    //----- Internal implementation ------------------------------------------//
+
+    private static String name(PerformativeType type) {
+        return type.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static LongAdder[] createCounters(int count) {
+        LongAdder[] counters = new LongAdder[count];
+        for (int i = 0; i < count; ++i) {
+            counters[i] = new LongAdder();
+        }
+
+        return counters;
+    }
+
+    private static long sum(LongAdder[] counters) {
+        long total = 0;
+        for (LongAdder counter : counters) {
+            total += counter.sum();
+        }
+
+        return total;
+    }
+
+    private static void reset(LongAdder[] counters) {
+        for (LongAdder counter : counters) {
+            counter.reset();
+        }
+    }
+}
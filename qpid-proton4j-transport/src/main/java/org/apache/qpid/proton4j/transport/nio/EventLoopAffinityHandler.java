@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.nio;
+
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonBufferAllocator;
+import org.apache.qpid.proton4j.codec.CodecFactory;
+import org.apache.qpid.proton4j.codec.Encoder;
+import org.apache.qpid.proton4j.transport.Frame;
+import org.apache.qpid.proton4j.transport.HeaderFrame;
+import org.apache.qpid.proton4j.transport.ProtocolFrame;
+import org.apache.qpid.proton4j.transport.SaslFrame;
+import org.apache.qpid.proton4j.transport.TransportHandler;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.handlers.FrameWritingHandler;
+import org.apache.qpid.proton4j.transport.metrics.TransportMetrics;
+
+/**
+ * Handler that confines pipeline events to the thread of the event loop that owns the
+ * Transport.
+ * <p>
+ * This is the ownership based alternative to the LockingHandler, events raised on the
+ * event loop thread pass straight through while events raised from any other thread are
+ * queued to the event loop and continue from there, so no handler needs to lock.
+ * <p>
+ * The handler must sit directly in front of the engine, or whichever handler sits at the
+ * application end of the pipeline, with the frame parsing and writing handlers between it
+ * and the IO side.  Frames the engine writes from another thread then pass through this
+ * handler before any other handler sees them.  Because the engine reuses its outgoing frames,
+ * a frame written from another thread is encoded on that thread and only the resulting
+ * buffer is queued to the event loop.
+ */
+public class EventLoopAffinityHandler implements TransportHandler {
+
+    private static final int INITIAL_ENCODE_BUFFER_SIZE = 256;
+
+    private final NioEventLoop eventLoop;
+    private final Encoder encoder;
+    private final Encoder saslEncoder;
+
+    public EventLoopAffinityHandler(NioEventLoop eventLoop) {
+        this(eventLoop, CodecFactory.getSharedEncoder(), CodecFactory.getSharedSaslEncoder());
+    }
+
+    /**
+     * Creates an affinity handler that encodes frames written from other threads with the given
+     * encoders, which must be safe to use from any thread.
+     *
+     * @param eventLoop
+     *      The event loop that owns the Transport.
+     * @param encoder
+     *      The Encoder used for AMQP frame bodies written from other threads.
+     * @param saslEncoder
+     *      The Encoder used for SASL frame bodies written from other threads.
+     */
+    public EventLoopAffinityHandler(NioEventLoop eventLoop, Encoder encoder, Encoder saslEncoder) {
+        this.eventLoop = eventLoop;
+        this.encoder = encoder;
+        this.saslEncoder = saslEncoder;
+    }
+
+    public NioEventLoop getEventLoop() {
+        return eventLoop;
+    }
+
+    @Override
+    public void handleRead(final TransportHandlerContext context, final ProtonBuffer buffer) {
+        if (eventLoop.inEventLoop()) {
+            context.fireRead(buffer);
+        } else {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    context.fireRead(buffer);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void handleHeaderFrame(final TransportHandlerContext context, final HeaderFrame header) {
+        if (eventLoop.inEventLoop()) {
+            context.fireHeaderFrame(header);
+        } else {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    context.fireHeaderFrame(header);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void handleSaslFrame(final TransportHandlerContext context, final SaslFrame frame) {
+        if (eventLoop.inEventLoop()) {
+            context.fireSaslFrame(frame);
+        } else {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    context.fireSaslFrame(frame);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void handleProtocolFrame(final TransportHandlerContext context, final ProtocolFrame frame) {
+        if (eventLoop.inEventLoop()) {
+            context.fireProtocolFrame(frame);
+        } else {
+            // The parser reuses the frame and its payload view once this event returns.
+            final ProtocolFrame retained = frame.copy();
+
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    context.fireProtocolFrame(retained);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void handleProtocolFrames(final TransportHandlerContext context, final ProtocolFrame[] frames, final int count) {
+        if (eventLoop.inEventLoop()) {
+            context.fireProtocolFrames(frames, count);
+        } else {
+            final ProtocolFrame[] retained = new ProtocolFrame[count];
+            for (int i = 0; i < count; ++i) {
+                retained[i] = frames[i].copy();
+            }
+
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    context.fireProtocolFrames(retained, count);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void transportEncodingError(final TransportHandlerContext context, final Throwable e) {
+        if (eventLoop.inEventLoop()) {
+            context.fireEncodingError(e);
+        } else {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    context.fireEncodingError(e);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void transportDecodingError(final TransportHandlerContext context, final Throwable e) {
+        if (eventLoop.inEventLoop()) {
+            context.fireDecodingError(e);
+        } else {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    context.fireDecodingError(e);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void transportFailed(final TransportHandlerContext context, final Throwable e) {
+        if (eventLoop.inEventLoop()) {
+            context.fireFailed(e);
+        } else {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    context.fireFailed(e);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void handleWrite(final TransportHandlerContext context, final Frame<?> frame) {
+        if (eventLoop.inEventLoop()) {
+            context.fireWrite(frame);
+        } else {
+            // The frame may be reset and reused as soon as this call returns so it is encoded
+            // now and only the bytes are handed to the event loop.
+            final ProtonBufferAllocator allocator = context.getTransport().getBufferAllocator();
+            final ProtonBuffer encoded = allocator.allocate(INITIAL_ENCODE_BUFFER_SIZE);
+
+            try {
+                FrameWritingHandler.encodeFrame(encoded, frame, encoder, encoder.newEncoderState(), saslEncoder, saslEncoder.newEncoderState());
+            } catch (RuntimeException e) {
+                allocator.recycle(encoded);
+                transportEncodingError(context, e);
+                return;
+            }
+
+            final TransportMetrics metrics = context.getTransport().getMetrics();
+            if (metrics != null) {
+                FrameWritingHandler.recordFrameOut(metrics, frame);
+            }
+
+            handleWrite(context, encoded);
+        }
+    }
+
+    @Override
+    public void handleWrite(final TransportHandlerContext context, final ProtonBuffer buffer) {
+        if (eventLoop.inEventLoop()) {
+            context.fireWrite(buffer);
+        } else {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    context.fireWrite(buffer);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void handleFlush(final TransportHandlerContext context) {
+        if (eventLoop.inEventLoop()) {
+            context.fireFlush();
+        } else {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    context.fireFlush();
+                }
+            });
+        }
+    }
+}
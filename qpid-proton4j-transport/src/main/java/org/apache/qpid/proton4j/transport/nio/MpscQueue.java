@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.nio;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Unbounded lock-free queue for many producer threads and a single consumer thread.
+ * <p>
+ * Producers append with a single atomic exchange on the tail and never contend with the
+ * consumer, which walks the linked nodes from the head without any atomic operations.
+ * Only the owning consumer thread may call {@link #poll()} or {@link #clear()}.
+ *
+ * @param <E> the type of element held in the queue
+ */
+final class MpscQueue<E> {
+
+    private static final class Node<E> {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Node> NEXT_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+        private volatile Node<E> next;
+        private E value;
+
+        Node(E value) {
+            this.value = value;
+        }
+
+        void lazySetNext(Node<E> next) {
+            NEXT_UPDATER.lazySet(this, next);
+        }
+    }
+
+    private final AtomicReference<Node<E>> tail;
+    private Node<E> head;
+
+    MpscQueue() {
+        Node<E> stub = new Node<>(null);
+
+        head = stub;
+        tail = new AtomicReference<>(stub);
+    }
+
+    /**
+     * Adds the element to the tail of the queue, may be called from any thread.
+     *
+     * @param value
+     *      The element to add, cannot be null.
+     */
+    void offer(E value) {
+        if (value == null) {
+            throw new NullPointerException("Queued value cannot be null");
+        }
+
+        Node<E> node = new Node<>(value);
+        Node<E> previous = tail.getAndSet(node);
+        previous.lazySetNext(node);
+    }
+
+    /**
+     * Removes the head of the queue, consumer thread only.
+     *
+     * @return the element at the head of the queue or null if the queue is empty.
+     */
+    E poll() {
+        Node<E> next = head.next;
+
+        if (next == null) {
+            if (head == tail.get()) {
+                return null;
+            }
+
+            // A producer has swapped the tail but not yet linked its node, it will do so
+            // imminently so wait rather than report a non-empty queue as empty.
+            while ((next = head.next) == null) {
+                Thread.yield();
+            }
+        }
+
+        E value = next.value;
+        next.value = null;
+        head = next;
+
+        return value;
+    }
+
+    /**
+     * @return true if no elements are currently in the queue.
+     */
+    boolean isEmpty() {
+        return head == tail.get();
+    }
+
+    /**
+     * Discards all queued elements, consumer thread only.
+     */
+    void clear() {
+        while (poll() != null) {
+        }
+    }
+}
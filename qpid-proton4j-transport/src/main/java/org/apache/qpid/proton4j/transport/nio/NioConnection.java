@@ -0,0 +1,316 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.nio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.transport.Transport;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+
+/**
+ * The IO side handler of a Transport registered with a {@link NioEventLoop}.
+ * <p>
+ * Buffers written into the pipeline are queued until the next flush and then written
+ * to the channel with a single gathering write.  When the channel cannot accept all of
+ * the pending output the connection waits for the selector to report the channel as
+ * writable, and once the pending output passes the high water mark reading from the
+ * channel is suspended until the output has drained below the low water mark.
+ */
+public class NioConnection extends TransportHandlerAdapter {
+
+    public static final int DEFAULT_WRITE_HIGH_WATER_MARK = 1024 * 1024;
+    public static final int DEFAULT_WRITE_LOW_WATER_MARK = 256 * 1024;
+
+    private static final int MAX_GATHERED_BUFFERS = 64;
+
+    private final NioEventLoop eventLoop;
+    private final SocketChannel channel;
+    private final Transport transport;
+
+    private final ArrayDeque<ProtonBuffer> pendingBuffers = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+    private final ByteBuffer[] gathered = new ByteBuffer[MAX_GATHERED_BUFFERS];
+
+    private int writeHighWaterMark = DEFAULT_WRITE_HIGH_WATER_MARK;
+    private int writeLowWaterMark = DEFAULT_WRITE_LOW_WATER_MARK;
+
+    private EventLoopAffinityHandler affinityHandler;
+    private SelectionKey key;
+    private boolean flushRequested;
+    private boolean readSuspended;
+    private boolean closed;
+
+    private volatile long pendingBytes;
+
+    NioConnection(NioEventLoop eventLoop, SocketChannel channel, Transport transport) {
+        this.eventLoop = eventLoop;
+        this.channel = channel;
+        this.transport = transport;
+    }
+
+    public NioEventLoop getEventLoop() {
+        return eventLoop;
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * @return the affinity handler installed when the Transport was registered through a
+     *         {@link NioEventLoopGroup}, or null if it was registered directly with an event loop.
+     */
+    public EventLoopAffinityHandler getAffinityHandler() {
+        return affinityHandler;
+    }
+
+    /**
+     * @return the number of flushed bytes that have not yet been written to the channel.
+     */
+    public long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    /**
+     * @return true if reads are currently suspended because of pending output.
+     */
+    public boolean isReadSuspended() {
+        return readSuspended;
+    }
+
+    /**
+     * Sets the amount of pending output above which reading from the channel is suspended
+     * and the amount it must drain below before reading resumes.
+     *
+     * @param high
+     *      the pending byte count that suspends reading.
+     * @param low
+     *      the pending byte count at or below which reading resumes.
+     */
+    public void setWriteWaterMarks(int high, int low) {
+        if (low > high) {
+            throw new IllegalArgumentException("Low water mark cannot exceed the high water mark");
+        }
+
+        this.writeHighWaterMark = high;
+        this.writeLowWaterMark = low;
+    }
+
+    /**
+     * Closes the channel and releases any output that was not yet written.  Must be
+     * called from the event loop thread.
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+
+            if (key != null) {
+                key.cancel();
+            }
+
+            try {
+                channel.close();
+            } catch (IOException e) {
+            }
+
+            for (ProtonBuffer buffer : pendingBuffers) {
+                transport.getBufferAllocator().recycle(buffer);
+            }
+
+            pendingBuffers.clear();
+            pendingWrites.clear();
+            pendingBytes = 0;
+
+            eventLoop.unregistered(this);
+        }
+    }
+
+    //----- TransportHandler implementation ----------------------------------//
+
+    @Override
+    public void handleWrite(final TransportHandlerContext context, final ProtonBuffer buffer) {
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    handleWrite(context, buffer);
+                }
+            });
+        } else if (closed) {
+            transport.getBufferAllocator().recycle(buffer);
+        } else if (buffer.isReadable()) {
+            pendingBuffers.add(buffer);
+            pendingWrites.add(buffer.toByteBuffer());
+            pendingBytes += buffer.getReadableBytes();
+        }
+    }
+
+    @Override
+    public void handleFlush(final TransportHandlerContext context) {
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    handleFlush(context);
+                }
+            });
+        } else {
+            flushRequested = true;
+            if (key != null) {
+                writePending();
+            }
+        }
+    }
+
+    @Override
+    public void transportFailed(TransportHandlerContext context, Throwable e) {
+        if (eventLoop.inEventLoop()) {
+            close();
+        } else {
+            eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    close();
+                }
+            });
+        }
+
+        context.fireFailed(e);
+    }
+
+    //----- Event loop callbacks ---------------------------------------------//
+
+    void setAffinityHandler(EventLoopAffinityHandler affinityHandler) {
+        this.affinityHandler = affinityHandler;
+    }
+
+    void registered(SelectionKey key) {
+        this.key = key;
+
+        if (flushRequested) {
+            writePending();
+        }
+    }
+
+    void readable(ByteBuffer readBuffer, ProtonBuffer readView) {
+        try {
+            readBuffer.clear();
+
+            int bytesRead = channel.read(readBuffer);
+            if (bytesRead < 0) {
+                failed(new EOFException("Connection closed by remote peer"));
+            } else if (bytesRead > 0) {
+                readView.setIndex(0, bytesRead);
+                transport.processIncoming(readView);
+            }
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    void writable() {
+        writePending();
+    }
+
+    void failed(Throwable cause) {
+        close();
+        transport.getPipeline().fireFailed(cause);
+    }
+
+    //----- Internal implementation ------------------------------------------//
+
+    private void writePending() {
+        if (closed) {
+            return;
+        }
+
+        try {
+            while (!pendingWrites.isEmpty()) {
+                int count = 0;
+                long gatheredBytes = 0;
+
+                for (ByteBuffer buffer : pendingWrites) {
+                    gathered[count++] = buffer;
+                    gatheredBytes += buffer.remaining();
+                    if (count == MAX_GATHERED_BUFFERS) {
+                        break;
+                    }
+                }
+
+                long written = channel.write(gathered, 0, count);
+                pendingBytes -= written;
+
+                while (!pendingWrites.isEmpty() && !pendingWrites.peek().hasRemaining()) {
+                    pendingWrites.poll();
+                    transport.getBufferAllocator().recycle(pendingBuffers.poll());
+                }
+
+                // A short write means the socket send buffer is full, wait for OP_WRITE.
+                if (written < gatheredBytes) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            failed(e);
+            return;
+        } finally {
+            Arrays.fill(gathered, null);
+        }
+
+        updateInterest();
+    }
+
+    private void updateInterest() {
+        if (!key.isValid()) {
+            return;
+        }
+
+        int interest = key.interestOps();
+
+        if (pendingWrites.isEmpty()) {
+            flushRequested = false;
+            interest &= ~SelectionKey.OP_WRITE;
+        } else {
+            interest |= SelectionKey.OP_WRITE;
+        }
+
+        if (!readSuspended && pendingBytes > writeHighWaterMark) {
+            readSuspended = true;
+            interest &= ~SelectionKey.OP_READ;
+        } else if (readSuspended && pendingBytes <= writeLowWaterMark) {
+            readSuspended = false;
+            interest |= SelectionKey.OP_READ;
+        }
+
+        key.interestOps(interest);
+    }
+}
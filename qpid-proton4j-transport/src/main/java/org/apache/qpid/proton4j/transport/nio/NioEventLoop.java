@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
+import org.apache.qpid.proton4j.common.logging.ProtonLogger;
+import org.apache.qpid.proton4j.common.logging.ProtonLoggerFactory;
+import org.apache.qpid.proton4j.transport.Transport;
+import org.apache.qpid.proton4j.transport.impl.TimingWheel;
+
+/**
+ * Selector based event loop that drives the IO for any number of Transports.
+ * <p>
+ * Each registered SocketChannel is paired with a {@link Transport} whose pipeline is
+ * given a {@link NioConnection} as its first handler.  Incoming bytes are read into a
+ * single buffer owned by the loop and shared by all of its connections, which is safe
+ * because frame parsing either consumes the bytes or copies them into its own staging
+ * buffer before the read event returns.  Outgoing buffers are written with gathering
+ * writes when the Transport is flushed.
+ * <p>
+ * Transport events for a registered connection must run on the loop thread, work from
+ * other threads should be submitted through {@link #execute(Runnable)} or routed onto the
+ * loop by an {@link EventLoopAffinityHandler}.
+ * <p>
+ * Each loop owns a {@link TimingWheel} shared by all of its connections for timeouts such
+ * as idle-timeout and heartbeat checks, the selector wakes in time for the next tick while
+ * any timeout is scheduled.
+ */
+public class NioEventLoop implements Runnable {
+
+    private static final ProtonLogger LOG = ProtonLoggerFactory.getLogger(NioEventLoop.class);
+
+    public static final int DEFAULT_READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Selector selector;
+    private final MpscQueue<Runnable> tasks = new MpscQueue<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final Set<NioConnection> connections = new HashSet<>();
+    private final TimingWheel timingWheel = new TimingWheel();
+    private final Thread thread;
+
+    private final ByteBuffer readBuffer;
+    private final ProtonBuffer readView;
+
+    private volatile boolean closed;
+    private volatile int connectionCount;
+
+    public NioEventLoop(String name) throws IOException {
+        this(name, DEFAULT_READ_BUFFER_SIZE);
+    }
+
+    public NioEventLoop(String name, int readBufferSize) throws IOException {
+        byte[] readArray = new byte[readBufferSize];
+
+        this.readBuffer = ByteBuffer.wrap(readArray);
+        this.readView = ProtonByteBufferAllocator.DEFAULT.wrap(readArray);
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the thread that runs this event loop.
+     *
+     * @return this event loop.
+     */
+    public NioEventLoop start() {
+        thread.start();
+        return this;
+    }
+
+    /**
+     * @return true if the calling thread is the thread running this event loop.
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * @return true if this event loop has been closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return the timing wheel driven by this event loop, which may only be used from the loop thread.
+     */
+    public TimingWheel getTimingWheel() {
+        return timingWheel;
+    }
+
+    /**
+     * @return the number of connections currently registered with this event loop.
+     */
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * Queues a task to be run on the event loop thread.  Tasks submitted from a single
+     * thread run in the order they were submitted, submission never blocks.
+     *
+     * @param task
+     *      The task to run on the event loop.
+     */
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task to execute cannot be null");
+        }
+
+        tasks.offer(task);
+
+        // Only the first task queued while the loop is blocked needs to wake the selector.
+        if (!inEventLoop() && wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Registers a connected SocketChannel with this event loop, the given Transport will be
+     * fed everything read from the channel and its flushed output written to the channel.
+     * The channel is placed into non-blocking mode.
+     *
+     * @param channel
+     *      The connected SocketChannel that carries the Transport's data.
+     * @param transport
+     *      The Transport that should be bound to the channel.
+     *
+     * @return the NioConnection that was installed as the first handler in the Transport pipeline.
+     *
+     * @throws IOException if the channel cannot be configured for non-blocking IO.
+     */
+    public NioConnection register(SocketChannel channel, Transport transport) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Event loop has been closed");
+        }
+
+        channel.configureBlocking(false);
+
+        final NioConnection connection = new NioConnection(this, channel, transport);
+        transport.getPipeline().addFirst("nio", connection);
+
+        execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    connection.registered(channel.register(selector, SelectionKey.OP_READ, connection));
+                    connections.add(connection);
+                    connectionCount = connections.size();
+                } catch (IOException e) {
+                    connection.failed(e);
+                }
+            }
+        });
+
+        return connection;
+    }
+
+    /**
+     * Closes the event loop along with every connection registered with it and waits
+     * for the loop thread to exit.
+     *
+     * @param timeout
+     *      The time to wait for the loop thread to exit.
+     * @param unit
+     *      The unit of the given timeout.
+     *
+     * @throws InterruptedException if interrupted while waiting for the loop to exit.
+     */
+    public void close(long timeout, TimeUnit unit) throws InterruptedException {
+        closed = true;
+        selector.wakeup();
+
+        if (!inEventLoop() && thread.isAlive()) {
+            thread.join(unit.toMillis(timeout));
+        }
+    }
+
+    //----- Event loop implementation ----------------------------------------//
+
+    @Override
+    public void run() {
+        try {
+            while (!closed) {
+                runTasks();
+
+                wakeupPending.set(false);
+                if (tasks.isEmpty()) {
+                    select(timingWheel.nanosToNextTick(System.nanoTime()));
+                } else {
+                    selector.selectNow();
+                }
+
+                processSelectedKeys();
+                timingWheel.advance(System.nanoTime());
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            LOG.warn("Event loop {} terminated by error: {}", thread.getName(), e.getMessage());
+        } finally {
+            shutdown();
+        }
+    }
+
+    void unregistered(NioConnection connection) {
+        connections.remove(connection);
+        connectionCount = connections.size();
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                LOG.warn("Event loop task threw an error: {}", t.getMessage());
+            }
+        }
+    }
+
+    private void select(long timeout) throws IOException {
+        if (timeout < 0) {
+            selector.select();
+        } else if (timeout == 0) {
+            selector.selectNow();
+        } else {
+            // Rounded up so that the loop does not spin ahead of the tick
+            selector.select(TimeUnit.NANOSECONDS.toMillis(timeout + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+        }
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+
+            NioConnection connection = (NioConnection) key.attachment();
+
+            // An error thrown from one connection's pipeline fails only that connection,
+            // the loop must keep serving every other connection registered with it.
+            try {
+                if (key.isValid() && key.isWritable()) {
+                    connection.writable();
+                }
+
+                if (key.isValid() && key.isReadable()) {
+                    connection.readable(readBuffer, readView);
+                }
+            } catch (RuntimeException e) {
+                connectionFailed(connection, e);
+            }
+        }
+    }
+
+    private void connectionFailed(NioConnection connection, RuntimeException cause) {
+        LOG.debug("Connection failed by error thrown from its pipeline: {}", cause.getMessage());
+
+        try {
+            connection.failed(cause);
+        } catch (RuntimeException e) {
+            LOG.warn("Error thrown while failing connection: {}", e.getMessage());
+            connection.close();
+        }
+    }
+
+    private void shutdown() {
+        closed = true;
+
+        for (NioConnection connection : new ArrayList<>(connections)) {
+            connection.close();
+        }
+
+        tasks.clear();
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOG.trace("Error while closing selector: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.nio;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.proton4j.amqp.transport.Performative;
+import org.apache.qpid.proton4j.transport.Transport;
+
+/**
+ * A fixed group of {@link NioEventLoop} threads that Transports are spread across.
+ * <p>
+ * Each registered Transport is pinned to a single event loop for its lifetime, all of its
+ * IO and pipeline events run on that loop's thread so handlers never contend for locks and
+ * throughput scales with the number of loops.  Work for a Transport that originates on other
+ * threads is handed to its loop through the loop's lock-free task queue.
+ */
+public class NioEventLoopGroup {
+
+    private final NioEventLoop[] eventLoops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    /**
+     * Creates a group with one event loop per available processor.
+     *
+     * @param name
+     *      The name prefix used for the event loop threads.
+     *
+     * @throws IOException if an event loop selector cannot be opened.
+     */
+    public NioEventLoopGroup(String name) throws IOException {
+        this(name, Runtime.getRuntime().availableProcessors());
+    }
+
+    public NioEventLoopGroup(String name, int threads) throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Event loop group must have at least one thread");
+        }
+
+        eventLoops = new NioEventLoop[threads];
+        for (int i = 0; i < threads; ++i) {
+            eventLoops[i] = new NioEventLoop(name + "-" + i);
+        }
+    }
+
+    /**
+     * Starts all event loops in the group.
+     *
+     * @return this event loop group.
+     */
+    public NioEventLoopGroup start() {
+        for (NioEventLoop eventLoop : eventLoops) {
+            eventLoop.start();
+        }
+
+        return this;
+    }
+
+    /**
+     * @return the number of event loops in this group.
+     */
+    public int size() {
+        return eventLoops.length;
+    }
+
+    /**
+     * @param index
+     *      The index of the event loop to return.
+     *
+     * @return the event loop at the given index.
+     */
+    public NioEventLoop getEventLoop(int index) {
+        return eventLoops[index];
+    }
+
+    /**
+     * @return the event loop that the next registered Transport will be assigned to.
+     */
+    public NioEventLoop next() {
+        return eventLoops[(nextLoop.getAndIncrement() & Integer.MAX_VALUE) % eventLoops.length];
+    }
+
+    /**
+     * Registers the channel and Transport with the next event loop in the group.  The
+     * Transport pipeline gains a {@link NioConnection} as its first handler and an
+     * {@link EventLoopAffinityHandler} as its last so that events raised from other
+     * threads are moved onto the owning loop.
+     * <p>
+     * The affinity handler must sit directly in front of the engine so this must be called
+     * once the frame parsing and writing handlers have been added but before the engine is
+     * attached to the Transport.
+     *
+     * @param channel
+     *      The connected SocketChannel that carries the Transport's data.
+     * @param transport
+     *      The Transport that should be bound to the channel.
+     *
+     * @return the NioConnection which identifies the event loop the Transport is pinned to.
+     *
+     * @throws IOException if the channel cannot be configured for non-blocking IO.
+     * @throws IllegalStateException if the Transport already has an engine attached.
+     */
+    public NioConnection register(SocketChannel channel, Transport transport) throws IOException {
+        if (transport.getPipeline().last() instanceof Performative.PerformativeHandler) {
+            throw new IllegalStateException(
+                "Transport must be registered before the engine is attached so the affinity handler sits in front of it");
+        }
+
+        NioEventLoop eventLoop = next();
+        EventLoopAffinityHandler affinityHandler = new EventLoopAffinityHandler(eventLoop);
+        transport.getPipeline().addLast("affinity", affinityHandler);
+
+        NioConnection connection = eventLoop.register(channel, transport);
+        connection.setAffinityHandler(affinityHandler);
+
+        return connection;
+    }
+
+    /**
+     * Closes every event loop in the group and the connections they own.
+     *
+     * @param timeout
+     *      The time to wait for each event loop thread to exit.
+     * @param unit
+     *      The unit of the given timeout.
+     *
+     * @throws InterruptedException if interrupted while waiting for the loops to exit.
+     */
+    public void close(long timeout, TimeUnit unit) throws InterruptedException {
+        for (NioEventLoop eventLoop : eventLoops) {
+            eventLoop.close(timeout, unit);
+        }
+    }
+}
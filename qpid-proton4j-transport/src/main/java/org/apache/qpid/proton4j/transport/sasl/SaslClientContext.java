@@ -16,12 +16,16 @@
  */
 package org.apache.qpid.proton4j.transport.sasl;
 
+import org.apache.qpid.proton4j.amqp.Binary;
 import org.apache.qpid.proton4j.amqp.Symbol;
 import org.apache.qpid.proton4j.amqp.security.SaslChallenge;
+import org.apache.qpid.proton4j.amqp.security.SaslInit;
 import org.apache.qpid.proton4j.amqp.security.SaslMechanisms;
 import org.apache.qpid.proton4j.amqp.security.SaslOutcome;
+import org.apache.qpid.proton4j.amqp.transport.AMQPHeader;
 import org.apache.qpid.proton4j.transport.HeaderFrame;
 import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.exceptions.TransportException;
 import org.apache.qpid.proton4j.transport.sasl.SaslConstants.SaslOutcomes;
 import org.apache.qpid.proton4j.transport.sasl.SaslConstants.SaslStates;
 
@@ -29,6 +33,8 @@ public class SaslClientContext extends SaslContext {
 
     private final SaslClientListener listener;
 
+    private byte[] initialResponse;
+
     public SaslClientContext(SaslHandler handler, SaslClientListener listener) {
         super(handler);
 
@@ -37,7 +43,7 @@ public class SaslClientContext extends SaslContext {
 
     @Override
     Role getRole() {
-        return Role.SERVER;
+        return Role.CLIENT;
     }
 
     /**
@@ -71,10 +77,68 @@ public class SaslClientContext extends SaslContext {
         return chosenMechanism.toString();
     }
 
+    /**
+     * Sets the mechanism the client authenticates with.  When set before the Connection is
+     * opened the sasl-init frame is sent straight after the SASL header, ahead of the AMQP
+     * output, without waiting for the server's mechanisms.  Otherwise it can be set from
+     * {@link SaslClientListener#onSaslMechanisms(SaslClientContext, String[])}.
+     *
+     * @param mechanism
+     *      the name of the SASL mechanism to use.
+     */
     public void setMechanism(String mechanism) {
+        if (initSent) {
+            throw new IllegalStateException("SASL Init already sent to remote");
+        }
+
         this.chosenMechanism = Symbol.valueOf(mechanism);
     }
 
+    public byte[] getInitialResponse() {
+        return initialResponse;
+    }
+
+    /**
+     * Sets the initial response sent in the sasl-init frame, for example the credentials
+     * of the PLAIN mechanism.
+     *
+     * @param initialResponse
+     *      the initial response bytes, or null for none.
+     */
+    public void setInitialResponse(byte[] initialResponse) {
+        this.initialResponse = initialResponse;
+    }
+
+    //----- Output driven by the handler -------------------------------------//
+
+    /**
+     * Writes the SASL header if it has not yet been written and the sasl-init frame once a
+     * mechanism has been chosen, the handler calls this before any AMQP output is written.
+     *
+     * @return true if the sasl-init frame has been written and AMQP output may follow.
+     */
+    boolean writeInitIfReady() {
+        if (!headerWritten) {
+            saslHandler.writeHeader(AMQPHeader.getSASLHeader());
+            headerWritten = true;
+        }
+
+        if (!initSent && chosenMechanism != null) {
+            SaslInit init = new SaslInit();
+            init.setMechanism(chosenMechanism);
+            init.setHostname(hostname);
+            if (initialResponse != null) {
+                init.setInitialResponse(new Binary(initialResponse));
+            }
+
+            saslHandler.writeSaslFrame(init);
+            initSent = true;
+            state = SaslStates.PN_SASL_STEP;
+        }
+
+        return initSent;
+    }
+
     //----- SASL Frame event handlers-----------------------------------------//
 
     @Override
@@ -83,17 +147,25 @@ public class SaslClientContext extends SaslContext {
             // TODO - Error on server not supporting SASL
             context.fireFailed(new IllegalStateException(
                 "Remote does not support SASL authentication."));
+            return;
         }
+
+        headerReceived = true;
     }
 
     @Override
     public void handleMechanisms(SaslMechanisms saslMechanisms, TransportHandlerContext context) {
         serverMechanisms = saslMechanisms.getSaslServerMechanisms();
 
+        mechanismsReceived = true;
+
         listener.onSaslMechanisms(this, getServerMechanisms());
 
-        // TODO - How is the listener driving output, send methods ?
-        //        We probably want to support asynchronous triggering
+        // A client that chose its mechanism up front has already sent the init, otherwise
+        // the AMQP output held back until now follows the init that the listener allowed.
+        if (writeInitIfReady()) {
+            saslHandler.releaseHeldOutput();
+        }
     }
 
     @Override
@@ -133,6 +205,12 @@ public class SaslClientContext extends SaslContext {
 
         listener.onSaslOutcome(this);
 
+        if (isFailed()) {
+            context.fireFailed(new TransportException("SASL authentication failed with outcome " + outcome));
+        } else {
+            saslHandler.releaseHeldOutput();
+        }
+
         // TODO - Also pass the Outcome Enum and possible additional data
         // listener.onSaslOutcome(this, outcome, saslOutcome.getAdditionalData());
     }
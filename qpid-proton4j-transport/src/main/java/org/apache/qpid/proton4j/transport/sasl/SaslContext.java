@@ -83,7 +83,7 @@ public abstract class SaslContext implements SaslPerformative.SaslPerformativeHa
      * @return true if this is a SASL client context.
      */
     public boolean isClient() {
-        return getRole() == Role.SERVER;
+        return getRole() == Role.CLIENT;
     }
 
     /**
@@ -93,6 +93,20 @@ public abstract class SaslContext implements SaslPerformative.SaslPerformativeHa
         return done;
     }
 
+    /**
+     * @return the outcome of the SASL exchange, or PN_SASL_NONE if it has not completed.
+     */
+    public SaslOutcomes getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return true if the SASL exchange completed with an outcome other than success.
+     */
+    public boolean isFailed() {
+        return done && outcome != SaslOutcomes.PN_SASL_NONE && outcome != SaslOutcomes.PN_SASL_OK;
+    }
+
     //----- Handle AMQP Header input -----------------------------------------//
 
     public abstract void handleHeaderFrame(TransportHandlerContext context, HeaderFrame header);
@@ -22,7 +22,6 @@ import org.apache.qpid.proton4j.amqp.Binary;
 import org.apache.qpid.proton4j.amqp.security.SaslPerformative;
 import org.apache.qpid.proton4j.amqp.transport.AMQPHeader;
 import org.apache.qpid.proton4j.buffer.ProtonBuffer;
-import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
 import org.apache.qpid.proton4j.codec.Decoder;
 import org.apache.qpid.proton4j.codec.DecoderState;
 import org.apache.qpid.proton4j.transport.FrameParser;
@@ -33,6 +32,11 @@ import org.apache.qpid.proton4j.transport.exceptions.TransportException;
 
 /**
  * Parser of SASL Frames from the incoming data stream
+ * <p>
+ * Parsing stops once the SASL exchange is done, or when the start of an AMQP header is
+ * found where the next SASL frame would begin, which is how a client that pipelines its
+ * connection open follows the sasl-init frame.  Any input that was not consumed is left
+ * in the buffer for the {@link SaslHandler} to pass on or hold.
  */
 public class SaslFrameParser implements FrameParser {
 
@@ -57,26 +61,27 @@ public class SaslFrameParser implements FrameParser {
 
     public static final byte SASL_FRAME_TYPE = (byte) 1;
 
-    private State state = State.SIZE_0;
+    private State state = State.HEADER0;
     private int size;
 
-    private SaslHandler sasl;
+    private final SaslHandler sasl;
+    private final int frameSizeLimit;
     private ProtonBuffer buffer;
-    private int frameSizeLimit;
     private Decoder decoder;
     private DecoderState decoderState;
     private AMQPHeader header = AMQPHeader.getSASLHeader();
-    private HeaderFrame headerFrame = new HeaderFrame(header);
 
-    public SaslFrameParser(Decoder decoder) {
+    public SaslFrameParser(SaslHandler sasl, Decoder decoder, int frameSizeLimit) {
+        this.sasl = sasl;
         this.decoder = decoder;
         this.decoderState = decoder.newDecoderState();
+        this.frameSizeLimit = frameSizeLimit;
     }
 
     @Override
     public void reset() {
         header = AMQPHeader.getSASLHeader();
-        state = State.SIZE_0;
+        state = State.HEADER0;
         buffer = null;
     }
 
@@ -88,13 +93,18 @@ public class SaslFrameParser implements FrameParser {
         ProtonBuffer input = incoming;
 
         while (input.isReadable() && parsingState != State.ERROR && !sasl.isDone()) {
+            // No SASL frame can be large enough to start with these bytes, so they begin an AMQP header
+            if (parsingState == State.SIZE_0 && input.getByte(input.getReadIndex()) == 'A') {
+                break;
+            }
+
             switch (parsingState) {
                 case HEADER0:
                     if (incoming.isReadable()) {
                         byte c = incoming.readByte();
-                        if (c != header.getByteAt(state.ordinal())) {
+                        if (c != header.getByteAt(parsingState.ordinal())) {
                             parsingError = new TransportException(String.format(
-                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(state.ordinal()), parsingState));
+                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(parsingState.ordinal()), parsingState));
                             parsingState = State.ERROR;
                             break;
                         }
@@ -105,9 +115,9 @@ public class SaslFrameParser implements FrameParser {
                 case HEADER1:
                     if (incoming.isReadable()) {
                         byte c = incoming.readByte();
-                        if (c != header.getByteAt(1)) {
+                        if (c != header.getByteAt(parsingState.ordinal())) {
                             parsingError = new TransportException(String.format(
-                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(state.ordinal()), parsingState));
+                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(parsingState.ordinal()), parsingState));
                             parsingState = State.ERROR;
                             break;
                         }
@@ -118,9 +128,9 @@ public class SaslFrameParser implements FrameParser {
                 case HEADER2:
                     if (incoming.isReadable()) {
                         byte c = incoming.readByte();
-                        if (c != header.getByteAt(state.ordinal())) {
+                        if (c != header.getByteAt(parsingState.ordinal())) {
                             parsingError = new TransportException(String.format(
-                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(state.ordinal()), parsingState));
+                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(parsingState.ordinal()), parsingState));
                             parsingState = State.ERROR;
                             break;
                         }
@@ -131,9 +141,9 @@ public class SaslFrameParser implements FrameParser {
                 case HEADER3:
                     if (incoming.isReadable()) {
                         byte c = incoming.readByte();
-                        if (c != header.getByteAt(state.ordinal())) {
+                        if (c != header.getByteAt(parsingState.ordinal())) {
                             parsingError = new TransportException(String.format(
-                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(state.ordinal()), parsingState));
+                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(parsingState.ordinal()), parsingState));
                             parsingState = State.ERROR;
                             break;
                         }
@@ -144,11 +154,11 @@ public class SaslFrameParser implements FrameParser {
                 case HEADER4:
                     if (incoming.isReadable()) {
                         byte c = incoming.readByte();
-                        if (c != header.getByteAt(state.ordinal())) {
+                        if (c != header.getByteAt(parsingState.ordinal())) {
                             header = AMQPHeader.getRawAMQPHeader();
-                            if (c != header.getByteAt(state.ordinal())) {
+                            if (c != header.getByteAt(parsingState.ordinal())) {
                                 parsingError = new TransportException(String.format(
-                                    "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(state.ordinal()), parsingState));
+                                    "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(parsingState.ordinal()), parsingState));
                                 parsingState = State.ERROR;
                                 break;
                             }
@@ -160,9 +170,9 @@ public class SaslFrameParser implements FrameParser {
                 case HEADER5:
                     if (incoming.isReadable()) {
                         byte c = incoming.readByte();
-                        if (c != header.getByteAt(state.ordinal())) {
+                        if (c != header.getByteAt(parsingState.ordinal())) {
                             parsingError = new TransportException(String.format(
-                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(state.ordinal()), parsingState));
+                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(parsingState.ordinal()), parsingState));
                             parsingState = State.ERROR;
                             break;
                         }
@@ -173,9 +183,9 @@ public class SaslFrameParser implements FrameParser {
                 case HEADER6:
                     if (incoming.isReadable()) {
                         byte c = incoming.readByte();
-                        if (c != header.getByteAt(state.ordinal())) {
+                        if (c != header.getByteAt(parsingState.ordinal())) {
                             parsingError = new TransportException(String.format(
-                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(state.ordinal()), parsingState));
+                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(parsingState.ordinal()), parsingState));
                             parsingState = State.ERROR;
                             break;
                         }
@@ -186,18 +196,18 @@ public class SaslFrameParser implements FrameParser {
                 case HEADER7:
                     if (incoming.isReadable()) {
                         byte c = incoming.readByte();
-                        if (c != header.getByteAt(state.ordinal())) {
+                        if (c != header.getByteAt(parsingState.ordinal())) {
                             parsingError = new TransportException(String.format(
-                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(state.ordinal()), parsingState));
+                                "AMQP header mismatch value %x, expecting %x. In state: %s", c, header.getByteAt(parsingState.ordinal()), parsingState));
                             parsingState = State.ERROR;
                             break;
-                        } else {
-                            sasl.handleHeaderFrame(context, headerFrame);
-                            parsingState = State.SIZE_0;
                         }
-                    } else {
-                        break;
+
+                        // A non-SASL header may complete the exchange, so the loop checks again before continuing
+                        parsingState = State.SIZE_0;
+                        sasl.handleHeaderFrame(context, new HeaderFrame(header));
                     }
+                    break;
                 case SIZE_0:
                     if (!input.isReadable()) {
                         break;
@@ -245,7 +255,7 @@ public class SaslFrameParser implements FrameParser {
                     }
 
                     if (input.getReadableBytes() < size - 4) {
-                        buffer = ProtonByteBufferAllocator.DEFAULT.allocate(size - 4, size - 4);
+                        buffer = context.getTransport().getBufferAllocator().allocate(size - 4, size - 4);
                         buffer.writeBytes(input);
                         parsingState = State.BUFFERING;
                         break;
@@ -263,6 +273,7 @@ public class SaslFrameParser implements FrameParser {
                     }
                 case PARSING:
 
+                    final int frameEnd = input.getReadIndex() + size - 4;
                     int dataOffset = (input.readByte() << 2) & 0x3FF;
 
                     if (dataOffset < 8) {
@@ -303,8 +314,8 @@ public class SaslFrameParser implements FrameParser {
 
                         final Binary payload;
 
-                        if (input.isReadable()) {
-                            byte[] payloadBytes = new byte[input.getReadableBytes()];
+                        if (input.getReadIndex() < frameEnd) {
+                            byte[] payloadBytes = new byte[frameEnd - input.getReadIndex()];
                             input.readBytes(payloadBytes);
                             payload = new Binary(payloadBytes);
                         } else {
@@ -314,7 +325,16 @@ public class SaslFrameParser implements FrameParser {
                         if (val instanceof SaslPerformative) {
                             SaslPerformative performative = (SaslPerformative) val;
                             SaslFrame saslFrame = new SaslFrame(performative, payload);
+                            if (context.getTransport().getMetrics() != null) {
+                                context.getTransport().getMetrics().recordSaslFrameIn();
+                            }
                             sasl.handleSaslFrame(context, saslFrame);
+
+                            if (buffer != null) {
+                                context.getTransport().getBufferAllocator().recycle(buffer);
+                                buffer = null;
+                            }
+
                             input = incoming;
                             parsingState = State.SIZE_0;
                         } else {
@@ -17,36 +17,62 @@
 package org.apache.qpid.proton4j.transport.sasl;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 
+import org.apache.qpid.proton4j.amqp.security.SaslPerformative;
+import org.apache.qpid.proton4j.amqp.transport.AMQPHeader;
 import org.apache.qpid.proton4j.buffer.ProtonBuffer;
 import org.apache.qpid.proton4j.codec.CodecFactory;
 import org.apache.qpid.proton4j.codec.Decoder;
 import org.apache.qpid.proton4j.codec.Encoder;
-import org.apache.qpid.proton4j.transport.Frame;
 import org.apache.qpid.proton4j.transport.HeaderFrame;
 import org.apache.qpid.proton4j.transport.ProtocolFrame;
 import org.apache.qpid.proton4j.transport.SaslFrame;
-import org.apache.qpid.proton4j.transport.TransportHandlerContext;
 import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.metrics.TransportMetrics;
 
 /**
  * Base class used for common portions of the SASL processing pipeline.
+ * <p>
+ * The handler sits between the IO end of the pipeline and the handler that encodes AMQP
+ * frames, so it reads the raw input ahead of the AMQP frame parser and sees the encoded
+ * AMQP output.  SASL frames are encoded and written by the handler itself.
+ * <p>
+ * Connection open is pipelined in both directions.  A client that has chosen its mechanism
+ * writes the SASL header and sasl-init ahead of its first AMQP output and then lets that
+ * output through without waiting for the outcome, so the AMQP header, Open, Begin and Attach
+ * travel in the same flight.  A client that has not chosen a mechanism holds its AMQP output
+ * until the init has been sent.  A server holds any input that follows the sasl-init until
+ * it sends the outcome and then processes it if authentication succeeded, so the whole open
+ * completes in one round trip.
  */
 public class SaslHandler extends TransportHandlerAdapter {
 
-    private Decoder saslDecoder = CodecFactory.getSaslDecoder();
-    private Encoder saslEncoder = CodecFactory.getSaslEncoder();
+    public static final int DEFAULT_MAX_SASL_FRAME_SIZE = 4096;
+
+    private static final int FRAME_DATA_OFFSET = 2;
+    private static final int INITIAL_FRAME_BUFFER_SIZE = 128;
+
+    private Decoder saslDecoder = CodecFactory.getSharedSaslDecoder();
+    private Encoder saslEncoder = CodecFactory.getSharedSaslEncoder();
 
     private final SaslFrameParser frameParser;
 
     private SaslContext saslContext;
+    private TransportHandlerContext context;
+
+    // AMQP output written before a client sent its init, and AMQP input read before a server sent its outcome
+    private final ArrayDeque<ProtonBuffer> heldOutput = new ArrayDeque<>(2);
+    private ProtonBuffer heldInput;
+    private boolean flushRequired;
 
     /*
      * The Handler must be create from the client or server methods to configure
      * the state correctly.
      */
     private SaslHandler() {
-        frameParser = new SaslFrameParser(saslDecoder);
+        frameParser = new SaslFrameParser(this, saslDecoder, DEFAULT_MAX_SASL_FRAME_SIZE);
     }
 
     public Encoder getSaslEndoer() {
@@ -69,6 +95,13 @@ public class SaslHandler extends TransportHandlerAdapter {
         return saslContext.isDone();
     }
 
+    /**
+     * @return the context of the SASL exchange, a SaslClientContext or SaslServerContext.
+     */
+    public SaslContext getSaslContext() {
+        return saslContext;
+    }
+
     public static SaslHandler client(SaslClientListener listener) {
         SaslHandler handler = new SaslHandler();
         SaslClientContext context = new SaslClientContext(handler, listener);
@@ -89,23 +122,46 @@ public class SaslHandler extends TransportHandlerAdapter {
 
     @Override
     public void handleRead(TransportHandlerContext context, ProtonBuffer buffer) {
+        this.context = context;
+
         if (isDone()) {
-            context.fireRead(buffer);
-        } else {
-            try {
-                frameParser.parse(context, buffer);
-            } catch (IOException e) {
-                // TODO - A more well defined exception API might allow for only
-                //        one error event method ?
-                context.fireDecodingError(e);
+            if (!saslContext.isFailed()) {
+                context.fireRead(buffer);
             }
+            return;
         }
+
+        try {
+            frameParser.parse(context, buffer);
+        } catch (IOException e) {
+            // TODO - A more well defined exception API might allow for only
+            //        one error event method ?
+            context.fireDecodingError(e);
+            return;
+        }
+
+        if (buffer.isReadable()) {
+            if (isDone()) {
+                if (!saslContext.isFailed()) {
+                    context.fireRead(buffer);
+                }
+            } else if (saslContext.isServer() && saslContext.initReceived) {
+                holdInput(buffer);
+            } else {
+                // TODO - Error type ?
+                context.fireFailed(new IllegalStateException(
+                    "Unexpected AMQP Header before SASL Authentication completed."));
+            }
+        }
+
+        flushIfRequired();
     }
 
     @Override
     public void handleHeaderFrame(TransportHandlerContext context, HeaderFrame header) {
         if (isDone()) {
             context.fireHeaderFrame(header);
+            return;
         }
 
         saslContext.handleHeaderFrame(context, header);
@@ -117,6 +173,7 @@ public class SaslHandler extends TransportHandlerAdapter {
             // TODO specific error for this case.
             context.fireFailed(new IllegalStateException(
                 "Unexpected SASL Frame: SASL processing has already completed"));
+            return;
         }
 
         frame.getBody().invoke(saslContext, context);
@@ -127,31 +184,120 @@ public class SaslHandler extends TransportHandlerAdapter {
         if (isDone()) {
             context.fireProtocolFrame(frame);
         } else {
-            // TODO - Pipelined Connect, hold frame for later
+            // Input that follows the SASL exchange is held as bytes before it reaches the frame parser
+            context.fireFailed(new IllegalStateException(
+                "Unexpected AMQP Frame before SASL Authentication completed."));
         }
     }
 
     @Override
-    public void transportEncodingError(TransportHandlerContext context, Throwable e) {
+    public void handleWrite(TransportHandlerContext context, ProtonBuffer buffer) {
+        this.context = context;
+
+        if (isDone() || saslContext.isServer()) {
+            context.fireWrite(buffer);
+        } else if (((SaslClientContext) saslContext).writeInitIfReady()) {
+            releaseHeldOutput();
+            context.fireWrite(buffer);
+        } else {
+            holdOutput(buffer);
+        }
     }
 
     @Override
-    public void transportDecodingError(TransportHandlerContext context, Throwable e) {
+    public void handleFlush(TransportHandlerContext context) {
+        flushRequired = false;
+        context.fireFlush();
     }
 
-    @Override
-    public void transportFailed(TransportHandlerContext context, Throwable e) {
+    //----- Output and input control used by the SASL contexts ----------------//
+
+    void writeHeader(AMQPHeader header) {
+        context.fireWrite(header.getBuffer());
+        flushRequired = true;
     }
 
-    @Override
-    public void handleWrite(TransportHandlerContext context, Frame<?> frame) {
+    void writeSaslFrame(SaslPerformative performative) {
+        final ProtonBuffer output = context.getTransport().getBufferAllocator().allocate(INITIAL_FRAME_BUFFER_SIZE);
+
+        output.writeInt(0);  // Size is filled in once the body has been encoded
+        output.writeByte(FRAME_DATA_OFFSET);
+        output.writeByte(SaslFrameParser.SASL_FRAME_TYPE);
+        output.writeShort((short) 0);
+        saslEncoder.writeObject(output, saslEncoder.newEncoderState(), performative);
+        output.setInt(0, output.getWriteIndex());
+
+        final TransportMetrics metrics = context.getTransport().getMetrics();
+        if (metrics != null) {
+            metrics.recordSaslFrameOut();
+        }
+
+        context.fireWrite(output);
+        flushRequired = true;
     }
 
-    @Override
-    public void handleWrite(TransportHandlerContext context, ProtonBuffer buffer) {
+    /**
+     * Passes input that belongs to the AMQP layer on to the rest of the pipeline.
+     *
+     * @param input
+     *      the AMQP input to process.
+     */
+    void replayInput(ProtonBuffer input) {
+        context.fireRead(input);
     }
 
-    @Override
-    public void handleFlush(TransportHandlerContext context) {
+    /**
+     * Writes out any AMQP output that was held until the sasl-init had been sent.
+     */
+    void releaseHeldOutput() {
+        if (!heldOutput.isEmpty()) {
+            ProtonBuffer output;
+            while ((output = heldOutput.poll()) != null) {
+                context.fireWrite(output);
+            }
+            flushRequired = true;
+        }
+    }
+
+    /**
+     * Called once a server has sent its outcome, the outcome is flushed and the input held
+     * since the sasl-init is processed, or dropped if authentication failed.
+     */
+    void saslCompleted() {
+        flushIfRequired();
+
+        if (heldInput != null) {
+            final ProtonBuffer input = heldInput;
+            heldInput = null;
+            try {
+                if (!saslContext.isFailed()) {
+                    context.fireRead(input);
+                }
+            } finally {
+                context.getTransport().getBufferAllocator().recycle(input);
+            }
+        }
+    }
+
+    //----- Internal implementation ------------------------------------------//
+
+    private void flushIfRequired() {
+        if (flushRequired) {
+            flushRequired = false;
+            context.fireFlush();
+        }
+    }
+
+    private void holdOutput(ProtonBuffer buffer) {
+        // The written buffer is owned by this handler until released so it is held as is
+        heldOutput.add(buffer);
+    }
+
+    private void holdInput(ProtonBuffer buffer) {
+        // The read buffer is only valid for this event so its bytes are copied into one of our own
+        if (heldInput == null) {
+            heldInput = context.getTransport().getBufferAllocator().allocate(buffer.getReadableBytes());
+        }
+        heldInput.writeBytes(buffer);
     }
 }
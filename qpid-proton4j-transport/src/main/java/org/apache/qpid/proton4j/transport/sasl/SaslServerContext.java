@@ -17,13 +17,15 @@
 package org.apache.qpid.proton4j.transport.sasl;
 
 import org.apache.qpid.proton4j.amqp.Symbol;
+import org.apache.qpid.proton4j.amqp.security.SaslCode;
 import org.apache.qpid.proton4j.amqp.security.SaslInit;
 import org.apache.qpid.proton4j.amqp.security.SaslMechanisms;
+import org.apache.qpid.proton4j.amqp.security.SaslOutcome;
 import org.apache.qpid.proton4j.amqp.security.SaslResponse;
 import org.apache.qpid.proton4j.amqp.transport.AMQPHeader;
 import org.apache.qpid.proton4j.transport.HeaderFrame;
-import org.apache.qpid.proton4j.transport.SaslFrame;
 import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.sasl.SaslConstants.SaslOutcomes;
 import org.apache.qpid.proton4j.transport.sasl.SaslConstants.SaslStates;
 
 public class SaslServerContext extends SaslContext {
@@ -119,7 +121,7 @@ public class SaslServerContext extends SaslContext {
 
     private void handleSaslHeader(TransportHandlerContext context, HeaderFrame header) {
         if (!headerWritten) {
-            context.fireWrite(AMQPHeader.getSASLHeader().getBuffer());
+            saslHandler.writeHeader(AMQPHeader.getSASLHeader());
             headerWritten = true;
         }
 
@@ -127,6 +129,7 @@ public class SaslServerContext extends SaslContext {
             // TODO - Error out on receive of another SASL Header.
             context.fireFailed(new IllegalStateException(
                 "Unexpected second SASL Header read before SASL Authentication completed."));
+            return;
         } else {
             headerReceived = true;
         }
@@ -138,8 +141,7 @@ public class SaslServerContext extends SaslContext {
         mechanisms.setSaslServerMechanisms(serverMechanisms);
 
         // Send the server mechanisms now.
-        SaslFrame frame = new SaslFrame(mechanisms, null);
-        context.fireWrite(frame);
+        saslHandler.writeSaslFrame(mechanisms);
         mechanismsSent = true;
         state = SaslStates.PN_SASL_STEP;
     }
@@ -149,7 +151,7 @@ public class SaslServerContext extends SaslContext {
             if (isAllowNonSasl()) {
                 // Set proper outcome etc.
                 done = true;
-                context.fireHeaderFrame(header);
+                saslHandler.replayInput(header.getBody().getBuffer());
             } else {
                 // TODO - Error type ?
                 context.fireFailed(new IllegalStateException(
@@ -162,6 +164,39 @@ public class SaslServerContext extends SaslContext {
         }
     }
 
+    //----- Outcome ----------------------------------------------------------//
+
+    /**
+     * Sends the outcome of the exchange to the client and completes it.  This may be called
+     * from {@link SaslServerListener#onSaslInit(SaslServerContext)} or at any later time, any
+     * AMQP input the client pipelined behind its sasl-init is held until the outcome is sent
+     * and then processed if authentication succeeded.
+     *
+     * @param outcome
+     *      the outcome of the authentication.
+     */
+    public void sendOutcome(SaslOutcomes outcome) {
+        if (outcome == null || outcome == SaslOutcomes.PN_SASL_NONE) {
+            throw new IllegalArgumentException("A SASL outcome must be given");
+        }
+        if (!initReceived) {
+            throw new IllegalStateException("Cannot send a SASL Outcome before the SASL Init has been received");
+        }
+        if (done) {
+            throw new IllegalStateException("SASL Outcome already sent to remote");
+        }
+
+        SaslOutcome saslOutcome = new SaslOutcome();
+        saslOutcome.setCode(SaslCode.values()[outcome.getCode()]);
+        saslHandler.writeSaslFrame(saslOutcome);
+
+        this.outcome = outcome;
+        this.state = classifyStateFromOutcome(outcome);
+        this.done = true;
+
+        saslHandler.saslCompleted();
+    }
+
     @Override
     public void handleInit(SaslInit saslInit, TransportHandlerContext context) {
         hostname = saslInit.getHostname();
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.handlers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.Symbol;
+import org.apache.qpid.proton4j.amqp.security.SaslInit;
+import org.apache.qpid.proton4j.amqp.transport.AMQPHeader;
+import org.apache.qpid.proton4j.amqp.transport.Performative;
+import org.apache.qpid.proton4j.amqp.transport.Transfer;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.codec.CodecFactory;
+import org.apache.qpid.proton4j.codec.Decoder;
+import org.apache.qpid.proton4j.codec.DecoderState;
+import org.apache.qpid.proton4j.transport.EmptyFrame;
+import org.apache.qpid.proton4j.transport.HeaderFrame;
+import org.apache.qpid.proton4j.transport.ProtocolFrame;
+import org.apache.qpid.proton4j.transport.SaslFrame;
+import org.apache.qpid.proton4j.transport.Transport;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.TransportListener;
+import org.apache.qpid.proton4j.transport.impl.ProtonTransport;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the frame writing and output coalescing handler
+ */
+public class FrameWritingHandlerTest {
+
+    private ProtonTransport transport;
+    private FrameWritingHandler writer;
+    private CapturingHandler capture;
+
+    @Before
+    public void setUp() {
+        transport = new ProtonTransport();
+        writer = new FrameWritingHandler();
+        capture = new CapturingHandler();
+
+        transport.getPipeline().addFirst("io", capture);
+        transport.getPipeline().addLast("writer", writer);
+    }
+
+    @Test
+    public void testFramesBetweenFlushesAreCoalesced() throws Exception {
+        final int count = 32;
+
+        for (int i = 0; i < count; ++i) {
+            transport.write(createTransfer(i, new byte[] { (byte) i, 1, 2, 3 }));
+        }
+
+        assertTrue(capture.writes.isEmpty());
+        assertTrue(writer.getPendingBytes() > 0);
+
+        transport.flush();
+
+        assertEquals(1, capture.writes.size());
+        assertEquals(1, capture.flushes);
+        assertEquals(0, writer.getPendingBytes());
+
+        ProtonBuffer output = capture.writes.get(0);
+        Decoder decoder = CodecFactory.getDecoder();
+        DecoderState state = decoder.newDecoderState();
+
+        for (int i = 0; i < count; ++i) {
+            int frameStart = output.getReadIndex();
+            int size = output.readInt();
+            assertEquals(2, output.readByte());
+            assertEquals(FrameWritingHandler.AMQP_FRAME_TYPE, output.readByte());
+            assertEquals(1, output.readShort());
+
+            Transfer transfer = (Transfer) decoder.readObject(output, state);
+            assertEquals(i, transfer.getDeliveryId());
+
+            int payloadSize = size - (output.getReadIndex() - frameStart);
+            assertEquals(4, payloadSize);
+            assertEquals((byte) i, output.readByte());
+            output.setReadIndex(output.getReadIndex() + 3);
+        }
+
+        assertTrue(!output.isReadable());
+    }
+
+    @Test
+    public void testFlushWithNothingPendingOnlyPropagatesFlush() throws Exception {
+        transport.flush();
+
+        assertTrue(capture.writes.isEmpty());
+        assertEquals(1, capture.flushes);
+    }
+
+    @Test
+    public void testOutputWrittenEarlyWhenBufferSizeExceeded() throws Exception {
+        writer.setOutputBufferSize(64);
+
+        for (int i = 0; i < 8; ++i) {
+            transport.write(createTransfer(i, new byte[48]));
+        }
+
+        assertEquals(8, capture.writes.size());
+        assertEquals(0, capture.flushes);
+
+        transport.flush();
+
+        assertEquals(8, capture.writes.size());
+        assertEquals(1, capture.flushes);
+    }
+
+    @Test
+    public void testWriteHeaderSaslAndEmptyFrames() throws Exception {
+        SaslInit init = new SaslInit();
+        init.setMechanism(Symbol.valueOf("PLAIN"));
+
+        transport.getPipeline().fireWrite(new HeaderFrame(AMQPHeader.getSASLHeader()));
+        transport.getPipeline().fireWrite(new SaslFrame(init, null));
+        transport.getPipeline().fireWrite(new EmptyFrame());
+        transport.flush();
+
+        assertEquals(1, capture.writes.size());
+        ProtonBuffer output = capture.writes.get(0);
+
+        for (int i = 0; i < 8; ++i) {
+            assertEquals(AMQPHeader.getSASLHeader().getByteAt(i), output.readByte());
+        }
+
+        int frameStart = output.getReadIndex();
+        int size = output.readInt();
+        assertEquals(2, output.readByte());
+        assertEquals(FrameWritingHandler.SASL_FRAME_TYPE, output.readByte());
+        output.readShort();
+
+        Decoder decoder = CodecFactory.getSaslDecoder();
+        SaslInit decoded = (SaslInit) decoder.readObject(output, decoder.newDecoderState());
+        assertEquals(init.getMechanism(), decoded.getMechanism());
+        assertEquals(size, output.getReadIndex() - frameStart);
+
+        assertEquals(8, output.readInt());
+        assertEquals(2, output.readByte());
+        assertEquals(FrameWritingHandler.AMQP_FRAME_TYPE, output.readByte());
+        assertEquals(0, output.readShort());
+        assertTrue(!output.isReadable());
+    }
+
+    @Test
+    public void testEncodingErrorDropsOnlyTheFailedFrame() throws Exception {
+        final List<Throwable> errors = new ArrayList<>();
+        transport.getPipeline().addLast("errors", new TransportHandlerAdapter() {
+
+            @Override
+            public void transportEncodingError(TransportHandlerContext context, Throwable e) {
+                errors.add(e);
+            }
+        });
+
+        transport.write(createTransfer(1, null));
+        int pending = writer.getPendingBytes();
+
+        transport.write(new ProtocolFrame(new UnknownPerformative(), (short) 1, null));
+
+        assertEquals(1, errors.size());
+        assertEquals(pending, writer.getPendingBytes());
+    }
+
+    @Test
+    public void testUnhandledWriteFailsTransport() throws Exception {
+        final List<Throwable> failures = new ArrayList<>();
+        transport.setTransportListener(new TransportListener() {
+
+            @Override
+            public void onTransportFailed(Transport transport, Throwable cause) {
+                failures.add(cause);
+            }
+        });
+
+        transport.getPipeline().removeFirst();
+        transport.write(createTransfer(1, null));
+        assertTrue(failures.isEmpty());
+
+        // Both the coalesced output and the flush itself reach the unhandled boundary
+        transport.flush();
+        assertEquals(2, failures.size());
+        assertNotNull(failures.get(0).getMessage());
+    }
+
+    private static ProtocolFrame createTransfer(int deliveryId, byte[] payload) {
+        Transfer transfer = new Transfer();
+        transfer.setHandle(0);
+        transfer.setDeliveryId(deliveryId);
+        transfer.setDeliveryTag(new Binary(new byte[] { (byte) deliveryId }));
+
+        return new ProtocolFrame(transfer, (short) 1, payload == null ? null : new Binary(payload));
+    }
+
+    /**
+     * A performative that no encoder has been registered for.
+     */
+    private static class UnknownPerformative implements Performative {
+
+        @Override
+        public PerformativeType getPerformativeType() {
+            return null;
+        }
+
+        @Override
+        public <E> void invoke(PerformativeHandler<E> handler, Binary payload, E context) {
+        }
+    }
+
+    private static class CapturingHandler extends TransportHandlerAdapter {
+
+        private final List<ProtonBuffer> writes = new ArrayList<>();
+        private int flushes;
+
+        @Override
+        public void handleWrite(TransportHandlerContext context, ProtonBuffer buffer) {
+            writes.add(buffer);
+        }
+
+        @Override
+        public void handleFlush(TransportHandlerContext context) {
+            flushes++;
+        }
+    }
+}
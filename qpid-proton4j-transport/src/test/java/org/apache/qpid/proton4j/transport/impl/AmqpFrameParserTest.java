@@ -0,0 +1,544 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.AMQPHeader;
+import org.apache.qpid.proton4j.amqp.transport.Transfer;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
+import org.apache.qpid.proton4j.codec.CodecFactory;
+import org.apache.qpid.proton4j.codec.Encoder;
+import org.apache.qpid.proton4j.transport.EmptyFrame;
+import org.apache.qpid.proton4j.transport.HeaderFrame;
+import org.apache.qpid.proton4j.transport.ProtocolFrame;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.handlers.FrameParsingHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the AMQP frame parser
+ */
+public class AmqpFrameParserTest {
+
+    private ProtonTransport transport;
+    private AmqpFrameParser parser;
+    private TransportHandlerAdapter framesHandler;
+    private final List<ProtocolFrame> frames = new ArrayList<>();
+    private final List<Object> bodies = new ArrayList<>();
+    private final List<byte[]> payloadArrays = new ArrayList<>();
+    private final List<byte[]> payloads = new ArrayList<>();
+    private final List<AMQPHeader> headers = new ArrayList<>();
+    private final List<Throwable> decodeErrors = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        transport = new ProtonTransport();
+        parser = new AmqpFrameParser(CodecFactory.getDecoder(), 65536);
+
+        transport.getPipeline().addLast("parser", new FrameParsingHandler(parser));
+
+        framesHandler = new TransportHandlerAdapter() {
+
+            @Override
+            public void handleHeaderFrame(TransportHandlerContext context, HeaderFrame header) {
+                headers.add(header.getBody());
+            }
+
+            @Override
+            public void transportDecodingError(TransportHandlerContext context, Throwable e) {
+                decodeErrors.add(e);
+            }
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+                // The frame is only valid during this event so capture what the tests need.
+                frames.add(frame);
+                bodies.add(frame.getBody());
+
+                Binary payload = frame.getPayload();
+                payloadArrays.add(payload == null ? null : payload.getArray());
+                payloads.add(payload == null ? null : payload.copy().getArray());
+            }
+        };
+
+        transport.getPipeline().addLast("frames", framesHandler);
+    }
+
+    @Test
+    public void testPayloadIsViewOfIncomingBuffer() throws Exception {
+        ProtonBuffer input = ProtonByteBufferAllocator.DEFAULT.allocate();
+        writeTransfer(input, 1, new byte[] { 1, 2, 3 });
+        writeTransfer(input, 2, new byte[] { 4, 5 });
+
+        transport.processIncoming(input);
+
+        assertEquals(2, frames.size());
+        assertEquals(1, ((Transfer) bodies.get(0)).getDeliveryId());
+        assertEquals(2, ((Transfer) bodies.get(1)).getDeliveryId());
+
+        assertSame(input.getArray(), payloadArrays.get(0));
+        assertSame(input.getArray(), payloadArrays.get(1));
+
+        assertEquals(new Binary(new byte[] { 1, 2, 3 }), new Binary(payloads.get(0)));
+        assertEquals(new Binary(new byte[] { 4, 5 }), new Binary(payloads.get(1)));
+        assertTrue(!input.isReadable());
+    }
+
+    @Test
+    public void testFrameSplitAcrossReads() throws Exception {
+        ProtonBuffer frameBytes = ProtonByteBufferAllocator.DEFAULT.allocate();
+        writeTransfer(frameBytes, 1, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        writeTransfer(frameBytes, 2, null);
+
+        byte[] encoded = new byte[frameBytes.getReadableBytes()];
+        frameBytes.readBytes(encoded);
+
+        // Deliver one byte at a time to exercise every partial state
+        for (byte value : encoded) {
+            transport.processIncoming(ProtonByteBufferAllocator.DEFAULT.wrap(new byte[] { value }));
+        }
+
+        assertEquals(2, frames.size());
+        assertNotSame(encoded, payloadArrays.get(0));
+        assertEquals(new Binary(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }), new Binary(payloads.get(0)));
+        assertNull(payloads.get(1));
+    }
+
+    @Test
+    public void testProtocolFrameInstanceIsReused() throws Exception {
+        ProtonBuffer input = ProtonByteBufferAllocator.DEFAULT.allocate();
+        writeTransfer(input, 1, new byte[] { 1 });
+        writeTransfer(input, 2, new byte[] { 2 });
+
+        transport.processIncoming(input);
+
+        assertEquals(2, frames.size());
+        assertSame(frames.get(0), frames.get(1));
+        assertNotSame(bodies.get(0), bodies.get(1));
+
+        // Nothing from the last frame is retained once its event has been delivered
+        assertNull(frames.get(1).getBody());
+        assertNull(frames.get(1).getPayload());
+    }
+
+    @Test
+    public void testCopyOfFrameOutlivesDispatch() throws Exception {
+        final List<ProtocolFrame> copies = new ArrayList<>();
+
+        transport.getPipeline().addLast("copier", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+                copies.add(frame.copy());
+            }
+        });
+
+        transport.getPipeline().remove("frames");
+
+        ProtonBuffer input = ProtonByteBufferAllocator.DEFAULT.allocate();
+        writeTransfer(input, 1, new byte[] { 1, 2, 3 });
+        writeTransfer(input, 2, new byte[] { 4 });
+
+        transport.processIncoming(input);
+
+        assertEquals(2, copies.size());
+        assertNotSame(copies.get(0), copies.get(1));
+        assertEquals(1, ((Transfer) copies.get(0).getBody()).getDeliveryId());
+        assertEquals(1, copies.get(0).getChannel());
+        assertNotSame(input.getArray(), copies.get(0).getPayload().getArray());
+        assertEquals(new Binary(new byte[] { 1, 2, 3 }), copies.get(0).getPayload());
+        assertEquals(new Binary(new byte[] { 4 }), copies.get(1).getPayload());
+    }
+
+    @Test
+    public void testStagingBufferComesFromTransportAllocatorAndIsRecycled() throws Exception {
+        final List<ProtonBuffer> allocated = new ArrayList<>();
+        final List<ProtonBuffer> recycled = new ArrayList<>();
+
+        transport.setBufferAllocator(new ProtonByteBufferAllocator() {
+
+            @Override
+            public ProtonBuffer allocate(int initialCapacity, int maximumCapacity) {
+                ProtonBuffer buffer = super.allocate(initialCapacity, maximumCapacity);
+                allocated.add(buffer);
+                return buffer;
+            }
+
+            @Override
+            public void recycle(ProtonBuffer buffer) {
+                recycled.add(buffer);
+            }
+        });
+
+        transport.getPipeline().addLast("check", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+                assertTrue("Staging buffer recycled before dispatch completed", recycled.isEmpty());
+            }
+        });
+
+        ProtonBuffer frameBytes = ProtonByteBufferAllocator.DEFAULT.allocate();
+        writeTransfer(frameBytes, 1, new byte[] { 1, 2, 3 });
+
+        ProtonBuffer first = ProtonByteBufferAllocator.DEFAULT.allocate();
+        first.writeBytes(frameBytes, 10);
+
+        transport.processIncoming(first);
+        assertEquals(1, allocated.size());
+        assertTrue(recycled.isEmpty());
+
+        transport.processIncoming(frameBytes);
+        assertEquals(1, frames.size());
+        assertEquals(1, recycled.size());
+        assertSame(allocated.get(0), recycled.get(0));
+    }
+
+    @Test
+    public void testStagingBufferRecycledWhenStagedFrameFailsToParse() throws Exception {
+        final List<ProtonBuffer> allocated = new ArrayList<>();
+        final List<ProtonBuffer> recycled = new ArrayList<>();
+
+        transport.setBufferAllocator(createTrackingAllocator(allocated, recycled));
+
+        ProtonBuffer frameBytes = ProtonByteBufferAllocator.DEFAULT.allocate();
+        writeTransfer(frameBytes, 1, new byte[] { 1, 2, 3 });
+        frameBytes.setByte(5, 1);  // Unknown frame type
+
+        ProtonBuffer first = ProtonByteBufferAllocator.DEFAULT.allocate();
+        first.writeBytes(frameBytes, 10);
+
+        transport.processIncoming(first);
+        assertEquals(1, allocated.size());
+        assertTrue(recycled.isEmpty());
+
+        transport.processIncoming(frameBytes);
+        assertTrue(frames.isEmpty());
+        assertEquals(1, decodeErrors.size());
+        assertEquals(1, recycled.size());
+        assertSame(allocated.get(0), recycled.get(0));
+    }
+
+    @Test
+    public void testStagingBufferRecycledOnReset() throws Exception {
+        final List<ProtonBuffer> allocated = new ArrayList<>();
+        final List<ProtonBuffer> recycled = new ArrayList<>();
+
+        transport.setBufferAllocator(createTrackingAllocator(allocated, recycled));
+
+        ProtonBuffer frameBytes = ProtonByteBufferAllocator.DEFAULT.allocate();
+        writeTransfer(frameBytes, 1, new byte[] { 1, 2, 3 });
+
+        ProtonBuffer first = ProtonByteBufferAllocator.DEFAULT.allocate();
+        first.writeBytes(frameBytes, 10);
+
+        transport.processIncoming(first);
+        assertEquals(1, allocated.size());
+        assertTrue(recycled.isEmpty());
+
+        parser.reset();
+        assertEquals(1, recycled.size());
+        assertSame(allocated.get(0), recycled.get(0));
+
+        // A second reset has nothing left to hand back
+        parser.reset();
+        assertEquals(1, recycled.size());
+    }
+
+    @Test
+    public void testTransportAlwaysHasAllocator() {
+        assertSame(ProtonByteBufferAllocator.DEFAULT, transport.getBufferAllocator());
+        transport.setBufferAllocator(null);
+        assertSame(ProtonByteBufferAllocator.DEFAULT, transport.getBufferAllocator());
+    }
+
+    @Test
+    public void testEmptyFrame() throws Exception {
+        ProtonBuffer input = ProtonByteBufferAllocator.DEFAULT.allocate();
+        input.writeInt(8);
+        input.writeByte(2);
+        input.writeByte(0);
+        input.writeShort((short) 0);
+
+        transport.processIncoming(input);
+
+        assertEquals(1, frames.size());
+        assertTrue(frames.get(0) instanceof EmptyFrame);
+    }
+
+    @Test
+    public void testHeaderAndFramesInSingleRead() throws Exception {
+        useHeaderExpectingParser();
+
+        ProtonBuffer input = ProtonByteBufferAllocator.DEFAULT.allocate();
+        input.writeBytes(AMQPHeader.getRawAMQPHeader().getBuffer());
+        writeTransfer(input, 1, new byte[] { 1, 2 });
+        writeEmptyFrame(input);
+        writeTransfer(input, 2, null);
+
+        transport.processIncoming(input);
+
+        assertEquals(1, headers.size());
+        assertEquals(0, headers.get(0).getProtocolId());
+        assertEquals(3, frames.size());
+        assertEquals(1, ((Transfer) bodies.get(0)).getDeliveryId());
+        assertEquals(new Binary(new byte[] { 1, 2 }), new Binary(payloads.get(0)));
+        assertTrue(frames.get(1) instanceof EmptyFrame);
+        assertEquals(2, ((Transfer) bodies.get(2)).getDeliveryId());
+        assertTrue(decodeErrors.isEmpty());
+    }
+
+    @Test
+    public void testHeaderAndFramesDeliveredByteByByte() throws Exception {
+        useHeaderExpectingParser();
+
+        ProtonBuffer input = ProtonByteBufferAllocator.DEFAULT.allocate();
+        input.writeBytes(AMQPHeader.getRawAMQPHeader().getBuffer());
+        writeEmptyFrame(input);
+        writeTransfer(input, 1, new byte[] { 1, 2, 3 });
+
+        while (input.isReadable()) {
+            transport.processIncoming(ProtonByteBufferAllocator.DEFAULT.wrap(new byte[] { input.readByte() }));
+        }
+
+        assertEquals(1, headers.size());
+        assertEquals(2, frames.size());
+        assertEquals(1, ((Transfer) bodies.get(1)).getDeliveryId());
+        assertEquals(new Binary(new byte[] { 1, 2, 3 }), new Binary(payloads.get(1)));
+        assertTrue(decodeErrors.isEmpty());
+    }
+
+    @Test
+    public void testHeaderMismatchReportsOffendingByte() throws Exception {
+        useHeaderExpectingParser();
+
+        transport.processIncoming(AMQPHeader.getSASLHeader().getBuffer());
+
+        assertTrue(headers.isEmpty());
+        assertEquals(1, decodeErrors.size());
+        assertTrue(decodeErrors.get(0).getMessage(), decodeErrors.get(0).getMessage().contains("value 3, expecting 0"));
+        assertTrue(decodeErrors.get(0).getMessage().contains("HEADER4"));
+    }
+
+    @Test
+    public void testEmptyFramesBackToBack() throws Exception {
+        ProtonBuffer input = ProtonByteBufferAllocator.DEFAULT.allocate();
+        writeEmptyFrame(input);
+        writeEmptyFrame(input);
+        writeEmptyFrame(input);
+
+        transport.processIncoming(input);
+
+        assertEquals(3, frames.size());
+        assertTrue(!input.isReadable());
+    }
+
+    @Test
+    public void testFrameSplitAfterFrameHeader() throws Exception {
+        ProtonBuffer frameBytes = ProtonByteBufferAllocator.DEFAULT.allocate();
+        writeTransfer(frameBytes, 7, new byte[] { 9, 8, 7 });
+
+        ProtonBuffer first = ProtonByteBufferAllocator.DEFAULT.allocate();
+        first.writeBytes(frameBytes, 9);
+
+        transport.processIncoming(first);
+        assertTrue(frames.isEmpty());
+
+        transport.processIncoming(frameBytes);
+        assertEquals(1, frames.size());
+        assertEquals(7, ((Transfer) bodies.get(0)).getDeliveryId());
+        assertEquals(new Binary(new byte[] { 9, 8, 7 }), new Binary(payloads.get(0)));
+    }
+
+    @Test
+    public void testBatchDispatchDeliversAllFramesOfReadInOneEvent() throws Exception {
+        final List<Integer> batches = insertBatchRecorder();
+        parser.setBatchSize(16);
+
+        ProtonBuffer input = ProtonByteBufferAllocator.DEFAULT.allocate();
+        writeTransfer(input, 1, new byte[] { 1 });
+        writeEmptyFrame(input);
+        writeTransfer(input, 2, new byte[] { 2, 2 });
+
+        transport.processIncoming(input);
+
+        assertEquals(1, batches.size());
+        assertEquals(3, batches.get(0).intValue());
+
+        // Handlers that only handle single frames still see every frame in order
+        assertEquals(3, frames.size());
+        assertEquals(1, ((Transfer) bodies.get(0)).getDeliveryId());
+        assertTrue(frames.get(1) instanceof EmptyFrame);
+        assertEquals(2, ((Transfer) bodies.get(2)).getDeliveryId());
+        assertEquals(new Binary(new byte[] { 2, 2 }), new Binary(payloads.get(2)));
+    }
+
+    @Test
+    public void testBatchDispatchHonorsBatchSize() throws Exception {
+        final List<Integer> batches = insertBatchRecorder();
+        parser.setBatchSize(2);
+
+        ProtonBuffer input = ProtonByteBufferAllocator.DEFAULT.allocate();
+        for (int i = 1; i <= 5; ++i) {
+            writeTransfer(input, i, null);
+        }
+
+        transport.processIncoming(input);
+
+        assertEquals(3, batches.size());
+        assertEquals(2, batches.get(0).intValue());
+        assertEquals(2, batches.get(1).intValue());
+        assertEquals(1, batches.get(2).intValue());
+        assertEquals(5, frames.size());
+        assertEquals(5, ((Transfer) bodies.get(4)).getDeliveryId());
+    }
+
+    @Test
+    public void testBatchDispatchesBufferedFrameBeforeRecycle() throws Exception {
+        final List<Integer> batches = insertBatchRecorder();
+        final List<ProtonBuffer> recycled = new ArrayList<>();
+
+        transport.setBufferAllocator(new ProtonByteBufferAllocator() {
+
+            @Override
+            public void recycle(ProtonBuffer buffer) {
+                assertEquals("Buffered frame not dispatched before recycle", 1, frames.size());
+                recycled.add(buffer);
+            }
+        });
+
+        parser.setBatchSize(16);
+
+        ProtonBuffer frameBytes = ProtonByteBufferAllocator.DEFAULT.allocate();
+        writeTransfer(frameBytes, 1, new byte[] { 1, 2, 3 });
+        writeTransfer(frameBytes, 2, new byte[] { 4 });
+        writeTransfer(frameBytes, 3, new byte[] { 5 });
+
+        ProtonBuffer first = ProtonByteBufferAllocator.DEFAULT.allocate();
+        first.writeBytes(frameBytes, 10);
+
+        transport.processIncoming(first);
+        assertTrue(batches.isEmpty());
+
+        transport.processIncoming(frameBytes);
+
+        assertEquals(2, batches.size());
+        assertEquals(1, batches.get(0).intValue());
+        assertEquals(2, batches.get(1).intValue());
+        assertEquals(1, recycled.size());
+        assertEquals(new Binary(new byte[] { 1, 2, 3 }), new Binary(payloads.get(0)));
+        assertEquals(new Binary(new byte[] { 5 }), new Binary(payloads.get(2)));
+    }
+
+    @Test
+    public void testBatchDeliversFramesParsedBeforeError() throws Exception {
+        final List<Integer> batches = insertBatchRecorder();
+        parser.setBatchSize(16);
+
+        ProtonBuffer input = ProtonByteBufferAllocator.DEFAULT.allocate();
+        writeTransfer(input, 1, null);
+        input.writeInt(4);
+        input.writeInt(0);
+
+        transport.processIncoming(input);
+
+        assertEquals(1, batches.size());
+        assertEquals(1, frames.size());
+        assertEquals(1, decodeErrors.size());
+    }
+
+    private static ProtonByteBufferAllocator createTrackingAllocator(final List<ProtonBuffer> allocated, final List<ProtonBuffer> recycled) {
+        return new ProtonByteBufferAllocator() {
+
+            @Override
+            public ProtonBuffer allocate(int initialCapacity, int maximumCapacity) {
+                ProtonBuffer buffer = super.allocate(initialCapacity, maximumCapacity);
+                allocated.add(buffer);
+                return buffer;
+            }
+
+            @Override
+            public void recycle(ProtonBuffer buffer) {
+                recycled.add(buffer);
+            }
+        };
+    }
+
+    private void useHeaderExpectingParser() {
+        parser = new AmqpFrameParser(CodecFactory.getDecoder(), 65536, true);
+
+        transport.getPipeline().remove("parser");
+        transport.getPipeline().addFirst("parser", new FrameParsingHandler(parser));
+    }
+
+    private List<Integer> insertBatchRecorder() {
+        final List<Integer> batches = new ArrayList<>();
+
+        // The batch recorder sits between the parser and the frame capturing handler
+        transport.getPipeline().remove("frames");
+        transport.getPipeline().addLast("batches", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrames(TransportHandlerContext context, ProtocolFrame[] frames, int count) {
+                batches.add(count);
+                context.fireProtocolFrames(frames, count);
+            }
+        });
+        transport.getPipeline().addLast("frames", framesHandler);
+
+        return batches;
+    }
+
+    private static void writeEmptyFrame(ProtonBuffer buffer) {
+        buffer.writeInt(8);
+        buffer.writeByte(2);
+        buffer.writeByte(0);
+        buffer.writeShort((short) 0);
+    }
+
+    private static void writeTransfer(ProtonBuffer buffer, int deliveryId, byte[] payload) {
+        Encoder encoder = CodecFactory.getEncoder();
+
+        Transfer transfer = new Transfer();
+        transfer.setHandle(0);
+        transfer.setDeliveryId(deliveryId);
+        transfer.setDeliveryTag(new Binary(new byte[] { (byte) deliveryId }));
+
+        int frameStart = buffer.getWriteIndex();
+        buffer.writeInt(0);
+        buffer.writeByte(2);
+        buffer.writeByte(0);
+        buffer.writeShort((short) 1);
+        encoder.writeObject(buffer, encoder.newEncoderState(), transfer);
+        if (payload != null) {
+            buffer.writeBytes(payload);
+        }
+        buffer.setInt(frameStart, buffer.getWriteIndex() - frameStart);
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
+import org.apache.qpid.proton4j.transport.EmptyFrame;
+import org.apache.qpid.proton4j.transport.Frame;
+import org.apache.qpid.proton4j.transport.HeaderFrame;
+import org.apache.qpid.proton4j.transport.ProtocolFrame;
+import org.apache.qpid.proton4j.transport.SaslFrame;
+import org.apache.qpid.proton4j.transport.Transport;
+import org.apache.qpid.proton4j.transport.TransportHandler;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.TransportListener;
+import org.junit.Test;
+
+/**
+ * Tests for event dispatch through the transport pipeline
+ */
+public class ProtonTransportPipelineTest {
+
+    @Test
+    public void testAdapterWithNoOverridesIsSkippedForEveryEvent() {
+        assertEquals(0, TransportHandlerMask.mask(new TransportHandlerAdapter() {}));
+    }
+
+    @Test
+    public void testMaskContainsOnlyOverriddenEvents() {
+        TransportHandler handler = new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+            }
+
+            @Override
+            public void handleWrite(TransportHandlerContext context, ProtonBuffer buffer) {
+            }
+        };
+
+        assertEquals(TransportHandlerMask.MASK_PROTOCOL_FRAME | TransportHandlerMask.MASK_WRITE_BUFFER,
+                     TransportHandlerMask.mask(handler));
+    }
+
+    @Test
+    public void testMaskIncludesOverridesFromIntermediateClasses() {
+        assertEquals(TransportHandlerMask.MASK_READ, TransportHandlerMask.mask(new ReadingHandler() {}));
+    }
+
+    @Test
+    public void testBatchEventLeftToDefaultIsSkipped() {
+        TransportHandler single = new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+            }
+        };
+
+        TransportHandler batched = new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrames(TransportHandlerContext context, ProtocolFrame[] frames, int count) {
+            }
+        };
+
+        assertEquals(TransportHandlerMask.MASK_PROTOCOL_FRAME, TransportHandlerMask.mask(single));
+        assertEquals(TransportHandlerMask.MASK_PROTOCOL_FRAMES, TransportHandlerMask.mask(batched));
+    }
+
+    @Test
+    public void testBatchSplitIntoSingleFramesForSingleFrameHandlers() {
+        ProtonTransport transport = new ProtonTransport();
+        final List<String> events = new ArrayList<>();
+
+        transport.getPipeline().addLast("batched", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrames(TransportHandlerContext context, ProtocolFrame[] frames, int count) {
+                events.add("batch:" + count);
+                context.fireProtocolFrames(frames, count);
+            }
+        });
+        transport.getPipeline().addLast("single", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+                events.add("frame");
+                context.fireProtocolFrame(frame);
+            }
+        });
+        transport.getPipeline().addLast("batched-again", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrames(TransportHandlerContext context, ProtocolFrame[] frames, int count) {
+                events.add("late-batch:" + count);
+            }
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+                events.add("late-frame");
+            }
+        });
+
+        ProtocolFrame[] frames = new ProtocolFrame[] { new EmptyFrame(), new EmptyFrame(), null };
+        transport.getPipeline().fireProtocolFrames(frames, 2);
+
+        assertEquals(5, events.size());
+        assertEquals("batch:2", events.get(0));
+        assertEquals("frame", events.get(1));
+        assertEquals("late-frame", events.get(2));
+        assertEquals("frame", events.get(3));
+        assertEquals("late-frame", events.get(4));
+    }
+
+    @Test
+    public void testHandlerNotExtendingAdapterReceivesEveryEvent() {
+        assertEquals(TransportHandlerMask.MASK_ALL, TransportHandlerMask.mask(new ForwardingHandler()));
+    }
+
+    @Test
+    public void testEventsReachHandlersAcrossSkippedContexts() {
+        ProtonTransport transport = new ProtonTransport();
+        final List<String> events = new ArrayList<>();
+
+        transport.getPipeline().addLast("skipped-1", new TransportHandlerAdapter() {});
+        transport.getPipeline().addLast("reader", new ReadingHandler() {
+
+            @Override
+            public void handleRead(TransportHandlerContext context, ProtonBuffer buffer) {
+                events.add("read");
+                context.fireProtocolFrame(new EmptyFrame());
+            }
+        });
+        transport.getPipeline().addLast("skipped-2", new TransportHandlerAdapter() {});
+        transport.getPipeline().addLast("forwarding", new ForwardingHandler());
+        transport.getPipeline().addLast("frames", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+                events.add("frame");
+                context.fireFlush();
+            }
+
+            @Override
+            public void handleFlush(TransportHandlerContext context) {
+                events.add("tail-flush");
+                context.fireFlush();
+            }
+        });
+        transport.getPipeline().addFirst("head", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleFlush(TransportHandlerContext context) {
+                events.add("flush");
+            }
+        });
+
+        transport.getPipeline().fireRead(ProtonByteBufferAllocator.DEFAULT.allocate());
+        transport.getPipeline().fireFlush();
+
+        assertEquals(5, events.size());
+        assertEquals("read", events.get(0));
+        assertEquals("frame", events.get(1));
+        assertEquals("flush", events.get(2));
+        assertEquals("tail-flush", events.get(3));
+        assertEquals("flush", events.get(4));
+    }
+
+    @Test
+    public void testUnhandledEventsReportSharedFailure() {
+        final List<Throwable> failures = new ArrayList<>();
+
+        ProtonTransport transport = createUnhandledTransport(failures);
+
+        transport.getPipeline().fireFlush();
+        transport.getPipeline().fireFlush();
+
+        assertEquals(2, failures.size());
+        assertSame(failures.get(0), failures.get(1));
+        assertTrue(failures.get(0) instanceof IOException);
+        assertEquals(0, failures.get(0).getStackTrace().length);
+    }
+
+    @Test
+    public void testUnhandledEventFailuresNotSharedBetweenPipelines() {
+        final List<Throwable> failures = new ArrayList<>();
+
+        createUnhandledTransport(failures).getPipeline().fireFlush();
+        createUnhandledTransport(failures).getPipeline().fireFlush();
+
+        assertEquals(2, failures.size());
+        assertNotSame(failures.get(0), failures.get(1));
+    }
+
+    private static ProtonTransport createUnhandledTransport(final List<Throwable> failures) {
+        ProtonTransport transport = new ProtonTransport();
+
+        transport.setTransportListener(new TransportListener() {
+
+            @Override
+            public void onTransportFailed(Transport transport, Throwable cause) {
+                failures.add(cause);
+            }
+        });
+
+        transport.getPipeline().addLast("skipped", new TransportHandlerAdapter() {});
+
+        return transport;
+    }
+
+    //----- Test handlers ----------------------------------------------------//
+
+    private static class ReadingHandler extends TransportHandlerAdapter {
+
+        @Override
+        public void handleRead(TransportHandlerContext context, ProtonBuffer buffer) {
+            context.fireRead(buffer);
+        }
+    }
+
+    private static class ForwardingHandler implements TransportHandler {
+
+        @Override
+        public void handleRead(TransportHandlerContext context, ProtonBuffer buffer) {
+            context.fireRead(buffer);
+        }
+
+        @Override
+        public void handleHeaderFrame(TransportHandlerContext context, HeaderFrame header) {
+            context.fireHeaderFrame(header);
+        }
+
+        @Override
+        public void handleSaslFrame(TransportHandlerContext context, SaslFrame frame) {
+            context.fireSaslFrame(frame);
+        }
+
+        @Override
+        public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+            context.fireProtocolFrame(frame);
+        }
+
+        @Override
+        public void transportEncodingError(TransportHandlerContext context, Throwable e) {
+            context.fireEncodingError(e);
+        }
+
+        @Override
+        public void transportDecodingError(TransportHandlerContext context, Throwable e) {
+            context.fireDecodingError(e);
+        }
+
+        @Override
+        public void transportFailed(TransportHandlerContext context, Throwable e) {
+            context.fireFailed(e);
+        }
+
+        @Override
+        public void handleWrite(TransportHandlerContext context, Frame<?> frame) {
+            context.fireWrite(frame);
+        }
+
+        @Override
+        public void handleWrite(TransportHandlerContext context, ProtonBuffer buffer) {
+            context.fireWrite(buffer);
+        }
+
+        @Override
+        public void handleFlush(TransportHandlerContext context) {
+            context.fireFlush();
+        }
+    }
+}
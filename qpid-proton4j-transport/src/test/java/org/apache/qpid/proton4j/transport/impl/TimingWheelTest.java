@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for the hashed timing wheel
+ */
+public class TimingWheelTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final List<String> expired = new ArrayList<>();
+
+    private class NamedTimeout extends TimingWheel.Timeout {
+
+        private final String name;
+
+        NamedTimeout(String name) {
+            this.name = name;
+        }
+
+        @Override
+        protected void expired(long now) {
+            expired.add(name);
+        }
+    }
+
+    @Test
+    public void testTimeoutsExpireInDeadlineOrder() {
+        TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 8, 0);
+
+        wheel.schedule(new NamedTimeout("c"), 50, TimeUnit.MILLISECONDS);
+        wheel.schedule(new NamedTimeout("a"), 10, TimeUnit.MILLISECONDS);
+        wheel.schedule(new NamedTimeout("b"), 25, TimeUnit.MILLISECONDS);
+        assertEquals(3, wheel.getScheduledCount());
+
+        assertEquals(0, wheel.advance(9 * MILLIS));
+        assertEquals(1, wheel.advance(10 * MILLIS));
+        assertEquals(1, wheel.advance(30 * MILLIS));
+        assertEquals(1, wheel.advance(50 * MILLIS));
+
+        assertEquals(3, expired.size());
+        assertEquals("a", expired.get(0));
+        assertEquals("b", expired.get(1));
+        assertEquals("c", expired.get(2));
+        assertEquals(0, wheel.getScheduledCount());
+    }
+
+    @Test
+    public void testDeadlineBeyondOneRevolution() {
+        TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 4, 0);
+        NamedTimeout timeout = new NamedTimeout("far");
+
+        // Shares a bucket with the first tick but is due three revolutions later
+        wheel.schedule(timeout, 130, TimeUnit.MILLISECONDS);
+
+        for (long time = 10; time < 130; time += 10) {
+            wheel.advance(time * MILLIS);
+            assertTrue(expired.isEmpty());
+        }
+
+        wheel.advance(130 * MILLIS);
+        assertEquals(1, expired.size());
+        assertFalse(timeout.isScheduled());
+    }
+
+    @Test
+    public void testRescheduleAndCancel() {
+        TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 8, 0);
+        NamedTimeout moved = new NamedTimeout("moved");
+        NamedTimeout cancelled = new NamedTimeout("cancelled");
+
+        wheel.schedule(moved, 20, TimeUnit.MILLISECONDS);
+        wheel.schedule(cancelled, 20, TimeUnit.MILLISECONDS);
+
+        wheel.schedule(moved, 60, TimeUnit.MILLISECONDS);
+        wheel.cancel(cancelled);
+        assertEquals(1, wheel.getScheduledCount());
+        assertFalse(cancelled.isScheduled());
+
+        wheel.advance(50 * MILLIS);
+        assertTrue(expired.isEmpty());
+
+        wheel.advance(60 * MILLIS);
+        assertEquals(1, expired.size());
+        assertEquals("moved", expired.get(0));
+    }
+
+    @Test
+    public void testLargeAdvanceExpiresEverythingDue() {
+        TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 8, 0);
+
+        for (int i = 1; i <= 20; ++i) {
+            wheel.schedule(new NamedTimeout("t" + i), i * 10, TimeUnit.MILLISECONDS);
+        }
+        wheel.schedule(new NamedTimeout("late"), 10, TimeUnit.SECONDS);
+
+        assertEquals(20, wheel.advance(5 * TimeUnit.SECONDS.toNanos(1)));
+        assertEquals(1, wheel.getScheduledCount());
+    }
+
+    @Test
+    public void testExpiryMayRescheduleItself() {
+        final TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 8, 0);
+        final int[] count = new int[1];
+
+        TimingWheel.Timeout periodic = new TimingWheel.Timeout() {
+
+            @Override
+            protected void expired(long now) {
+                if (++count[0] < 5) {
+                    wheel.schedule(this, 80, TimeUnit.MILLISECONDS);
+                }
+            }
+        };
+
+        wheel.schedule(periodic, 80, TimeUnit.MILLISECONDS);
+
+        for (long time = 10; time <= 1000; time += 10) {
+            wheel.advance(time * MILLIS);
+        }
+
+        assertEquals(5, count[0]);
+        assertEquals(0, wheel.getScheduledCount());
+        assertEquals(-1, wheel.nanosToNextTick(wheel.currentTime()));
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Tests for the log-linear Histogram
+ */
+public class HistogramTest {
+
+    @Test
+    public void testBucketsAreContiguous() {
+        long lowest = 0;
+        for (int index = 0; index <= Histogram.bucketIndex(Histogram.MAX_VALUE); ++index) {
+            assertEquals(index, Histogram.bucketIndex(lowest));
+            long highest = Histogram.highestValueInBucket(index);
+            assertEquals(index, Histogram.bucketIndex(highest));
+            lowest = highest + 1;
+        }
+
+        assertEquals(Histogram.MAX_VALUE + 1, lowest);
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10; ++i) {
+            histogram.record(i);
+        }
+
+        assertEquals(10, histogram.getCount());
+        assertEquals(55, histogram.getSum());
+        assertEquals(10, histogram.getMax());
+        assertEquals(5.5, histogram.getMean(), 0.0);
+        assertEquals(5, histogram.getValueAtPercentile(50));
+        assertEquals(9, histogram.getValueAtPercentile(90));
+        assertEquals(10, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testRelativeErrorIsBounded() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value < 10_000_000; value = value * 3 + 7) {
+            histogram.reset();
+            histogram.record(value);
+            histogram.record(value * 2);
+
+            long reported = histogram.getValueAtPercentile(50);
+            assertTrue(reported >= value);
+            assertTrue("Error too large for " + value + " was " + reported, reported <= value + value / 16 + 1);
+        }
+    }
+
+    @Test
+    public void testPercentilesOfSkewedDistribution() {
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < 990; ++i) {
+            histogram.record(1000);
+        }
+        for (int i = 0; i < 10; ++i) {
+            histogram.record(1_000_000);
+        }
+
+        assertTrue(histogram.getValueAtPercentile(50) >= 1000);
+        assertTrue(histogram.getValueAtPercentile(99) < 1100);
+        assertTrue(histogram.getValueAtPercentile(99.9) >= 1_000_000);
+        assertEquals(1_000_000, histogram.getMax());
+    }
+
+    @Test
+    public void testOutOfRangeValuesAreClamped() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+        assertTrue(histogram.getValueAtPercentile(100) >= Histogram.MAX_VALUE);
+    }
+
+    @Test
+    public void testReset() {
+        Histogram histogram = new Histogram();
+        histogram.record(42);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentRecordingFromManyThreads() throws Exception {
+        final int threads = 8;
+        final int valuesPerThread = 100_000;
+        final Histogram histogram = new Histogram();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> recorders = new ArrayList<>();
+        for (int i = 0; i < threads; ++i) {
+            final long offset = i;
+            Thread recorder = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+
+                    for (int value = 1; value <= valuesPerThread; ++value) {
+                        histogram.record(value % 10 == 0 ? value + offset : 10);
+                    }
+                }
+            });
+            recorder.start();
+            recorders.add(recorder);
+        }
+
+        start.countDown();
+        for (Thread recorder : recorders) {
+            recorder.join();
+        }
+
+        assertEquals(threads * valuesPerThread, histogram.getCount());
+        assertEquals(valuesPerThread + threads - 1, histogram.getMax());
+        assertEquals(10, histogram.getValueAtPercentile(50));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new Histogram().getValueAtPercentile(101);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.Flow;
+import org.apache.qpid.proton4j.amqp.transport.Performative.PerformativeType;
+import org.apache.qpid.proton4j.amqp.transport.Transfer;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.buffer.ProtonByteBufferAllocator;
+import org.apache.qpid.proton4j.codec.CodecFactory;
+import org.apache.qpid.proton4j.transport.EmptyFrame;
+import org.apache.qpid.proton4j.transport.ProtocolFrame;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.handlers.FrameParsingHandler;
+import org.apache.qpid.proton4j.transport.handlers.FrameWritingHandler;
+import org.apache.qpid.proton4j.transport.handlers.TransportMetricsHandler;
+import org.apache.qpid.proton4j.transport.impl.AmqpFrameParser;
+import org.apache.qpid.proton4j.transport.impl.ProtonTransport;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the metrics recorded as frames pass through a Transport
+ */
+public class TransportMetricsTest {
+
+    private ProtonTransport transport;
+    private TransportMetrics metrics;
+    private ProtonBuffer written;
+    private int framesReceived;
+
+    @Before
+    public void setUp() {
+        transport = new ProtonTransport();
+        metrics = new TransportMetrics();
+        written = ProtonByteBufferAllocator.DEFAULT.allocate();
+
+        final AmqpFrameParser parser = new AmqpFrameParser(CodecFactory.getDecoder(), 65536);
+
+        transport.getPipeline().addLast("io", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleWrite(TransportHandlerContext context, ProtonBuffer buffer) {
+                written.writeBytes(buffer);
+            }
+
+            @Override
+            public void handleFlush(TransportHandlerContext context) {
+            }
+        });
+        transport.getPipeline().addLast("metrics", new TransportMetricsHandler());
+        transport.getPipeline().addLast("writer", new FrameWritingHandler());
+        transport.getPipeline().addLast("parser", new FrameParsingHandler(parser));
+        transport.getPipeline().addLast("frames", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+                framesReceived++;
+            }
+        });
+    }
+
+    @Test
+    public void testNothingRecordedWithoutMetrics() throws Exception {
+        assertNull(transport.getMetrics());
+
+        writeFrames();
+        transport.processIncoming(written);
+
+        assertEquals(3, framesReceived);
+    }
+
+    @Test
+    public void testMetricsRecordedInBothDirections() throws Exception {
+        transport.setMetrics(metrics);
+
+        writeFrames();
+
+        final int encodedBytes = written.getReadableBytes();
+
+        assertEquals(encodedBytes, metrics.getBytesWritten());
+        assertEquals(3, metrics.getFramesOut());
+        assertEquals(1, metrics.getFramesOut(PerformativeType.TRANSFER));
+        assertEquals(1, metrics.getFramesOut(PerformativeType.FLOW));
+        assertEquals(1, metrics.getEmptyFramesOut());
+        assertEquals(100, metrics.getPayloadBytesOut());
+
+        // Deliver the first bytes alone so that the first frame must be buffered
+        ProtonBuffer first = ProtonByteBufferAllocator.DEFAULT.allocate();
+        first.writeBytes(written, 12);
+        transport.processIncoming(first);
+        transport.processIncoming(written);
+
+        assertEquals(3, framesReceived);
+        assertEquals(encodedBytes, metrics.getBytesRead());
+        assertEquals(3, metrics.getFramesIn());
+        assertEquals(1, metrics.getFramesIn(PerformativeType.TRANSFER));
+        assertEquals(1, metrics.getFramesIn(PerformativeType.FLOW));
+        assertEquals(0, metrics.getFramesIn(PerformativeType.OPEN));
+        assertEquals(1, metrics.getEmptyFramesIn());
+        assertEquals(100, metrics.getPayloadBytesIn());
+        assertEquals(1, metrics.getBufferedFrames());
+
+        assertEquals(2, metrics.getParseTime().getCount());
+        assertEquals(2, metrics.getDecodeTime().getCount());
+        assertEquals(3, metrics.getFrameSizeIn().getCount());
+        assertEquals(encodedBytes, metrics.getFrameSizeIn().getSum());
+        assertEquals(8, metrics.getFrameSizeIn().getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testExportVisitsEveryMetric() throws Exception {
+        transport.setMetrics(metrics);
+
+        writeFrames();
+        transport.processIncoming(written);
+
+        final Map<String, Long> counters = new HashMap<>();
+        final Map<String, Histogram> histograms = new HashMap<>();
+
+        metrics.export(new MetricsVisitor() {
+
+            @Override
+            public void counter(String name, long value) {
+                counters.put(name, value);
+            }
+
+            @Override
+            public void histogram(String name, Histogram histogram) {
+                histograms.put(name, histogram);
+            }
+        });
+
+        assertEquals(1L, counters.get("frames.in.transfer").longValue());
+        assertEquals(0L, counters.get("frames.in.open").longValue());
+        assertEquals(1L, counters.get("frames.out.flow").longValue());
+        assertEquals(1L, counters.get("frames.in.empty").longValue());
+        assertEquals(100L, counters.get("payload.bytes.out").longValue());
+        assertEquals(metrics.getBytesRead(), counters.get("bytes.read").longValue());
+        assertEquals(3, histograms.size());
+        assertEquals(1, histograms.get("parse.time.ns").getCount());
+
+        assertTrue(metrics.toString().contains("frames.in.transfer=1"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getFramesIn());
+        assertEquals(0, metrics.getBytesWritten());
+        assertEquals(0, metrics.getDecodeTime().getCount());
+    }
+
+    private void writeFrames() throws IOException {
+        Transfer transfer = new Transfer();
+        transfer.setHandle(0);
+        transfer.setDeliveryId(1);
+        transfer.setDeliveryTag(new Binary(new byte[] { 1 }));
+
+        Flow flow = new Flow();
+        flow.setIncomingWindow(10);
+        flow.setNextOutgoingId(1);
+        flow.setOutgoingWindow(10);
+
+        transport.write(new ProtocolFrame(transfer, (short) 0, new Binary(new byte[100])));
+        transport.write(new EmptyFrame());
+        transport.write(new ProtocolFrame(flow, (short) 0, null));
+        transport.flush();
+    }
+}
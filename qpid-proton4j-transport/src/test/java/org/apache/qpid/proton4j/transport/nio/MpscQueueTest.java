@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Tests for the multiple producer single consumer queue
+ */
+public class MpscQueueTest {
+
+    @Test
+    public void testOfferAndPollInOrder() {
+        MpscQueue<Integer> queue = new MpscQueue<>();
+
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        for (int i = 0; i < 10; ++i) {
+            queue.offer(i);
+        }
+
+        for (int i = 0; i < 10; ++i) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testOfferNullThrows() {
+        new MpscQueue<Object>().offer(null);
+    }
+
+    @Test
+    public void testClear() {
+        MpscQueue<Integer> queue = new MpscQueue<>();
+        queue.offer(1);
+        queue.offer(2);
+        queue.clear();
+
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentProducersKeepPerProducerOrder() throws Exception {
+        final int producers = 4;
+        final int perProducer = 100000;
+        final MpscQueue<long[]> queue = new MpscQueue<>();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; ++p) {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    for (int i = 0; i < perProducer; ++i) {
+                        queue.offer(new long[] { producer, i });
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        start.countDown();
+
+        long[] expected = new long[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            long[] value = queue.poll();
+            if (value != null) {
+                assertEquals(expected[(int) value[0]]++, value[1]);
+                received++;
+            }
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(queue.isEmpty());
+        for (int p = 0; p < producers; ++p) {
+            assertEquals(perProducer, expected[p]);
+        }
+    }
+}
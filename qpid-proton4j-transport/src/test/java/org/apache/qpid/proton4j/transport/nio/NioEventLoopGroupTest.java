@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.Transfer;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.codec.CodecFactory;
+import org.apache.qpid.proton4j.transport.Frame;
+import org.apache.qpid.proton4j.transport.ProtocolFrame;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.handlers.FrameParsingHandler;
+import org.apache.qpid.proton4j.transport.handlers.FrameWritingHandler;
+import org.apache.qpid.proton4j.transport.impl.AmqpFrameParser;
+import org.apache.qpid.proton4j.transport.impl.ProtonTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the event loop group and connection affinity
+ */
+public class NioEventLoopGroupTest {
+
+    private ServerSocketChannel server;
+    private NioEventLoopGroup serverGroup;
+    private NioEventLoopGroup clientGroup;
+
+    @Before
+    public void setUp() throws Exception {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        serverGroup = new NioEventLoopGroup("server", 2).start();
+        clientGroup = new NioEventLoopGroup("client", 4).start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        clientGroup.close(5, TimeUnit.SECONDS);
+        serverGroup.close(5, TimeUnit.SECONDS);
+        server.close();
+    }
+
+    @Test(timeout = 60000)
+    public void testTransportsPinnedToOneLoopAndWritesMovedOntoIt() throws Exception {
+        final int connections = 16;
+        final int framesPerConnection = 200;
+        final CountDownLatch received = new CountDownLatch(connections * framesPerConnection);
+
+        List<ProtonTransport> clients = new ArrayList<>();
+        List<NioConnection> clientConnections = new ArrayList<>();
+        final List<Set<Thread>> writerThreads = new ArrayList<>();
+        final AtomicInteger offLoopWrites = new AtomicInteger();
+
+        for (int i = 0; i < connections; ++i) {
+            SocketChannel client = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            serverGroup.register(accepted, createReceivingTransport(received));
+
+            final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+            final NioConnection[] connection = new NioConnection[1];
+            ProtonTransport transport = new ProtonTransport();
+            transport.getPipeline().addLast("writer", new FrameWritingHandler());
+            transport.getPipeline().addLast("thread-check", new TransportHandlerAdapter() {
+
+                @Override
+                public void handleWrite(TransportHandlerContext context, Frame<?> frame) {
+                    checkThread();
+                    context.fireWrite(frame);
+                }
+
+                @Override
+                public void handleWrite(TransportHandlerContext context, ProtonBuffer buffer) {
+                    checkThread();
+                    context.fireWrite(buffer);
+                }
+
+                private void checkThread() {
+                    threads.add(Thread.currentThread());
+                    if (!connection[0].getEventLoop().inEventLoop()) {
+                        offLoopWrites.incrementAndGet();
+                    }
+                }
+            });
+
+            clients.add(transport);
+            writerThreads.add(threads);
+            connection[0] = clientGroup.register(client, transport);
+            clientConnections.add(connection[0]);
+        }
+
+        // Each loop in the group is given an equal share of the connections
+        for (int i = 0; i < clientGroup.size(); ++i) {
+            int assigned = 0;
+            for (NioConnection connection : clientConnections) {
+                if (connection.getEventLoop() == clientGroup.getEventLoop(i)) {
+                    assigned++;
+                }
+            }
+            assertEquals(connections / clientGroup.size(), assigned);
+        }
+
+        // Write from several application threads, the affinity handler moves the work onto the loop
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; ++p) {
+            final int producer = p;
+            final List<ProtonTransport> targets = clients;
+            producers[p] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int i = producer; i < targets.size(); i += producers.length) {
+                        ProtonTransport transport = targets.get(i);
+                        for (int f = 0; f < framesPerConnection; ++f) {
+                            writeTransfer(transport, f);
+                        }
+                        transport.flush();
+                    }
+                }
+            });
+            producers[p].start();
+        }
+
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertTrue("Not all frames arrived", received.await(30, TimeUnit.SECONDS));
+
+        assertEquals(0, offLoopWrites.get());
+        for (Set<Thread> threads : writerThreads) {
+            assertEquals(1, threads.size());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testFrameWrittenOffLoopIsEncodedBeforeReuse() throws Exception {
+        final CountDownLatch received = new CountDownLatch(2);
+        final List<Long> deliveryIds = new ArrayList<>();
+
+        SocketChannel client = SocketChannel.open(server.getLocalAddress());
+        SocketChannel accepted = server.accept();
+
+        ProtonTransport receiving = createReceivingTransport(received);
+        receiving.getPipeline().addLast("ids", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+                deliveryIds.add(((Transfer) frame.getBody()).getDeliveryId());
+                received.countDown();
+            }
+        });
+        receiving.getPipeline().remove("receiver");
+        serverGroup.register(accepted, receiving);
+
+        ProtonTransport transport = new ProtonTransport();
+        transport.getPipeline().addLast("writer", new FrameWritingHandler());
+        NioConnection connection = clientGroup.register(client, transport);
+
+        // Hold the loop so that the writes below are queued rather than run immediately
+        final CountDownLatch release = new CountDownLatch(1);
+        connection.getEventLoop().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        // The same frame and performative are reused for both writes as the engine does
+        Transfer transfer = new Transfer();
+        transfer.setHandle(0);
+        transfer.setDeliveryTag(new Binary(new byte[] { 0 }));
+        ProtocolFrame frame = new ProtocolFrame(transfer, (short) 0, null);
+
+        transfer.setDeliveryId(1);
+        transport.write(frame);
+        transfer.setDeliveryId(2);
+        transport.write(frame);
+        transfer.setDeliveryId(3);
+        transport.flush();
+
+        release.countDown();
+
+        assertTrue("Not all frames arrived", received.await(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1L, 2L), deliveryIds);
+    }
+
+    private static ProtonTransport createReceivingTransport(final CountDownLatch received) {
+        final AmqpFrameParser parser = new AmqpFrameParser(CodecFactory.getDecoder(), 65536);
+
+        ProtonTransport transport = new ProtonTransport();
+        transport.getPipeline().addLast("parser", new FrameParsingHandler(parser));
+        transport.getPipeline().addLast("receiver", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+                received.countDown();
+            }
+        });
+
+        return transport;
+    }
+
+    private static void writeTransfer(ProtonTransport transport, int deliveryId) {
+        Transfer transfer = new Transfer();
+        transfer.setHandle(0);
+        transfer.setDeliveryId(deliveryId);
+        transfer.setDeliveryTag(new Binary(new byte[] { (byte) deliveryId }));
+
+        try {
+            transport.write(new ProtocolFrame(transfer, (short) 0, new Binary(new byte[64])));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
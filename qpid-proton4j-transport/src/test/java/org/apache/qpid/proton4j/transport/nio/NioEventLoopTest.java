@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.qpid.proton4j.transport.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.qpid.proton4j.amqp.Binary;
+import org.apache.qpid.proton4j.amqp.transport.Transfer;
+import org.apache.qpid.proton4j.buffer.ProtonBuffer;
+import org.apache.qpid.proton4j.codec.CodecFactory;
+import org.apache.qpid.proton4j.transport.ProtocolFrame;
+import org.apache.qpid.proton4j.transport.TransportHandlerAdapter;
+import org.apache.qpid.proton4j.transport.TransportHandlerContext;
+import org.apache.qpid.proton4j.transport.handlers.FrameParsingHandler;
+import org.apache.qpid.proton4j.transport.handlers.FrameWritingHandler;
+import org.apache.qpid.proton4j.transport.impl.AmqpFrameParser;
+import org.apache.qpid.proton4j.transport.impl.ProtonTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loopback tests for the NIO event loop driver
+ */
+public class NioEventLoopTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NioEventLoopTest.class);
+
+    private static final int MAX_FRAME_SIZE = 1024 * 1024;
+
+    private ServerSocketChannel server;
+    private NioEventLoop serverLoop;
+    private NioEventLoop clientLoop;
+
+    @Before
+    public void setUp() throws Exception {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        serverLoop = new NioEventLoop("server-loop").start();
+        clientLoop = new NioEventLoop("client-loop").start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        clientLoop.close(5, TimeUnit.SECONDS);
+        serverLoop.close(5, TimeUnit.SECONDS);
+        server.close();
+    }
+
+    @Test(timeout = 60000)
+    public void testManyConnectionsOnSingleLoop() throws Exception {
+        final int connections = 32;
+        final int framesPerConnection = 500;
+        final int payloadSize = 256;
+
+        final CountDownLatch received = new CountDownLatch(connections * framesPerConnection);
+        final AtomicLong bytesReceived = new AtomicLong();
+
+        List<ProtonTransport> clients = new ArrayList<>();
+
+        for (int i = 0; i < connections; ++i) {
+            SocketChannel client = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            serverLoop.register(accepted, createReceivingTransport(received, bytesReceived));
+            clients.add(createSendingTransport(client));
+        }
+
+        final long start = System.nanoTime();
+
+        for (final ProtonTransport transport : clients) {
+            clientLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < framesPerConnection; ++i) {
+                        writeTransfer(transport, i, new byte[payloadSize]);
+                    }
+                    transport.flush();
+                }
+            });
+        }
+
+        assertTrue("Not all frames arrived", received.await(30, TimeUnit.SECONDS));
+
+        final long elapsed = System.nanoTime() - start;
+
+        assertEquals(connections, serverLoop.getConnectionCount());
+        assertEquals(connections, clientLoop.getConnectionCount());
+
+        LOG.info("{} connections per loop thread received {} frames ({} bytes) in {} ms",
+                 connections, connections * framesPerConnection, bytesReceived.get(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    @Test(timeout = 60000)
+    public void testOutputBackpressureUsesWriteInterest() throws Exception {
+        final int frames = 512;
+        final int payloadSize = 64 * 1024;
+
+        final CountDownLatch received = new CountDownLatch(frames);
+        final AtomicLong bytesReceived = new AtomicLong();
+
+        SocketChannel client = SocketChannel.open(server.getLocalAddress());
+        final SocketChannel accepted = server.accept();
+
+        final ProtonTransport transport = createSendingTransport(client);
+        final NioConnection connection = (NioConnection) transport.getPipeline().first();
+        final CountDownLatch flushed = new CountDownLatch(1);
+
+        // The peer is not reading so the socket buffers fill and output must wait for OP_WRITE.
+        clientLoop.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                for (int i = 0; i < frames; ++i) {
+                    writeTransfer(transport, i, new byte[payloadSize]);
+                }
+                transport.flush();
+                flushed.countDown();
+            }
+        });
+
+        assertTrue(flushed.await(10, TimeUnit.SECONDS));
+        assertTrue("Expected output to be pending", connection.getPendingBytes() > 0);
+
+        serverLoop.register(accepted, createReceivingTransport(received, bytesReceived));
+
+        assertTrue("Not all frames arrived", received.await(30, TimeUnit.SECONDS));
+        assertEquals(0, connection.getPendingBytes());
+    }
+
+    @Test(timeout = 60000)
+    public void testHandlerErrorFailsOnlyItsConnection() throws Exception {
+        final int frames = 100;
+
+        final CountDownLatch received = new CountDownLatch(frames);
+        final CountDownLatch failed = new CountDownLatch(1);
+        final AtomicLong bytesReceived = new AtomicLong();
+
+        SocketChannel failingClient = SocketChannel.open(server.getLocalAddress());
+        SocketChannel failingAccepted = server.accept();
+        SocketChannel workingClient = SocketChannel.open(server.getLocalAddress());
+        SocketChannel workingAccepted = server.accept();
+
+        ProtonTransport failingTransport = createReceivingTransport(new CountDownLatch(1), bytesReceived);
+        failingTransport.getPipeline().remove("receiver");
+        failingTransport.getPipeline().addLast("thrower", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+                throw new IllegalStateException("Handler failure");
+            }
+
+            @Override
+            public void transportFailed(TransportHandlerContext context, Throwable e) {
+                failed.countDown();
+            }
+        });
+
+        serverLoop.register(failingAccepted, failingTransport);
+        serverLoop.register(workingAccepted, createReceivingTransport(received, bytesReceived));
+
+        final ProtonTransport failingSender = createSendingTransport(failingClient);
+        final ProtonTransport workingSender = createSendingTransport(workingClient);
+
+        clientLoop.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                writeTransfer(failingSender, 0, new byte[16]);
+                failingSender.flush();
+            }
+        });
+
+        assertTrue("Connection was not failed", failed.await(10, TimeUnit.SECONDS));
+
+        clientLoop.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                for (int i = 0; i < frames; ++i) {
+                    writeTransfer(workingSender, i, new byte[16]);
+                }
+                workingSender.flush();
+            }
+        });
+
+        assertTrue("Other connection stopped receiving", received.await(10, TimeUnit.SECONDS));
+        assertEquals(1, serverLoop.getConnectionCount());
+        assertFalse(serverLoop.isClosed());
+    }
+
+    private ProtonTransport createSendingTransport(SocketChannel channel) throws IOException {
+        ProtonTransport transport = new ProtonTransport();
+        transport.getPipeline().addLast("writer", new FrameWritingHandler());
+        clientLoop.register(channel, transport);
+        return transport;
+    }
+
+    private static ProtonTransport createReceivingTransport(final CountDownLatch received, final AtomicLong bytes) {
+        final AmqpFrameParser parser = new AmqpFrameParser(CodecFactory.getDecoder(), MAX_FRAME_SIZE);
+
+        ProtonTransport transport = new ProtonTransport();
+        transport.getPipeline().addLast("parser", new FrameParsingHandler(parser) {
+
+            @Override
+            public void handleRead(TransportHandlerContext context, ProtonBuffer buffer) {
+                bytes.addAndGet(buffer.getReadableBytes());
+                super.handleRead(context, buffer);
+            }
+        });
+        transport.getPipeline().addLast("receiver", new TransportHandlerAdapter() {
+
+            @Override
+            public void handleProtocolFrame(TransportHandlerContext context, ProtocolFrame frame) {
+                received.countDown();
+            }
+        });
+
+        return transport;
+    }
+
+    private static void writeTransfer(ProtonTransport transport, int deliveryId, byte[] payload) {
+        Transfer transfer = new Transfer();
+        transfer.setHandle(0);
+        transfer.setDeliveryId(deliveryId);
+        transfer.setDeliveryTag(new Binary(new byte[] { (byte) deliveryId }));
+
+        try {
+            transport.write(new ProtocolFrame(transfer, (short) 0, new Binary(payload)));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}